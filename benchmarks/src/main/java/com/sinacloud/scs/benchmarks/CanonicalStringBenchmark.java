@@ -0,0 +1,77 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.DefaultRequest;
+import com.sinacloud.scs.Request;
+import com.sinacloud.scs.services.scs.Headers;
+import com.sinacloud.scs.services.scs.internal.RestUtils;
+
+/**
+ * Cost of {@link RestUtils#makeS3CanonicalString} for a typical object
+ * request: a few standard headers, some user metadata and, for sub-resource
+ * requests, query parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class CanonicalStringBenchmark {
+
+    private static final String RESOURCE_PATH = "/bucket/logs/2014/03/31/access.log.gz";
+
+    /** Number of x-amz-meta- headers on the request. */
+    @Param({"0", "8"})
+    public int userMetadataHeaders;
+
+    private Request<?> request;
+    private Request<?> subResourceRequest;
+
+    @Setup
+    public void setUp() {
+        request = newRequest();
+        subResourceRequest = newRequest();
+        subResourceRequest.addParameter("uploadId", "7517c1c49a3b4b86a5f08858290c5cf6");
+        subResourceRequest.addParameter("partNumber", "3");
+    }
+
+    private Request<?> newRequest() {
+        Request<?> request = new DefaultRequest<Object>("SCS");
+        request.setEndpoint(URI.create("http://sinacloud.net"));
+        request.setResourcePath(RESOURCE_PATH);
+        request.addHeader(Headers.CONTENT_TYPE, "application/x-gzip");
+        request.addHeader(Headers.CONTENT_MD5, "1B2M2Y8AsgTpgAmY7PhCfg==");
+        request.addHeader(Headers.DATE, "Mon, 31 Mar 2014 08:53:41 GMT");
+        request.addHeader(Headers.CONTENT_LENGTH, "48213");
+        request.addHeader("User-Agent", "SCS Java SDK");
+        for (int i = 0; i < userMetadataHeaders; i++) {
+            request.addHeader(Headers.S3_USER_METADATA_PREFIX + "field-" + i, "value-" + i);
+        }
+        return request;
+    }
+
+    @Benchmark
+    public String objectRequest() {
+        return RestUtils.makeS3CanonicalString("PUT", RESOURCE_PATH, request, null);
+    }
+
+    @Benchmark
+    public String subResourceRequest() {
+        return RestUtils.makeS3CanonicalString("PUT", RESOURCE_PATH, subResourceRequest, null);
+    }
+}
@@ -0,0 +1,80 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.util.FileChecksumCalculator;
+import com.sinacloud.scs.util.FileChecksums;
+import com.sinacloud.scs.util.Md5Utils;
+
+/**
+ * Time to checksum a file before uploading it: {@link #md5Utils()} reads it
+ * once through {@link Md5Utils}, as the client used to for every file, and
+ * {@link #fileChecksumCalculator()} computes the MD5 of each 8 MB part and
+ * the SHA-1 of the file with the default {@link FileChecksumCalculator}. The
+ * file stays in the page cache, so the scores measure hashing, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FileChecksumBenchmark {
+
+    private static final long PART_SIZE = 8 * 1024 * 1024;
+
+    @Param({"67108864"})
+    public int fileSize;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = File.createTempFile("scs-checksum-benchmark", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(42);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < fileSize; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, Math.min(chunk.length, fileSize - written));
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public byte[] md5Utils() throws Exception {
+        return Md5Utils.computeMD5Hash(new FileInputStream(file));
+    }
+
+    @Benchmark
+    public FileChecksums fileChecksumCalculator() throws Exception {
+        return FileChecksumCalculator.getDefault().calculate(file, PART_SIZE);
+    }
+}
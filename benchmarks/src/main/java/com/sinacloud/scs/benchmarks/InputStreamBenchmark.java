@@ -0,0 +1,87 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.services.scs.internal.Constants;
+import com.sinacloud.scs.services.scs.internal.MD5DigestCalculatingInputStream;
+import com.sinacloud.scs.services.scs.model.RepeatableInputStream;
+import com.sinacloud.scs.util.ByteBufferPool;
+
+/**
+ * Throughput of the input stream wrappers every upload goes through, reading
+ * an in-memory payload in 8 KB chunks: {@link RepeatableInputStream} (with
+ * the default mark buffer of the client, pooled on or off the heap) and
+ * {@link MD5DigestCalculatingInputStream}. {@link #baseline()} reads the
+ * bare payload. Scores are in operations per second, one operation being a
+ * full read of the payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InputStreamBenchmark {
+
+    @Param({"65536", "16777216"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private final byte[] buffer = new byte[8 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        payload = new byte[payloadSize];
+        new Random(42).nextBytes(payload);
+    }
+
+    @Benchmark
+    public long baseline() throws Exception {
+        return drain(new ByteArrayInputStream(payload));
+    }
+
+    @Benchmark
+    public long repeatableInputStream() throws Exception {
+        return drain(new RepeatableInputStream(new ByteArrayInputStream(payload),
+                Constants.DEFAULT_STREAM_BUFFER_SIZE));
+    }
+
+    @Benchmark
+    public long repeatableInputStreamDirect() throws Exception {
+        return drain(new RepeatableInputStream(new ByteArrayInputStream(payload),
+                Constants.DEFAULT_STREAM_BUFFER_SIZE, ByteBufferPool.getDirectPool()));
+    }
+
+    @Benchmark
+    public byte[] md5DigestCalculatingInputStream() throws Exception {
+        MD5DigestCalculatingInputStream in = new MD5DigestCalculatingInputStream(new ByteArrayInputStream(payload));
+        drain(in);
+        return in.getMd5Digest();
+    }
+
+    private long drain(InputStream in) throws Exception {
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > -1) {
+            total += n;
+        }
+        in.close();
+        return total;
+    }
+}
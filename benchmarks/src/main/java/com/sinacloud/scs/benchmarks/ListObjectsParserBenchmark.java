@@ -0,0 +1,88 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+import com.sinacloud.scs.services.scs.model.ObjectListing;
+import com.sinacloud.scs.services.scs.model.transform.JsonResponsesParser;
+
+/**
+ * Cost of unmarshalling one page of a listObjects response.
+ * <p>
+ * {@link #streaming()} is the parser as shipped, reading the document token
+ * by token into the model. {@link #tree()} is the former path, which binds
+ * the whole document to nested maps with Gson before copying it into an
+ * {@link ObjectListing}. Run with <code>-prof gc</code> to compare the
+ * allocation rate as well as the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ListObjectsParserBenchmark {
+
+    /** Number of object summaries in the page (1000 is the service maximum). */
+    @Param({"100", "1000"})
+    public int keys;
+
+    private byte[] document;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"Delimiter\": null, \"Prefix\": \"logs/\", \"CommonPrefixes\": [], \"Marker\": null, ")
+            .append("\"ContentsQuantity\": ").append(keys).append(", \"CommonPrefixesQuantity\": 0, ")
+            .append("\"NextMarker\": \"logs/").append(String.format("%08d", keys - 1)).append(".gz\", ")
+            .append("\"IsTruncated\": true, \"Contents\": [");
+        for (int i = 0; i < keys; i++) {
+            if (i > 0) json.append(", ");
+            json.append("{\"SHA1\": \"4a09518d3c402d0a444e2f6c964a1b5").append(String.format("%08x", i)).append("\", ")
+                .append("\"Name\": \"logs/").append(String.format("%08d", i)).append(".gz\", ")
+                .append("\"Expiration-Time\": null, ")
+                .append("\"Last-Modified\": \"Mon, 31 Mar 2014 08:53:41 UTC\", ")
+                .append("\"Owner\": \"SINA0000001001234567\", ")
+                .append("\"MD5\": \"49c60d1ef444d46939").append(String.format("%014x", i)).append("\", ")
+                .append("\"Content-Type\": \"application/x-gzip\", ")
+                .append("\"Size\": ").append(1024L * i).append("}");
+        }
+        json.append("]}");
+        document = json.toString().getBytes("UTF-8");
+
+        ObjectListing listing = streaming();
+        if (listing.getObjectSummaries().size() != keys
+                || !listing.getObjectSummaries().get(keys - 1).getKey().equals(tree().getObjectSummaries().get(keys - 1).getKey())) {
+            throw new IllegalStateException("The parsers disagree on the test document");
+        }
+    }
+
+    @Benchmark
+    public ObjectListing streaming() {
+        return new JsonResponsesParser().parseListBucketObjectsResponse(new ByteArrayInputStream(document));
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public ObjectListing tree() throws Exception {
+        Map<String, Object> map = new Gson().fromJson(
+                new InputStreamReader(new ByteArrayInputStream(document), "UTF-8"), Map.class);
+        return new ObjectListing(map);
+    }
+}
@@ -0,0 +1,134 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.PartETag;
+import com.sinacloud.scs.services.scs.model.PutObjectRequest;
+import com.sinacloud.scs.services.scs.transfer.TransferManager;
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+import com.sinacloud.scs.services.scs.transfer.internal.TransferManagerUtils;
+import com.sinacloud.scs.services.scs.transfer.internal.UploadPartCallable;
+import com.sinacloud.scs.services.scs.transfer.internal.UploadPartRequestFactory;
+
+/**
+ * End-to-end latency of a parallel multipart file upload through the
+ * {@link TransferManager}, against a client with simulated service latency.
+ * <p>
+ * {@link #eventDriven()} is the transfer manager as shipped: the multipart
+ * upload is completed by the thread finishing the last part.
+ * {@link #polled()} replays the former UploadMonitor strategy over the same
+ * parts (check the part futures, sleep 5 s, check again), which adds up to a
+ * full poll interval to every upload. Run with
+ * <code>-bm sample</code> (the default here) to compare the p50/p99/p100.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 20)
+@Measurement(iterations = 3, time = 30)
+@Fork(1)
+public class MultipartCompletionBenchmark {
+
+    private static final long MB = 1024 * 1024;
+    private static final long PART_SIZE = 8 * MB;
+    private static final long POLL_INTERVAL_MILLIS = 5000;
+
+    @Param({"64", "128", "256"})
+    public int objectSizeMb;
+
+    /** Simulated round trip of every request, in milliseconds. */
+    @Param({"20"})
+    public long roundTripMillis;
+
+    /** Simulated bandwidth of every connection, in MB/s. */
+    @Param({"64"})
+    public long bandwidthMbPerSecond;
+
+    private File file;
+    private SimulatedLatencySCSClient client;
+    private TransferManager transferManager;
+    private ThreadPoolExecutor threadPool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        file = File.createTempFile("scs-multipart-benchmark", ".bin");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(objectSizeMb * MB);
+        } finally {
+            raf.close();
+        }
+
+        client = new SimulatedLatencySCSClient(roundTripMillis, bandwidthMbPerSecond * MB);
+        threadPool = TransferManagerUtils.createDefaultExecutorService();
+        transferManager = new TransferManager(client, threadPool);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(PART_SIZE);
+        configuration.setMultipartUploadThreshold((int) (2 * PART_SIZE));
+        transferManager.setConfiguration(configuration);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transferManager.shutdownNow();
+        file.delete();
+    }
+
+    @Benchmark
+    public void eventDriven() throws Exception {
+        transferManager.upload("bucket", "key", file).waitForCompletion();
+    }
+
+    @Benchmark
+    public void polled() throws Exception {
+        PutObjectRequest putObjectRequest = new PutObjectRequest("bucket", "key", file);
+        String uploadId = client.initiateMultipartUpload(
+                new InitiateMultipartUploadRequest("bucket", "key")).getUploadId();
+
+        UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(putObjectRequest, uploadId, PART_SIZE);
+        List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+        while (requestFactory.hasMoreRequests()) {
+            futures.add(threadPool.submit(new UploadPartCallable(client, requestFactory.getNextUploadPartRequest())));
+        }
+
+        while (!allDone(futures)) {
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+
+        List<PartETag> partETags = new ArrayList<PartETag>(futures.size());
+        for (Future<PartETag> future : futures) {
+            partETags.add(future.get());
+        }
+        client.completeMultipartUpload(new CompleteMultipartUploadRequest("bucket", "key", uploadId, partETags));
+    }
+
+    private static boolean allDone(List<Future<PartETag>> futures) {
+        for (Future<PartETag> future : futures) {
+            if (!future.isDone()) return false;
+        }
+        return true;
+    }
+}
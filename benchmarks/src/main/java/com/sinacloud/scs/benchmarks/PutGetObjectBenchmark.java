@@ -0,0 +1,115 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.auth.BasicAWSCredentials;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.PutObjectResult;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.util.BinaryUtils;
+import com.sinacloud.scs.util.Md5Utils;
+
+/**
+ * End-to-end latency of {@link SCSClient#putObject} and
+ * {@link SCSClient#getObject} against the {@link SCSStubServer} of the
+ * sdk's tests, on the
+ * loopback interface: signing, request building, the HTTP client and
+ * connection pool, MD5 validation and response unmarshalling, without the
+ * variance of a real network and service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PutGetObjectBenchmark {
+
+    private static final String BUCKET = "bucket";
+
+    @Param({"1024", "1048576"})
+    public int objectSize;
+
+    private SCSStubServer server;
+    private SCSClient client;
+    private byte[] content;
+    private byte[] buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = SCSStubServer.start();
+        client = new SCSClient(new BasicAWSCredentials("access", "secret"));
+        client.setEndpoint(server.getEndpoint());
+        client.setEndpoint4Upload(server.getEndpoint());
+
+        content = new byte[objectSize];
+        new Random(42).nextBytes(content);
+        server.putObject(BUCKET, "get-key", content);
+
+        // Metadata the client fails to parse would go unnoticed in the timings
+        String expectedETag = BinaryUtils.toHex(Md5Utils.computeMD5Hash(content));
+        checkETag(expectedETag, putObject().getETag());
+        checkETag(expectedETag, client.getObjectMetadata(BUCKET, "get-key").getETag());
+        S3Object object = client.getObject(BUCKET, "get-key");
+        object.getObjectContent().close();
+        ObjectMetadata metadata = object.getObjectMetadata();
+        checkETag(expectedETag, metadata.getETag());
+        if (metadata.getContentLength() != objectSize) {
+            throw new IllegalStateException("Unexpected content length: " + metadata.getContentLength());
+        }
+    }
+
+    private static void checkETag(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("Expected the ETag " + expected + ", got " + actual);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.shutdown();
+        server.stop();
+    }
+
+    @Benchmark
+    public PutObjectResult putObject() {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        return client.putObject(BUCKET, "put-key", new ByteArrayInputStream(content), metadata);
+    }
+
+    @Benchmark
+    public long getObject() throws Exception {
+        S3Object object = client.getObject(BUCKET, "get-key");
+        InputStream in = object.getObjectContent();
+        long total = 0;
+        try {
+            int n;
+            while ((n = in.read(buffer)) > -1) {
+                total += n;
+            }
+        } finally {
+            in.close();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,116 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.DefaultRequest;
+import com.sinacloud.scs.Request;
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.auth.AWSCredentials;
+import com.sinacloud.scs.auth.BasicAWSCredentials;
+import com.sinacloud.scs.auth.Signer;
+import com.sinacloud.scs.auth.SigningAlgorithm;
+import com.sinacloud.scs.services.scs.internal.S3QueryStringSigner;
+import com.sinacloud.scs.services.scs.internal.S3Signer;
+
+/**
+ * Throughput of signing a request with {@link S3Signer} (Authorization
+ * header) and {@link S3QueryStringSigner} (presigned URL).
+ * <p>
+ * The <code>cached</code> benchmarks are the signers as shipped, which clone
+ * a cached, initialized {@link Mac} for the secret key. The <code>uncached</code>
+ * ones override the HMAC step with the former
+ * <code>Mac.getInstance</code>/<code>init</code> per request. Run with
+ * <code>-t 8</code> or more to see how both scale across cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SignerBenchmark {
+
+    private static final URI ENDPOINT = URI.create("http://sinacloud.net");
+    private static final String RESOURCE_PATH = "bucket/logs/2014/03/31/access.log.gz";
+
+    private final AWSCredentials credentials = new BasicAWSCredentials(
+            "SINA000000100EXAMPLE", "wJalrXUtnFEMI/K7MDENG/bPxRfiCYEXAMPLEKEY");
+    private final Date expiration = new Date(System.currentTimeMillis() + 3600 * 1000L);
+
+    private final Signer s3Signer = new S3Signer("GET", RESOURCE_PATH);
+    private final Signer queryStringSigner = new S3QueryStringSigner<Object>("GET", RESOURCE_PATH, expiration);
+
+    private final Signer uncachedS3Signer = new S3Signer("GET", RESOURCE_PATH) {
+        @Override
+        protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) throws SCSClientException {
+            return uncachedSign(data, key, algorithm);
+        }
+    };
+    private final Signer uncachedQueryStringSigner = new S3QueryStringSigner<Object>("GET", RESOURCE_PATH, expiration) {
+        @Override
+        protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) throws SCSClientException {
+            return uncachedSign(data, key, algorithm);
+        }
+    };
+
+    private static byte[] uncachedSign(byte[] data, byte[] key, SigningAlgorithm algorithm) {
+        try {
+            Mac mac = Mac.getInstance(algorithm.toString());
+            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            return mac.doFinal(data);
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
+        }
+    }
+
+    private static Request<?> newRequest() {
+        Request<?> request = new DefaultRequest<Object>("SCS");
+        request.setEndpoint(ENDPOINT);
+        request.setResourcePath(RESOURCE_PATH);
+        request.addHeader("Content-Type", "application/octet-stream");
+        return request;
+    }
+
+    @Benchmark
+    public Request<?> s3SignerCached() {
+        Request<?> request = newRequest();
+        s3Signer.sign(request, credentials);
+        return request;
+    }
+
+    @Benchmark
+    public Request<?> s3SignerUncached() {
+        Request<?> request = newRequest();
+        uncachedS3Signer.sign(request, credentials);
+        return request;
+    }
+
+    @Benchmark
+    public Request<?> queryStringSignerCached() {
+        Request<?> request = newRequest();
+        queryStringSigner.sign(request, credentials);
+        return request;
+    }
+
+    @Benchmark
+    public Request<?> queryStringSignerUncached() {
+        Request<?> request = newRequest();
+        uncachedQueryStringSigner.sign(request, credentials);
+        return request;
+    }
+}
@@ -0,0 +1,68 @@
+package com.sinacloud.scs.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.auth.BasicAWSCredentials;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadResult;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.UploadPartRequest;
+import com.sinacloud.scs.services.scs.model.UploadPartResult;
+
+/**
+ * SCS client which never touches the network: the multipart upload
+ * operations used by the transfer manager just sleep for a simulated round
+ * trip plus the time needed to push the part at a fixed per-connection
+ * bandwidth. This isolates the client-side scheduling overhead of a
+ * transfer from the variance of a real service.
+ */
+class SimulatedLatencySCSClient extends SCSClient {
+
+    private final long roundTripMillis;
+    private final long bytesPerSecond;
+    private final AtomicInteger uploadIds = new AtomicInteger();
+
+    SimulatedLatencySCSClient(long roundTripMillis, long bytesPerSecond) {
+        super(new BasicAWSCredentials("access", "secret"));
+        this.roundTripMillis = roundTripMillis;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+        pause(0);
+        InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+        result.setBucketName(request.getBucketName());
+        result.setKey(request.getKey());
+        result.setUploadId("upload-" + uploadIds.incrementAndGet());
+        return result;
+    }
+
+    @Override
+    public UploadPartResult uploadPart(UploadPartRequest request) {
+        pause(request.getPartSize());
+        UploadPartResult result = new UploadPartResult();
+        result.setPartNumber(request.getPartNumber());
+        result.setETag("etag-" + request.getPartNumber());
+        return result;
+    }
+
+    @Override
+    public ObjectMetadata completeMultipartUpload(CompleteMultipartUploadRequest request) {
+        pause(0);
+        return new ObjectMetadata();
+    }
+
+    private void pause(long bytes) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(roundTripMillis + bytes * 1000 / bytesPerSecond);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted", e);
+        }
+    }
+}
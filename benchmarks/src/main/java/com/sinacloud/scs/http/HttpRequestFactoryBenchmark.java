@@ -0,0 +1,66 @@
+package com.sinacloud.scs.http;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.DefaultRequest;
+import com.sinacloud.scs.Request;
+
+/**
+ * Cost of converting an SDK {@link Request} into an Apache HttpClient
+ * request with {@link HttpRequestFactory#createHttpRequest}. The factory is
+ * package-private, hence the package of this benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HttpRequestFactoryBenchmark {
+
+    private static final URI ENDPOINT = URI.create("http://sinacloud.net");
+    private static final byte[] CONTENT = new byte[48213];
+
+    private final HttpRequestFactory httpRequestFactory = new HttpRequestFactory();
+    private final ClientConfiguration clientConfiguration = new ClientConfiguration();
+
+    private static Request<?> newRequest(HttpMethodName httpMethod) {
+        Request<?> request = new DefaultRequest<Object>("SCS");
+        request.setHttpMethod(httpMethod);
+        request.setEndpoint(ENDPOINT);
+        request.setResourcePath("bucket/logs/2014/03/31/access log.gz");
+        request.addHeader("Content-Type", "application/x-gzip");
+        request.addHeader("Date", "Mon, 31 Mar 2014 08:53:41 GMT");
+        request.addHeader("Authorization", "SINA SINA000000100EXAMPLE:3v9ruz2dxx");
+        return request;
+    }
+
+    @Benchmark
+    public HttpRequestBase get() {
+        Request<?> request = newRequest(HttpMethodName.GET);
+        request.addParameter("formatter", "json");
+        return httpRequestFactory.createHttpRequest(request, clientConfiguration, null, new ExecutionContext());
+    }
+
+    @Benchmark
+    public HttpRequestBase put() {
+        Request<?> request = newRequest(HttpMethodName.PUT);
+        request.addHeader("Content-Length", Integer.toString(CONTENT.length));
+        request.setContent(new ByteArrayInputStream(CONTENT));
+        return httpRequestFactory.createHttpRequest(request, clientConfiguration, null, new ExecutionContext());
+    }
+}
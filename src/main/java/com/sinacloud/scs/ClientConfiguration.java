@@ -15,6 +15,10 @@
 package com.sinacloud.scs;
 
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.apache.http.annotation.NotThreadSafe;
 
 import com.sinacloud.scs.http.IdleConnectionReaper;
@@ -34,6 +38,12 @@ public class ClientConfiguration {
     /** The default max connection pool size. */
     public static final int DEFAULT_MAX_CONNECTIONS = 50;
 
+    /** The default max number of connections per route: as many as the whole pool. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = -1;
+
+    /** The default time to live of pooled connections: unlimited. */
+    public static final long DEFAULT_CONNECTION_TTL = -1;
+
     /** The default HTTP user agent header for AWS Java SDK clients. */
     public static final String DEFAULT_USER_AGENT = VersionInfoUtils.getUserAgent();
     
@@ -43,12 +53,36 @@ public class ClientConfiguration {
      * @see IdleConnectionReaper
      */
     public static final boolean DEFAULT_USE_REAPER = true;
+
+    /** The default period, in milliseconds, of the {@link IdleConnectionReaper}. */
+    public static final long DEFAULT_REAPER_PERIOD_MILLIS = 60 * 1000;
+
+    /** The default time, in milliseconds, after which the {@link IdleConnectionReaper} closes an idle connection. */
+    public static final long DEFAULT_CONNECTION_MAX_IDLE_MILLIS = 60 * 1000;
+
+    /** The default time, in milliseconds, a pooled connection can be idle before it is checked when leased. */
+    public static final int DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS = 2 * 1000;
     
 
     /**
      * 默认http重试机制
      */
     public static final RetryPolicy DEFAULT_RETRY_POLICY = PredefinedRetryPolicies.DEFAULT;
+
+    /** The default number of consecutive failures opening a circuit breaker: none, it is disabled. */
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 0;
+
+    /** The default time, in milliseconds, an open circuit breaker waits before letting a probe through. */
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_TIME = 10 * 1000;
+
+    /** The default latency percentile after which GET and HEAD requests are hedged: none, it is disabled. */
+    public static final double DEFAULT_HEDGED_REQUEST_PERCENTILE = 0;
+
+    /** The default capacity of the retry budget of a client, in tokens: 500, or 100 retries of 5 tokens each. */
+    public static final int DEFAULT_RETRY_BUDGET = 500;
+
+    /** The default on whether the client adapts its request rate to throttling responses. */
+    public static final boolean DEFAULT_USE_ADAPTIVE_RATE_LIMITER = false;
     
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
@@ -56,6 +90,12 @@ public class ClientConfiguration {
     /** The retry policy upon failed requests. **/
     private RetryPolicy retryPolicy = DEFAULT_RETRY_POLICY;
 
+    /**
+     * Optionally specifies the maximum number of retry attempts for failed
+     * requests, overriding the one of the retry policy.
+     */
+    private int maxErrorRetry = -1;
+
     /**
      * The protocol to use when connecting to Amazon Web Services.
      * <p>
@@ -85,6 +125,28 @@ public class ClientConfiguration {
     /** The maximum number of open HTTP connections. */
     private int maxConnections = DEFAULT_MAX_CONNECTIONS;
 
+    /**
+     * The maximum number of open HTTP connections to a single route, or a
+     * negative value to allow as many as {@link #maxConnections}.
+     */
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+
+    /** The maximum number of open HTTP connections to specific hosts. */
+    private Map<String, Integer> maxConnectionsPerHost = new HashMap<String, Integer>();
+
+    /**
+     * The time, in milliseconds, after which a pooled connection is closed
+     * rather than reused, or a negative value for no limit.
+     */
+    private long connectionTTL = DEFAULT_CONNECTION_TTL;
+
+    /**
+     * The time, in milliseconds, a pooled connection can be idle before it is
+     * checked for staleness when leased, or a negative value to check every
+     * connection leased.
+     */
+    private int validateAfterInactivityMillis = DEFAULT_VALIDATE_AFTER_INACTIVITY_MILLIS;
+
     /**
      * The amount of time to wait (in milliseconds) for data to be transfered
      * over an established, open connection before the connection is timed out.
@@ -120,13 +182,53 @@ public class ClientConfiguration {
      */
     private boolean useReaper = DEFAULT_USE_REAPER;
 
+    /** The period, in milliseconds, at which the {@link IdleConnectionReaper} checks the connection pool. */
+    private long reaperPeriodMillis = DEFAULT_REAPER_PERIOD_MILLIS;
+
+    /** The time, in milliseconds, after which the {@link IdleConnectionReaper} closes an idle connection. */
+    private long connectionMaxIdleMillis = DEFAULT_CONNECTION_MAX_IDLE_MILLIS;
+
+    /**
+     * The number of consecutive failed attempts to an endpoint which open its
+     * circuit breaker, or 0 to disable circuit breakers.
+     */
+    private int circuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+
+    /**
+     * The time, in milliseconds, an open circuit breaker fails requests
+     * before letting a probe through.
+     */
+    private long circuitBreakerOpenTime = DEFAULT_CIRCUIT_BREAKER_OPEN_TIME;
+
+    /**
+     * The percentile of recent latencies after which a GET or HEAD request
+     * is sent a second time, or 0 to disable hedged requests.
+     */
+    private double hedgedRequestPercentile = DEFAULT_HEDGED_REQUEST_PERCENTILE;
+
+    /**
+     * Whether the client limits its request rate once the service throttles
+     * it, adapting the limit to the throttling responses.
+     */
+    private boolean useAdaptiveRateLimiter = DEFAULT_USE_ADAPTIVE_RATE_LIMITER;
+
+    /**
+     * The capacity of the token bucket capping the retries of a client as a
+     * whole, or 0 to disable it.
+     */
+    private int retryBudget = DEFAULT_RETRY_BUDGET;
+
 
     public ClientConfiguration() {}
 
     public ClientConfiguration(ClientConfiguration other) {
         this.connectionTimeout = other.connectionTimeout;
         this.maxConnections    = other.maxConnections;
-        this.setMaxErrorRetry(other.getMaxErrorRetry());
+        this.maxConnectionsPerRoute = other.maxConnectionsPerRoute;
+        this.maxConnectionsPerHost  = new HashMap<String, Integer>(other.maxConnectionsPerHost);
+        this.connectionTTL          = other.connectionTTL;
+        this.validateAfterInactivityMillis = other.validateAfterInactivityMillis;
+        this.maxErrorRetry     = other.maxErrorRetry;
         this.retryPolicy       = other.retryPolicy;
         this.protocol          = other.protocol;
         this.proxyDomain       = other.proxyDomain;
@@ -138,6 +240,13 @@ public class ClientConfiguration {
         this.socketTimeout     = other.socketTimeout;
         this.userAgent         = other.userAgent;
         this.useReaper         = other.useReaper;
+        this.reaperPeriodMillis      = other.reaperPeriodMillis;
+        this.connectionMaxIdleMillis = other.connectionMaxIdleMillis;
+        this.circuitBreakerFailureThreshold = other.circuitBreakerFailureThreshold;
+        this.circuitBreakerOpenTime         = other.circuitBreakerOpenTime;
+        this.hedgedRequestPercentile        = other.hedgedRequestPercentile;
+        this.useAdaptiveRateLimiter         = other.useAdaptiveRateLimiter;
+        this.retryBudget                    = other.retryBudget;
 
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
@@ -234,6 +343,216 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the maximum number of open HTTP connections to a single route,
+     * that is to a single scheme, host and port, or a negative value if a
+     * route can use all the connections of the pool, which is the default.
+     * <p>
+     * Limiting routes keeps the requests to one endpoint, such as the upload
+     * endpoint or the virtual host of a busy bucket, from taking all the
+     * connections while requests to other endpoints wait for one.
+     *
+     * @return The maximum number of open HTTP connections to a single route,
+     *         or a negative value if it is only limited by
+     *         {@link #getMaxConnections()}.
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to a single route.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of open HTTP connections to a single
+     *            route, or a negative value to only limit them by
+     *            {@link #getMaxConnections()}.
+     *
+     * @see #getMaxConnectionsPerRoute()
+     */
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to a single route, and
+     * returns the updated ClientConfiguration object.
+     *
+     * @param maxConnectionsPerRoute
+     *            The maximum number of open HTTP connections to a single
+     *            route, or a negative value to only limit them by
+     *            {@link #getMaxConnections()}.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getMaxConnectionsPerRoute()
+     */
+    public ClientConfiguration withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of open HTTP connections to the routes of
+     * the given host, as set by {@link #setMaxConnectionsForHost(String, int)},
+     * or null if they are limited by {@link #getMaxConnectionsPerRoute()}.
+     *
+     * @param host
+     *            The name of the host, as it appears in the endpoint.
+     *
+     * @return The maximum number of open HTTP connections to each route of
+     *         the host, or null if it has no specific limit.
+     */
+    public Integer getMaxConnectionsForHost(String host) {
+        return maxConnectionsPerHost.get(host);
+    }
+
+    /**
+     * Returns the specific limits of the number of open HTTP connections, by
+     * host name.
+     *
+     * @return An unmodifiable view of the limits, by host name.
+     */
+    public Map<String, Integer> getMaxConnectionsPerHost() {
+        return Collections.unmodifiableMap(maxConnectionsPerHost);
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to each route of the
+     * given host, overriding {@link #getMaxConnectionsPerRoute()}, for
+     * instance to give the upload endpoint more connections than the others.
+     *
+     * @param host
+     *            The name of the host, as it appears in the endpoint.
+     * @param maxConnections
+     *            The maximum number of open HTTP connections to each route of
+     *            the host.
+     */
+    public void setMaxConnectionsForHost(String host, int maxConnections) {
+        if (maxConnections <= 0) {
+            throw new IllegalArgumentException("maxConnections should be positive");
+        }
+        maxConnectionsPerHost.put(host, maxConnections);
+    }
+
+    /**
+     * Sets the maximum number of open HTTP connections to each route of the
+     * given host, and returns the updated ClientConfiguration object.
+     *
+     * @param host
+     *            The name of the host, as it appears in the endpoint.
+     * @param maxConnections
+     *            The maximum number of open HTTP connections to each route of
+     *            the host.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #setMaxConnectionsForHost(String, int)
+     */
+    public ClientConfiguration withMaxConnectionsForHost(String host, int maxConnections) {
+        setMaxConnectionsForHost(host, maxConnections);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, after which a pooled connection is
+     * closed instead of being reused, or a negative value if connections are
+     * kept as long as they are usable, which is the default.
+     * <p>
+     * A time to live spreads the connections over the servers behind the
+     * endpoint again after its DNS records or load balancer change.
+     *
+     * @return The time to live of pooled connections, in milliseconds, or a
+     *         negative value for no limit.
+     */
+    public long getConnectionTTL() {
+        return connectionTTL;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which a pooled connection is
+     * closed instead of being reused.
+     *
+     * @param connectionTTL
+     *            The time to live of pooled connections, in milliseconds, or
+     *            a negative value for no limit.
+     *
+     * @see #getConnectionTTL()
+     */
+    public void setConnectionTTL(long connectionTTL) {
+        this.connectionTTL = connectionTTL;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which a pooled connection is
+     * closed instead of being reused, and returns the updated
+     * ClientConfiguration object.
+     *
+     * @param connectionTTL
+     *            The time to live of pooled connections, in milliseconds, or
+     *            a negative value for no limit.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getConnectionTTL()
+     */
+    public ClientConfiguration withConnectionTTL(long connectionTTL) {
+        setConnectionTTL(connectionTTL);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, a pooled connection can be idle
+     * before it is checked for staleness when it is leased, or a negative
+     * value if every connection is checked when it is leased.
+     * <p>
+     * Checking a connection costs a blocking read on its socket, which is
+     * wasted on the connections of a busy pool, which were used a moment
+     * ago. Connections which the server closed after they had been idle for
+     * a while are still caught before a request is sent over them. The
+     * default is 2 seconds.
+     *
+     * @return The time, in milliseconds, a connection can be idle before it
+     *         is checked, or a negative value to check every connection.
+     */
+    public int getValidateAfterInactivityMillis() {
+        return validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a pooled connection can be idle before
+     * it is checked for staleness when it is leased.
+     *
+     * @param validateAfterInactivityMillis
+     *            The time, in milliseconds, a connection can be idle before
+     *            it is checked, or a negative value to check every
+     *            connection.
+     *
+     * @see #getValidateAfterInactivityMillis()
+     */
+    public void setValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        this.validateAfterInactivityMillis = validateAfterInactivityMillis;
+    }
+
+    /**
+     * Sets the time, in milliseconds, a pooled connection can be idle before
+     * it is checked for staleness when it is leased, and returns the updated
+     * ClientConfiguration object.
+     *
+     * @param validateAfterInactivityMillis
+     *            The time, in milliseconds, a connection can be idle before
+     *            it is checked, or a negative value to check every
+     *            connection.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getValidateAfterInactivityMillis()
+     */
+    public ClientConfiguration withValidateAfterInactivityMillis(int validateAfterInactivityMillis) {
+        setValidateAfterInactivityMillis(validateAfterInactivityMillis);
+        return this;
+    }
+
     /**
      * Returns the HTTP user agent header to send with all requests.
      *
@@ -531,12 +850,13 @@ public class ClientConfiguration {
      *         {@link #setMaxErrorRetry(int)}.
      */
     public int getMaxErrorRetry() {
-        return PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY;
+        return maxErrorRetry;
     }
 
     /**
      * Sets the maximum number of retry attempts for failed retryable requests
-     * (ex: 5xx error responses from services).
+     * (ex: 5xx error responses from services), for the clients created with
+     * this configuration only.
      *
      * @param maxErrorRetry
      *            The maximum number of retry attempts for failed retryable
@@ -546,7 +866,7 @@ public class ClientConfiguration {
         if (maxErrorRetry < 0) {
             throw new IllegalArgumentException("maxErrorRetry shoud be non-negative");
         }
-        PredefinedRetryPolicies.DEFAULT_MAX_ERROR_RETRY = maxErrorRetry;
+        this.maxErrorRetry = maxErrorRetry;
     }
 
     /**
@@ -565,6 +885,55 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the capacity of the retry budget of the client, or 0 if its
+     * retries are only capped per request.
+     * <p>
+     * The retry budget is a token bucket shared by all the requests of a
+     * client: every retry takes 5 tokens and every successful request gives
+     * one back, so that during an outage the client sends about one retry
+     * for every five successful requests, once the initial capacity has been
+     * used, instead of retrying every failed request up to
+     * {@link #getMaxErrorRetry()} times and multiplying the load on the
+     * service. The default capacity, 500 tokens, allows 100 retries in a
+     * row.
+     *
+     * @return The capacity of the retry budget, or 0 if it is disabled.
+     */
+    public int getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Sets the capacity of the retry budget of the client; 0 disables it.
+     *
+     * @param retryBudget
+     *            The capacity of the retry budget, or 0 to disable it.
+     *
+     * @see #getRetryBudget()
+     */
+    public void setRetryBudget(int retryBudget) {
+        if (retryBudget < 0) {
+            throw new IllegalArgumentException("retryBudget should be non-negative");
+        }
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Sets the capacity of the retry budget of the client; 0 disables it.
+     *
+     * @param retryBudget
+     *            The capacity of the retry budget, or 0 to disable it.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getRetryBudget()
+     */
+    public ClientConfiguration withRetryBudget(int retryBudget) {
+        setRetryBudget(retryBudget);
+        return this;
+    }
+
     /**
      * Returns the amount of time to wait (in milliseconds) for data to be
      * transfered over an established, open connection before the connection
@@ -685,6 +1054,290 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the period, in milliseconds, at which the
+     * {@link IdleConnectionReaper} closes the idle connections of the client.
+     *
+     * @return The period of the {@link IdleConnectionReaper}, in milliseconds.
+     */
+    public long getReaperPeriodMillis() {
+        return reaperPeriodMillis;
+    }
+
+    /**
+     * Sets the period, in milliseconds, at which the
+     * {@link IdleConnectionReaper} closes the idle connections of the client.
+     *
+     * @param reaperPeriodMillis
+     *            The period of the {@link IdleConnectionReaper}, in
+     *            milliseconds.
+     */
+    public void setReaperPeriodMillis(long reaperPeriodMillis) {
+        if (reaperPeriodMillis <= 0) {
+            throw new IllegalArgumentException("reaperPeriodMillis should be positive");
+        }
+        this.reaperPeriodMillis = reaperPeriodMillis;
+    }
+
+    /**
+     * Sets the period, in milliseconds, at which the
+     * {@link IdleConnectionReaper} closes the idle connections of the client,
+     * and returns the updated ClientConfiguration object.
+     *
+     * @param reaperPeriodMillis
+     *            The period of the {@link IdleConnectionReaper}, in
+     *            milliseconds.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withReaperPeriodMillis(long reaperPeriodMillis) {
+        setReaperPeriodMillis(reaperPeriodMillis);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, after which the
+     * {@link IdleConnectionReaper} closes a connection left idle in the pool.
+     * <p>
+     * It should be shorter than the time after which the servers close idle
+     * connections, so that the client closes them first instead of leaving
+     * them in CLOSE_WAIT.
+     *
+     * @return The time, in milliseconds, after which an idle connection is
+     *         closed.
+     */
+    public long getConnectionMaxIdleMillis() {
+        return connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which the
+     * {@link IdleConnectionReaper} closes a connection left idle in the pool.
+     *
+     * @param connectionMaxIdleMillis
+     *            The time, in milliseconds, after which an idle connection is
+     *            closed.
+     *
+     * @see #getConnectionMaxIdleMillis()
+     */
+    public void setConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        this.connectionMaxIdleMillis = connectionMaxIdleMillis;
+    }
+
+    /**
+     * Sets the time, in milliseconds, after which the
+     * {@link IdleConnectionReaper} closes a connection left idle in the pool,
+     * and returns the updated ClientConfiguration object.
+     *
+     * @param connectionMaxIdleMillis
+     *            The time, in milliseconds, after which an idle connection is
+     *            closed.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getConnectionMaxIdleMillis()
+     */
+    public ClientConfiguration withConnectionMaxIdleMillis(long connectionMaxIdleMillis) {
+        setConnectionMaxIdleMillis(connectionMaxIdleMillis);
+        return this;
+    }
+
+    /**
+     * Returns the number of consecutive failed attempts to an endpoint (I/O
+     * errors and 5xx responses) which open its circuit breaker, or 0 if
+     * circuit breakers are disabled, which is the default.
+     * <p>
+     * While the circuit breaker of an endpoint is open, requests to it fail
+     * immediately, with the error of their last attempt or with an
+     * {@link SCSClientException}, instead of being sent and retried with
+     * back-off. After {@link #getCircuitBreakerOpenTime()} milliseconds, one
+     * request is sent as a probe, and closes the breaker if it succeeds.
+     *
+     * @return The number of consecutive failures opening a circuit breaker,
+     *         or 0 if circuit breakers are disabled.
+     */
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed attempts to an endpoint which
+     * open its circuit breaker; 0 disables circuit breakers.
+     *
+     * @param circuitBreakerFailureThreshold
+     *            The number of consecutive failures opening a circuit
+     *            breaker, or 0 to disable circuit breakers.
+     *
+     * @see #getCircuitBreakerFailureThreshold()
+     */
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        if (circuitBreakerFailureThreshold < 0) {
+            throw new IllegalArgumentException("circuitBreakerFailureThreshold should be non-negative");
+        }
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    /**
+     * Sets the number of consecutive failed attempts to an endpoint which
+     * open its circuit breaker; 0 disables circuit breakers.
+     *
+     * @param circuitBreakerFailureThreshold
+     *            The number of consecutive failures opening a circuit
+     *            breaker, or 0 to disable circuit breakers.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getCircuitBreakerFailureThreshold()
+     */
+    public ClientConfiguration withCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        setCircuitBreakerFailureThreshold(circuitBreakerFailureThreshold);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, an open circuit breaker fails
+     * requests before letting a probe through. Defaults to 10 seconds.
+     *
+     * @return The time an open circuit breaker waits before a probe.
+     *
+     * @see #getCircuitBreakerFailureThreshold()
+     */
+    public long getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    /**
+     * Sets the time, in milliseconds, an open circuit breaker fails requests
+     * before letting a probe through.
+     *
+     * @param circuitBreakerOpenTime
+     *            The time an open circuit breaker waits before a probe.
+     *
+     * @see #getCircuitBreakerFailureThreshold()
+     */
+    public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+    }
+
+    /**
+     * Sets the time, in milliseconds, an open circuit breaker fails requests
+     * before letting a probe through.
+     *
+     * @param circuitBreakerOpenTime
+     *            The time an open circuit breaker waits before a probe.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getCircuitBreakerFailureThreshold()
+     */
+    public ClientConfiguration withCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        setCircuitBreakerOpenTime(circuitBreakerOpenTime);
+        return this;
+    }
+
+    /**
+     * Returns the percentile of the recently observed latencies after which
+     * a GET or HEAD request without response is sent a second time, on
+     * another connection, or 0 if requests aren't hedged, which is the
+     * default.
+     * <p>
+     * The first response is used and the other request is aborted. At the
+     * 95th percentile, about one request in twenty is sent twice, in
+     * exchange for the latency of the slowest requests. Hedged requests are
+     * counted in {@link com.sinacloud.scs.util.SCSRequestMetrics.Field#HedgedRequestCount}.
+     *
+     * @return The latency percentile after which requests are hedged, or 0
+     *         if requests aren't hedged.
+     */
+    public double getHedgedRequestPercentile() {
+        return hedgedRequestPercentile;
+    }
+
+    /**
+     * Sets the percentile of the recently observed latencies after which a
+     * GET or HEAD request without response is sent a second time; 0
+     * disables hedged requests.
+     *
+     * @param hedgedRequestPercentile
+     *            The latency percentile, less than 100, after which requests
+     *            are hedged, or 0 to disable hedged requests.
+     *
+     * @see #getHedgedRequestPercentile()
+     */
+    public void setHedgedRequestPercentile(double hedgedRequestPercentile) {
+        if (hedgedRequestPercentile < 0 || hedgedRequestPercentile >= 100) {
+            throw new IllegalArgumentException("hedgedRequestPercentile should be between 0 and 100");
+        }
+        this.hedgedRequestPercentile = hedgedRequestPercentile;
+    }
+
+    /**
+     * Sets the percentile of the recently observed latencies after which a
+     * GET or HEAD request without response is sent a second time; 0
+     * disables hedged requests.
+     *
+     * @param hedgedRequestPercentile
+     *            The latency percentile, less than 100, after which requests
+     *            are hedged, or 0 to disable hedged requests.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #getHedgedRequestPercentile()
+     */
+    public ClientConfiguration withHedgedRequestPercentile(double hedgedRequestPercentile) {
+        setHedgedRequestPercentile(hedgedRequestPercentile);
+        return this;
+    }
+
+    /**
+     * Returns whether the client adapts its request rate to the throttling
+     * responses of the service. Disabled by default.
+     * <p>
+     * Once the service throttles a request (a throttling error code or a 503
+     * response), all the threads of the client share a token bucket: its
+     * rate is lowered to a fraction of the rate requests were sent at on
+     * every throttling response, and raised a little on every successful
+     * one. A bulk job using the client as fast as it can then settles at
+     * the rate the service can take, rather than alternating between floods
+     * of throttled requests and retry back-offs. The time requests wait for
+     * the limiter is reported as
+     * {@link com.sinacloud.scs.util.SCSRequestMetrics.Field#RateLimitWaitTime}.
+     *
+     * @return Whether the client adapts its request rate to throttling.
+     */
+    public boolean useAdaptiveRateLimiter() {
+        return useAdaptiveRateLimiter;
+    }
+
+    /**
+     * Sets whether the client adapts its request rate to the throttling
+     * responses of the service.
+     *
+     * @param use
+     *            Whether the client adapts its request rate to throttling.
+     *
+     * @see #useAdaptiveRateLimiter()
+     */
+    public void setUseAdaptiveRateLimiter(boolean use) {
+        this.useAdaptiveRateLimiter = use;
+    }
+
+    /**
+     * Sets whether the client adapts its request rate to the throttling
+     * responses of the service.
+     *
+     * @param use
+     *            Whether the client adapts its request rate to throttling.
+     *
+     * @return The updated ClientConfiguration object.
+     *
+     * @see #useAdaptiveRateLimiter()
+     */
+    public ClientConfiguration withAdaptiveRateLimiter(boolean use) {
+        setUseAdaptiveRateLimiter(use);
+        return this;
+    }
+
     /**
      * Returns the optional size hints (in bytes) for the low level TCP send and
      * receive buffers. This is an advanced option for advanced users who want
@@ -22,8 +22,7 @@ import java.util.Map;
 import org.apache.http.annotation.NotThreadSafe;
 
 import com.sinacloud.scs.http.HttpMethodName;
-
-//import com.amazonaws.util.AWSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetrics;
 
 /**
  * Default implementation of the {@linkplain com.amazonaws.Request} interface.
@@ -64,8 +63,8 @@ public class DefaultRequest<T> implements Request<T> {
     /** An optional time offset to account for clock skew */
     private int timeOffset;
 
-//    /** All AWS Request metrics are collected into this object. */ 
-//    private AWSRequestMetrics metrics;
+    /** All request metrics are collected into this object. */ 
+    private SCSRequestMetrics metrics;
 
     /**
      * Constructs a new DefaultRequest with the specified service name and the
@@ -280,17 +279,17 @@ public class DefaultRequest<T> implements Request<T> {
         return builder.toString();
     }
 
-//    @Override
-//    public AWSRequestMetrics getAWSRequestMetrics() {
-//        return metrics;
-//    }
-//
-//    @Override
-//    public void setAWSRequestMetrics(AWSRequestMetrics metrics) {
-//        if (this.metrics == null) {
-//            this.metrics = metrics;
-//        } else {
-//            throw new IllegalStateException("AWSRequestMetrics has already been set on this request");
-//        }
-//    }
+    @Override
+    public SCSRequestMetrics getRequestMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void setRequestMetrics(SCSRequestMetrics metrics) {
+        if (this.metrics == null) {
+            this.metrics = metrics;
+        } else {
+            throw new IllegalStateException("SCSRequestMetrics has already been set on this request");
+        }
+    }
 }
@@ -19,6 +19,7 @@ import java.net.URI;
 import java.util.Map;
 
 import com.sinacloud.scs.http.HttpMethodName;
+import com.sinacloud.scs.util.SCSRequestMetrics;
 
 /**
  * Represents a request being sent to an Amazon Web Service, including the
@@ -189,18 +190,18 @@ public interface Request<T> {
      */
     public Request<T> withTimeOffset(int timeOffset);
 
-//    /**
-//     * Returns the request metrics.
-//     */
-//    public AWSRequestMetrics getAWSRequestMetrics();
-//
-//    /**
-//     * Bind the request metrics to the request. Note metrics can be captured
-//     * before the request is created.
-//     * 
-//     * @throws IllegalStateException if the binding has already occurred
-//     */
-//    public void setAWSRequestMetrics(AWSRequestMetrics metrics);
+    /**
+     * Returns the request metrics, or null if none has been bound yet.
+     */
+    public SCSRequestMetrics getRequestMetrics();
+
+    /**
+     * Bind the request metrics to the request. Note metrics can be captured
+     * before the request is created.
+     * 
+     * @throws IllegalStateException if the binding has already occurred
+     */
+    public void setRequestMetrics(SCSRequestMetrics metrics);
     
     /**
      * Returns the service endpoint (ex: "https://ec2.amazonaws.com") to which
@@ -20,10 +20,12 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map.Entry;
 
+import com.sinacloud.scs.http.ConnectionPoolStats;
 import com.sinacloud.scs.http.ExecutionContext;
 import com.sinacloud.scs.http.HttpConnect;
 import com.sinacloud.scs.http.HttpMethodName;
 import com.sinacloud.scs.http.HttpRequest;
+import com.sinacloud.scs.metrics.RequestMetricCollector;
 
 
 /**
@@ -54,6 +56,12 @@ public abstract class SCSWebServiceClient {
     /** Optional offset (in seconds) to use when signing requests */
     protected int timeOffset;
 
+    /**
+     * Optional request metric collector used for every request sent through
+     * this client, unless overridden at the request level.
+     */
+    private volatile RequestMetricCollector requestMetricCollector;
+
 //    /** AWS signer for authenticating requests. */
 //    private Signer signer;
 
@@ -146,6 +154,19 @@ public abstract class SCSWebServiceClient {
         client.shutdown();
     }
 
+    /**
+     * Returns a snapshot of the connection pool of this client: the
+     * connections in use, the idle connections and the requests waiting for
+     * a connection, in total and for each route, to tell whether
+     * {@link ClientConfiguration#getMaxConnections()} and
+     * {@link ClientConfiguration#getMaxConnectionsPerRoute()} fit the load.
+     *
+     * @return The statistics of the connection pool of this client.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return client.getConnectionPoolStats();
+    }
+
     /**
      * Converts a Request<T> object into an HttpRequest object. Copies all the
      * headers, parameters, etc. from the Request into the new HttpRequest.
@@ -221,14 +242,12 @@ public abstract class SCSWebServiceClient {
 //        requestHandler2s.remove(requestHandler2);
 //    }
 
-//    protected final ExecutionContext createExecutionContext(SCSWebServiceRequest req) {
-////        boolean isMetricsEnabled = isRequestMetricsEnabled(req) || isProfilingEnabled();
-//        return new ExecutionContext();
-//    }
+    protected final ExecutionContext createExecutionContext(SCSWebServiceRequest req) {
+        return new ExecutionContext(findRequestMetricCollector(req));
+    }
 
     protected final ExecutionContext createExecutionContext(Request<?> req) {
-//        return createExecutionContext(req.getOriginalRequest());
-    	return createExecutionContext();
+        return createExecutionContext(req.getOriginalRequest());
     }
 
     /**
@@ -238,13 +257,10 @@ public abstract class SCSWebServiceClient {
      *             calling this methods would effectively ignore and disable the
      *             request metric collector, if any, specified at the request
      *             level. Request metric collector specified at the service
-     *             client or AWS SDK level will still be honored.
+     *             client level will still be honored.
      */
     protected final ExecutionContext createExecutionContext() {
-//        boolean isMetricsEnabled = isRMCEnabledAtClientOrSdkLevel() || isProfilingEnabled();
-//        return new ExecutionContext(requestHandler2s, isMetricsEnabled);
-    	
-    	return new ExecutionContext();
+        return new ExecutionContext(requestMetricCollector);
     }
 
     /* Check the profiling system property and return true if set */
@@ -314,36 +330,37 @@ public abstract class SCSWebServiceClient {
         return timeOffset;
     }
 
-//    /**
-//     * Returns the client specific {@link RequestMetricCollector}; or null if
-//     * there is none.
-//     */
-//    public RequestMetricCollector getRequestMetricsCollector() {
-//        return client.getRequestMetricCollector();
-//    }
+    /**
+     * Returns the client specific {@link RequestMetricCollector}; or null if
+     * there is none.
+     */
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
 
-//    /**
-//     * Returns the client specific request metric collector if there is one; or
-//     * the one at the AWS SDK level otherwise.
-//     */
-//    protected RequestMetricCollector requestMetricCollector() {
-//        RequestMetricCollector mc = client.getRequestMetricCollector();
-//        return mc == null ? AwsSdkMetrics.getRequestMetricCollector() : mc;
-//    }
+    /**
+     * Sets the client specific {@link RequestMetricCollector}, which receives
+     * the metrics of every request sent through this client unless a request
+     * level collector is specified. Pass null to disable metric collection.
+     *
+     * @param requestMetricCollector
+     *            The collector to use, or null for none.
+     */
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
 
-//    /**
-//     * Returns the most specific request metric collector, starting from the
-//     * request level, then client level, then finally the AWS SDK level.
-//     */
-//    protected final RequestMetricCollector findRequestMetricCollector(Request<?> req) {
-//        AmazonWebServiceRequest origReq = req.getOriginalRequest();
-//        RequestMetricCollector mc = origReq.getRequestMetricCollector();
-//        if (mc != null) {
-//            return mc;
-//        }
-//        mc = getRequestMetricsCollector();
-//        return mc == null ? AwsSdkMetrics.getRequestMetricCollector() : mc;
-//    }
+    /**
+     * Returns the most specific request metric collector, starting from the
+     * request level, then the client level; or null if there is none.
+     */
+    protected final RequestMetricCollector findRequestMetricCollector(SCSWebServiceRequest req) {
+        RequestMetricCollector mc = req == null ? null : req.getRequestMetricCollector();
+        if (mc != null) {
+            return mc;
+        }
+        return requestMetricCollector;
+    }
 
 //    /**
 //     * Common routine to end a client AWS request/response execution and collect
@@ -20,6 +20,7 @@ import java.util.Map;
 import org.apache.http.annotation.NotThreadSafe;
 
 import com.sinacloud.scs.auth.AWSCredentials;
+import com.sinacloud.scs.metrics.RequestMetricCollector;
 
 /**
  * Base class for all user facing web service requests.
@@ -33,12 +34,12 @@ public abstract class SCSWebServiceRequest {
      */
     private final RequestClientOptions requestClientOptions = new RequestClientOptions();
 
-//    /**
-//     * A request metric collector used for this specific service request; or
-//     * null if there is none.  This collector always takes precedence over the
-//     * ones specified at the http client level and AWS SDK level.
-//     */
-//    private RequestMetricCollector requestMetricCollector;
+    /**
+     * A request metric collector used for this specific service request; or
+     * null if there is none.  This collector always takes precedence over the
+     * one specified at the service client level.
+     */
+    private RequestMetricCollector requestMetricCollector;
 
     /** The optional STS security token associated with this request */
     private String delegationToken;
@@ -129,28 +130,28 @@ public abstract class SCSWebServiceRequest {
         return requestClientOptions;
     }
 
-//    /**
-//     * Returns a request level metric collector; or null if not specified.
-//     */
-//    public RequestMetricCollector getRequestMetricCollector() {
-//        return requestMetricCollector;
-//    }
-//
-//    /**
-//     * Sets a request level request metric collector which takes precedence over
-//     * the ones at the http client level and AWS SDK level.
-//     */
-//    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
-//        this.requestMetricCollector = requestMetricCollector;
-//    }
-//
-//    /**
-//     * Specifies a request level metric collector which takes precedence over
-//     * the ones at the http client level and AWS SDK level.
-//     */
-//    public <T extends SCSWebServiceRequest> T withRequestMetricCollector(RequestMetricCollector metricCollector) {
-//        setRequestMetricCollector(metricCollector);
-//        @SuppressWarnings("unchecked") T t = (T)this;
-//        return t;
-//    }
+    /**
+     * Returns a request level metric collector; or null if not specified.
+     */
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    /**
+     * Sets a request level request metric collector which takes precedence over
+     * the one at the service client level.
+     */
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
+
+    /**
+     * Specifies a request level metric collector which takes precedence over
+     * the one at the service client level.
+     */
+    public <T extends SCSWebServiceRequest> T withRequestMetricCollector(RequestMetricCollector metricCollector) {
+        setRequestMetricCollector(metricCollector);
+        @SuppressWarnings("unchecked") T t = (T)this;
+        return t;
+    }
 }
@@ -28,7 +28,6 @@ import java.util.SortedMap;
 import java.util.TreeMap;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.codec.binary.Base64;
 
@@ -36,6 +35,7 @@ import com.sinacloud.scs.Request;
 import com.sinacloud.scs.SCSClientException;
 import com.sinacloud.scs.SDKGlobalConfiguration;
 import com.sinacloud.scs.util.HttpUtils;
+import com.sinacloud.scs.util.MacCache;
 import com.sinacloud.scs.util.StringInputStream;
 
 
@@ -89,8 +89,7 @@ public abstract class AbstractAWSSigner implements Signer {
 
     protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) throws SCSClientException {
         try {
-            Mac mac = Mac.getInstance(algorithm.toString());
-            mac.init(new SecretKeySpec(key, algorithm.toString()));
+            Mac mac = MacCache.getMac(algorithm.toString(), key);
             return mac.doFinal(data);
         } catch (Exception e) {
             throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
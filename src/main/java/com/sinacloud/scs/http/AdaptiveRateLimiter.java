@@ -0,0 +1,165 @@
+package com.sinacloud.scs.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.sinacloud.scs.SCSClientException;
+
+/**
+ * Token bucket shared by all the threads of a client, whose rate adapts to
+ * the throttling responses of the service, AIMD-style.
+ * <p>
+ * Requests aren't limited until the service throttles one. The rate is then
+ * set to a fraction of the rate requests were being sent at (multiplicative
+ * decrease), and every successful response raises it a little, by about
+ * {@link #RATE_INCREASE} requests per second every second at full rate
+ * (additive increase). Decreases are at most one per
+ * {@link #DECREASE_INTERVAL_NANOS}, so that the burst of throttling
+ * responses to requests already in flight counts once. The rate of a client
+ * sending requests as fast as the service allows thus settles just below
+ * the capacity of the service, instead of oscillating between flooding it
+ * and backing off.
+ */
+@ThreadSafe
+class AdaptiveRateLimiter {
+
+    /** The factor applied to the rate when a request is throttled. */
+    private static final double DECREASE_FACTOR = 0.7;
+
+    /** The lowest rate, in requests per second. */
+    private static final double MIN_RATE = 0.5;
+
+    /** The increase of the rate, in requests per second, per second of successful requests at full rate. */
+    private static final double RATE_INCREASE = 10;
+
+    /** The minimum time between two decreases of the rate. */
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    /** The length of the windows the send rate is measured over. */
+    private static final long MEASURE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Clock clock;
+
+    /** Whether requests are limited, since the service throttled one */
+    private boolean limiting;
+    private double fillRate;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDecreaseNanos;
+
+    /** The smoothed rate requests are sent at, in requests per second */
+    private double measuredRate;
+    private long measureStartNanos;
+    private int measuredRequests;
+
+    AdaptiveRateLimiter() {
+        this(Clock.SYSTEM);
+    }
+
+    AdaptiveRateLimiter(Clock clock) {
+        this.clock = clock;
+        this.lastRefillNanos = clock.nanoTime();
+        this.measureStartNanos = lastRefillNanos;
+    }
+
+    /**
+     * Waits until a request can be sent.
+     */
+    void acquire() {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SCSClientException("Interrupted while waiting for the client rate limiter", e);
+            }
+        }
+    }
+
+    /**
+     * Records a response throttled by the service.
+     */
+    synchronized void onThrottled() {
+        long now = clock.nanoTime();
+        if (limiting && now - lastDecreaseNanos < DECREASE_INTERVAL_NANOS) return;
+        double rate = limiting ? Math.min(fillRate, Math.max(measuredRate, currentRate(now))) : currentRate(now);
+        refill(now);
+        fillRate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+        tokens = Math.min(tokens, fillRate);
+        if (!limiting) {
+            limiting = true;
+            tokens = 0;
+        }
+        lastDecreaseNanos = now;
+        if (HttpConnect.log.isDebugEnabled()) {
+            HttpConnect.log.debug("Request throttled, limiting the client to " + fillRate + " requests per second");
+        }
+    }
+
+    /**
+     * Records a response which wasn't throttled.
+     */
+    synchronized void onSuccess() {
+        if (!limiting) return;
+        long now = clock.nanoTime();
+        refill(now);
+        // Doesn't raise the rate far above the rate requests are actually sent at
+        double ceiling = 2 * currentRate(now);
+        if (fillRate < ceiling) {
+            fillRate = Math.min(ceiling, fillRate + RATE_INCREASE / Math.max(fillRate, 1));
+        }
+    }
+
+    /**
+     * Returns the current rate limit, in requests per second, or 0 if
+     * requests aren't limited.
+     */
+    synchronized double getRate() {
+        return limiting ? fillRate : 0;
+    }
+
+    /*
+     * Takes a token, returning how long to wait for it, in nanoseconds.
+     * Tokens can go negative, so that concurrent callers queue up one after
+     * the other.
+     */
+    synchronized long reserve() {
+        long now = clock.nanoTime();
+        measure(now);
+        if (!limiting) return 0;
+        refill(now);
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / fillRate * NANOS_PER_SECOND);
+    }
+
+    private void refill(long now) {
+        if (limiting) {
+            // At most a second worth of requests can be sent in a burst
+            tokens = Math.min(Math.max(fillRate, 1), tokens + (now - lastRefillNanos) / NANOS_PER_SECOND * fillRate);
+        }
+        lastRefillNanos = now;
+    }
+
+    private void measure(long now) {
+        measuredRequests++;
+        long elapsed = now - measureStartNanos;
+        if (elapsed >= MEASURE_INTERVAL_NANOS) {
+            measuredRate = (measuredRate + measuredRequests * NANOS_PER_SECOND / elapsed) / 2;
+            measuredRequests = 0;
+            measureStartNanos = now;
+        }
+    }
+
+    /*
+     * The measured rate, or the rate of the current, incomplete window if
+     * higher, since no window may have completed yet.
+     */
+    private double currentRate(long now) {
+        long elapsed = Math.max(now - measureStartNanos, TimeUnit.MILLISECONDS.toNanos(100));
+        return Math.max(measuredRate, measuredRequests * NANOS_PER_SECOND / elapsed);
+    }
+}
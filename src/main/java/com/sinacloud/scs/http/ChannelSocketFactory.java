@@ -0,0 +1,71 @@
+package com.sinacloud.scs.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.HttpInetConnection;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.SchemeSocketFactory;
+import org.apache.http.params.HttpParams;
+
+/**
+ * Socket factory for plain HTTP creating sockets backed by a blocking
+ * {@link SocketChannel}, so that {@link FileRegionEntity}s can be transferred
+ * to them straight from the file. Connecting is left to the default
+ * {@link PlainSocketFactory}.
+ * <p>
+ * HttpClient doesn't expose the socket of a pooled connection, so the factory
+ * keeps track of the channels it connected, by their local and remote
+ * addresses, for {@link #getChannel(HttpInetConnection)} to find the one of a
+ * connection.
+ */
+@ThreadSafe
+class ChannelSocketFactory implements SchemeSocketFactory {
+
+    private final ConcurrentMap<String, SocketChannel> channels = new ConcurrentHashMap<String, SocketChannel>();
+
+    public Socket createSocket(HttpParams params) throws IOException {
+        return SocketChannel.open().socket();
+    }
+
+    public Socket connectSocket(Socket socket, InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+            HttpParams params) throws IOException, UnknownHostException, ConnectTimeoutException {
+        Socket connected = PlainSocketFactory.getSocketFactory().connectSocket(socket, remoteAddress, localAddress,
+                params);
+        SocketChannel channel = connected.getChannel();
+        if (channel != null) {
+            removeClosedChannels();
+            channels.put(ConnectionKeys.of(connected), channel);
+        }
+        return connected;
+    }
+
+    public boolean isSecure(Socket socket) {
+        return false;
+    }
+
+    /**
+     * Returns the open channel of the socket of the given connection, or null
+     * if the socket wasn't connected by this factory.
+     */
+    SocketChannel getChannel(HttpInetConnection connection) {
+        String key = ConnectionKeys.of(connection);
+        if (key == null) return null;
+        SocketChannel channel = channels.get(key);
+        return channel != null && channel.isOpen() ? channel : null;
+    }
+
+    private void removeClosedChannels() {
+        for (Iterator<SocketChannel> it = channels.values().iterator(); it.hasNext();) {
+            if (!it.next().isOpen()) it.remove();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sinacloud.scs.http;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Circuit breaker of one endpoint, used by {@link HttpConnect} to fail
+ * requests fast while the endpoint is failing, instead of having every
+ * caller retry and back off against it.
+ * <p>
+ * The breaker opens after a number of consecutive failed attempts (I/O
+ * errors and 5xx responses). While it is open, no request is sent; once the
+ * open time has elapsed, a single request is let through as a probe, and
+ * its outcome closes the breaker or keeps it open for another open time.
+ */
+@ThreadSafe
+class CircuitBreaker {
+
+    private final String endpoint;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Clock clock;
+
+    private int consecutiveFailures;
+    private boolean open;
+    private long openedAtNanos;
+    private boolean probing;
+    private long probeStartedAtNanos;
+
+    /**
+     * @param endpoint
+     *            The endpoint protected by the breaker, for logging.
+     * @param failureThreshold
+     *            The number of consecutive failed attempts opening the
+     *            breaker.
+     * @param openMillis
+     *            The time, in milliseconds, the breaker stays open before
+     *            letting a probe through.
+     */
+    CircuitBreaker(String endpoint, int failureThreshold, long openMillis) {
+        this(endpoint, failureThreshold, openMillis, Clock.SYSTEM);
+    }
+
+    CircuitBreaker(String endpoint, int failureThreshold, long openMillis, Clock clock) {
+        this.endpoint = endpoint;
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.clock = clock;
+    }
+
+    /**
+     * Returns whether a request can be sent to the endpoint. When the
+     * breaker is open and a probe is due, the caller's request becomes the
+     * probe.
+     */
+    synchronized boolean allowRequest() {
+        if (!open) return true;
+        long now = clock.nanoTime();
+        if (now - openedAtNanos < openNanos) return false;
+        // A probe which never reported back doesn't keep the breaker open forever
+        if (probing && now - probeStartedAtNanos < openNanos) return false;
+        probing = true;
+        probeStartedAtNanos = now;
+        return true;
+    }
+
+    /**
+     * Records an attempt which got a response from the endpoint, other than
+     * a server error.
+     */
+    synchronized void recordSuccess() {
+        if (open && HttpConnect.log.isInfoEnabled()) {
+            HttpConnect.log.info("Closing the circuit breaker of " + endpoint);
+        }
+        consecutiveFailures = 0;
+        open = false;
+        probing = false;
+    }
+
+    /**
+     * Records an attempt which failed with an I/O error or a server error.
+     */
+    synchronized void recordFailure() {
+        probing = false;
+        if (open) {
+            // The probe failed
+            openedAtNanos = clock.nanoTime();
+            return;
+        }
+        if (++consecutiveFailures >= failureThreshold) {
+            HttpConnect.log.warn("Opening the circuit breaker of " + endpoint + " after "
+                    + consecutiveFailures + " consecutive failures");
+            open = true;
+            openedAtNanos = clock.nanoTime();
+        }
+    }
+}
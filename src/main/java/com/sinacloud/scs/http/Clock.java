@@ -0,0 +1,22 @@
+package com.sinacloud.scs.http;
+
+/**
+ * Source of the time of the timing decisions made in this package, which
+ * tests replace to control the passing of time.
+ */
+abstract class Clock {
+
+    /** The clock of {@link System#nanoTime()}. */
+    static final Clock SYSTEM = new Clock() {
+        @Override
+        long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Returns the current value of this clock, in nanoseconds, with the
+     * semantics of {@link System#nanoTime()}.
+     */
+    abstract long nanoTime();
+}
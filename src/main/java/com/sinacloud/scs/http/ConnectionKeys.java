@@ -0,0 +1,38 @@
+package com.sinacloud.scs.http;
+
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.apache.http.HttpInetConnection;
+
+/**
+ * Identifies connections by their local and remote addresses, the only
+ * thing HttpClient exposes that ties a pooled connection to its socket.
+ */
+final class ConnectionKeys {
+
+    private ConnectionKeys() {
+    }
+
+    /**
+     * Returns the key of the given connected socket.
+     */
+    static String of(Socket socket) {
+        return of(socket.getLocalAddress(), socket.getLocalPort(), socket.getInetAddress(), socket.getPort());
+    }
+
+    /**
+     * Returns the key of the given connection, or null if it isn't bound.
+     */
+    static String of(HttpInetConnection connection) {
+        InetAddress localAddress = connection.getLocalAddress();
+        InetAddress remoteAddress = connection.getRemoteAddress();
+        if (localAddress == null || remoteAddress == null) return null;
+        return of(localAddress, connection.getLocalPort(), remoteAddress, connection.getRemotePort());
+    }
+
+    private static String of(InetAddress localAddress, int localPort, InetAddress remoteAddress, int remotePort) {
+        return localAddress.getHostAddress() + ":" + localPort + "-" + remoteAddress.getHostAddress() + ":"
+                + remotePort;
+    }
+}
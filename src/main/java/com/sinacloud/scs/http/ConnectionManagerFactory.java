@@ -15,7 +15,6 @@
 package com.sinacloud.scs.http;
 
 
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.HttpParams;
 
 import com.sinacloud.scs.ClientConfiguration;
@@ -24,12 +23,18 @@ import com.sinacloud.scs.ClientConfiguration;
 @SuppressWarnings("deprecation")
 class ConnectionManagerFactory {
 
-	public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
-        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+	public static SdkPoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
+        SdkPoolingClientConnectionManager connectionManager = new SdkPoolingClientConnectionManager(
+                config.getConnectionTTL(), config.getMaxConnectionsPerHost(),
+                Math.max(-1, config.getValidateAfterInactivityMillis()));
+        int maxConnectionsPerRoute = config.getMaxConnectionsPerRoute() > 0
+                ? Math.min(config.getMaxConnectionsPerRoute(), config.getMaxConnections())
+                : config.getMaxConnections();
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
         connectionManager.setMaxTotal(config.getMaxConnections());
         if (config.useReaper()) {
-            IdleConnectionReaper.registerConnectionManager(connectionManager);
+            IdleConnectionReaper.registerConnectionManager(connectionManager, config.getReaperPeriodMillis(),
+                    config.getConnectionMaxIdleMillis());
         }
         return connectionManager;
     }
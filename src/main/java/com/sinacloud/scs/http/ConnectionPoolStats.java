@@ -0,0 +1,76 @@
+package com.sinacloud.scs.http;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * Snapshot of the connection pool of a client, as returned by
+ * {@link com.sinacloud.scs.SCSWebServiceClient#getConnectionPoolStats()}:
+ * the connections in use, the idle connections kept for reuse, and the
+ * requests waiting for a connection, for the whole pool and for each route.
+ * <p>
+ * The numbers are read one route after the other while requests go on, so
+ * the routes may not add up exactly to the totals.
+ */
+@Immutable
+public class ConnectionPoolStats {
+
+    private final int leased;
+    private final int available;
+    private final int pending;
+    private final int max;
+    private final Map<String, ConnectionPoolStats> routes;
+
+    ConnectionPoolStats(int leased, int available, int pending, int max, Map<String, ConnectionPoolStats> routes) {
+        this.leased = leased;
+        this.available = available;
+        this.pending = pending;
+        this.max = max;
+        this.routes = Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * Returns the number of connections currently used by requests.
+     */
+    public int getLeased() {
+        return leased;
+    }
+
+    /**
+     * Returns the number of idle connections kept for reuse.
+     */
+    public int getAvailable() {
+        return available;
+    }
+
+    /**
+     * Returns the number of requests waiting for a connection.
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * Returns the maximum number of connections.
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the statistics of the routes which have connections or waiting
+     * requests, by target (for example <code>http://bucket.sinacloud.net</code>),
+     * or an empty map for the statistics of a route.
+     */
+    public Map<String, ConnectionPoolStats> getRoutes() {
+        return routes;
+    }
+
+    @Override
+    public String toString() {
+        return "[leased: " + leased + "; pending: " + pending + "; available: " + available + "; max: " + max
+                + (routes.isEmpty() ? "" : "; routes: " + routes) + "]";
+    }
+}
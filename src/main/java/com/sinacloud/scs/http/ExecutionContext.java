@@ -18,10 +18,14 @@ import org.apache.http.annotation.NotThreadSafe;
 
 import com.sinacloud.scs.auth.AWSCredentials;
 import com.sinacloud.scs.auth.Signer;
+import com.sinacloud.scs.metrics.RequestMetricCollector;
+import com.sinacloud.scs.util.SCSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetricsFullSupport;
 
 @NotThreadSafe
 public class ExecutionContext {
-//    private final AWSRequestMetrics awsRequestMetrics;
+    private final SCSRequestMetrics requestMetrics;
+    private final RequestMetricCollector requestMetricCollector;
 //    private List<RequestHandler2> requestHandler2s;
     private String contextUserAgent;
 
@@ -31,17 +35,24 @@ public class ExecutionContext {
     /** Optional credentials to enable the runtime layer to handle signing requests (and resigning on retries). */
     private AWSCredentials credentials;
 
-//    /** For testing purposes. */
-//    public ExecutionContext() {
-//        this(null, false);
-//    }
-//
-//    public ExecutionContext(List<RequestHandler2> requestHandler2s, boolean isMetricEnabled) {
-//        this.requestHandler2s = requestHandler2s;
-//        awsRequestMetrics = isMetricEnabled 
-//                          ? new AWSRequestMetricsFullSupport()
-//                          : new AWSRequestMetrics();
-//    }
+    /** For testing purposes. */
+    public ExecutionContext() {
+        this(null);
+    }
+
+    /**
+     * @param requestMetricCollector
+     *            The collector which will receive the metrics of the
+     *            associated request; or null if metrics are not collected.
+     */
+    public ExecutionContext(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector == null
+                                    ? RequestMetricCollector.NONE
+                                    : requestMetricCollector;
+        this.requestMetrics = this.requestMetricCollector.isEnabled()
+                            ? new SCSRequestMetricsFullSupport()
+                            : new SCSRequestMetrics();
+    }
 
     public String getContextUserAgent() {
         return contextUserAgent;
@@ -51,13 +62,21 @@ public class ExecutionContext {
         this.contextUserAgent = contextUserAgent;
     }
 
-//    public List<RequestHandler2> getRequestHandler2s() {
-//        return requestHandler2s;
-//    }
-//
-//    public AWSRequestMetrics getAwsRequestMetrics() {
-//        return awsRequestMetrics;
-//    }
+    /**
+     * Returns the metrics of the associated request. This is a no-op
+     * {@link SCSRequestMetrics} if metrics are not collected.
+     */
+    public SCSRequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * Returns the collector which will receive the metrics of the associated
+     * request; never null.
+     */
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
 
     /**
      * Returns the optional signer used to sign the associated request.
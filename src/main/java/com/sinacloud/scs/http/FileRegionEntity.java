@@ -0,0 +1,72 @@
+package com.sinacloud.scs.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.SocketChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import com.sinacloud.scs.Request;
+import com.sinacloud.scs.internal.FileRegionInputStream;
+
+/**
+ * Request entity for content read from a range of a file. When the request
+ * goes over a plain HTTP connection whose socket channel is known (see
+ * {@link ChannelSocketFactory}), the range is sent with
+ * {@link java.nio.channels.FileChannel#transferTo}, straight from the file to
+ * the socket; otherwise (ex: over SSL) it is copied to the output stream of the
+ * connection like any other entity.
+ * <p>
+ * Every attempt sends the whole range, so the entity is always repeatable.
+ */
+class FileRegionEntity extends AbstractHttpEntity {
+
+    private final FileRegionInputStream content;
+
+    /** The channel to send the current attempt to, if any. */
+    private volatile SocketChannel channel;
+
+    FileRegionEntity(final Request<?> request) {
+        this.content = (FileRegionInputStream) request.getContent();
+        setChunked(false);
+        setContentType(request.getHeaders().get("Content-Type"));
+    }
+
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    public long getContentLength() {
+        return content.getLength();
+    }
+
+    public InputStream getContent() {
+        return content;
+    }
+
+    public boolean isStreaming() {
+        return false;
+    }
+
+    /**
+     * Sets the socket channel of the connection the next attempt is sent
+     * over, or null to copy the content to the output stream of the
+     * connection.
+     */
+    void setChannel(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public void writeTo(OutputStream output) throws IOException {
+        SocketChannel target = channel;
+        if (target != null) {
+            // The request line and headers may still be in the session buffer
+            output.flush();
+            content.transferTo(target);
+        } else {
+            content.writeTo(output);
+            output.flush();
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.sinacloud.scs.http;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.metrics.LatencyHistogram;
+
+/**
+ * Sends requests without content, GET and HEAD, with a hedge: when no
+ * response has arrived after the hedge delay, a copy of the request is sent
+ * on another connection, the first response wins, and the other request is
+ * aborted. This trims the latency tail caused by a slow connection or server
+ * at the cost of a few duplicate requests.
+ * <p>
+ * The hedge delay is the configured percentile of the latencies recently
+ * observed by the executor, so at the 95th percentile about one request in
+ * twenty is hedged. Until enough latencies have been observed, requests are
+ * sent without a hedge.
+ */
+@ThreadSafe
+class HedgedRequestExecutor {
+
+    /** The number of latencies needed before hedging requests. */
+    private static final int MIN_SAMPLES = 20;
+
+    /** The hedge delay is recomputed every time this many latencies are recorded. */
+    private static final int UPDATE_INTERVAL = 10;
+
+    /** The number of latencies after which older ones are forgotten. */
+    private static final int MAX_SAMPLES = 1000;
+
+    private final HttpClient httpClient;
+    private final double percentile;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final ExecutorService executor;
+
+    /** The current hedge delay, or -1 until enough latencies were recorded */
+    private volatile long hedgeDelayNanos = -1;
+
+    /**
+     * @param httpClient
+     *            The client sending the requests.
+     * @param percentile
+     *            The percentile of the observed latencies after which a
+     *            request is hedged, between 0 and 100.
+     */
+    HedgedRequestExecutor(HttpClient httpClient, double percentile) {
+        this.httpClient = httpClient;
+        this.percentile = percentile;
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private int threadCount = 1;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("scs-hedged-request-" + threadCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * The request whose response was used, along with that response.
+     */
+    static final class Attempt {
+        final HttpRequestBase request;
+        final HttpResponse response;
+        /** Whether the response is the one of the hedge */
+        final boolean hedge;
+        /** Whether a hedge was sent */
+        final boolean hedged;
+
+        Attempt(HttpRequestBase request, HttpResponse response, boolean hedge, boolean hedged) {
+            this.request = request;
+            this.response = response;
+            this.hedge = hedge;
+            this.hedged = hedged;
+        }
+    }
+
+    /**
+     * Sends the given request, hedging it if it is slower than the hedge
+     * delay.
+     *
+     * @param request
+     *            The request to send, which must have no content.
+     * @param context
+     *            The context of the request.
+     *
+     * @return The request which got the response first, and its response.
+     *
+     * @throws IOException
+     *             If the request, and its hedge if any, failed.
+     */
+    Attempt execute(HttpRequestBase request, HttpContext context) throws IOException {
+        long delay = hedgeDelayNanos;
+        if (delay < 0) {
+            return new Attempt(request, timedExecute(request, context), false, false);
+        }
+
+        HttpRequestBase hedge = copy(request);
+        if (hedge == null) {
+            return new Attempt(request, timedExecute(request, context), false, false);
+        }
+
+        CompletionService<Attempt> completionService = new ExecutorCompletionService<Attempt>(executor);
+        Future<Attempt> primary = completionService.submit(task(request, context, false));
+        Future<Attempt> hedged = null;
+        try {
+            Future<Attempt> first = completionService.poll(delay, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                if (HttpConnect.log.isDebugEnabled()) {
+                    HttpConnect.log.debug("No response after " + TimeUnit.NANOSECONDS.toMillis(delay)
+                            + " ms, hedging request " + request.getRequestLine());
+                }
+                hedged = completionService.submit(task(hedge, new BasicHttpContext(), true));
+                first = completionService.take();
+            }
+            if (hedged == null) {
+                return get(first);
+            }
+
+            Attempt winner;
+            try {
+                winner = get(first);
+            } catch (IOException e) {
+                // Fall back to the other attempt, which may still succeed
+                winner = get(completionService.take());
+            }
+            (winner.hedge ? request : hedge).abort();
+            return new Attempt(winner.request, winner.response, winner.hedge, true);
+        } catch (InterruptedException e) {
+            request.abort();
+            hedge.abort();
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted while waiting for a response", e);
+        } catch (IOException e) {
+            request.abort();
+            hedge.abort();
+            throw e;
+        } catch (RuntimeException e) {
+            request.abort();
+            hedge.abort();
+            throw e;
+        } finally {
+            if (hedged == null && !primary.isDone()) {
+                primary.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Stops the threads of the executor. Requests in flight are not aborted.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Returns a copy of the given request, or null if it isn't a GET or a
+     * HEAD. The copy is built rather than cloned, since the clone of a request
+     * shares its headers.
+     */
+    private static HttpRequestBase copy(HttpRequestBase request) {
+        HttpRequestBase copy;
+        if (HttpGet.METHOD_NAME.equals(request.getMethod())) {
+            copy = new HttpGet(request.getURI());
+        } else if (HttpHead.METHOD_NAME.equals(request.getMethod())) {
+            copy = new HttpHead(request.getURI());
+        } else {
+            return null;
+        }
+        copy.setHeaders(request.getAllHeaders());
+        copy.setParams(request.getParams());
+        return copy;
+    }
+
+    private Callable<Attempt> task(final HttpRequestBase request, final HttpContext context, final boolean hedge) {
+        return new Callable<Attempt>() {
+            public Attempt call() throws IOException {
+                return new Attempt(request, timedExecute(request, context), hedge, false);
+            }
+        };
+    }
+
+    private HttpResponse timedExecute(HttpRequestBase request, HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        HttpResponse response = httpClient.execute(request, context);
+        if (!request.isAborted()) {
+            recordLatency(System.nanoTime() - start);
+        }
+        return response;
+    }
+
+    private void recordLatency(long latencyNanos) {
+        latencies.record(latencyNanos);
+        long count = latencies.getCount();
+        if (count >= MIN_SAMPLES && count % UPDATE_INTERVAL == 0) {
+            hedgeDelayNanos = latencies.getValueAtPercentile(percentile);
+            // Keeps the delay while the latencies of the next window are gathered
+            if (count >= MAX_SAMPLES) {
+                latencies.reset();
+            }
+        }
+    }
+
+    private static Attempt get(Future<Attempt> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted while waiting for a response", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new SCSClientException("Unable to execute HTTP request: " + cause.getMessage(), cause);
+        }
+    }
+}
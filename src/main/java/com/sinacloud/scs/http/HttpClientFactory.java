@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -28,8 +29,11 @@ import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.ProtocolException;
@@ -37,15 +41,15 @@ import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.NTCredentials;
 import org.apache.http.client.HttpClient;
 import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpRoutedConnection;
 import org.apache.http.conn.params.ConnRoutePNames;
-import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeLayeredSocketFactory;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.scheme.SchemeSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultRedirectStrategy;
-import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.client.RequestWrapper;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
@@ -55,6 +59,8 @@ import com.sinacloud.scs.ClientConfiguration;
 import com.sinacloud.scs.SCSClientException;
 import com.sinacloud.scs.http.impl.client.SdkHttpClient;
 import com.sinacloud.scs.http.impl.client.SdkHttpRequestRetryHandler;
+import com.sinacloud.scs.util.SCSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
 
 /** Responsible for creating and configuring instances of Apache HttpClient4. */
 class HttpClientFactory {
@@ -76,7 +82,8 @@ class HttpClientFactory {
 		HttpParams httpClientParams = new BasicHttpParams();
         HttpConnectionParams.setConnectionTimeout(httpClientParams, config.getConnectionTimeout());
         HttpConnectionParams.setSoTimeout(httpClientParams, config.getSocketTimeout());
-        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams, true);
+        // The connection manager checks idle connections itself, unless told to check them all
+        HttpConnectionParams.setStaleCheckingEnabled(httpClientParams, config.getValidateAfterInactivityMillis() < 0);
         HttpConnectionParams.setTcpNoDelay(httpClientParams, true);
 
         int socketSendBufferSizeHint = config.getSocketBufferSizeHints()[0];
@@ -86,15 +93,19 @@ class HttpClientFactory {
                     Math.max(socketSendBufferSizeHint, socketReceiveBufferSizeHint));
         }
 
-        PoolingClientConnectionManager connectionManager = ConnectionManagerFactory
+        SdkPoolingClientConnectionManager connectionManager = ConnectionManagerFactory
                 .createPoolingClientConnManager(config, httpClientParams);
         SdkHttpClient httpClient = new SdkHttpClient(connectionManager, httpClientParams);
-        if(config.getMaxErrorRetry() > 0)
+        if(HttpConnect.getMaxErrorRetry(config) > 0)
         	httpClient.setHttpRequestRetryHandler(SdkHttpRequestRetryHandler.Singleton);
 //        httpClient.setRedirectStrategy(new LocationHeaderNotRequiredRedirectStrategy());
 
+        ChannelSocketFactory channelSocketFactory = new ChannelSocketFactory();
+        httpClient.addRequestInterceptor(new FileRegionChannelInterceptor(channelSocketFactory));
+        httpClient.addRequestInterceptor(new PoolWaitTimeInterceptor());
+
         try {
-            Scheme http = new Scheme("http", PlainSocketFactory.getSocketFactory(), 80);
+            Scheme http = new Scheme("http", 80, channelSocketFactory);
             SSLSocketFactory sf = new SSLSocketFactory(SSLContext.getDefault(),
                     SSLSocketFactory.STRICT_HOSTNAME_VERIFIER);
             
@@ -162,6 +173,52 @@ class HttpClientFactory {
         }
     }
 
+    /**
+     * Hands the socket channel of the connection a request is about to be
+     * sent over to its entity, if the entity is a {@link FileRegionEntity}
+     * and the connection a plain one, so that the file can be transferred
+     * straight to the socket.
+     */
+    private static final class FileRegionChannelInterceptor implements HttpRequestInterceptor {
+
+        private final ChannelSocketFactory channelSocketFactory;
+
+        FileRegionChannelInterceptor(ChannelSocketFactory channelSocketFactory) {
+            this.channelSocketFactory = channelSocketFactory;
+        }
+
+        public void process(HttpRequest request, HttpContext context) {
+            // The client wraps the entity of the request it was given
+            HttpRequest original = request instanceof RequestWrapper ? ((RequestWrapper) request).getOriginal()
+                    : request;
+            if (!(original instanceof HttpEntityEnclosingRequest)) return;
+            HttpEntity entity = ((HttpEntityEnclosingRequest) original).getEntity();
+            if (!(entity instanceof FileRegionEntity)) return;
+
+            Object connection = context.getAttribute(org.apache.http.protocol.ExecutionContext.HTTP_CONNECTION);
+            SocketChannel channel = null;
+            if (connection instanceof HttpRoutedConnection && !((HttpRoutedConnection) connection).isSecure()) {
+                channel = channelSocketFactory.getChannel((HttpRoutedConnection) connection);
+            }
+            ((FileRegionEntity) entity).setChannel(channel);
+        }
+    }
+
+    /**
+     * Adds the time spent waiting for the connection a request is about to be
+     * sent over to the metrics of the request, if any.
+     */
+    private static final class PoolWaitTimeInterceptor implements HttpRequestInterceptor {
+
+        public void process(HttpRequest request, HttpContext context) {
+            long waitNanos = SdkPoolingClientConnectionManager.takeLeaseWaitNanos();
+            Object requestMetrics = context.getAttribute(SCSRequestMetrics.class.getSimpleName());
+            if (waitNanos >= 0 && requestMetrics instanceof SCSRequestMetrics) {
+                ((SCSRequestMetrics) requestMetrics).addTime(Field.HttpClientPoolWaitTime, waitNanos);
+            }
+        }
+    }
+
     /**
      * Simple implementation of SchemeSocketFactory (and
      * LayeredSchemeSocketFactory) that bypasses SSL certificate checks. This
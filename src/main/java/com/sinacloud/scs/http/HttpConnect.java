@@ -8,6 +8,8 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,7 +35,10 @@ import com.sinacloud.scs.SDKGlobalConfiguration;
 import com.sinacloud.scs.SCSServiceException.ErrorType;
 import com.sinacloud.scs.retry.RetryPolicy;
 import com.sinacloud.scs.retry.RetryUtils;
+import com.sinacloud.scs.util.CountingInputStream;
 import com.sinacloud.scs.util.DateUtils;
+import com.sinacloud.scs.util.SCSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
 
 /**
  * HTTP请求相应处理类
@@ -58,10 +63,26 @@ public class HttpConnect {
 	
 	private static final HttpRequestFactory httpRequestFactory = new HttpRequestFactory();
     private static final HttpClientFactory httpClientFactory = new HttpClientFactory();
+
+    /** Circuit breakers by endpoint, if enabled */
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+    /** Executor of GET and HEAD requests, or null if hedged requests are disabled */
+    private final HedgedRequestExecutor hedgedRequestExecutor;
+
+    /** Limiter of the request rate, or null if disabled */
+    private final AdaptiveRateLimiter rateLimiter;
+
+    /** Budget of the retries of the client, or null if disabled */
+    private final RetryBudget retryBudget;
 	
 	public HttpConnect(ClientConfiguration config) {
 		this.config = config;
 		this.httpClient = httpClientFactory.createHttpClient(config);
+		this.hedgedRequestExecutor = config.getHedgedRequestPercentile() > 0
+		        ? new HedgedRequestExecutor(httpClient, config.getHedgedRequestPercentile()) : null;
+		this.rateLimiter = config.useAdaptiveRateLimiter() ? new AdaptiveRateLimiter() : null;
+		this.retryBudget = config.getRetryBudget() > 0 ? new RetryBudget(config.getRetryBudget()) : null;
 	}
 
 	 /**
@@ -86,16 +107,38 @@ public class HttpConnect {
         if (executionContext == null)
             throw new SCSClientException("Internal SDK Error: No execution context parameter specified.");
 //        List<RequestHandler2> requestHandler2s = requestHandler2s(request, executionContext);
-//        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        final SCSRequestMetrics requestMetrics = executionContext.getRequestMetrics();
+        if (request.getRequestMetrics() == null) {
+            request.setRequestMetrics(requestMetrics);
+        }
         Response<T> response = null;
+        requestMetrics.startEvent(Field.ClientExecuteTime);
         try {
             response = executeHelper(request, responseHandler, errorResponseHandler, executionContext);
-//            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
 //            afterResponse(request, requestHandler2s, response, timingInfo);
             return response;
         } catch (SCSClientException e) {
 //            afterError(request, response, requestHandler2s, e);
             throw e;
+        } finally {
+            requestMetrics.endEvent(Field.ClientExecuteTime);
+            collectMetrics(request, response, executionContext);
+        }
+    }
+
+    /**
+     * Hands the metrics of a completed request over to the request metric
+     * collector of its execution context. A failing collector never fails the
+     * request itself.
+     */
+    private void collectMetrics(Request<?> request, Response<?> response, ExecutionContext executionContext) {
+        if (!executionContext.getRequestMetrics().isEnabled()) {
+            return;
+        }
+        try {
+            executionContext.getRequestMetricCollector().collectMetrics(request, response);
+        } catch (RuntimeException e) {
+            log.warn("Unable to collect request metrics", e);
         }
     }
     
@@ -119,10 +162,7 @@ public class HttpConnect {
          * any of the content until after a response is returned to the caller.
          */
         boolean leaveHttpConnectionOpen = false;
-//        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
-        /* add the service endpoint to the logs. You can infer service name from service endpoint */
-//        awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
-//        awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
+        SCSRequestMetrics requestMetrics = executionContext.getRequestMetrics();
         // Apply whatever request options we know how to handle, such as user-agent.
         setUserAgent(request);
         int requestCount = 0;
@@ -139,24 +179,26 @@ public class HttpConnect {
 
         while (true) {
             ++requestCount;
-//            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+            requestMetrics.setCounter(Field.RequestCount, requestCount);
             if (requestCount > 1) { // retry
+                requestMetrics.setCounter(Field.RetryCount, requestCount - 1);
                 request.setParameters(originalParameters);
                 request.setHeaders(originalHeaders);
             }
 
             HttpRequestBase httpRequest = null;
             org.apache.http.HttpResponse apacheResponse = null;
+            CircuitBreaker circuitBreaker = null;
 
             try {
                 // Sign the request if a signer was provided
                 if (executionContext.getSigner() != null && executionContext.getCredentials() != null) {
-//                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
+                    requestMetrics.startEvent(Field.RequestSigningTime);
                     try {
 						executionContext.getSigner().sign(request,
 								executionContext.getCredentials());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
+                        requestMetrics.endEvent(Field.RequestSigningTime);
                     }
                 }
 
@@ -168,21 +210,35 @@ public class HttpConnect {
 
                 if (httpRequest instanceof HttpEntityEnclosingRequest) {
                     entity = ((HttpEntityEnclosingRequest)httpRequest).getEntity();
+                    if (entity != null && entity.getContentLength() >= 0) {
+                        requestMetrics.setCounter(Field.RequestContentLength, entity.getContentLength());
+                    }
                 }
 
                 if (redirectedURI != null) {
                     httpRequest.setURI(redirectedURI);
                 }
 
+                /*
+                 * While the endpoint is failing, fail fast rather than pile
+                 * more attempts and back-off onto it.
+                 */
+                circuitBreaker = getCircuitBreaker(httpRequest);
+                if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+                    if (retriedException != null) throw retriedException;
+                    throw new SCSClientException("Not sending the request, the circuit breaker of "
+                            + httpRequest.getURI().getHost() + " is open");
+                }
+
                 if (requestCount > 1) {   // retry
-//                    awsRequestMetrics.startEvent(Field.RetryPauseTime);
+                    requestMetrics.startEvent(Field.RetryPauseTime);
                     try {
                         pauseBeforeNextRetry(request.getOriginalRequest(),
                                              retriedException,
                                              requestCount,
                                              config.getRetryPolicy());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                        requestMetrics.endEvent(Field.RetryPauseTime);
                     }
                 }
 
@@ -200,20 +256,54 @@ public class HttpConnect {
                     }
                 }
                 
+                if (rateLimiter != null) {
+                    requestMetrics.startEvent(Field.RateLimitWaitTime);
+                    try {
+                        rateLimiter.acquire();
+                    } finally {
+                        requestMetrics.endEvent(Field.RateLimitWaitTime);
+                    }
+                }
+
                 HttpContext httpContext = new BasicHttpContext();
-//                httpContext.setAttribute(
-//                        AWSRequestMetrics.class.getSimpleName(),
-//                        awsRequestMetrics);
+                httpContext.setAttribute(
+                        SCSRequestMetrics.class.getSimpleName(),
+                        requestMetrics);
                 retriedException = null;
-//                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+                requestMetrics.startEvent(Field.HttpRequestTime);
                 try {
-                    apacheResponse = httpClient.execute(httpRequest, httpContext);
+                    if (hedgedRequestExecutor != null && entity == null
+                            && (request.getHttpMethod() == HttpMethodName.GET
+                                || request.getHttpMethod() == HttpMethodName.HEAD)) {
+                        HedgedRequestExecutor.Attempt attempt = hedgedRequestExecutor.execute(httpRequest, httpContext);
+                        httpRequest = attempt.request;
+                        apacheResponse = attempt.response;
+                        if (attempt.hedged) {
+                            requestMetrics.incrementCounter(Field.HedgedRequestCount);
+                        }
+                    } else {
+                        apacheResponse = httpClient.execute(httpRequest, httpContext);
+                    }
                 } finally {
-//                    awsRequestMetrics.endEvent(Field.HttpRequestTime);
+                    requestMetrics.endEvent(Field.HttpRequestTime);
+                }
+
+                if (circuitBreaker != null) {
+                    if (apacheResponse.getStatusLine().getStatusCode() >= 500) {
+                        circuitBreaker.recordFailure();
+                    } else {
+                        circuitBreaker.recordSuccess();
+                    }
                 }
 
                 if (isRequestSuccessful(apacheResponse)) {
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    requestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    if (rateLimiter != null) {
+                        rateLimiter.onSuccess();
+                    }
+                    if (retryBudget != null) {
+                        retryBudget.onSuccess(requestCount > 1);
+                    }
                     /*
                      * If we get back any 2xx status code, then we know we should
                      * treat the service call as successful.
@@ -238,16 +328,16 @@ public class HttpConnect {
                     log.debug("Redirecting to: " + redirectedLocation);
                     redirectedURI = URI.create(redirectedLocation);
                     httpRequest.setURI(redirectedURI);
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
-//                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
-//                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                    requestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
 
                 } else {
                     leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
                     SCSServiceException ase = handleErrorResponse(request, errorResponseHandler, httpRequest, apacheResponse);
-//                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
-//                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
-//                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    requestMetrics.addProperty(Field.ErrorCode, ase.getErrorCode());
+                    requestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    if (rateLimiter != null && isThrottled(ase)) {
+                        rateLimiter.onThrottled();
+                    }
                     
                 	if (!shouldRetry(request.getOriginalRequest(),
 				            httpRequest,
@@ -273,9 +363,11 @@ public class HttpConnect {
                 if (log.isInfoEnabled()) {
                     log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 }
-//                awsRequestMetrics.incrementCounter(Field.Exception);
-//                awsRequestMetrics.addProperty(Field.Exception, ioe);
-//                awsRequestMetrics.addProperty(Field.AWSRequestID, null);
+                requestMetrics.incrementCounter(Field.Exception);
+                requestMetrics.addProperty(Field.Exception, ioe);
+                if (circuitBreaker != null) {
+                    circuitBreaker.recordFailure();
+                }
 
                 SCSClientException ace = new SCSClientException("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 if (!shouldRetry(request.getOriginalRequest(),
@@ -290,11 +382,9 @@ public class HttpConnect {
                 retriedException = ace;
                 resetRequestAfterError(request, ioe);
             } catch(RuntimeException e) {
-//                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            	throw e;
+                throw handleUnexpectedFailure(e, requestMetrics);
             } catch(Error e) {
-//                throw handleUnexpectedFailure(e, awsRequestMetrics);
-            	throw e;
+                throw handleUnexpectedFailure(e, requestMetrics);
             } finally {
                 /*
                  * Some response handlers need to manually manage the HTTP
@@ -317,6 +407,15 @@ public class HttpConnect {
         } /* end while (true) */
     }
     
+    /**
+     * Handles an unexpected failure, returning the Throwable instance as given.
+     */
+    private <T extends Throwable> T handleUnexpectedFailure(T t, SCSRequestMetrics requestMetrics) {
+        requestMetrics.incrementCounter(Field.Exception);
+        requestMetrics.addProperty(Field.Exception, t);
+        return t;
+    }
+
     /**
      * Sets a User-Agent for the specified request, taking into account
      * any custom data.
@@ -391,6 +490,34 @@ public class HttpConnect {
         }
     }
 
+    /**
+     * Returns the circuit breaker of the endpoint of the given request, or
+     * null if circuit breakers are disabled.
+     */
+    private CircuitBreaker getCircuitBreaker(HttpRequestBase httpRequest) {
+        if (config.getCircuitBreakerFailureThreshold() <= 0) {
+            return null;
+        }
+        URI uri = httpRequest.getURI();
+        String endpoint = uri.getScheme() + "://" + uri.getHost() + (uri.getPort() < 0 ? "" : ":" + uri.getPort());
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (circuitBreaker == null) {
+            circuitBreaker = new CircuitBreaker(endpoint, config.getCircuitBreakerFailureThreshold(),
+                    config.getCircuitBreakerOpenTime());
+            CircuitBreaker existing = circuitBreakers.putIfAbsent(endpoint, circuitBreaker);
+            if (existing != null) circuitBreaker = existing;
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns whether the service rejected a request because of the rate
+     * requests are sent at.
+     */
+    private static boolean isThrottled(SCSServiceException ase) {
+        return RetryUtils.isThrottlingException(ase) || ase.getStatusCode() == HttpStatus.SC_SERVICE_UNAVAILABLE;
+    }
+
     private boolean isRequestSuccessful(org.apache.http.HttpResponse response) {
         int status = response.getStatusLine().getStatusCode();
         return status / 100 == HttpStatus.SC_OK / 100;
@@ -466,23 +593,29 @@ public class HttpConnect {
         }
 
         try {
-//            com.sina.cloudstorage.util.CountingInputStream countingInputStream = null;
-//            if (System.getProperty(PROFILING_SYSTEM_PROPERTY) != null) {
-//                countingInputStream = new CountingInputStream(httpResponse.getContent());
-//                httpResponse.setContent(countingInputStream);
-//            }
-//
-//            AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            SCSRequestMetrics requestMetrics = executionContext.getRequestMetrics();
+            /*
+             * Streaming handlers (ex: getObject) hand the content back to the
+             * caller unread, so only count the bytes of handlers which consume
+             * the response entirely.
+             */
+            CountingInputStream countingInputStream = null;
+            if (requestMetrics.isEnabled() && !responseHandler.needsConnectionLeftOpen()
+                    && httpResponse.getContent() != null) {
+                countingInputStream = new CountingInputStream(httpResponse.getContent());
+                httpResponse.setContent(countingInputStream);
+            }
+
             SCSWebServiceResponse<? extends T> awsResponse;
-//            awsRequestMetrics.startEvent(Field.ResponseProcessingTime);
+            requestMetrics.startEvent(Field.ResponseProcessingTime);
             try {
                 awsResponse = responseHandler.handle(httpResponse);
             } finally {
-//                awsRequestMetrics.endEvent(Field.ResponseProcessingTime);
+                requestMetrics.endEvent(Field.ResponseProcessingTime);
+            }
+            if (countingInputStream != null) {
+                requestMetrics.setCounter(Field.BytesProcessed, countingInputStream.getByteCount());
             }
-//            if (countingInputStream != null) {
-//                awsRequestMetrics.setCounter(Field.BytesProcessed, countingInputStream.getByteCount());
-//            }
 
             if (awsResponse == null)
                 throw new RuntimeException("Unable to unmarshall response metadata");
@@ -591,18 +724,8 @@ public class HttpConnect {
                                 RetryPolicy retryPolicy) {
         final int retries = requestCount - 1;
         
-        int maxErrorRetry = config.getMaxErrorRetry();
-        // We should use the maxErrorRetry in
-        // the RetryPolicy if either the user has not explicitly set it in
-        // ClientConfiguration, or the RetryPolicy is configured to take
-        // higher precedence.
-        if ( maxErrorRetry < 0
-                || !retryPolicy.isMaxErrorRetryInClientConfigHonored() ) {
-            maxErrorRetry = retryPolicy.getMaxErrorRetry();
-        }
-        
         // Immediately fails when it has exceeds the max retry count.
-        if (retries >= maxErrorRetry) return false;
+        if (retries >= getMaxErrorRetry(config)) return false;
         
         // Never retry on requests containing non-repeatable entity
         if (method instanceof HttpEntityEnclosingRequest) {
@@ -617,9 +740,36 @@ public class HttpConnect {
         
         // Pass all the context information to the RetryCondition and let it
         // decide whether it should be retried.
-        return retryPolicy.getRetryCondition().shouldRetry(originalRequest,
-                                                           exception,
-                                                           retries);
+        if (!retryPolicy.getRetryCondition().shouldRetry(originalRequest,
+                                                         exception,
+                                                         retries)) {
+            return false;
+        }
+
+        // Finally, the client as a whole must be able to afford the retry
+        if (retryBudget != null && !retryBudget.tryAcquireRetry()) {
+            if (log.isDebugEnabled()) {
+                log.debug("Retry budget exhausted, not retrying the request");
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the maximum number of retries of a request with the given
+     * configuration.
+     */
+    static int getMaxErrorRetry(ClientConfiguration config) {
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        // We should use the maxErrorRetry in
+        // the RetryPolicy if either the user has not explicitly set it in
+        // ClientConfiguration, or the RetryPolicy is configured to take
+        // higher precedence.
+        if (config.getMaxErrorRetry() < 0 || !retryPolicy.isMaxErrorRetryInClientConfigHonored()) {
+            return retryPolicy.getMaxErrorRetry();
+        }
+        return config.getMaxErrorRetry();
     }
     
     /**
@@ -694,10 +844,21 @@ public class HttpConnect {
      * Once a client has been shutdown, it cannot be used to make more requests.
      */
     public void shutdown() {
+        if (hedgedRequestExecutor != null) {
+            hedgedRequestExecutor.shutdown();
+        }
         IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
         httpClient.getConnectionManager().shutdown();
     }
     
+    /**
+     * Returns a snapshot of the statistics of the connection pool of this
+     * HTTP client.
+     */
+    public ConnectionPoolStats getConnectionPoolStats() {
+        return ((SdkPoolingClientConnectionManager) httpClient.getConnectionManager()).getPoolStats();
+    }
+
     /**
      * Resets the specified request, so that it can be sent again, after
      * receiving the specified error. If a problem is encountered with resetting
@@ -33,6 +33,7 @@ import org.apache.http.params.CoreProtocolPNames;
 import com.sinacloud.scs.ClientConfiguration;
 import com.sinacloud.scs.Request;
 import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.internal.FileRegionInputStream;
 import com.sinacloud.scs.util.HttpUtils;
 
 
@@ -111,6 +112,8 @@ class HttpRequestFactory {
 
             if (previousEntity != null) {
                 putMethod.setEntity(previousEntity);
+            } else if (request.getContent() instanceof FileRegionInputStream) {
+                putMethod.setEntity(new FileRegionEntity(request));
             } else if (request.getContent() != null) {
                 HttpEntity entity = new RepeatableInputStreamRequestEntity(request);
                 if (request.getHeaders().get("Content-Length") == null) {
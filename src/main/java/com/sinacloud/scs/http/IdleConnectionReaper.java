@@ -14,8 +14,8 @@
  */
 package com.sinacloud.scs.http;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
@@ -23,6 +23,8 @@ import org.apache.commons.logging.LogFactory;
 
 import org.apache.http.conn.ClientConnectionManager;
 
+import com.sinacloud.scs.ClientConfiguration;
+
 /**
  * Daemon thread to periodically check connection pools for idle connections.
  * <p>
@@ -40,21 +42,28 @@ import org.apache.http.conn.ClientConnectionManager;
  * cleaning up old/inactive HTTP connections, we'd see more IO exceptions when
  * stale connections (i.e. closed on the AWS side) are left in the connection
  * pool, and requests grab one of them to begin executing a request.
+ * <p>
+ * Each connection manager is checked at its own period, closing the
+ * connections idle for longer than its own idle timeout (see
+ * {@link ClientConfiguration#getReaperPeriodMillis()} and
+ * {@link ClientConfiguration#getConnectionMaxIdleMillis()}); the thread sleeps
+ * until the next check is due.
  */
 public final class IdleConnectionReaper extends Thread {
 
-    /** The period between invocations of the idle connection reaper. */
-    private static final int PERIOD_MILLISECONDS = 1000 * 60 * 1;
-
     /**
-     * The list of registered connection managers, whose connections
-     * will be periodically checked and idle connections closed.
+     * The registered connection managers, whose connections will be
+     * periodically checked and idle connections closed, with their schedules.
      */
-    private static ArrayList<ClientConnectionManager> connectionManagers = new ArrayList<ClientConnectionManager>();
+    private static final Map<ClientConnectionManager, Schedule> connectionManagers =
+            new ConcurrentHashMap<ClientConnectionManager, Schedule>();
 
     /** Singleton instance of the connection reaper. */
     private static IdleConnectionReaper instance;
 
+    /** Whether a connection manager was registered since the thread last looked at the schedules. */
+    private static boolean rescheduled;
+
     /** Shared log for any errors during connection reaping. */
     static final Log log = LogFactory.getLog(IdleConnectionReaper.class);
 
@@ -65,38 +74,57 @@ public final class IdleConnectionReaper extends Thread {
         start();
     }
 
-    public static synchronized void registerConnectionManager(ClientConnectionManager connectionManager) {
+    /**
+     * Registers a connection manager, whose connections idle for more than
+     * {@link ClientConfiguration#DEFAULT_CONNECTION_MAX_IDLE_MILLIS} will be
+     * closed every {@link ClientConfiguration#DEFAULT_REAPER_PERIOD_MILLIS}.
+     */
+    public static void registerConnectionManager(ClientConnectionManager connectionManager) {
+        registerConnectionManager(connectionManager, ClientConfiguration.DEFAULT_REAPER_PERIOD_MILLIS,
+                ClientConfiguration.DEFAULT_CONNECTION_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * Registers a connection manager, whose connections idle for more than
+     * the given time will be closed at the given period.
+     *
+     * @param connectionManager
+     *            The connection manager to check.
+     * @param periodMillis
+     *            The period of the checks, in milliseconds.
+     * @param maxIdleMillis
+     *            The time, in milliseconds, after which an idle connection is
+     *            closed.
+     */
+    public static synchronized void registerConnectionManager(ClientConnectionManager connectionManager,
+            long periodMillis, long maxIdleMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("The period of the idle connection reaper must be positive");
+        }
         if (instance == null) instance = new IdleConnectionReaper();
-        connectionManagers.add(connectionManager);
+        connectionManagers.put(connectionManager, new Schedule(periodMillis, maxIdleMillis, System.nanoTime()));
+        // Wakes the thread up in case the new period is shorter than its sleep
+        rescheduled = true;
+        IdleConnectionReaper.class.notifyAll();
     }
 
-    public static synchronized void removeConnectionManager(ClientConnectionManager connectionManager) {
+    public static void removeConnectionManager(ClientConnectionManager connectionManager) {
         connectionManagers.remove(connectionManager);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public void run() {
         while (true) {
             try {
-                Thread.sleep(PERIOD_MILLISECONDS);
-
-                // Copy the list of managed ConnectionManagers to avoid possible
-                // ConcurrentModificationExceptions if registerConnectionManager or
-                // removeConnectionManager are called while we're iterating (rather
-                // than block/lock while this loop executes).
-                List<ClientConnectionManager> connectionManagers = null;
                 synchronized (IdleConnectionReaper.class) {
-                    connectionManagers = (List<ClientConnectionManager>)IdleConnectionReaper.connectionManagers.clone();
+                    rescheduled = false;
                 }
-                for (ClientConnectionManager connectionManager : connectionManagers) {
-                    // When we release connections, the connection manager leaves them
-                    // open so they can be reused.  We want to close out any idle
-                    // connections so that they don't sit around in CLOSE_WAIT.
-                    try {
-                        connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
-                    } catch (Throwable t) {
-                        log.warn("Unable to close idle connections", t);
+
+                long sleepNanos = closeIdleConnections(connectionManagers, System.nanoTime());
+
+                synchronized (IdleConnectionReaper.class) {
+                    if (!rescheduled && sleepNanos > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(IdleConnectionReaper.class, sleepNanos);
                     }
                 }
             } catch (InterruptedException e) {
@@ -106,6 +134,33 @@ public final class IdleConnectionReaper extends Thread {
         }
     }
 
+    /**
+     * Checks the connection managers whose check is due at the given time,
+     * and returns the time, in nanoseconds, until the next check is due.
+     */
+    static long closeIdleConnections(Map<ClientConnectionManager, Schedule> connectionManagers, long now) {
+        // The map can be modified while we're iterating, rather than
+        // block registerConnectionManager or removeConnectionManager
+        // while this loop executes.
+        long sleepNanos = TimeUnit.MILLISECONDS.toNanos(ClientConfiguration.DEFAULT_REAPER_PERIOD_MILLIS);
+        for (Map.Entry<ClientConnectionManager, Schedule> entry : connectionManagers.entrySet()) {
+            Schedule schedule = entry.getValue();
+            if (now - schedule.nextRunNanos >= 0) {
+                // When we release connections, the connection manager leaves them
+                // open so they can be reused.  We want to close out any idle
+                // connections so that they don't sit around in CLOSE_WAIT.
+                try {
+                    entry.getKey().closeIdleConnections(schedule.maxIdleMillis, TimeUnit.MILLISECONDS);
+                } catch (Throwable t) {
+                    log.warn("Unable to close idle connections", t);
+                }
+                schedule.nextRunNanos = now + schedule.periodNanos;
+            }
+            sleepNanos = Math.min(sleepNanos, schedule.nextRunNanos - now);
+        }
+        return sleepNanos;
+    }
+
     /**
      * Shuts down the thread, allowing the class and instance to be collected.
      * <p>
@@ -122,4 +177,20 @@ public final class IdleConnectionReaper extends Thread {
             instance = null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * When and how a connection manager is checked. Only the reaper thread
+     * updates the time of the next check.
+     */
+    static final class Schedule {
+        final long periodNanos;
+        final long maxIdleMillis;
+        long nextRunNanos;
+
+        Schedule(long periodMillis, long maxIdleMillis, long nowNanos) {
+            this.periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+            this.maxIdleMillis = maxIdleMillis;
+            this.nextRunNanos = nowNanos + periodNanos;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.sinacloud.scs.http;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Token bucket capping the retries of a client as a whole, used by
+ * {@link HttpConnect} on top of the maximum number of retries of each
+ * request.
+ * <p>
+ * Every retry takes {@link #RETRY_COST} tokens, and every successful request
+ * gives one back, or the cost of its last retry if it was retried. Retries
+ * stop once the bucket is empty: while the service fails most requests, the
+ * client sends about one retry per {@link #RETRY_COST} successes on top of
+ * the initial capacity, rather than multiplying its load by the number of
+ * retries of each request; once requests succeed again, the budget fills
+ * back up.
+ */
+@ThreadSafe
+class RetryBudget {
+
+    /** The tokens taken by a retry. */
+    static final int RETRY_COST = 5;
+
+    private final int capacity;
+    private final AtomicInteger tokens;
+
+    /**
+     * @param capacity
+     *            The number of tokens of the bucket, which starts full.
+     */
+    RetryBudget(int capacity) {
+        this.capacity = capacity;
+        this.tokens = new AtomicInteger(capacity);
+    }
+
+    /**
+     * Takes the tokens of a retry, returning false if there aren't enough
+     * left.
+     */
+    boolean tryAcquireRetry() {
+        while (true) {
+            int current = tokens.get();
+            if (current < RETRY_COST) return false;
+            if (tokens.compareAndSet(current, current - RETRY_COST)) return true;
+        }
+    }
+
+    /**
+     * Gives tokens back for a successful request.
+     *
+     * @param retried
+     *            Whether the request was retried before it succeeded.
+     */
+    void onSuccess(boolean retried) {
+        int refill = retried ? RETRY_COST : 1;
+        while (true) {
+            int current = tokens.get();
+            if (current >= capacity) return;
+            if (tokens.compareAndSet(current, Math.min(capacity, current + refill))) return;
+        }
+    }
+}
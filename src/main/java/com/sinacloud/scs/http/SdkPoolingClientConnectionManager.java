@@ -0,0 +1,195 @@
+package com.sinacloud.scs.http;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Pooling connection manager which also keeps track of the routes of its
+ * connections, to apply the limits of specific hosts to them and report
+ * their statistics, and measures how long each connection is waited for.
+ * <p>
+ * It can also check leased connections for staleness only when they have
+ * been idle for a while, instead of the stale checking of the client, which
+ * checks every connection at the cost of a blocking read. The time each
+ * connection was released is kept by its local and remote addresses; a
+ * connection whose release time is unknown is checked.
+ * <p>
+ * The wait of the last connection leased by a thread is handed over to the
+ * request interceptors of the client, which run on the same thread once the
+ * connection is leased, through {@link #takeLeaseWaitNanos()}.
+ */
+@ThreadSafe
+@SuppressWarnings("deprecation")
+class SdkPoolingClientConnectionManager extends PoolingClientConnectionManager {
+
+    private static final ThreadLocal<Long> leaseWaitNanos = new ThreadLocal<Long>();
+
+    private final Map<String, Integer> maxConnectionsPerHost;
+    private final Set<HttpRoute> routes = Collections.newSetFromMap(new ConcurrentHashMap<HttpRoute, Boolean>());
+
+    /** The time, in nanoseconds, a connection can be idle before it is checked, or -1 if it never is */
+    private final long validateAfterInactivityNanos;
+
+    private final Clock clock;
+
+    /** The time idle connections were released at, in nanoseconds, by addresses, if they are checked */
+    private final ConcurrentMap<String, Long> releaseTimes = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @param connectionTTL
+     *            The time to live of the connections, in milliseconds, or a
+     *            negative value for no limit.
+     * @param maxConnectionsPerHost
+     *            The maximum number of connections to each route of specific
+     *            hosts, by host name.
+     * @param validateAfterInactivityMillis
+     *            The time, in milliseconds, a connection can be idle before
+     *            it is checked for staleness when leased, or -1 to leave the
+     *            checks to the client.
+     */
+    SdkPoolingClientConnectionManager(long connectionTTL, Map<String, Integer> maxConnectionsPerHost,
+            long validateAfterInactivityMillis) {
+        this(connectionTTL, maxConnectionsPerHost, validateAfterInactivityMillis, Clock.SYSTEM);
+    }
+
+    SdkPoolingClientConnectionManager(long connectionTTL, Map<String, Integer> maxConnectionsPerHost,
+            long validateAfterInactivityMillis, Clock clock) {
+        super(SchemeRegistryFactory.createDefault(), connectionTTL, TimeUnit.MILLISECONDS);
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.validateAfterInactivityNanos = validateAfterInactivityMillis < 0 ? -1
+                : TimeUnit.MILLISECONDS.toNanos(validateAfterInactivityMillis);
+        this.clock = clock;
+    }
+
+    @Override
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+        if (routes.add(route)) {
+            Integer max = maxConnectionsPerHost.get(route.getTargetHost().getHostName());
+            if (max != null) {
+                setMaxPerRoute(route, max);
+            }
+        }
+        final ClientConnectionRequest request = super.requestConnection(route, state);
+        return new ClientConnectionRequest() {
+            public ManagedClientConnection getConnection(long timeout, TimeUnit tunit)
+                    throws InterruptedException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                ManagedClientConnection connection = request.getConnection(timeout, tunit);
+                leaseWaitNanos.set(System.nanoTime() - start);
+                if (validateAfterInactivityNanos >= 0) {
+                    validate(connection);
+                }
+                return connection;
+            }
+
+            public void abortRequest() {
+                request.abortRequest();
+            }
+        };
+    }
+
+    @Override
+    public void releaseConnection(ManagedClientConnection connection, long keepalive, TimeUnit tunit) {
+        String key = null;
+        if (validateAfterInactivityNanos >= 0 && connection.isOpen() && connection.isMarkedReusable()) {
+            key = ConnectionKeys.of(connection);
+        }
+        super.releaseConnection(connection, keepalive, tunit);
+        if (key != null) {
+            // Bounds the times left behind by connections closed while idle
+            if (releaseTimes.size() >= 2 * getMaxTotal()) {
+                releaseTimes.clear();
+            }
+            releaseTimes.put(key, clock.nanoTime());
+        }
+    }
+
+    @Override
+    public void closeIdleConnections(long idletime, TimeUnit tunit) {
+        super.closeIdleConnections(idletime, tunit);
+        long now = clock.nanoTime();
+        long idleNanos = tunit.toNanos(idletime);
+        for (Iterator<Long> it = releaseTimes.values().iterator(); it.hasNext();) {
+            if (now - it.next().longValue() > idleNanos) it.remove();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        releaseTimes.clear();
+    }
+
+    /*
+     * Closes the given connection, freshly leased, if it is stale, so that
+     * the client opens a new one. Connections released recently are trusted.
+     */
+    private void validate(ManagedClientConnection connection) {
+        if (!connection.isOpen()) return;
+        String key = ConnectionKeys.of(connection);
+        Long releasedAt = key == null ? null : releaseTimes.remove(key);
+        if (releasedAt != null && clock.nanoTime() - releasedAt.longValue() <= validateAfterInactivityNanos) {
+            return;
+        }
+        if (connection.isStale()) {
+            if (HttpConnect.log.isDebugEnabled()) {
+                HttpConnect.log.debug("Closing stale connection to " + connection.getRoute().getTargetHost());
+            }
+            try {
+                connection.close();
+            } catch (IOException e) {
+                HttpConnect.log.debug("Unable to close stale connection", e);
+                try {
+                    connection.shutdown();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the time, in nanoseconds, the current thread waited for the
+     * last connection it leased, or -1 if it leased none since the last call.
+     */
+    static long takeLeaseWaitNanos() {
+        Long nanos = leaseWaitNanos.get();
+        if (nanos == null) return -1;
+        leaseWaitNanos.remove();
+        return nanos;
+    }
+
+    /**
+     * Returns a snapshot of the statistics of the pool and of its routes.
+     */
+    ConnectionPoolStats getPoolStats() {
+        Map<String, ConnectionPoolStats> routeStats = new TreeMap<String, ConnectionPoolStats>();
+        for (HttpRoute route : routes) {
+            PoolStats stats = getStats(route);
+            if (stats.getLeased() + stats.getAvailable() + stats.getPending() == 0) continue;
+            routeStats.put(route.getTargetHost().toURI(), toConnectionPoolStats(stats,
+                    Collections.<String, ConnectionPoolStats>emptyMap()));
+        }
+        return toConnectionPoolStats(getTotalStats(), routeStats);
+    }
+
+    private static ConnectionPoolStats toConnectionPoolStats(PoolStats stats, Map<String, ConnectionPoolStats> routes) {
+        return new ConnectionPoolStats(stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax(),
+                routes);
+    }
+}
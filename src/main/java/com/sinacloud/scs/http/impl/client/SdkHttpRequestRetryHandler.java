@@ -20,6 +20,9 @@ import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
 import org.apache.http.protocol.HttpContext;
 
+import com.sinacloud.scs.util.SCSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
+
 
 @ThreadSafe
 public class SdkHttpRequestRetryHandler extends DefaultHttpRequestRetryHandler {
@@ -32,11 +35,11 @@ public class SdkHttpRequestRetryHandler extends DefaultHttpRequestRetryHandler {
             final HttpContext context) {
         boolean retry = super.retryRequest(exception, executionCount, context);
         if (retry) {
-//            AWSRequestMetrics awsRequestMetrics = (AWSRequestMetrics) context
-//                    .getAttribute(AWSRequestMetrics.class.getSimpleName());
-//            if (awsRequestMetrics != null) {
-//                awsRequestMetrics.incrementCounter(Field.HttpClientRetryCount);
-//            }
+            SCSRequestMetrics requestMetrics = (SCSRequestMetrics) context
+                    .getAttribute(SCSRequestMetrics.class.getSimpleName());
+            if (requestMetrics != null) {
+                requestMetrics.incrementCounter(Field.HttpClientRetryCount);
+            }
         }
         return retry;
     }
@@ -0,0 +1,187 @@
+package com.sinacloud.scs.internal;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.sinacloud.scs.event.ProgressEvent;
+import com.sinacloud.scs.event.ProgressListenerCallbackExecutor;
+
+/**
+ * Repeatable input stream over a byte range of a file, read with positional
+ * {@link FileChannel} reads.
+ * <p>
+ * When a request has such a stream as its content, the HTTP layer can send
+ * the range with {@link #transferTo(WritableByteChannel)}, which hands the
+ * file to the socket through {@link FileChannel#transferTo} instead of
+ * copying it through the chain of stream wrappers and buffers. Nothing can
+ * therefore wrap this stream to look at the bytes on their way out: the MD5
+ * must be known before sending, and progress is reported by the stream
+ * itself, to the listener it was created with.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    /** The threshold of bytes between progress notifications. */
+    private static final int NOTIFICATION_THRESHOLD = 8 * 1024;
+
+    /** The largest number of bytes handed to transferTo at once, to report progress. */
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final ProgressListenerCallbackExecutor listenerCallbackExecutor;
+
+    private final byte[] singleByte = new byte[1];
+    private long position;
+    private long markedPosition;
+    private int unnotifiedByteCount;
+
+    /**
+     * Creates a stream over the given range of a file, reporting progress to
+     * the given listener callback executor, if any.
+     *
+     * @param file
+     *            The file to read.
+     * @param offset
+     *            The offset in the file of the first byte of the range.
+     * @param length
+     *            The number of bytes of the range.
+     * @param listenerCallbackExecutor
+     *            The listener callback executor to notify about the bytes
+     *            read or transferred, or null.
+     */
+    public FileRegionInputStream(File file, long offset, long length,
+            ProgressListenerCallbackExecutor listenerCallbackExecutor) throws FileNotFoundException {
+        if (file == null) {
+            throw new IllegalArgumentException("File cannot be null");
+        }
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = randomAccessFile.getChannel();
+        this.listenerCallbackExecutor = listenerCallbackExecutor;
+    }
+
+    /** Returns the file this stream reads from. */
+    public File getFile() {
+        return file;
+    }
+
+    /** Returns the number of bytes of the range. */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Writes the whole range, from its first byte, to the given channel, then
+     * leaves this stream at its end.
+     */
+    public void transferTo(WritableByteChannel target) throws IOException {
+        position = 0;
+        while (position < length) {
+            long count = channel.transferTo(offset + position,
+                    Math.min(length - position, TRANSFER_CHUNK_SIZE), target);
+            if (count <= 0 && offset + position >= channel.size()) {
+                throw new IOException("File " + file + " is shorter than the range to send");
+            }
+            position += count;
+            notify(count);
+        }
+    }
+
+    /**
+     * Writes the whole range, from its first byte, to the given stream, then
+     * leaves this stream at its end.
+     */
+    public void writeTo(OutputStream output) throws IOException {
+        position = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int count;
+        while ((count = read(buffer, 0, buffer.length)) > -1) {
+            output.write(buffer, 0, count);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        int count = read(singleByte, 0, 1);
+        return count == -1 ? -1 : singleByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (position >= length) return -1;
+        int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, length - position)),
+                offset + position);
+        if (count < 0) {
+            throw new IOException("File " + file + " is shorter than the range to send");
+        }
+        position += count;
+        notify(count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markedPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        position = markedPosition;
+        if (listenerCallbackExecutor != null) {
+            ProgressEvent event = new ProgressEvent(unnotifiedByteCount);
+            event.setEventCode(ProgressEvent.RESET_EVENT_CODE);
+            listenerCallbackExecutor.progressChanged(event);
+        }
+        unnotifiedByteCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (listenerCallbackExecutor != null && unnotifiedByteCount > 0) {
+            listenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+        }
+        unnotifiedByteCount = 0;
+        randomAccessFile.close();
+    }
+
+    private void notify(long bytes) {
+        if (listenerCallbackExecutor == null) return;
+        unnotifiedByteCount += bytes;
+        if (unnotifiedByteCount >= NOTIFICATION_THRESHOLD) {
+            listenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+            unnotifiedByteCount = 0;
+        }
+    }
+}
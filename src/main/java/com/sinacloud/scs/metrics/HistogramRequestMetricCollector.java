@@ -0,0 +1,202 @@
+package com.sinacloud.scs.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.sinacloud.scs.Request;
+import com.sinacloud.scs.Response;
+import com.sinacloud.scs.util.SCSRequestMetrics;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
+
+/**
+ * Default, in-process {@link RequestMetricCollector} which aggregates the
+ * per-request metrics of every service call into latency histograms and
+ * counters. Nothing is sent anywhere; callers are expected to periodically
+ * scrape the collector, either through the typed getters or through
+ * {@link #dump()}, which renders all the aggregated values as plain text.
+ * <p>
+ * <pre>
+ * HistogramRequestMetricCollector metrics = new HistogramRequestMetricCollector();
+ * scsClient.setRequestMetricCollector(metrics);
+ * ...
+ * long p99 = metrics.getHistogram(Field.HttpRequestTime).getValueAtPercentile(99);
+ * </pre>
+ */
+@ThreadSafe
+public class HistogramRequestMetricCollector extends RequestMetricCollector {
+
+    /** The timing fields which are aggregated into histograms. */
+    private static final Field[] TIMING_FIELDS = {
+        Field.ClientExecuteTime,
+        Field.RequestSigningTime,
+        Field.HttpRequestTime,
+        Field.HttpClientPoolWaitTime,
+        Field.RetryPauseTime,
+        Field.RateLimitWaitTime,
+        Field.ResponseProcessingTime,
+    };
+
+    private final Map<Field, LatencyHistogram> histograms = new EnumMap<Field, LatencyHistogram>(Field.class);
+    private final LatencyHistogram requestCounts = new LatencyHistogram();
+    private final ConcurrentMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<Integer, AtomicLong>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong httpClientRetries = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    private final AtomicLong requestBytes = new AtomicLong();
+
+    public HistogramRequestMetricCollector() {
+        for (Field f : TIMING_FIELDS) {
+            histograms.put(f, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public void collectMetrics(Request<?> request, Response<?> response) {
+        SCSRequestMetrics metrics = request.getRequestMetrics();
+        if (metrics == null || !metrics.isEnabled()) return;
+
+        requests.incrementAndGet();
+        if (response == null) failedRequests.incrementAndGet();
+
+        for (Field f : TIMING_FIELDS) {
+            long nanos = metrics.getTimeNanos(f);
+            if (nanos >= 0) histograms.get(f).record(nanos);
+        }
+
+        long attempts = metrics.getCounter(Field.RequestCount);
+        requestCounts.record(attempts);
+        retries.addAndGet(metrics.getCounter(Field.RetryCount));
+        httpClientRetries.addAndGet(metrics.getCounter(Field.HttpClientRetryCount));
+        hedgedRequests.addAndGet(metrics.getCounter(Field.HedgedRequestCount));
+        bytesProcessed.addAndGet(metrics.getCounter(Field.BytesProcessed));
+        long contentLength = metrics.getCounter(Field.RequestContentLength);
+        if (contentLength > 0) requestBytes.addAndGet(contentLength);
+
+        for (Object status : metrics.getProperty(Field.StatusCode)) {
+            if (status instanceof Integer) {
+                AtomicLong counter = statusCodes.get(status);
+                if (counter == null) {
+                    AtomicLong newCounter = new AtomicLong();
+                    counter = statusCodes.putIfAbsent((Integer) status, newCounter);
+                    if (counter == null) counter = newCounter;
+                }
+                counter.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the latency histogram (in nanoseconds) of the given timing
+     * field, or null if the field is not a timing field.
+     */
+    public LatencyHistogram getHistogram(Field field) {
+        return histograms.get(field);
+    }
+
+    /** Returns the histogram of attempts per service call. */
+    public LatencyHistogram getRequestCountHistogram() {
+        return requestCounts;
+    }
+
+    /** Returns the number of service calls collected so far. */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /** Returns the number of service calls which ended with an exception. */
+    public long getFailedRequestCount() {
+        return failedRequests.get();
+    }
+
+    /** Returns the total number of retries performed by the SDK retry loop. */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /** Returns the total number of retries performed inside the HTTP client. */
+    public long getHttpClientRetryCount() {
+        return httpClientRetries.get();
+    }
+
+    /** Returns the total number of hedged attempts. */
+    public long getHedgedRequestCount() {
+        return hedgedRequests.get();
+    }
+
+    /** Returns the total number of response bytes consumed by response handlers. */
+    public long getBytesProcessed() {
+        return bytesProcessed.get();
+    }
+
+    /** Returns the total declared length of all request payloads. */
+    public long getRequestBytes() {
+        return requestBytes.get();
+    }
+
+    /**
+     * Returns a snapshot of the number of attempts per HTTP status code,
+     * sorted by status code.
+     */
+    public Map<Integer, Long> getStatusCodeCounts() {
+        Map<Integer, Long> snapshot = new TreeMap<Integer, Long>();
+        for (Map.Entry<Integer, AtomicLong> entry : statusCodes.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().get());
+        }
+        return snapshot;
+    }
+
+    /** Clears everything collected so far. */
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        requestCounts.reset();
+        statusCodes.clear();
+        requests.set(0);
+        failedRequests.set(0);
+        retries.set(0);
+        httpClientRetries.set(0);
+        hedgedRequests.set(0);
+        bytesProcessed.set(0);
+        requestBytes.set(0);
+    }
+
+    /**
+     * Renders all the aggregated metrics as plain text, one metric per line,
+     * suitable for logging or for exposing on a scrape endpoint. Times are in
+     * nanoseconds.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("requests ").append(getRequestCount()).append('\n');
+        sb.append("failedRequests ").append(getFailedRequestCount()).append('\n');
+        sb.append("retries ").append(getRetryCount()).append('\n');
+        sb.append("httpClientRetries ").append(getHttpClientRetryCount()).append('\n');
+        sb.append("hedgedRequests ").append(getHedgedRequestCount()).append('\n');
+        sb.append("bytesProcessed ").append(getBytesProcessed()).append('\n');
+        sb.append("requestBytes ").append(getRequestBytes()).append('\n');
+        for (Map.Entry<Integer, Long> entry : getStatusCodeCounts().entrySet()) {
+            sb.append("statusCode{code=").append(entry.getKey()).append("} ")
+              .append(entry.getValue()).append('\n');
+        }
+        sb.append("requestCount ").append(requestCounts).append('\n');
+        for (Field f : TIMING_FIELDS) {
+            sb.append(f.name()).append(' ').append(histograms.get(f)).append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return dump();
+    }
+}
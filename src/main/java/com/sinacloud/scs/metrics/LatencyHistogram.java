@@ -0,0 +1,124 @@
+package com.sinacloud.scs.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Lock-free, fixed-size histogram of non-negative long values (typically
+ * nanosecond latencies or byte counts).
+ * <p>
+ * Values are bucketed logarithmically: every power of two is split into
+ * eight linear sub-buckets, so any recorded value is reported with a relative
+ * error of at most 12.5%, while the whole histogram only needs a few
+ * kilobytes regardless of the number of recorded values.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value. Negative values are ignored.
+     */
+    public void record(long value) {
+        if (value < 0) return;
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long currentMax;
+        while (value > (currentMax = max.get())) {
+            if (max.compareAndSet(currentMax, value)) break;
+        }
+    }
+
+    /** Returns the number of recorded values. */
+    public long getCount() {
+        return count.get();
+    }
+
+    /** Returns the sum of all recorded values. */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /** Returns the largest recorded value, or 0 if nothing was recorded. */
+    public long getMax() {
+        return max.get();
+    }
+
+    /** Returns the arithmetic mean of the recorded values, or 0 if nothing was recorded. */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Returns an estimate of the value at the given percentile.
+     *
+     * @param percentile
+     *            The percentile, between 0 and 100 (ex: 99.9).
+     *
+     * @return The lower bound of the bucket holding the requested percentile,
+     *         or 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        }
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketLowerBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /** Clears all recorded values. */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKET_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKET_COUNT) return index;
+        int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+        long subBucket = index & (SUB_BUCKET_COUNT - 1);
+        return (SUB_BUCKET_COUNT + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " mean=" + (long) getMean()
+                + " p50=" + getValueAtPercentile(50)
+                + " p90=" + getValueAtPercentile(90)
+                + " p99=" + getValueAtPercentile(99)
+                + " p999=" + getValueAtPercentile(99.9)
+                + " max=" + getMax();
+    }
+}
@@ -0,0 +1,52 @@
+package com.sinacloud.scs.metrics;
+
+import com.sinacloud.scs.Request;
+import com.sinacloud.scs.Response;
+
+/**
+ * Collector of per-request metrics. A collector can be specified at the
+ * service client level via
+ * {@link com.sinacloud.scs.SCSWebServiceClient#setRequestMetricCollector(RequestMetricCollector)},
+ * or at the request level via
+ * {@link com.sinacloud.scs.SCSWebServiceRequest#setRequestMetricCollector(RequestMetricCollector)};
+ * the request level collector takes precedence.
+ * <p>
+ * {@link #collectMetrics(Request, Response)} is called exactly once per
+ * service call, after the last attempt has completed (successfully or not),
+ * on the calling thread. Implementations must therefore be thread-safe and
+ * should return quickly.
+ *
+ * @see HistogramRequestMetricCollector
+ */
+public abstract class RequestMetricCollector {
+
+    /**
+     * Collects the metrics at the end of a request/response cycle. The metrics
+     * themselves are available from {@link Request#getRequestMetrics()}.
+     *
+     * @param request
+     *            The request that was executed.
+     * @param response
+     *            The response, or null if the request failed.
+     */
+    public abstract void collectMetrics(Request<?> request, Response<?> response);
+
+    /**
+     * Returns true if this collector is enabled; false otherwise. Metrics are
+     * only gathered for a request if its collector is enabled.
+     */
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /** A convenient instance of a no-op request metric collector. */
+    public static final RequestMetricCollector NONE = new RequestMetricCollector() {
+        @Override
+        public void collectMetrics(Request<?> request, Response<?> response) {}
+
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+}
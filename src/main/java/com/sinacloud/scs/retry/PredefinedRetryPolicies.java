@@ -34,7 +34,7 @@ public class PredefinedRetryPolicies {
     /* SDK default */
     
     /** SDK default max retry count **/
-    public static int DEFAULT_MAX_ERROR_RETRY = 3;
+    public static final int DEFAULT_MAX_ERROR_RETRY = 3;
     
     /** SDK default retry policy **/
     public static final RetryPolicy DEFAULT;
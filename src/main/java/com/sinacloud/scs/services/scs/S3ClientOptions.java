@@ -22,13 +22,34 @@ public class S3ClientOptions {
     /** The default setting for use of path-style access */
     public static final boolean DEFAULT_PATH_STYLE_ACCESS = true;//false;
 
+    /** The default setting for pre-computing the MD5 of uploaded files */
+    public static final boolean DEFAULT_PRECOMPUTE_FILE_MD5 = true;
+
+    /** The default number of objects whose metadata is cached: none */
+    public static final int DEFAULT_METADATA_CACHE_SIZE = 0;
+
+    /** The default time, in milliseconds, cached metadata is used without revalidating it */
+    public static final long DEFAULT_METADATA_CACHE_TTL = 5 * 1000;
+
     /** Flag for use of path-style access */
     private boolean pathStyleAccess = DEFAULT_PATH_STYLE_ACCESS;
 
+    /** Flag for reading uploaded files once up front to compute their MD5 */
+    private boolean precomputeFileMd5 = DEFAULT_PRECOMPUTE_FILE_MD5;
+
+    /** The maximum number of objects whose metadata is cached */
+    private int metadataCacheSize = DEFAULT_METADATA_CACHE_SIZE;
+
+    /** The time, in milliseconds, cached metadata is used without revalidating it */
+    private long metadataCacheTtl = DEFAULT_METADATA_CACHE_TTL;
+
     public S3ClientOptions() {}
 
     public S3ClientOptions( S3ClientOptions other ) {
         this.pathStyleAccess = other.pathStyleAccess;
+        this.precomputeFileMd5 = other.precomputeFileMd5;
+        this.metadataCacheSize = other.metadataCacheSize;
+        this.metadataCacheTtl = other.metadataCacheTtl;
     }
 
     /**
@@ -103,4 +124,161 @@ public class S3ClientOptions {
       return this;
     }
 
-}
\ No newline at end of file
+    /**
+     * <p>
+     * Returns whether the client reads a file once before uploading it, to
+     * send its MD5 in the Content-MD5 header.
+     * </p>
+     * <p>
+     * With the Content-MD5 header, SCS rejects a corrupted upload before
+     * storing it, but every uploaded file is read from disk twice. When this
+     * flag is turned off, the MD5 is instead calculated while the file is
+     * being sent, and is verified against the ETag returned by SCS once the
+     * upload is complete, so that the file is read exactly once. A mismatch
+     * is then reported with an exception, but the corrupted object has
+     * already been stored.
+     * </p>
+     * <p>
+     * This applies to the parts of multipart uploads from files as well. A
+     * file, or part, whose MD5 is known before it is sent is written to plain
+     * HTTP connections straight from the file, with
+     * {@link java.nio.channels.FileChannel#transferTo}.
+     * </p>
+     * @return True if the MD5 of uploaded files is computed before sending
+     *         them.
+     */
+    public boolean isPrecomputeFileMd5() {
+        return precomputeFileMd5;
+    }
+
+    /**
+     * Configures whether the client reads a file once before uploading it, to
+     * send its MD5 in the Content-MD5 header, or computes the MD5 while
+     * sending it and verifies it against the returned ETag.
+     *
+     * @param precomputeFileMd5
+     *            False to read uploaded files exactly once.
+     *
+     * @see #isPrecomputeFileMd5()
+     */
+    public void setPrecomputeFileMd5(boolean precomputeFileMd5) {
+        this.precomputeFileMd5 = precomputeFileMd5;
+    }
+
+    /**
+     * Configures whether the client reads a file once before uploading it, to
+     * send its MD5 in the Content-MD5 header, or computes the MD5 while
+     * sending it and verifies it against the returned ETag.
+     *
+     * @param precomputeFileMd5
+     *            False to read uploaded files exactly once.
+     *
+     * @return The updated S3ClientOptions object with the new setting.
+     *
+     * @see #isPrecomputeFileMd5()
+     */
+    public S3ClientOptions withPrecomputeFileMd5(boolean precomputeFileMd5) {
+        setPrecomputeFileMd5(precomputeFileMd5);
+        return this;
+    }
+
+    /**
+     * <p>
+     * Returns the maximum number of objects whose metadata the client caches,
+     * or 0 if it doesn't cache metadata, which is the default.
+     * </p>
+     * <p>
+     * With a cache, {@link SCS#getObjectMetadata(String, String)}, which
+     * {@link com.sinacloud.scs.services.scs.transfer.TransferManager} also
+     * calls before every download, returns the cached metadata of an object
+     * without sending any request for {@link #getMetadataCacheTtl()}
+     * milliseconds after fetching it. It then sends a HEAD request with the
+     * cached ETag in If-None-Match, and keeps the cached metadata if the
+     * object hasn't changed. The least recently used objects are evicted
+     * when the cache is full.
+     * </p>
+     * <p>
+     * Metadata of a specific version of an object is never cached. Writing
+     * or deleting an object through the client removes it from the cache,
+     * but changes made by other clients are only seen once the cached
+     * metadata has to be revalidated.
+     * </p>
+     * @return The maximum number of objects whose metadata is cached.
+     */
+    public int getMetadataCacheSize() {
+        return metadataCacheSize;
+    }
+
+    /**
+     * Configures the maximum number of objects whose metadata the client
+     * caches; 0 turns the cache off.
+     *
+     * @param metadataCacheSize
+     *            The maximum number of objects whose metadata is cached.
+     *
+     * @see #getMetadataCacheSize()
+     */
+    public void setMetadataCacheSize(int metadataCacheSize) {
+        this.metadataCacheSize = metadataCacheSize;
+    }
+
+    /**
+     * Configures the maximum number of objects whose metadata the client
+     * caches; 0 turns the cache off.
+     *
+     * @param metadataCacheSize
+     *            The maximum number of objects whose metadata is cached.
+     *
+     * @return The updated S3ClientOptions object with the new setting.
+     *
+     * @see #getMetadataCacheSize()
+     */
+    public S3ClientOptions withMetadataCacheSize(int metadataCacheSize) {
+        setMetadataCacheSize(metadataCacheSize);
+        return this;
+    }
+
+    /**
+     * Returns the time, in milliseconds, during which cached metadata is
+     * returned without revalidating it with SCS. Defaults to 5 seconds.
+     *
+     * @return The time to live of cached metadata, in milliseconds.
+     *
+     * @see #getMetadataCacheSize()
+     */
+    public long getMetadataCacheTtl() {
+        return metadataCacheTtl;
+    }
+
+    /**
+     * Configures the time, in milliseconds, during which cached metadata is
+     * returned without revalidating it with SCS; 0 revalidates it on every
+     * call.
+     *
+     * @param metadataCacheTtl
+     *            The time to live of cached metadata, in milliseconds.
+     *
+     * @see #getMetadataCacheSize()
+     */
+    public void setMetadataCacheTtl(long metadataCacheTtl) {
+        this.metadataCacheTtl = metadataCacheTtl;
+    }
+
+    /**
+     * Configures the time, in milliseconds, during which cached metadata is
+     * returned without revalidating it with SCS; 0 revalidates it on every
+     * call.
+     *
+     * @param metadataCacheTtl
+     *            The time to live of cached metadata, in milliseconds.
+     *
+     * @return The updated S3ClientOptions object with the new setting.
+     *
+     * @see #getMetadataCacheSize()
+     */
+    public S3ClientOptions withMetadataCacheTtl(long metadataCacheTtl) {
+        setMetadataCacheTtl(metadataCacheTtl);
+        return this;
+    }
+
+}
@@ -27,6 +27,7 @@ import com.sinacloud.scs.SCSServiceException;
 import com.sinacloud.scs.services.scs.model.AccessControlList;
 import com.sinacloud.scs.services.scs.model.Bucket;
 import com.sinacloud.scs.services.scs.model.BucketInfo;
+import com.sinacloud.scs.services.scs.model.BulkOperationOptions;
 import com.sinacloud.scs.services.scs.model.CannedAccessControlList;
 import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
 import com.sinacloud.scs.services.scs.model.CopyObjectRequest;
@@ -39,6 +40,7 @@ import com.sinacloud.scs.services.scs.model.GetObjectMetadataRequest;
 import com.sinacloud.scs.services.scs.model.GetObjectRequest;
 import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
 import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadResult;
+import com.sinacloud.scs.services.scs.model.KeyOperationResult;
 import com.sinacloud.scs.services.scs.model.ListBucketsRequest;
 import com.sinacloud.scs.services.scs.model.ListObjectsRequest;
 import com.sinacloud.scs.services.scs.model.ListPartsRequest;
@@ -47,6 +49,7 @@ import com.sinacloud.scs.services.scs.model.ObjectListing;
 import com.sinacloud.scs.services.scs.model.ObjectMetadata;
 import com.sinacloud.scs.services.scs.model.PartListing;
 import com.sinacloud.scs.services.scs.model.Permission;
+import com.sinacloud.scs.services.scs.model.PutObjectRelaxRequest;
 import com.sinacloud.scs.services.scs.model.PutObjectRequest;
 import com.sinacloud.scs.services.scs.model.PutObjectResult;
 import com.sinacloud.scs.services.scs.model.S3Object;
@@ -893,6 +896,56 @@ public interface SCS {
     public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest)
             throws SCSClientException, SCSServiceException;
 
+    /**
+     * <p>
+     * Gets the metadata of the objects with the given keys in the specified
+     * bucket, sending the requests concurrently, with the default
+     * {@link BulkOperationOptions}.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the bucket containing the objects.
+     * @param keys
+     *            The keys of the objects whose metadata is being retrieved.
+     *
+     * @return The metadata, or the error, for each key, in the order the
+     *         requests complete.
+     *
+     * @see SCS#getObjectMetadata(String, Iterable, BulkOperationOptions)
+     */
+    public Iterable<KeyOperationResult<ObjectMetadata>> getObjectMetadata(String bucketName, Iterable<String> keys);
+
+    /**
+     * <p>
+     * Gets the metadata of the objects with the given keys in the specified
+     * bucket, sending the requests concurrently.
+     * </p>
+     * <p>
+     * Works like {@link #deleteObjects(String, Iterable, BulkOperationOptions)}:
+     * the requests start right away and run within the concurrency and rate
+     * limits of the options, and the results come back as they complete. A missing object is reported with an
+     * {@link SCSServiceException} with a 404 status code in the result of
+     * its key.
+     * </p>
+     * <p>
+     * Unlike deletions, every key has a result, and no more than twice the
+     * maximum concurrency of the options are kept until they are iterated:
+     * the requests wait for the results to be consumed.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the bucket containing the objects.
+     * @param keys
+     *            The keys of the objects whose metadata is being retrieved.
+     * @param options
+     *            The concurrency and rate limit of the requests.
+     *
+     * @return The metadata, or the error, for each key, in the order the
+     *         requests complete.
+     */
+    public Iterable<KeyOperationResult<ObjectMetadata>> getObjectMetadata(String bucketName, Iterable<String> keys,
+            BulkOperationOptions options);
+
     /**
      * <p>
      * Gets the object stored in SCS under the specified bucket and
@@ -1309,6 +1362,29 @@ public interface SCS {
      */
     public PutObjectResult putObjectRelax(String bucketName, String key, String fileSha1, long fileLength)
     		throws SCSClientException, SCSServiceException;
+
+    /**
+     * 秒传接口，文件的sha1值由客户端计算
+     * <p>
+     * Computes the SHA-1 of the given file, reading it through a memory map,
+     * and stores the object if SCS already holds content with the same SHA-1
+     * and length.
+     *
+     * @param bucketName
+     * @param key
+     * @param file		要秒传的文件
+     * @return
+     */
+    public PutObjectResult putObjectRelax(String bucketName, String key, File file)
+            throws SCSClientException, SCSServiceException;
+
+    /**
+     * 秒传接口
+     * @param putObjectRelaxRequest	秒传请求对象
+     * @return
+     */
+    public PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest)
+            throws SCSClientException, SCSServiceException;
     
     /**
      * <p>
@@ -1599,6 +1675,56 @@ public interface SCS {
     public void deleteObject(DeleteObjectRequest deleteObjectRequest)
         throws SCSClientException, SCSServiceException;
 
+    /**
+     * <p>
+     * Deletes the objects with the given keys in the specified bucket, sending
+     * the requests concurrently, with the default
+     * {@link BulkOperationOptions}.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the SCS bucket containing the objects to
+     *            delete.
+     * @param keys
+     *            The keys of the objects to delete.
+     *
+     * @return The failed deletions, in the order they complete.
+     *
+     * @see SCS#deleteObjects(String, Iterable, BulkOperationOptions)
+     */
+    public Iterable<KeyOperationResult<Void>> deleteObjects(String bucketName, Iterable<String> keys);
+
+    /**
+     * <p>
+     * Deletes the objects with the given keys in the specified bucket, sending
+     * the requests concurrently.
+     * </p>
+     * <p>
+     * The deletions start right away and run to completion whether or not
+     * the returned results, which are handed back as the deletions complete,
+     * are iterated: keys are taken from the given iterable as earlier
+     * deletions finish, so that no more than the maximum concurrency of the
+     * options (and of the connection pool of the client) is in flight, and
+     * no faster than their rate limit. A failed deletion is reported in the
+     * result of its key, and doesn't stop the others; successful deletions
+     * aren't reported. The results can be iterated once. No more than twice
+     * the maximum concurrency of the options are kept until they are
+     * iterated, after which the deletions wait for them to be consumed.
+     * </p>
+     *
+     * @param bucketName
+     *            The name of the SCS bucket containing the objects to
+     *            delete.
+     * @param keys
+     *            The keys of the objects to delete.
+     * @param options
+     *            The concurrency and rate limit of the requests.
+     *
+     * @return The failed deletions, in the order they complete.
+     */
+    public Iterable<KeyOperationResult<Void>> deleteObjects(String bucketName, Iterable<String> keys,
+            BulkOperationOptions options);
+
     /**
      * <p>
      * Returns a pre-signed URL for accessing an SCS resource.
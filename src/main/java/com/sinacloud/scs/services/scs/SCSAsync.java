@@ -0,0 +1,132 @@
+package com.sinacloud.scs.services.scs;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.CopyObjectRequest;
+import com.sinacloud.scs.services.scs.model.DeleteObjectRequest;
+import com.sinacloud.scs.services.scs.model.GetObjectMetadataRequest;
+import com.sinacloud.scs.services.scs.model.GetObjectRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadResult;
+import com.sinacloud.scs.services.scs.model.ListObjectsRequest;
+import com.sinacloud.scs.services.scs.model.ListPartsRequest;
+import com.sinacloud.scs.services.scs.model.ObjectListing;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.PartListing;
+import com.sinacloud.scs.services.scs.model.PutObjectRequest;
+import com.sinacloud.scs.services.scs.model.PutObjectResult;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.model.UploadPartRequest;
+import com.sinacloud.scs.services.scs.model.UploadPartResult;
+
+/**
+ * Interface for accessing SCS asynchronously. Each asynchronous method
+ * returns a {@link CompletableFuture} which is completed with the result of
+ * the equivalent synchronous {@link SCS} call once it has run on the
+ * client's {@link ExecutorService}, or completed exceptionally with the
+ * {@link com.sinacloud.scs.SCSClientException} or
+ * {@link com.sinacloud.scs.SCSServiceException} it raised.
+ * <p>
+ * The futures are never completed on the calling thread, so dependent
+ * stages attached with the non-async <code>then*</code> methods run on the
+ * client's executor; callers chaining slow work should use the
+ * <code>then*Async</code> variants with their own executor.
+ */
+public interface SCSAsync extends SCS {
+
+    /**
+     * Returns the executor service used to run the asynchronous requests of
+     * this client.
+     */
+    public ExecutorService getExecutorService();
+
+    /**
+     * Asynchronously lists the objects of a bucket.
+     *
+     * @see SCS#listObjects(ListObjectsRequest)
+     */
+    public CompletableFuture<ObjectListing> listObjectsAsync(ListObjectsRequest listObjectsRequest);
+
+    /**
+     * Asynchronously fetches the next page of a truncated object listing.
+     *
+     * @see SCS#listNextBatchOfObjects(ObjectListing)
+     */
+    public CompletableFuture<ObjectListing> listNextBatchOfObjectsAsync(ObjectListing previousObjectListing);
+
+    /**
+     * Asynchronously gets the metadata of an object.
+     *
+     * @see SCS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public CompletableFuture<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest getObjectMetadataRequest);
+
+    /**
+     * Asynchronously gets an object. The future completes as soon as the
+     * response headers are available; the content of the returned
+     * {@link S3Object} is still streamed from the open HTTP connection, and
+     * must be read and closed by the caller.
+     *
+     * @see SCS#getObject(GetObjectRequest)
+     */
+    public CompletableFuture<S3Object> getObjectAsync(GetObjectRequest getObjectRequest);
+
+    /**
+     * Asynchronously downloads an object to the given file.
+     *
+     * @see SCS#getObject(GetObjectRequest, File)
+     */
+    public CompletableFuture<ObjectMetadata> getObjectAsync(GetObjectRequest getObjectRequest, File destinationFile);
+
+    /**
+     * Asynchronously uploads an object.
+     *
+     * @see SCS#putObject(PutObjectRequest)
+     */
+    public CompletableFuture<PutObjectResult> putObjectAsync(PutObjectRequest putObjectRequest);
+
+    /**
+     * Asynchronously copies an object.
+     *
+     * @see SCS#copyObject(CopyObjectRequest)
+     */
+    public CompletableFuture<Void> copyObjectAsync(CopyObjectRequest copyObjectRequest);
+
+    /**
+     * Asynchronously deletes an object.
+     *
+     * @see SCS#deleteObject(DeleteObjectRequest)
+     */
+    public CompletableFuture<Void> deleteObjectAsync(DeleteObjectRequest deleteObjectRequest);
+
+    /**
+     * Asynchronously initiates a multipart upload.
+     *
+     * @see SCS#initiateMultipartUpload(InitiateMultipartUploadRequest)
+     */
+    public CompletableFuture<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request);
+
+    /**
+     * Asynchronously uploads a part of a multipart upload.
+     *
+     * @see SCS#uploadPart(UploadPartRequest)
+     */
+    public CompletableFuture<UploadPartResult> uploadPartAsync(UploadPartRequest request);
+
+    /**
+     * Asynchronously lists the parts uploaded so far for a multipart upload.
+     *
+     * @see SCS#listParts(ListPartsRequest)
+     */
+    public CompletableFuture<PartListing> listPartsAsync(ListPartsRequest request);
+
+    /**
+     * Asynchronously completes a multipart upload.
+     *
+     * @see SCS#completeMultipartUpload(CompleteMultipartUploadRequest)
+     */
+    public CompletableFuture<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request);
+}
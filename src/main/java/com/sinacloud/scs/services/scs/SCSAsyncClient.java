@@ -0,0 +1,307 @@
+package com.sinacloud.scs.services.scs;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.auth.AWSCredentials;
+import com.sinacloud.scs.auth.AWSCredentialsProvider;
+import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.CopyObjectRequest;
+import com.sinacloud.scs.services.scs.model.DeleteObjectRequest;
+import com.sinacloud.scs.services.scs.model.GetObjectMetadataRequest;
+import com.sinacloud.scs.services.scs.model.GetObjectRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadResult;
+import com.sinacloud.scs.services.scs.model.ListObjectsRequest;
+import com.sinacloud.scs.services.scs.model.ListPartsRequest;
+import com.sinacloud.scs.services.scs.model.ObjectListing;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.PartListing;
+import com.sinacloud.scs.services.scs.model.PutObjectRequest;
+import com.sinacloud.scs.services.scs.model.PutObjectResult;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.model.UploadPartRequest;
+import com.sinacloud.scs.services.scs.model.UploadPartResult;
+
+/**
+ * Asynchronous client for accessing SCS. Every asynchronous operation runs
+ * the equivalent blocking {@link SCSClient} call on the client's
+ * {@link ExecutorService} and returns a {@link CompletableFuture} for its
+ * result, so callers can issue many requests without dedicating a thread of
+ * their own to each one.
+ * <p>
+ * By default a fixed pool of {@link #DEFAULT_THREAD_POOL_SIZE} threads is
+ * used, which caps the number of requests in flight. On Java 21 and later,
+ * {@link #newVirtualThreadPerTaskExecutor()} can be passed to the
+ * constructors instead so that every request gets its own virtual thread;
+ * the number of requests actually on the wire is then bounded only by the
+ * HTTP connection pool ({@link ClientConfiguration#setMaxConnections(int)}).
+ * <p>
+ * The blocking operations inherited from {@link SCSClient} remain available
+ * and share the connection pool with the asynchronous ones.
+ */
+public class SCSAsyncClient extends SCSClient implements SCSAsync {
+
+    /** The default number of threads used to run asynchronous requests. */
+    public static final int DEFAULT_THREAD_POOL_SIZE = ClientConfiguration.DEFAULT_MAX_CONNECTIONS;
+
+    /** Executor service for executing asynchronous requests. */
+    private final ExecutorService executorService;
+
+    /**
+     * Constructs a new asynchronous client, using the default credentials
+     * provider chain and a fixed pool of {@link #DEFAULT_THREAD_POOL_SIZE}
+     * threads.
+     *
+     * @see SCSClient#SCSClient(ClientConfiguration)
+     */
+    public SCSAsyncClient() {
+        this(new ClientConfiguration());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified client
+     * configuration and the default credentials provider chain. The thread
+     * pool is sized after {@link ClientConfiguration#getMaxConnections()}.
+     */
+    public SCSAsyncClient(ClientConfiguration clientConfiguration) {
+        super(clientConfiguration);
+        this.executorService = Executors.newFixedThreadPool(clientConfiguration.getMaxConnections());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified AWS credentials
+     * and a fixed pool of {@link #DEFAULT_THREAD_POOL_SIZE} threads.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials) {
+        this(awsCredentials, Executors.newFixedThreadPool(DEFAULT_THREAD_POOL_SIZE));
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified AWS credentials
+     * and executor service.
+     *
+     * @param awsCredentials
+     *            The AWS credentials to use when making requests with this
+     *            client.
+     * @param executorService
+     *            The executor service by which all asynchronous requests will
+     *            be executed.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials, ExecutorService executorService) {
+        this(awsCredentials, new ClientConfiguration(), executorService);
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified AWS
+     * credentials, client configuration and executor service.
+     *
+     * @param awsCredentials
+     *            The AWS credentials to use when making requests with this
+     *            client.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service by which all asynchronous requests will
+     *            be executed.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials,
+            ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        super(awsCredentials, clientConfiguration);
+        this.executorService = checkExecutorService(executorService);
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified AWS
+     * credentials provider, client configuration and executor service.
+     *
+     * @param credentialsProvider
+     *            The AWS credentials provider which will provide credentials
+     *            to authenticate requests.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service by which all asynchronous requests will
+     *            be executed.
+     */
+    public SCSAsyncClient(AWSCredentialsProvider credentialsProvider,
+            ClientConfiguration clientConfiguration, ExecutorService executorService) {
+        super(credentialsProvider, clientConfiguration);
+        this.executorService = checkExecutorService(executorService);
+    }
+
+    private static ExecutorService checkExecutorService(ExecutorService executorService) {
+        if (executorService == null) {
+            throw new IllegalArgumentException("The executor service must be specified");
+        }
+        return executorService;
+    }
+
+    /**
+     * Returns a new executor which starts a new virtual thread for each
+     * task, suitable for very large numbers of concurrent, mostly idle
+     * requests (ex: thousands of small object operations in flight).
+     *
+     * @throws UnsupportedOperationException
+     *             If the running JVM does not support virtual threads
+     *             (Java 20 and earlier).
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new UnsupportedOperationException(
+                    "Virtual threads are not supported by this JVM: " + System.getProperty("java.version"));
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Unable to create a virtual thread executor", e);
+        }
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Shuts down the client, releasing all managed resources. This includes
+     * forcibly terminating all pending asynchronous requests. Callers who
+     * wish to give pending requests a chance to complete should call
+     * getExecutorService().shutdown() before calling this method.
+     */
+    @Override
+    public void shutdown() {
+        executorService.shutdownNow();
+        super.shutdown();
+    }
+
+    /**
+     * Runs the given call on the executor service, completing the returned
+     * future with its result or failure.
+     */
+    private <T> CompletableFuture<T> submit(final Callable<T> callable) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        try {
+            executorService.execute(new Runnable() {
+                public void run() {
+                    if (future.isDone()) return; // cancelled before it started
+                    try {
+                        future.complete(callable.call());
+                    } catch (Throwable t) {
+                        future.completeExceptionally(t);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    public CompletableFuture<ObjectListing> listObjectsAsync(final ListObjectsRequest listObjectsRequest) {
+        return submit(new Callable<ObjectListing>() {
+            public ObjectListing call() throws Exception {
+                return listObjects(listObjectsRequest);
+            }
+        });
+    }
+
+    public CompletableFuture<ObjectListing> listNextBatchOfObjectsAsync(final ObjectListing previousObjectListing) {
+        return submit(new Callable<ObjectListing>() {
+            public ObjectListing call() throws Exception {
+                return listNextBatchOfObjects(previousObjectListing);
+            }
+        });
+    }
+
+    public CompletableFuture<ObjectMetadata> getObjectMetadataAsync(final GetObjectMetadataRequest getObjectMetadataRequest) {
+        return submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return getObjectMetadata(getObjectMetadataRequest);
+            }
+        });
+    }
+
+    public CompletableFuture<S3Object> getObjectAsync(final GetObjectRequest getObjectRequest) {
+        return submit(new Callable<S3Object>() {
+            public S3Object call() throws Exception {
+                return getObject(getObjectRequest);
+            }
+        });
+    }
+
+    public CompletableFuture<ObjectMetadata> getObjectAsync(final GetObjectRequest getObjectRequest,
+            final File destinationFile) {
+        return submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return getObject(getObjectRequest, destinationFile);
+            }
+        });
+    }
+
+    public CompletableFuture<PutObjectResult> putObjectAsync(final PutObjectRequest putObjectRequest) {
+        return submit(new Callable<PutObjectResult>() {
+            public PutObjectResult call() throws Exception {
+                return putObject(putObjectRequest);
+            }
+        });
+    }
+
+    public CompletableFuture<Void> copyObjectAsync(final CopyObjectRequest copyObjectRequest) {
+        return submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                copyObject(copyObjectRequest);
+                return null;
+            }
+        });
+    }
+
+    public CompletableFuture<Void> deleteObjectAsync(final DeleteObjectRequest deleteObjectRequest) {
+        return submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                deleteObject(deleteObjectRequest);
+                return null;
+            }
+        });
+    }
+
+    public CompletableFuture<InitiateMultipartUploadResult> initiateMultipartUploadAsync(
+            final InitiateMultipartUploadRequest request) {
+        return submit(new Callable<InitiateMultipartUploadResult>() {
+            public InitiateMultipartUploadResult call() throws Exception {
+                return initiateMultipartUpload(request);
+            }
+        });
+    }
+
+    public CompletableFuture<UploadPartResult> uploadPartAsync(final UploadPartRequest request) {
+        return submit(new Callable<UploadPartResult>() {
+            public UploadPartResult call() throws Exception {
+                return uploadPart(request);
+            }
+        });
+    }
+
+    public CompletableFuture<PartListing> listPartsAsync(final ListPartsRequest request) {
+        return submit(new Callable<PartListing>() {
+            public PartListing call() throws Exception {
+                return listParts(request);
+            }
+        });
+    }
+
+    public CompletableFuture<ObjectMetadata> completeMultipartUploadAsync(final CompleteMultipartUploadRequest request) {
+        return submit(new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return completeMultipartUpload(request);
+            }
+        });
+    }
+}
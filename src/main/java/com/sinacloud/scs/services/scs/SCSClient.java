@@ -16,8 +16,8 @@ package com.sinacloud.scs.services.scs;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -25,6 +25,7 @@ import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -58,12 +59,15 @@ import com.sinacloud.scs.event.ProgressReportingInputStream;
 import com.sinacloud.scs.http.ExecutionContext;
 import com.sinacloud.scs.http.HttpMethodName;
 import com.sinacloud.scs.http.HttpResponseHandler;
+import com.sinacloud.scs.internal.FileRegionInputStream;
 import com.sinacloud.scs.internal.StaticCredentialsProvider;
 import com.sinacloud.scs.services.scs.internal.BucketNameUtils;
+import com.sinacloud.scs.services.scs.internal.BulkKeyOperation;
 import com.sinacloud.scs.services.scs.internal.Constants;
 import com.sinacloud.scs.services.scs.internal.InputSubstream;
 import com.sinacloud.scs.services.scs.internal.MD5DigestCalculatingInputStream;
 import com.sinacloud.scs.services.scs.internal.Mimetypes;
+import com.sinacloud.scs.services.scs.internal.ObjectMetadataCache;
 import com.sinacloud.scs.services.scs.internal.RepeatableFileInputStream;
 import com.sinacloud.scs.services.scs.internal.ResponseHeaderHandlerChain;
 import com.sinacloud.scs.services.scs.internal.S3ErrorResponseHandler;
@@ -77,6 +81,7 @@ import com.sinacloud.scs.services.scs.internal.ServiceUtils;
 import com.sinacloud.scs.services.scs.model.AccessControlList;
 import com.sinacloud.scs.services.scs.model.Bucket;
 import com.sinacloud.scs.services.scs.model.BucketInfo;
+import com.sinacloud.scs.services.scs.model.BulkOperationOptions;
 import com.sinacloud.scs.services.scs.model.CannedAccessControlList;
 import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
 import com.sinacloud.scs.services.scs.model.CopyObjectRequest;
@@ -91,6 +96,8 @@ import com.sinacloud.scs.services.scs.model.GetObjectMetadataRequest;
 import com.sinacloud.scs.services.scs.model.GetObjectRequest;
 import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
 import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadResult;
+import com.sinacloud.scs.services.scs.model.IntegrityCheckMode;
+import com.sinacloud.scs.services.scs.model.KeyOperationResult;
 import com.sinacloud.scs.services.scs.model.ListBucketsRequest;
 import com.sinacloud.scs.services.scs.model.ListObjectsRequest;
 import com.sinacloud.scs.services.scs.model.ListPartsRequest;
@@ -115,10 +122,10 @@ import com.sinacloud.scs.services.scs.model.transform.RequestJsonFactory;
 import com.sinacloud.scs.services.scs.model.transform.Unmarshallers;
 import com.sinacloud.scs.transform.Unmarshaller;
 import com.sinacloud.scs.util.BinaryUtils;
+import com.sinacloud.scs.util.ByteBufferPool;
 import com.sinacloud.scs.util.ContentLengthValidationInputStream;
-import com.sinacloud.scs.util.DateUtils;
 import com.sinacloud.scs.util.HttpUtils;
-import com.sinacloud.scs.util.Md5Utils;
+import com.sinacloud.scs.util.FileChecksumCalculator;
 
 /**
  * 
@@ -138,6 +145,9 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     /** S3 specific client configuration options */
     private S3ClientOptions clientOptions = new S3ClientOptions();
 
+    /** Cache of object metadata, or null if the client options disable it */
+    private volatile ObjectMetadataCache metadataCache;
+
     /** Provider for AWS credentials. */
     private AWSCredentialsProvider awsCredentialsProvider;
 
@@ -260,10 +270,6 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         init();
     }
 
-    protected final ExecutionContext createExecutionContext(SCSWebServiceRequest req) {
-        return new ExecutionContext();
-    }
-
     /**
      * Constructs a new client using the specified client configuration to
      * access Amazon S3. A credentials provider chain will be used that searches
@@ -330,6 +336,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      */
     public void setS3ClientOptions(S3ClientOptions clientOptions) {
       this.clientOptions = new S3ClientOptions(clientOptions);
+      this.metadataCache = this.clientOptions.getMetadataCacheSize() > 0
+              ? new ObjectMetadataCache(this.clientOptions.getMetadataCacheSize(),
+                      this.clientOptions.getMetadataCacheTtl())
+              : null;
     }
 
     /* (non-Javadoc)
@@ -590,6 +600,28 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             throws SCSClientException, SCSServiceException {
         return getObjectMetadata(new GetObjectMetadataRequest(bucketName, key));
     }
+
+    /* (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#getObjectMetadata(java.lang.String, java.lang.Iterable)
+     */
+    public Iterable<KeyOperationResult<ObjectMetadata>> getObjectMetadata(String bucketName, Iterable<String> keys) {
+        return getObjectMetadata(bucketName, keys, new BulkOperationOptions());
+    }
+
+    /* (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#getObjectMetadata(java.lang.String, java.lang.Iterable, com.sinacloud.scs.services.scs.model.BulkOperationOptions)
+     */
+    public Iterable<KeyOperationResult<ObjectMetadata>> getObjectMetadata(final String bucketName,
+            Iterable<String> keys, BulkOperationOptions options) {
+        assertParameterNotNull(bucketName, "The bucket name must be specified when requesting objects' metadata");
+        assertParameterNotNull(keys, "The keys must be specified when requesting objects' metadata");
+        return new BulkKeyOperation<ObjectMetadata>(keys, boundedOptions(options),
+                new BulkKeyOperation.KeyOperation<ObjectMetadata>() {
+                    public ObjectMetadata execute(String key) {
+                        return getObjectMetadata(bucketName, key);
+                    }
+                });
+    }
     
     /*
      * (non-Javadoc)
@@ -632,7 +664,33 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         Request<GetObjectMetadataRequest> request = createRequest(bucketName, key, getObjectMetadataRequest, HttpMethodName.HEAD);
         if (versionId != null) request.addParameter("versionId", versionId);
 
-        return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+        ObjectMetadataCache cache = metadataCache;
+        if (cache == null || versionId != null) {
+            return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+        }
+
+        ObjectMetadataCache.Entry cached = cache.get(bucketName, key);
+        if (cached != null) {
+            if (cached.isFresh()) return cached.getMetadata();
+            if (cached.getETag() != null) {
+                addStringListHeader(request, Headers.GET_OBJECT_IF_NONE_MATCH,
+                        Collections.singletonList(cached.getETag()));
+            }
+        }
+        long generation = cache.getGeneration(bucketName, key);
+        try {
+            ObjectMetadata metadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
+            cache.put(bucketName, key, metadata, generation);
+            return metadata;
+        } catch (SCSServiceException ase) {
+            // Not modified since it was cached
+            if (ase.getStatusCode() == 304 && cached != null) {
+                cache.revalidated(bucketName, key, cached, generation);
+                return cached.getMetadata();
+            }
+            if (ase.getStatusCode() == 404) cache.invalidate(bucketName, key);
+            throw ase;
+        }
     }
 
     /* (non-Javadoc)
@@ -743,7 +801,9 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.STARTED_EVENT_CODE);
             }
 
-            if (getObjectRequest.getRange() == null && System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") == null) {
+            if (getObjectRequest.getRange() == null
+                    && getObjectRequest.getIntegrityCheckMode() == IntegrityCheckMode.OnTheFly
+                    && System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") == null) {
                 byte[] serverSideHash = null;
                 String etag = s3Object.getObjectMetadata().getETag();
                 if (etag != null && ServiceUtils.isMultipartUploadETag(etag) == false) {
@@ -806,7 +866,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 return getObjectRequest.getRange()== null;
             }
 
-        });
+        }, getObjectRequest.getIntegrityCheckMode());
         // getObject can return null if constraints were specified but not met
         if (s3Object == null) return null;
 
@@ -866,6 +926,22 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     	return putObjectRelax(new PutObjectRelaxRequest(bucketName, key, fileSha1, fileLength));
     }
 
+    /*
+     * (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#putObjectRelax(java.lang.String, java.lang.String, java.io.File)
+     */
+    public PutObjectResult putObjectRelax(String bucketName, String key, File file)
+            throws SCSClientException, SCSServiceException {
+        assertParameterNotNull(file, "The file parameter must be specified when uploading with relax");
+        byte[] sha1;
+        try {
+            sha1 = FileChecksumCalculator.getDefault().calculateSha1(file);
+        } catch (IOException e) {
+            throw new SCSClientException("Unable to calculate SHA-1 hash: " + e.getMessage(), e);
+        }
+        return putObjectRelax(new PutObjectRelaxRequest(bucketName, key, BinaryUtils.toHex(sha1), file.length()));
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#putObject(java.lang.String, java.lang.String, java.io.InputStream, com.amazonaws.services.s3.model.S3ObjectMetadata)
      */
@@ -874,7 +950,12 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         return putObject(new PutObjectRequest(bucketName, key, input, metadata));
     }
     
-    private PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest){
+    /*
+     * (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#putObjectRelax(com.sinacloud.scs.services.scs.model.PutObjectRelaxRequest)
+     */
+    public PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest)
+            throws SCSClientException, SCSServiceException {
         assertParameterNotNull(putObjectRelaxRequest, "The putObjectRelaxRequest parameter must be specified when uploading with relax");
         
         String bucketName = putObjectRelaxRequest.getBucketName();
@@ -977,20 +1058,26 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            FileInputStream fileInputStream = null;
-            try {
-                fileInputStream = new FileInputStream(file);
-                byte[] md5Hash = Md5Utils.computeMD5Hash(fileInputStream);
-                metadata.setContentMD5(BinaryUtils.toBase64(md5Hash));
-            } catch (Exception e) {
-                throw new SCSClientException(
-                        "Unable to calculate MD5 hash: " + e.getMessage(), e);
-            } finally {
-                try {fileInputStream.close();} catch (Exception e) {}
+            /*
+             * Unless told otherwise, read the file once up front so that the
+             * service can check the Content-MD5 before storing anything.
+             * Otherwise, the MD5 is calculated below while the file is sent,
+             * and verified against the returned ETag.
+             */
+            if (clientOptions.isPrecomputeFileMd5() && metadata.getContentMD5() == null) {
+                metadata.setContentMD5(computeFileRegionMd5(file, 0, file.length()));
             }
 
+            /*
+             * With the MD5 known up front, nothing needs to look at the bytes
+             * while they are sent, so the file can go straight to the socket.
+             */
             try {
-                input = new RepeatableFileInputStream(file);
+                if (metadata.getContentMD5() != null) {
+                    input = new FileRegionInputStream(file, 0, file.length(), progressListenerCallbackExecutor);
+                } else {
+                    input = new RepeatableFileInputStream(file);
+                }
             } catch (FileNotFoundException fnfe) {
                 throw new SCSClientException("Unable to find file to upload", fnfe);
             }
@@ -1031,7 +1118,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         }
 
         if (progressListenerCallbackExecutor != null) {
-            input = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
+            // File regions report their own progress
+            if (!(input instanceof FileRegionInputStream)) {
+                input = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
+            }
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.STARTED_EVENT_CODE);
         }
 
@@ -1046,7 +1136,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 }
             }
 
-            input = new RepeatableInputStream(input, streamBufferSize);
+            // Pooled buffers are on the heap unless asked otherwise
+            ByteBufferPool bufferPool = Boolean.getBoolean("com.amazonaws.sdk.s3.directStreamBuffers")
+                    ? ByteBufferPool.getDirectPool() : ByteBufferPool.getHeapPool();
+            input = new RepeatableInputStream(input, streamBufferSize, bufferPool);
         }
 
         MD5DigestCalculatingInputStream md5DigestStream = null;
@@ -1202,6 +1295,29 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         deleteObject(new DeleteObjectRequest(bucketName, key));
     }
 
+    /* (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#deleteObjects(java.lang.String, java.lang.Iterable)
+     */
+    public Iterable<KeyOperationResult<Void>> deleteObjects(String bucketName, Iterable<String> keys) {
+        return deleteObjects(bucketName, keys, new BulkOperationOptions());
+    }
+
+    /* (non-Javadoc)
+     * @see com.sinacloud.scs.services.scs.SCS#deleteObjects(java.lang.String, java.lang.Iterable, com.sinacloud.scs.services.scs.model.BulkOperationOptions)
+     */
+    public Iterable<KeyOperationResult<Void>> deleteObjects(final String bucketName, Iterable<String> keys,
+            BulkOperationOptions options) {
+        assertParameterNotNull(bucketName, "The bucket name must be specified when deleting objects");
+        assertParameterNotNull(keys, "The keys must be specified when deleting objects");
+        // Only the failures are kept, so that ignoring the results doesn't stall the deletions
+        return new BulkKeyOperation<Void>(keys, boundedOptions(options), new BulkKeyOperation.KeyOperation<Void>() {
+            public Void execute(String key) {
+                deleteObject(bucketName, key);
+                return null;
+            }
+        }, false);
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#deleteObject(com.amazonaws.services.s3.DeleteObjectRequest)
      */
@@ -1425,18 +1541,34 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         request.addParameter("uploadId", uploadId);
         request.addParameter("partNumber", Integer.toString(partNumber));
 
-        if (uploadPartRequest.getMd5Digest() != null)
-            request.addHeader(Headers.CONTENT_MD5, uploadPartRequest.getMd5Digest());
-
-        request.addHeader(Headers.CONTENT_LENGTH, Long.toString(partSize));
+        /*
+         * This is compatible with progress listener set by either the legacy
+         * method UploadPartRequest#setProgressListener or the new method
+         * UploadPartRequest#setGeneralProgressListener.
+         */
+        ProgressListener progressListener = uploadPartRequest.getGeneralProgressListener();
+        ProgressListenerCallbackExecutor progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
+                .wrapListener(progressListener);
 
+        String md5Digest = uploadPartRequest.getMd5Digest();
         InputStream inputStream = null;
         if (uploadPartRequest.getInputStream() != null) {
             inputStream = uploadPartRequest.getInputStream();
         } else if (uploadPartRequest.getFile() != null) {
+            File file = uploadPartRequest.getFile();
+            long fileOffset = uploadPartRequest.getFileOffset();
             try {
-                inputStream = new InputSubstream(new RepeatableFileInputStream(uploadPartRequest.getFile()),
-                        uploadPartRequest.getFileOffset(), partSize, true);
+                if (md5Digest == null && clientOptions.isPrecomputeFileMd5()) {
+                    md5Digest = computeFileRegionMd5(file, fileOffset, partSize);
+                }
+                if (md5Digest != null) {
+                    // Nothing to compute on the way: send the part straight from the file
+                    inputStream = new FileRegionInputStream(file, fileOffset, partSize,
+                            progressListenerCallbackExecutor);
+                } else {
+                    inputStream = new InputSubstream(new RepeatableFileInputStream(file),
+                            fileOffset, partSize, true);
+                }
             } catch (FileNotFoundException e) {
                 throw new IllegalArgumentException("The specified file doesn't exist", e);
             }
@@ -1444,8 +1576,13 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             throw new IllegalArgumentException("A File or InputStream must be specified when uploading part");
         }
 
+        if (md5Digest != null)
+            request.addHeader(Headers.CONTENT_MD5, md5Digest);
+
+        request.addHeader(Headers.CONTENT_LENGTH, Long.toString(partSize));
+
         MD5DigestCalculatingInputStream md5DigestStream = null;
-        if (uploadPartRequest.getMd5Digest() == null) {
+        if (md5Digest == null) {
             /*
              * If the user hasn't set the content MD5, then we don't want to
              * buffer the whole stream in memory just to calculate it. Instead,
@@ -1461,17 +1598,10 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             }
         }
 
-        /*
-         * This is compatible with progress listener set by either the legacy
-         * method UploadPartRequest#setProgressListener or the new method
-         * UploadPartRequest#setGeneralProgressListener.
-         */
-        ProgressListener progressListener = uploadPartRequest.getGeneralProgressListener();
-        ProgressListenerCallbackExecutor progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
-                .wrapListener(progressListener);
-
         if (progressListenerCallbackExecutor != null) {
-            inputStream = new ProgressReportingInputStream(inputStream, progressListenerCallbackExecutor);
+            if (!(inputStream instanceof FileRegionInputStream)) {
+                inputStream = new ProgressReportingInputStream(inputStream, progressListenerCallbackExecutor);
+            }
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.PART_STARTED_EVENT_CODE);
         }
 
@@ -1552,6 +1682,30 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         progressListenerCallbackExecutor.progressChanged(event);
     }
 
+    /**
+     * Returns the given bulk operation options with their concurrency
+     * bounded by the size of the connection pool, since requests beyond it
+     * would only wait for a connection.
+     */
+    private BulkOperationOptions boundedOptions(BulkOperationOptions options) {
+        assertParameterNotNull(options, "The bulk operation options must be specified");
+        return new BulkOperationOptions()
+                .withMaxConcurrency(Math.max(1, Math.min(options.getMaxConcurrency(),
+                        clientConfiguration.getMaxConnections())))
+                .withMaxRequestsPerSecond(options.getMaxRequestsPerSecond());
+    }
+
+    /**
+     * Computes the base64-encoded MD5 of the given range of a file.
+     */
+    private String computeFileRegionMd5(File file, long offset, long length) {
+        try {
+            return BinaryUtils.toBase64(FileChecksumCalculator.getDefault().calculateMd5(file, offset, length));
+        } catch (IOException e) {
+            throw new SCSClientException("Unable to calculate MD5 hash: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * <p>
      * Gets the Amazon S3 {@link AccessControlList} (ACL) for the specified resource.
@@ -1761,7 +1915,7 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
 
         Date httpExpiresDate = metadata.getHttpExpiresDate();
         if (httpExpiresDate != null) {
-            request.addHeader(Headers.EXPIRES, new DateUtils().formatRfc822Date(httpExpiresDate));
+            request.addHeader(Headers.EXPIRES, ServiceUtils.formatRfc822Date(httpExpiresDate));
         }
 
         Map<String, String> userMetadata = metadata.getUserMetadata();
@@ -2163,6 +2317,12 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                     errorResponseHandler, executionContext);
             return response.getAwsResponse();
          } finally {
+            // Any write to an object, even a failed one, may change its metadata
+            ObjectMetadataCache cache = metadataCache;
+            if (cache != null && key != null && request.getHttpMethod() != HttpMethodName.GET
+                    && request.getHttpMethod() != HttpMethodName.HEAD) {
+                cache.invalidate(bucket, key);
+            }
 //            endClientExecution(awsRequestMetrics, request, response);
         }
    }
@@ -32,7 +32,6 @@ import com.sinacloud.scs.http.HttpResponseHandler;
 import com.sinacloud.scs.services.scs.Headers;
 import com.sinacloud.scs.services.scs.S3ResponseMetadata;
 import com.sinacloud.scs.services.scs.model.ObjectMetadata;
-import com.sinacloud.scs.util.DateUtils;
 
 
 /**
@@ -129,7 +128,7 @@ public abstract class AbstractS3ResponseHandler<T>
                 metadata.setHeader(key, ServiceUtils.removeQuotes(header.getValue()));
             } else if (key.equals(Headers.EXPIRES)) {
                 try {
-                    metadata.setHttpExpiresDate(new DateUtils().parseRfc822Date(header.getValue()));
+                    metadata.setHttpExpiresDate(ServiceUtils.parseRfc822Date(header.getValue()));
                 } catch (ParseException pe) {
                     log.warn("Unable to parse http expiration date: " + header.getValue(), pe);
                 }
@@ -0,0 +1,230 @@
+package com.sinacloud.scs.services.scs.internal;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.services.scs.model.BulkOperationOptions;
+import com.sinacloud.scs.services.scs.model.KeyOperationResult;
+
+/**
+ * Runs an operation for each key of an iterable, on its own threads, and
+ * iterates over the results in the order the operations complete.
+ * <p>
+ * The operation starts as soon as it is created and runs to completion
+ * whether or not its results are consumed: as many workers as the maximum
+ * concurrency of the options each take the next key from the iterable once
+ * their previous one is done, so that no more than that is in flight and the
+ * keys can come lazily from a listing of millions of objects. With a rate
+ * limit, the operations are also started no closer together than it allows.
+ * Every key gets a result, even if its operation throws an error, unless
+ * only failures are reported, in which case successful operations are only
+ * counted. The results can be iterated once.
+ * <p>
+ * At most {@link #RESULTS_PER_WORKER} results per worker are kept until
+ * they are consumed; beyond that, the workers wait for the iterator. An
+ * operation reporting its successes must therefore be iterated to
+ * complete, while one reporting only its failures runs to completion
+ * unattended as long as few of them fail.
+ *
+ * @param <T>
+ *            The type of the result of the operation for one key.
+ */
+public class BulkKeyOperation<T> implements Iterable<KeyOperationResult<T>> {
+
+    /**
+     * The operation run for each key.
+     */
+    public interface KeyOperation<T> {
+        T execute(String key);
+    }
+
+    /** The number of results, per worker, kept until they are consumed. */
+    static final int RESULTS_PER_WORKER = 2;
+
+    private final Iterator<String> keyIterator;
+    private final KeyOperation<T> operation;
+    private final boolean reportSuccesses;
+    private final long permitIntervalNanos;
+    private final ExecutorService executor;
+
+    /*
+     * The results of the operations, followed by one end of results marker
+     * per worker.
+     */
+    private final BlockingQueue<Object> results;
+    private final Object endOfResults = new Object();
+    private final int workerCount;
+    private final AtomicLong successCount = new AtomicLong();
+
+    private long nextPermitNanos = System.nanoTime();
+    private volatile boolean stopped;
+    private volatile Throwable keyFailure;
+    private boolean iterated;
+
+    public BulkKeyOperation(Iterable<String> keys, BulkOperationOptions options, KeyOperation<T> operation) {
+        this(keys, options, operation, true);
+    }
+
+    /**
+     * @param keys
+     *            The keys to run the operation on.
+     * @param options
+     *            The concurrency and rate limit of the operations.
+     * @param operation
+     *            The operation run for each key.
+     * @param reportSuccesses
+     *            Whether the results of successful operations are iterated
+     *            over, or only counted (see {@link #getSuccessCount()}).
+     */
+    public BulkKeyOperation(Iterable<String> keys, BulkOperationOptions options, KeyOperation<T> operation,
+            boolean reportSuccesses) {
+        this.keyIterator = keys.iterator();
+        this.operation = operation;
+        this.reportSuccesses = reportSuccesses;
+        this.workerCount = options.getMaxConcurrency();
+        this.results = new LinkedBlockingQueue<Object>(RESULTS_PER_WORKER * workerCount);
+        this.permitIntervalNanos = options.getMaxRequestsPerSecond() > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) / options.getMaxRequestsPerSecond()) : 0;
+        this.executor = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private int threadCount = 1;
+
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("scs-bulk-worker-" + threadCount++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        for (int i = 0; i < workerCount; i++) {
+            executor.execute(new Worker());
+        }
+        // The threads go away once the keys run out
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the number of keys whose operation has succeeded so far.
+     */
+    public long getSuccessCount() {
+        return successCount.get();
+    }
+
+    public synchronized Iterator<KeyOperationResult<T>> iterator() {
+        if (iterated) {
+            throw new IllegalStateException("The results of a bulk operation can only be iterated once");
+        }
+        iterated = true;
+        return new ResultIterator();
+    }
+
+    /**
+     * Returns the next key to run the operation on, once the rate limit
+     * allows it, or null if there are no more.
+     */
+    private synchronized String nextKey() throws InterruptedException {
+        if (stopped || keyFailure != null) return null;
+        String key;
+        try {
+            if (!keyIterator.hasNext()) return null;
+            key = keyIterator.next();
+        } catch (Throwable t) {
+            keyFailure = t;
+            return null;
+        }
+        if (permitIntervalNanos > 0) {
+            long now = System.nanoTime();
+            if (nextPermitNanos > now) {
+                TimeUnit.NANOSECONDS.sleep(nextPermitNanos - now);
+                now = nextPermitNanos;
+            }
+            nextPermitNanos = now + permitIntervalNanos;
+        }
+        return key;
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            try {
+                String key;
+                while ((key = nextKey()) != null) {
+                    KeyOperationResult<T> result;
+                    try {
+                        result = new KeyOperationResult<T>(key, operation.execute(key), null);
+                    } catch (SCSClientException e) {
+                        result = new KeyOperationResult<T>(key, null, e);
+                    } catch (Throwable t) {
+                        result = new KeyOperationResult<T>(key, null, new SCSClientException(t.getMessage(), t));
+                    }
+                    if (result.isSuccessful()) {
+                        successCount.incrementAndGet();
+                        if (!reportSuccesses) continue;
+                    }
+                    results.put(result);
+                }
+            } catch (InterruptedException e) {
+                // The iterator gave up, it doesn't need the end of results
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                results.put(endOfResults);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private class ResultIterator implements Iterator<KeyOperationResult<T>> {
+
+        private int finishedWorkers;
+        private KeyOperationResult<T> next;
+
+        public boolean hasNext() {
+            if (next != null) return true;
+            try {
+                while (finishedWorkers < workerCount) {
+                    Object result = results.take();
+                    if (result != endOfResults) {
+                        @SuppressWarnings("unchecked")
+                        KeyOperationResult<T> keyResult = (KeyOperationResult<T>) result;
+                        next = keyResult;
+                        return true;
+                    }
+                    finishedWorkers++;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stopped = true;
+                executor.shutdownNow();
+                throw new SCSClientException("Interrupted while waiting for the results of a bulk operation", e);
+            }
+            Throwable t = keyFailure;
+            if (t instanceof SCSClientException) {
+                throw (SCSClientException) t;
+            } else if (t != null) {
+                throw new SCSClientException("Unable to get the keys of a bulk operation: " + t.getMessage(), t);
+            }
+            return false;
+        }
+
+        public KeyOperationResult<T> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            KeyOperationResult<T> result = next;
+            next = null;
+            return result;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.sinacloud.scs.services.scs.internal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+
+/**
+ * Bounded cache of the metadata of objects, by bucket and key, used by
+ * {@link com.sinacloud.scs.services.scs.SCSClient#getObjectMetadata} to
+ * avoid sending a HEAD request for every call.
+ * <p>
+ * Entries are fresh for the time to live of the cache after they were
+ * fetched, or last revalidated, and are then revalidated with their ETag.
+ * When the cache is full, the least recently used entry is evicted.
+ * <p>
+ * A response is only stored if the object hasn't been invalidated since the
+ * request was sent (see {@link #getGeneration(String, String)}), so that a
+ * HEAD request racing with a write of the same client can't store the
+ * metadata the write replaced. Invalidations are counted per stripe of keys
+ * rather than per key, so that keys which aren't cached cost no memory; a
+ * write only discards the responses in flight for the keys of its stripe.
+ */
+@ThreadSafe
+public class ObjectMetadataCache {
+
+    /** Number of stripes the generations are counted by; a power of two. */
+    static final int GENERATION_STRIPES = 256;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries
+     *            The maximum number of objects whose metadata is kept.
+     * @param ttlMillis
+     *            The time, in milliseconds, during which an entry is
+     *            returned without being revalidated.
+     */
+    public ObjectMetadataCache(int maxEntries, long ttlMillis) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The maximum number of cached entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > ObjectMetadataCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the entry of the given object, fresh or not, or null if there
+     * is none.
+     */
+    public synchronized Entry get(String bucketName, String key) {
+        return entries.get(cacheKey(bucketName, key));
+    }
+
+    /**
+     * Returns the current generation of the given object, to pass to
+     * {@link #put(String, String, ObjectMetadata, long)} once its metadata
+     * has been fetched.
+     */
+    public synchronized long getGeneration(String bucketName, String key) {
+        return generations[stripe(cacheKey(bucketName, key))];
+    }
+
+    /**
+     * Stores the metadata of an object, unless it has been invalidated since
+     * the given generation.
+     */
+    public synchronized void put(String bucketName, String key, ObjectMetadata metadata, long generation) {
+        String cacheKey = cacheKey(bucketName, key);
+        if (generation != generations[stripe(cacheKey)]) return;
+        entries.put(cacheKey, new Entry(metadata.clone(), System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Makes the given entry fresh again, after the server confirmed it is
+     * still current, unless the object has been invalidated since the given
+     * generation.
+     */
+    public synchronized void revalidated(String bucketName, String key, Entry entry, long generation) {
+        String cacheKey = cacheKey(bucketName, key);
+        if (generation != generations[stripe(cacheKey)]) return;
+        entries.put(cacheKey, new Entry(entry.metadata, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Removes the entry of the given object, if any.
+     */
+    public synchronized void invalidate(String bucketName, String key) {
+        String cacheKey = cacheKey(bucketName, key);
+        generations[stripe(cacheKey)]++;
+        entries.remove(cacheKey);
+    }
+
+    private static String cacheKey(String bucketName, String key) {
+        return bucketName + "/" + key;
+    }
+
+    static int stripe(String cacheKey) {
+        int hash = cacheKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    /**
+     * The cached metadata of an object.
+     */
+    public static final class Entry {
+        private final ObjectMetadata metadata;
+        private final long expiresAtNanos;
+
+        private Entry(ObjectMetadata metadata, long expiresAtNanos) {
+            this.metadata = metadata;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        /** Returns whether the entry can be used without revalidating it. */
+        public boolean isFresh() {
+            return System.nanoTime() - expiresAtNanos < 0;
+        }
+
+        /** Returns the ETag to revalidate the entry with. */
+        public String getETag() {
+            return metadata.getETag();
+        }
+
+        /** Returns a copy of the cached metadata. */
+        public ObjectMetadata getMetadata() {
+            return metadata.clone();
+        }
+    }
+}
@@ -19,7 +19,6 @@ package com.sinacloud.scs.services.scs.internal;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
@@ -39,11 +38,13 @@ import org.apache.commons.logging.LogFactory;
 
 import com.sinacloud.scs.Request;
 import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.services.scs.model.IntegrityCheckMode;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
 import com.sinacloud.scs.services.scs.model.S3Object;
 import com.sinacloud.scs.util.BinaryUtils;
 import com.sinacloud.scs.util.DateUtils;
+import com.sinacloud.scs.util.FileChecksumCalculator;
 import com.sinacloud.scs.util.HttpUtils;
-import com.sinacloud.scs.util.Md5Utils;
 
 
 /**
@@ -237,8 +238,34 @@ public class ServiceUtils {
      * @param performIntegrityCheck
      *            Boolean valuable to indicate whether do the integrity check or not
      *
+     * @see #downloadObjectToFile(S3Object, File, IntegrityCheckMode)
      */
     public static void downloadObjectToFile(S3Object s3Object, File destinationFile, boolean performIntegrityCheck) {
+        downloadObjectToFile(s3Object, destinationFile,
+                performIntegrityCheck ? IntegrityCheckMode.PostWrite : IntegrityCheckMode.None);
+    }
+
+    /**
+     * Downloads an S3Object, as returned from
+     * {@link SCSClient#getObject(com.amazonaws.services.s3.model.GetObjectRequest)},
+     * to the specified file.
+     * <p>
+     * With {@link IntegrityCheckMode#OnTheFly}, the object content is expected
+     * to verify itself as it is read (as the content returned by
+     * {@link SCSClient#getObject(com.sinacloud.scs.services.scs.model.GetObjectRequest)}
+     * does), so the file is written in a single pass and never read back.
+     * With {@link IntegrityCheckMode#PostWrite}, the file is read back once
+     * written and its MD5 hash is compared to the ETag of the object.
+     *
+     * @param s3Object
+     *            The S3Object containing a reference to an InputStream
+     *            containing the object's data.
+     * @param destinationFile
+     *            The file to store the object's data in.
+     * @param integrityCheckMode
+     *            How the integrity of the downloaded data is verified.
+     */
+    public static void downloadObjectToFile(S3Object s3Object, File destinationFile, IntegrityCheckMode integrityCheckMode) {
 
         // attempt to create the parent if it doesn't exist
         File parentDirectory = destinationFile.getParentFile();
@@ -267,19 +294,39 @@ public class ServiceUtils {
             try {s3Object.getObjectContent().close();} catch (Exception e) {}
         }
 
+        if (integrityCheckMode == IntegrityCheckMode.PostWrite) {
+            verifyDownloadedFile(s3Object.getObjectMetadata(), destinationFile);
+        }
+    }
+
+    /**
+     * Reads back a file to which an object has been downloaded and compares
+     * its MD5 hash to the ETag of the object. Objects uploaded in multiple
+     * parts have no MD5 ETag and are not verified.
+     *
+     * @param objectMetadata
+     *            The metadata of the downloaded object.
+     * @param destinationFile
+     *            The file the object's data was stored in.
+     *
+     * @throws SCSClientException
+     *             If the file content doesn't match the ETag of the object.
+     */
+    public static void verifyDownloadedFile(ObjectMetadata objectMetadata, File destinationFile) {
         byte[] clientSideHash = null;
         byte[] serverSideHash = null;
         try {
             // Multipart Uploads don't have an MD5 calculated on the service side
-            if (ServiceUtils.isMultipartUploadETag(s3Object.getObjectMetadata().getETag()) == false) {
-                clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(destinationFile));
-                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
+            if (ServiceUtils.isMultipartUploadETag(objectMetadata.getETag()) == false) {
+                clientSideHash = FileChecksumCalculator.getDefault().calculateMd5(destinationFile, 0,
+                        destinationFile.length());
+                serverSideHash = BinaryUtils.fromHex(objectMetadata.getETag());
             }
         } catch (Exception e) {
             log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
         }
 
-        if (performIntegrityCheck && clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
+        if (clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
             throw new SCSClientException("Unable to verify integrity of data download.  " +
                     "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
                     "The data stored in '" + destinationFile.getAbsolutePath() + "' may be corrupt.");
@@ -323,6 +370,18 @@ public class ServiceUtils {
      * 			get access to all the visible variables at the calling site of this method.
      */
     public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask) {
+        return retryableDownloadS3ObjectToFile(file, retryableS3DownloadTask, IntegrityCheckMode.PostWrite);
+    }
+
+    /**
+     * Same as {@link #retryableDownloadS3ObjectToFile(File, RetryableS3DownloadTask)},
+     * verifying the integrity of the downloaded data with the given mode
+     * whenever {@link RetryableS3DownloadTask#needIntegrityCheck()} is true.
+     *
+     * @see #downloadObjectToFile(S3Object, File, IntegrityCheckMode)
+     */
+    public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask,
+            IntegrityCheckMode integrityCheckMode) {
         boolean hasRetried = false;
         boolean needRetry;
         S3Object s3Object;
@@ -333,7 +392,8 @@ public class ServiceUtils {
                 return null;
 
             try {
-                ServiceUtils.downloadObjectToFile(s3Object, file, retryableS3DownloadTask.needIntegrityCheck());
+                ServiceUtils.downloadObjectToFile(s3Object, file,
+                        retryableS3DownloadTask.needIntegrityCheck() ? integrityCheckMode : IntegrityCheckMode.None);
             } catch (SCSClientException ace) {
                 // Determine whether an immediate retry is needed according to the captured AmazonClientException.
                 // (There are three cases when downloadObjectToFile() throws AmazonClientException:
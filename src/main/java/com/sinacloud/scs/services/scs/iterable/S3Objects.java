@@ -0,0 +1,238 @@
+package com.sinacloud.scs.services.scs.iterable;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.services.scs.SCS;
+import com.sinacloud.scs.services.scs.model.ListObjectsRequest;
+import com.sinacloud.scs.services.scs.model.ObjectListing;
+import com.sinacloud.scs.services.scs.model.S3ObjectSummary;
+
+/**
+ * Provides an iterable view of the objects of a bucket, optionally limited to
+ * a prefix. Pages of object summaries are fetched lazily from SCS as the
+ * iteration moves forward, so a bucket holding millions of keys can be
+ * scanned without ever holding more than a page or two in memory:
+ *
+ * <pre>
+ * for (S3ObjectSummary summary : S3Objects.withPrefix(scs, "my-bucket", "logs/")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * By default the next page is only requested once the current one has been
+ * fully consumed. When an executor is given with
+ * {@link #withPrefetch(Executor)}, page N+1 is requested on that executor as
+ * soon as page N arrives, so that the time spent processing a page overlaps
+ * with the round trip of the next one.
+ * <p>
+ * Each call to {@link #iterator()} starts a new listing from the beginning.
+ * The iterators are not thread safe and do not support removal.
+ */
+public class S3Objects implements Iterable<S3ObjectSummary> {
+
+    private final SCS scs;
+    private final String bucketName;
+    private String prefix;
+    private Integer batchSize;
+    private Executor prefetchExecutor;
+
+    private S3Objects(SCS scs, String bucketName) {
+        this.scs = scs;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an SCS bucket.
+     *
+     * @param scs
+     *            The SCS client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects inBucket(SCS scs, String bucketName) {
+        return new S3Objects(scs, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an SCS bucket where
+     * the key begins with the given prefix.
+     *
+     * @param scs
+     *            The SCS client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterator for object summaries.
+     */
+    public static S3Objects withPrefix(SCS scs, String bucketName, String prefix) {
+        S3Objects objects = new S3Objects(scs, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the number of objects requested from SCS per page. The service
+     * default is used when unset.
+     *
+     * @param batchSize
+     *            The maximum number of keys of each listing request.
+     * @return This object, so that method calls can be chained together.
+     */
+    public S3Objects withBatchSize(int batchSize) {
+        this.batchSize = Integer.valueOf(batchSize);
+        return this;
+    }
+
+    /**
+     * Sets the executor on which the next page of the listing is requested
+     * while the current page is being consumed. A <code>null</code>
+     * executor, the default, disables prefetching.
+     *
+     * @param prefetchExecutor
+     *            The executor running the prefetch requests.
+     * @return This object, so that method calls can be chained together.
+     */
+    public S3Objects withPrefetch(Executor prefetchExecutor) {
+        this.prefetchExecutor = prefetchExecutor;
+        return this;
+    }
+
+    public SCS getSCS() {
+        return scs;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public Executor getPrefetchExecutor() {
+        return prefetchExecutor;
+    }
+
+    /**
+     * Returns a sequential stream over the object summaries, fetching pages
+     * as the stream is consumed.
+     */
+    public Stream<S3ObjectSummary> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    public Iterator<S3ObjectSummary> iterator() {
+        return new S3ObjectIterator();
+    }
+
+    private class S3ObjectIterator implements Iterator<S3ObjectSummary> {
+
+        private ObjectListing currentListing = null;
+        private Iterator<S3ObjectSummary> currentIterator = Collections.<S3ObjectSummary>emptyList().iterator();
+        private FutureTask<ObjectListing> nextListing = null;
+
+        public boolean hasNext() {
+            prepareCurrentListing();
+            return currentIterator.hasNext();
+        }
+
+        public S3ObjectSummary next() {
+            prepareCurrentListing();
+            if (!currentIterator.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentIterator.next();
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /*
+         * Moves to the next page until one with some summaries left is
+         * found; a truncated page may be empty when a delimiter is used.
+         */
+        private void prepareCurrentListing() {
+            while (!currentIterator.hasNext()) {
+                if (currentListing == null) {
+                    setCurrentListing(scs.listObjects(newRequest(null)));
+                } else if (currentListing.isTruncated()) {
+                    setCurrentListing(fetchNextListing());
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void setCurrentListing(ObjectListing listing) {
+            currentListing = listing;
+            currentIterator = listing.getObjectSummaries().iterator();
+            if (listing.isTruncated() && prefetchExecutor != null) {
+                final ListObjectsRequest request = newRequest(nextMarker(listing));
+                nextListing = new FutureTask<ObjectListing>(new Callable<ObjectListing>() {
+                    public ObjectListing call() throws Exception {
+                        return scs.listObjects(request);
+                    }
+                });
+                prefetchExecutor.execute(nextListing);
+            }
+        }
+
+        private ObjectListing fetchNextListing() {
+            if (nextListing == null) {
+                return scs.listObjects(newRequest(nextMarker(currentListing)));
+            }
+            FutureTask<ObjectListing> future = nextListing;
+            nextListing = null;
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                throw new SCSClientException("Interrupted while waiting for the next page of objects", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SCSClientException("Unable to list the next page of objects: " + cause.getMessage(), cause);
+            }
+        }
+
+        private ListObjectsRequest newRequest(String marker) {
+            return new ListObjectsRequest(bucketName, prefix, marker, null, batchSize);
+        }
+
+        /*
+         * The service may leave the next marker out of a truncated listing,
+         * in which case the listing resumes after its last key.
+         */
+        private String nextMarker(ObjectListing listing) {
+            if (listing.getNextMarker() != null) {
+                return listing.getNextMarker();
+            }
+            List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+            if (summaries.isEmpty()) {
+                throw new SCSClientException("Unable to continue a truncated listing of bucket "
+                        + bucketName + " without a next marker");
+            }
+            return summaries.get(summaries.size() - 1).getKey();
+        }
+    }
+}
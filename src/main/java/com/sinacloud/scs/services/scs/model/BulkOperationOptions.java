@@ -0,0 +1,71 @@
+package com.sinacloud.scs.services.scs.model;
+
+/**
+ * Options of the bulk operations of the client, such as
+ * {@link com.sinacloud.scs.services.scs.SCS#deleteObjects(String, Iterable, BulkOperationOptions)}.
+ */
+public class BulkOperationOptions {
+
+    /** The default number of requests of a bulk operation in flight at once. */
+    public static final int DEFAULT_MAX_CONCURRENCY = 16;
+
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    private double maxRequestsPerSecond = 0;
+
+    /**
+     * Returns the largest number of requests sent at once. The client's
+     * connection pool bounds it as well, see
+     * {@link com.sinacloud.scs.ClientConfiguration#getMaxConnections()}.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the largest number of requests sent at once.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("The concurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Sets the largest number of requests sent at once, and returns this
+     * object so that additional method calls can be chained together.
+     */
+    public BulkOperationOptions withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * Returns the largest number of requests started per second, or 0 if
+     * requests aren't rate limited.
+     */
+    public double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * Sets the largest number of requests started per second, or 0 not to
+     * rate limit requests.
+     */
+    public void setMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        if (maxRequestsPerSecond < 0) {
+            throw new IllegalArgumentException("The request rate can't be negative");
+        }
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    /**
+     * Sets the largest number of requests started per second, and returns
+     * this object so that additional method calls can be chained together.
+     */
+    public BulkOperationOptions withMaxRequestsPerSecond(double maxRequestsPerSecond) {
+        setMaxRequestsPerSecond(maxRequestsPerSecond);
+        return this;
+    }
+}
@@ -98,6 +98,11 @@ public class GetObjectRequest extends SCSWebServiceRequest {
      */
     private ProgressListener generalProgressListener;
 
+    /**
+     * How the integrity of the downloaded data is verified.
+     */
+    private IntegrityCheckMode integrityCheckMode = IntegrityCheckMode.OnTheFly;
+
 
     /**
      * Constructs a new {@link GetObjectRequest} with all the required parameters.
@@ -766,4 +771,39 @@ public class GetObjectRequest extends SCSWebServiceRequest {
         setGeneralProgressListener(progressListener);
         return this;
     }
+
+    /**
+     * Returns how the integrity of the downloaded data is verified.
+     * {@link IntegrityCheckMode#OnTheFly} by default.
+     *
+     * @return How the integrity of the downloaded data is verified.
+     */
+    public IntegrityCheckMode getIntegrityCheckMode() {
+        return integrityCheckMode;
+    }
+
+    /**
+     * Sets how the integrity of the downloaded data is verified.
+     *
+     * @param integrityCheckMode
+     *            How the integrity of the downloaded data is verified.
+     */
+    public void setIntegrityCheckMode(IntegrityCheckMode integrityCheckMode) {
+        this.integrityCheckMode = integrityCheckMode;
+    }
+
+    /**
+     * Sets how the integrity of the downloaded data is verified, and returns
+     * this updated object so that additional method calls can be chained
+     * together.
+     *
+     * @param integrityCheckMode
+     *            How the integrity of the downloaded data is verified.
+     *
+     * @return This updated GetObjectRequest object.
+     */
+    public GetObjectRequest withIntegrityCheckMode(IntegrityCheckMode integrityCheckMode) {
+        setIntegrityCheckMode(integrityCheckMode);
+        return this;
+    }
 }
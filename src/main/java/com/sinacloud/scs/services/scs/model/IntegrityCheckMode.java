@@ -0,0 +1,37 @@
+package com.sinacloud.scs.services.scs.model;
+
+/**
+ * Specifies how the integrity of a downloaded object is verified against the
+ * MD5 hash (ETag) calculated by SCS.
+ * <p>
+ * Objects uploaded in multiple parts, and ranged downloads, have no whole
+ * object MD5 to compare to and are never verified, whatever the mode. Files
+ * downloaded in parallel byte ranges by the transfer manager are verified
+ * after they are written in both {@link #OnTheFly} and {@link #PostWrite}
+ * modes.
+ *
+ * @see GetObjectRequest#setIntegrityCheckMode(IntegrityCheckMode)
+ */
+public enum IntegrityCheckMode {
+
+    /**
+     * The MD5 hash is calculated while the object content is read, and
+     * checked as soon as the end of the content is reached. Downloads to a
+     * file are verified during the single pass which writes the file. This is
+     * the default.
+     */
+    OnTheFly,
+
+    /**
+     * Downloads to a file are verified by reading the file back once it has
+     * been completely written, which doubles the disk I/O but also catches
+     * data corrupted on its way to disk. Object content read directly from
+     * the stream is not verified.
+     */
+    PostWrite,
+
+    /**
+     * No integrity check is performed.
+     */
+    None;
+}
@@ -0,0 +1,57 @@
+package com.sinacloud.scs.services.scs.model;
+
+import com.sinacloud.scs.SCSClientException;
+
+/**
+ * The outcome of a bulk operation for one key, such as
+ * {@link com.sinacloud.scs.services.scs.SCS#deleteObjects(String, Iterable)}:
+ * either the result of the operation for that key or the exception it failed
+ * with.
+ *
+ * @param <T>
+ *            The type of the result of the operation for one key;
+ *            {@link Void} for operations without results.
+ */
+public class KeyOperationResult<T> {
+
+    private final String key;
+    private final T result;
+    private final SCSClientException exception;
+
+    public KeyOperationResult(String key, T result, SCSClientException exception) {
+        this.key = key;
+        this.result = result;
+        this.exception = exception;
+    }
+
+    /**
+     * Returns the key the operation was run for.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the result of the operation for this key, or null if it failed
+     * or has no result.
+     */
+    public T getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the exception the operation failed with for this key, or null
+     * if it succeeded. Service errors, such as a missing object, are
+     * {@link com.sinacloud.scs.SCSServiceException}s.
+     */
+    public SCSClientException getException() {
+        return exception;
+    }
+
+    /**
+     * Returns true if the operation succeeded for this key.
+     */
+    public boolean isSuccessful() {
+        return exception == null;
+    }
+}
@@ -4,7 +4,7 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.Map;
 
-import com.sinacloud.scs.util.DateUtils;
+import com.sinacloud.scs.services.scs.internal.ServiceUtils;
 
 /**
  * http://open.sinastorage.cn/?c=doc&a=api#get_object_meta ObjectInfo Object
@@ -48,9 +48,8 @@ public class ObjectInfo {
 			//时间
 			String lastModifiedStr = (String) jsonMap.get("Last-Modified");
 			if(lastModifiedStr!=null && !"".equals(lastModifiedStr)){
-				DateUtils du = new DateUtils();
 				try {
-					this.lastModified = du.parseRfc822Date(lastModifiedStr);
+					this.lastModified = ServiceUtils.parseRfc822Date(lastModifiedStr);
 				} catch (ParseException e) {
 					e.printStackTrace();
 				}
@@ -88,6 +88,19 @@ public class ObjectMetadata implements ServerSideEncryptionResult, ObjectExpirat
      */
     private Date restoreExpirationTime;
 
+    public ObjectMetadata() {}
+
+    private ObjectMetadata(ObjectMetadata from) {
+        this.userMetadata = from.userMetadata == null ? null : new HashMap<String, String>(from.userMetadata);
+        this.userHeader = from.userHeader == null ? null : new HashMap<String, String>(from.userHeader);
+        this.metadata = from.metadata == null ? null : new HashMap<String, Object>(from.metadata);
+        this.httpExpiresDate = from.httpExpiresDate;
+        this.expirationTime = from.expirationTime;
+        this.expirationTimeRuleId = from.expirationTimeRuleId;
+        this.ongoingRestore = from.ongoingRestore;
+        this.restoreExpirationTime = from.restoreExpirationTime;
+    }
+
     /**
      * <p>
      * Gets the custom user-metadata for the associated object.
@@ -722,4 +735,12 @@ public class ObjectMetadata implements ServerSideEncryptionResult, ObjectExpirat
         return httpExpiresDate;
     }
 
+    /**
+     * Returns a copy of this metadata, whose maps of user metadata, user
+     * headers and raw metadata can be changed without affecting this one.
+     */
+    public ObjectMetadata clone() {
+        return new ObjectMetadata(this);
+    }
+
 }
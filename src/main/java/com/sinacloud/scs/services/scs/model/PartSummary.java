@@ -18,7 +18,7 @@ import java.text.ParseException;
 import java.util.Date;
 import java.util.Map;
 
-import com.sinacloud.scs.util.DateUtils;
+import com.sinacloud.scs.services.scs.internal.ServiceUtils;
 
 /**
  * Container for summary information about a part in a multipart upload, such as
@@ -46,9 +46,8 @@ public class PartSummary {
 		 */
 		if(jsonMap != null){
 			partNumber = (Double)jsonMap.get("PartNumber");
-			DateUtils du = new DateUtils();
 			try {
-				lastModified = du.parseRfc822Date((String)jsonMap.get("Last-Modified"));
+				lastModified = ServiceUtils.parseRfc822Date((String)jsonMap.get("Last-Modified"));
 			} catch (ParseException e) {
 				e.printStackTrace();
 			}
@@ -19,10 +19,13 @@ package com.sinacloud.scs.services.scs.model;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.sinacloud.scs.util.ByteBufferPool;
+
 /**
  * A repeatable input stream wrapper for any input stream. This input stream
  * relies on buffered data to repeat, and can therefore only be repeated when
@@ -31,6 +34,10 @@ import org.apache.commons.logging.LogFactory;
  * <b>Note:</b> Always use a {@link RepeatableFileInputStream} instead of this
  * class if you are sourcing data from a file, as the file-based repeatable
  * input stream can be repeated without any limitations.
+ * <p>
+ * The buffer is taken from a {@link ByteBufferPool}, on or off the heap, and
+ * handed back when the stream is closed, so streams must be closed once they
+ * aren't needed anymore.
  */
 public class RepeatableInputStream extends InputStream {
     private static final Log log = LogFactory.getLog(RepeatableInputStream.class);
@@ -39,7 +46,9 @@ public class RepeatableInputStream extends InputStream {
     private int bufferSize = 0;
     private int bufferOffset = 0;
     private long bytesReadPastMark = 0;
-    private byte[] buffer = null;
+    private final ByteBufferPool bufferPool;
+    private ByteBuffer buffer = null;
+    private final byte[] singleByte = new byte[1];
 
     /**
      * Creates a repeatable input stream based on another input stream.
@@ -52,17 +61,36 @@ public class RepeatableInputStream extends InputStream {
      *            The number of bytes buffered by this class.
      */
     public RepeatableInputStream(InputStream inputStream, int bufferSize) {
+        this(inputStream, bufferSize, ByteBufferPool.getHeapPool());
+    }
+
+    /**
+     * Creates a repeatable input stream based on another input stream,
+     * buffering its data in a buffer from the given pool.
+     *
+     * @param inputStream
+     *            The input stream to wrap. The data read from the wrapped input
+     *            stream is buffered as it is read, up to the buffer limit
+     *            specified.
+     * @param bufferSize
+     *            The number of bytes buffered by this class.
+     * @param bufferPool
+     *            The pool the buffer is acquired from, and released to when
+     *            this stream is closed.
+     */
+    public RepeatableInputStream(InputStream inputStream, int bufferSize, ByteBufferPool bufferPool) {
         if (inputStream == null) {
             throw new IllegalArgumentException("InputStream cannot be null");
         }
 
         this.is = inputStream;
         this.bufferSize = bufferSize;
-        this.buffer = new byte[this.bufferSize];
+        this.bufferPool = bufferPool;
+        this.buffer = bufferPool.acquire(bufferSize);
 
         if (log.isDebugEnabled()) {
         	log.debug("Underlying input stream will be repeatable up to "
-        	        + this.buffer.length + " bytes");
+        	        + this.bufferSize + " bytes");
         }
     }
 
@@ -105,20 +133,23 @@ public class RepeatableInputStream extends InputStream {
     	}
     	if (bytesReadPastMark <= bufferSize && buffer != null) {
             /*
-             * Clear buffer of already-read data to make more space. It's safe
-             * to cast bytesReadPastMark to an int because it is known to be
-             * less than bufferSize, which is an int.
+             * Clear buffer of already-read data to make more space, moving
+             * the unread data to its start. It's safe to cast
+             * bytesReadPastMark to an int because it is known to be less than
+             * bufferSize, which is an int.
              */
-            byte[] newBuffer = new byte[this.bufferSize];
-    		System.arraycopy(buffer, bufferOffset, newBuffer, 0, (int)(bytesReadPastMark - bufferOffset));
-            this.buffer = newBuffer;
+            buffer.limit((int) bytesReadPastMark);
+            buffer.position(bufferOffset);
+            buffer.compact();
             this.bytesReadPastMark -= bufferOffset;
     		this.bufferOffset = 0;
     	} else {
-            // If mark is called after the buffer was already exceeded, create a new buffer.
+            // If mark is called after the buffer was already exceeded, get a new buffer.
     		this.bufferOffset = 0;
             this.bytesReadPastMark = 0;
-            this.buffer = new byte[this.bufferSize];
+            if (this.buffer == null) {
+                this.buffer = bufferPool.acquire(this.bufferSize);
+            }
     	}
     }
 
@@ -134,6 +165,14 @@ public class RepeatableInputStream extends InputStream {
      */
     public void close() throws IOException {
         is.close();
+        releaseBuffer();
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            bufferPool.release(buffer);
+            buffer = null;
+        }
     }
 
     /**
@@ -149,7 +188,9 @@ public class RepeatableInputStream extends InputStream {
             }
 
             // Write to output.
-            System.arraycopy(buffer, bufferOffset, out, outOffset, bytesFromBuffer);
+            buffer.clear();
+            buffer.position(bufferOffset);
+            buffer.get(out, outOffset, bytesFromBuffer);
             bufferOffset += bytesFromBuffer;
             return bytesFromBuffer;
         }
@@ -162,8 +203,10 @@ public class RepeatableInputStream extends InputStream {
         }
 
         // Fill the buffer with data, as long as we won't exceed its capacity.
-        if (bytesReadPastMark + count <= bufferSize) {
-            System.arraycopy(out, outOffset, buffer, (int) bytesReadPastMark, count);
+        if (bytesReadPastMark + count <= bufferSize && buffer != null) {
+            buffer.clear();
+            buffer.position((int) bytesReadPastMark);
+            buffer.put(out, outOffset, count);
             bufferOffset += count;
         } else {
             // We have exceeded the buffer capacity, after which point it is of no use. Free the memory.
@@ -171,7 +214,7 @@ public class RepeatableInputStream extends InputStream {
         		log.debug("Buffer size " + bufferSize + " has been exceeded and the input stream "
                 + "will not be repeatable until the next mark. Freeing buffer memory");
         	}
-            buffer = null;
+            releaseBuffer();
         }
 
         bytesReadPastMark += count;
@@ -183,10 +226,12 @@ public class RepeatableInputStream extends InputStream {
      * @see java.io.InputStream#read()
      */
     public int read() throws IOException {
-        byte[] tmp = new byte[1];
-        int count = read(tmp);
+        int count;
+        do {
+            count = read(singleByte, 0, 1);
+        } while (count == 0);
         if (count != -1) {
-            return tmp[0];
+            return singleByte[0] & 0xff;
         } else {
             return count;
         }
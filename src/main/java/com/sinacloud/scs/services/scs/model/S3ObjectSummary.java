@@ -17,7 +17,7 @@ package com.sinacloud.scs.services.scs.model;
 import java.util.Date;
 import java.util.Map;
 
-import com.sinacloud.scs.util.DateUtils;
+import com.sinacloud.scs.services.scs.internal.ServiceUtils;
 
 /**
  * Contains the summary of an object stored in an Amazon S3 bucket. This object
@@ -48,17 +48,16 @@ public class S3ObjectSummary {
 		if(jsonMap != null){
 			this.sha1 = (String) jsonMap.get("SHA1");
 			this.key = (String) jsonMap.get("Name");
-			DateUtils du = new DateUtils();
 			if(jsonMap.get("Expiration-Time") != null){
 				try {
-					this.expiration = du.parseRfc822Date((String) jsonMap.get("Expiration-Time"));
+					this.expiration = ServiceUtils.parseRfc822Date((String) jsonMap.get("Expiration-Time"));
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
 			}
 			if(jsonMap.get("Last-Modified") != null){
 				try {
-					this.lastModified = du.parseRfc822Date((String) jsonMap.get("Last-Modified"));
+					this.lastModified = ServiceUtils.parseRfc822Date((String) jsonMap.get("Last-Modified"));
 				} catch (Exception e) {
 					e.printStackTrace();
 				}
@@ -69,7 +68,11 @@ public class S3ObjectSummary {
 			this.size = ((Double) jsonMap.get("Size")).intValue();
 		}
 	}
-	
+
+	public S3ObjectSummary(){
+		super();
+	}
+
 	@Override
 	public String toString(){
 		return "S3ObjectSummary [sha1=" + getSha1()
@@ -4,7 +4,10 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -12,6 +15,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.sinacloud.scs.SCSClientException;
 import com.sinacloud.scs.services.scs.internal.Constants;
 import com.sinacloud.scs.services.scs.model.AccessControlList;
@@ -22,6 +27,8 @@ import com.sinacloud.scs.services.scs.model.ObjectInfo;
 import com.sinacloud.scs.services.scs.model.ObjectListing;
 import com.sinacloud.scs.services.scs.model.Owner;
 import com.sinacloud.scs.services.scs.model.PartListing;
+import com.sinacloud.scs.services.scs.model.S3ObjectSummary;
+import com.sinacloud.scs.util.DateUtils;
 
 public class JsonResponsesParser {
     private static final Log log = LogFactory.getLog(JsonResponsesParser.class);
@@ -62,15 +69,13 @@ public class JsonResponsesParser {
     public ObjectListing parseListBucketObjectsResponse(InputStream inputStream)
             throws SCSClientException {
     	try {
-            BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
-                Constants.DEFAULT_ENCODING));
-            
-            Gson gson = new Gson();
-            @SuppressWarnings("unchecked")
-			Map<String,Object> modelObject = gson.fromJson(breader, Map.class);//mapper.readValue(breader,Map.class);
-            
-            return new ObjectListing(modelObject);
-            
+            JsonReader reader = new JsonReader(new BufferedReader(new InputStreamReader(inputStream,
+                Constants.DEFAULT_ENCODING)));
+            try {
+                return readObjectListing(reader);
+            } finally {
+                reader.close();
+            }
         } catch (Throwable t) {
             try {
                 inputStream.close();
@@ -79,12 +84,142 @@ public class JsonResponsesParser {
                     log.error("Unable to close response InputStream up after json parse failure", e);
                 }
             }
-            t.printStackTrace();
             throw new SCSClientException("Failed to parse json document with handler --"+ t.getLocalizedMessage(), t);
         }
     	
     }
 
+    /*
+     * A listing page holds up to a thousand object summaries, so it is read
+     * token by token straight into the model instead of being bound to a
+     * tree of maps (and boxed doubles) first.
+     */
+    private ObjectListing readObjectListing(JsonReader reader) throws IOException {
+        ObjectListing objectListing = new ObjectListing();
+        DateUtils dateUtils = new DateUtils();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("Delimiter".equals(name)) {
+                objectListing.setDelimiter(nextString(reader));
+            } else if ("Prefix".equals(name)) {
+                objectListing.setPrefix(nextString(reader));
+            } else if ("Marker".equals(name)) {
+                objectListing.setMarker(nextString(reader));
+            } else if ("NextMarker".equals(name)) {
+                objectListing.setNextMarker(nextString(reader));
+            } else if ("ContentsQuantity".equals(name)) {
+                objectListing.setContentsQuantity((int) nextLong(reader));
+            } else if ("CommonPrefixesQuantity".equals(name)) {
+                objectListing.setCommonPrefixesQuantity((int) nextLong(reader));
+            } else if ("IsTruncated".equals(name)) {
+                objectListing.setTruncated(nextBoolean(reader));
+            } else if ("CommonPrefixes".equals(name)) {
+                objectListing.setCommonPrefixes(readCommonPrefixes(reader));
+            } else if ("Contents".equals(name) && reader.peek() != JsonToken.NULL) {
+                List<S3ObjectSummary> objectSummaries = objectListing.getObjectSummaries();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    objectSummaries.add(readObjectSummary(reader, dateUtils));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return objectListing;
+    }
+
+    private S3ObjectSummary readObjectSummary(JsonReader reader, DateUtils dateUtils) throws IOException {
+        S3ObjectSummary objectSummary = new S3ObjectSummary();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ("Name".equals(name)) {
+                objectSummary.setKey(nextString(reader));
+            } else if ("SHA1".equals(name)) {
+                objectSummary.setSha1(nextString(reader));
+            } else if ("MD5".equals(name)) {
+                objectSummary.setETag(nextString(reader));
+            } else if ("Content-Type".equals(name)) {
+                objectSummary.setContentType(nextString(reader));
+            } else if ("Size".equals(name)) {
+                objectSummary.setSize(nextLong(reader));
+            } else if ("Owner".equals(name)) {
+                objectSummary.setOwner(new Owner(nextString(reader), ""));
+            } else if ("Last-Modified".equals(name)) {
+                objectSummary.setLastModified(nextDate(reader, dateUtils));
+            } else if ("Expiration-Time".equals(name)) {
+                objectSummary.setExpiration(nextDate(reader, dateUtils));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return objectSummary;
+    }
+
+    private List<Map<String, String>> readCommonPrefixes(JsonReader reader) throws IOException {
+        List<Map<String, String>> commonPrefixes = new ArrayList<Map<String, String>>();
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return commonPrefixes;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Map<String, String> commonPrefix = new HashMap<String, String>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                commonPrefix.put(name, nextString(reader));
+            }
+            reader.endObject();
+            commonPrefixes.add(commonPrefix);
+        }
+        reader.endArray();
+        return commonPrefixes;
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        return reader.nextString();
+    }
+
+    private static long nextLong(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        return reader.nextLong();
+    }
+
+    private static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return false;
+        }
+        return reader.nextBoolean();
+    }
+
+    private static Date nextDate(JsonReader reader, DateUtils dateUtils) throws IOException {
+        String date = nextString(reader);
+        if (date == null) {
+            return null;
+        }
+        try {
+            return dateUtils.parseRfc822Date(date);
+        } catch (ParseException e) {
+            log.warn("Unable to parse date '" + date + "'", e);
+            return null;
+        }
+    }
+
     /**
      * Parses a ListAllMyBuckets response json document from an input stream.
      *
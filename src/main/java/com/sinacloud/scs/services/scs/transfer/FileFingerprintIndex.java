@@ -0,0 +1,194 @@
+package com.sinacloud.scs.services.scs.transfer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Index of the SHA-1 of local files, by path, size and modification time,
+ * used by {@link TransferManager} to attempt relax uploads without reading
+ * files which haven't changed since they were last hashed (see
+ * {@link TransferManagerConfiguration#setRelaxUploadIndex(FileFingerprintIndex)}).
+ * <p>
+ * An index created with a file remembers the hashes from one run to the
+ * next: every new hash is appended to the file as soon as it is recorded,
+ * and the file is rewritten without the superseded entries when the index is
+ * loaded. The file is a cache; if it can't be read or written, the index
+ * logs a warning and carries on in memory.
+ * <p>
+ * Files modified in the last couple of seconds aren't recorded, since
+ * another change within the resolution of their modification time would go
+ * unnoticed.
+ */
+@ThreadSafe
+public class FileFingerprintIndex {
+
+    private static final Log log = LogFactory.getLog(FileFingerprintIndex.class);
+
+    /** Files modified more recently than this aren't recorded. */
+    private static final long MIN_AGE_MILLIS = 2000;
+
+    private static final String ENCODING = "UTF-8";
+
+    private final File indexFile;
+    private final Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+    private Writer journal;
+
+    /**
+     * Creates an index kept in memory only.
+     */
+    public FileFingerprintIndex() {
+        this.indexFile = null;
+    }
+
+    /**
+     * Creates an index kept in the given file, loading the entries it
+     * already holds, if any.
+     *
+     * @param indexFile
+     *            The file to keep the index in.
+     */
+    public FileFingerprintIndex(File indexFile) {
+        this.indexFile = indexFile;
+        if (indexFile.exists()) {
+            load();
+        }
+        compact();
+    }
+
+    /**
+     * Returns the SHA-1, in hex, recorded for the given file, or null if
+     * there is none or if the size or modification time of the file changed
+     * since.
+     */
+    public synchronized String getSha1(File file) {
+        Fingerprint fingerprint = fingerprints.get(file.getAbsolutePath());
+        if (fingerprint == null || fingerprint.length != file.length()
+                || fingerprint.lastModified != file.lastModified()) {
+            return null;
+        }
+        return fingerprint.sha1;
+    }
+
+    /**
+     * Records the SHA-1 of a file.
+     *
+     * @param file
+     *            The hashed file.
+     * @param length
+     *            The size of the file, read before hashing it.
+     * @param lastModified
+     *            The modification time of the file, read before hashing it.
+     * @param sha1
+     *            The SHA-1 of the file, in hex.
+     */
+    public synchronized void put(File file, long length, long lastModified, String sha1) {
+        if (lastModified > System.currentTimeMillis() - MIN_AGE_MILLIS) return;
+        String path = file.getAbsolutePath();
+        Fingerprint fingerprint = new Fingerprint(length, lastModified, sha1);
+        fingerprints.put(path, fingerprint);
+        if (journal != null) {
+            try {
+                write(journal, path, fingerprint);
+                journal.flush();
+            } catch (IOException e) {
+                log.warn("Unable to write to file fingerprint index " + indexFile + ": " + e.getMessage());
+                closeJournal();
+            }
+        }
+    }
+
+    /**
+     * Closes the file of this index. Entries recorded afterwards are kept in
+     * memory only.
+     */
+    public synchronized void close() {
+        closeJournal();
+    }
+
+    private void load() {
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), ENCODING));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                // Skips the line being written when a previous run stopped
+                if (fields.length != 4) continue;
+                try {
+                    fingerprints.put(URLDecoder.decode(fields[3], ENCODING),
+                            new Fingerprint(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[0]));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to read file fingerprint index " + indexFile + ": " + e.getMessage());
+        } finally {
+            try {if (reader != null) reader.close();} catch (IOException e) {}
+        }
+    }
+
+    /*
+     * Rewrites the index file with the current entries, then opens it for
+     * appending the next ones.
+     */
+    private void compact() {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING));
+            for (Map.Entry<String, Fingerprint> entry : fingerprints.entrySet()) {
+                write(writer, entry.getKey(), entry.getValue());
+            }
+            writer.close();
+            writer = null;
+            if (!tempFile.renameTo(indexFile) && !(indexFile.delete() && tempFile.renameTo(indexFile))) {
+                throw new IOException("Unable to replace the index file");
+            }
+            journal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFile, true), ENCODING));
+        } catch (IOException e) {
+            log.warn("Unable to write file fingerprint index " + indexFile + ": " + e.getMessage());
+            tempFile.delete();
+        } finally {
+            try {if (writer != null) writer.close();} catch (IOException e) {}
+        }
+    }
+
+    private void closeJournal() {
+        if (journal == null) return;
+        try {journal.close();} catch (IOException e) {}
+        journal = null;
+    }
+
+    private static void write(Writer writer, String path, Fingerprint fingerprint) throws IOException {
+        writer.write(fingerprint.sha1 + "\t" + fingerprint.length + "\t" + fingerprint.lastModified + "\t"
+                + URLEncoder.encode(path, ENCODING) + "\n");
+    }
+
+    private static final class Fingerprint {
+        private final long length;
+        private final long lastModified;
+        private final String sha1;
+
+        Fingerprint(long length, long lastModified, String sha1) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+    }
+}
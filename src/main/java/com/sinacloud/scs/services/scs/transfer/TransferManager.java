@@ -24,11 +24,7 @@ import java.util.Map;
 import java.util.Stack;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -61,6 +57,7 @@ import com.sinacloud.scs.services.scs.transfer.internal.MultipleFileDownloadImpl
 import com.sinacloud.scs.services.scs.transfer.internal.MultipleFileTransfer;
 import com.sinacloud.scs.services.scs.transfer.internal.MultipleFileTransferMonitor;
 import com.sinacloud.scs.services.scs.transfer.internal.MultipleFileUploadImpl;
+import com.sinacloud.scs.services.scs.transfer.internal.ParallelDownloadCallable;
 import com.sinacloud.scs.services.scs.transfer.internal.TransferManagerUtils;
 import com.sinacloud.scs.services.scs.transfer.internal.TransferProgressImpl;
 import com.sinacloud.scs.services.scs.transfer.internal.TransferProgressUpdatingListener;
@@ -124,9 +121,8 @@ public class TransferManager {
     private TransferManagerConfiguration configuration;
     /** The thread pool in which transfers are uploaded or downloaded. */
     private ThreadPoolExecutor threadPool;
-
-    /** Thread used for periodicially checking transfers and updating thier state. */
-    private ScheduledExecutorService timedThreadPool = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+    /** Whether the thread pool was created by this TransferManager and can be resized. */
+    private boolean isDefaultThreadPool;
 
     private static final Log log = LogFactory.getLog(TransferManager.class);
 
@@ -186,6 +182,7 @@ public class TransferManager {
      */
     public TransferManager(SCS s3) {
         this(s3, TransferManagerUtils.createDefaultExecutorService());
+        this.isDefaultThreadPool = true;
     }
 
     /**
@@ -409,9 +406,17 @@ public class TransferManager {
 
             UploadImpl upload = new UploadImpl(description, transferProgress, listenerChain, stateListener);
 
+            if (configuration.isAdaptiveMultipartUpload()) {
+                ensureThreadPoolSize(configuration.getMaximumUploadPartsInFlight() + 1);
+            }
+            if (TransferManagerUtils.getRequestFile(putObjectRequest) == null) {
+                // The upload itself reads the stream while its parts upload,
+                // running them itself when no other thread of the pool is free
+                ensureThreadPoolSize(configuration.getStreamUploadParallelism() + 1);
+            }
+
             UploadCallable uploadCallable = new UploadCallable(this, threadPool, upload, putObjectRequest, listenerChain);
             UploadMonitor watcher = new UploadMonitor(this, upload, threadPool, uploadCallable, putObjectRequest, listenerChain);
-            watcher.setTimedThreadPool(timedThreadPool);
             upload.setMonitor(watcher);
 
             return upload;
@@ -527,6 +532,21 @@ public class TransferManager {
 
         transferProgress.setTotalBytesToTransfer(contentLength);
 
+        if (ParallelDownloadCallable.isParallelizable(getObjectRequest)
+                && contentLength > configuration.getParallelDownloadThreshold()) {
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName(getObjectRequest.getBucketName());
+            s3Object.setKey(getObjectRequest.getKey());
+            s3Object.setObjectMetadata(objectMetadata);
+            download.setS3Object(s3Object);
+
+            ParallelDownloadCallable parallelDownload = new ParallelDownloadCallable(
+                    this, threadPool, download, getObjectRequest, objectMetadata, file);
+            download.setMonitor(new DownloadMonitor(download, parallelDownload.getFuture()));
+            parallelDownload.start();
+            return download;
+        }
+
         Future<?> future = threadPool.submit(new Callable<Object>() {
             @Override
             public Object call() throws Exception {
@@ -560,7 +580,7 @@ public class TransferManager {
 //                            if (s3 instanceof AmazonS3EncryptionClient) performIntegrityCheck = false;
                             return performIntegrityCheck;
                         }
-                    });
+                    }, getObjectRequest.getIntegrityCheckMode());
 
 
                     if (s3Object == null) {
@@ -1053,13 +1073,23 @@ public class TransferManager {
      */
     public void shutdownNow() {
         threadPool.shutdownNow();
-        timedThreadPool.shutdownNow();
 
         if (s3 instanceof SCSClient) {
             ((SCSClient)s3).shutdown();
         }
     }
 
+    /**
+     * Grows the default thread pool to at least the given number of threads,
+     * so that adaptive and stream uploads can have as many parts in flight
+     * as configured, plus the thread running the upload.
+     */
+    private synchronized void ensureThreadPoolSize(int size) {
+        if (!isDefaultThreadPool || threadPool.getMaximumPoolSize() >= size) return;
+        threadPool.setMaximumPoolSize(size);
+        threadPool.setCorePoolSize(size);
+    }
+
     public <X extends SCSWebServiceRequest> X appendUserAgent(X request, String userAgent) {
         request.getRequestClientOptions().appendUserAgent(userAgent);
         return request;
@@ -1068,19 +1098,4 @@ public class TransferManager {
     private static final String USER_AGENT = TransferManager.class.getName() + "/" + VersionInfoUtils.getVersion();
 
     private static final String DEFAULT_DELIMITER = "/";
-
-    /**
-     * There is no need for threads from timedThreadPool if there is no more running threads in current process,
-     * so we need a daemon thread factory for it.
-     */
-    private static final ThreadFactory daemonThreadFactory = new ThreadFactory() {
-        final AtomicInteger threadCount = new AtomicInteger( 0 );
-        public Thread newThread(Runnable r) {
-            int threadNumber = threadCount.incrementAndGet();
-            Thread thread = new Thread(r);
-            thread.setDaemon(true);
-            thread.setName("S3TransferManagerTimedThread-" + threadNumber);
-            return thread;
-        }
-    };
 }
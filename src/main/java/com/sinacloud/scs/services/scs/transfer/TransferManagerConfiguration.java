@@ -33,6 +33,21 @@ public class TransferManagerConfiguration {
     /** Default size threshold for when to use multipart uploads.  */
     private static final int DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 64 * MB;//16 * MB;
 
+    /** Default size of the byte ranges fetched by parallel downloads. */
+    private static final long DEFAULT_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /** Default size threshold for when to use parallel downloads: never. */
+    private static final long DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD = Long.MAX_VALUE;
+
+    /** Default largest part size adaptive multipart uploads can grow parts to. */
+    private static final long DEFAULT_MAXIMUM_UPLOAD_PART_SIZE = 1 * GB;
+
+    /** Default largest number of parts adaptive multipart uploads send at once. */
+    private static final int DEFAULT_MAXIMUM_UPLOAD_PARTS_IN_FLIGHT = 10;
+
+    /** Default bytes of part data adaptive multipart uploads send at once. */
+    private static final long DEFAULT_UPLOAD_MEMORY_BUDGET = 640 * MB;
+
     
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
@@ -57,6 +72,64 @@ public class TransferManagerConfiguration {
      */
     private int multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
 
+    /**
+     * The size, in bytes, of the byte ranges fetched concurrently by parallel
+     * downloads.
+     */
+    private long downloadPartSize = DEFAULT_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The size threshold, in bytes, for when to use parallel downloads.
+     * Downloads of objects over this size are split into byte ranges of
+     * {@link #downloadPartSize} bytes, fetched concurrently on the transfer
+     * manager's thread pool and written directly at their offset in the
+     * destination file. Smaller objects are downloaded over a single
+     * connection.
+     */
+    private long parallelDownloadThreshold = DEFAULT_PARALLEL_DOWNLOAD_THRESHOLD;
+
+    /**
+     * Whether multipart uploads of files tune their part size and the number
+     * of parts uploaded at once from the measured throughput, instead of
+     * using {@link #minimumUploadPartSize} parts and as many parts at once as
+     * the thread pool runs.
+     */
+    private boolean adaptiveMultipartUpload = false;
+
+    /**
+     * The largest part size, in bytes, adaptive multipart uploads grow parts
+     * to.
+     */
+    private long maximumUploadPartSize = DEFAULT_MAXIMUM_UPLOAD_PART_SIZE;
+
+    /**
+     * The largest number of parts of a single adaptive multipart upload sent
+     * at once, i.e. the connection budget of the upload.
+     */
+    private int maximumUploadPartsInFlight = DEFAULT_MAXIMUM_UPLOAD_PARTS_IN_FLIGHT;
+
+    /**
+     * The largest number of bytes of part data a single adaptive multipart
+     * upload sends at once, i.e. the part size times the number of parts in
+     * flight.
+     */
+    private long uploadMemoryBudget = DEFAULT_UPLOAD_MEMORY_BUDGET;
+
+    /**
+     * The number of parts of a multipart upload from an input stream read
+     * ahead into memory and uploaded at once.
+     */
+    private int streamUploadParallelism = 1;
+
+    /**
+     * Whether the checksums of a file are computed before uploading its
+     * parts.
+     */
+    private boolean precomputeChecksums = false;
+
+    /** The index of file hashes to attempt relax uploads with, if any. */
+    private FileFingerprintIndex relaxUploadIndex;
+
     
     /**
      * Returns the minimum part size for upload parts. 
@@ -124,4 +197,255 @@ public class TransferManagerConfiguration {
     public void setMultipartUploadThreshold(int multipartUploadThreshold) {
         this.multipartUploadThreshold = multipartUploadThreshold;
     }
+
+    /**
+     * Returns the size, in bytes, of the byte ranges fetched concurrently by
+     * parallel downloads.
+     *
+     * @return The size of the byte ranges fetched by parallel downloads.
+     */
+    public long getDownloadPartSize() {
+        return downloadPartSize;
+    }
+
+    /**
+     * Sets the size, in bytes, of the byte ranges fetched concurrently by
+     * parallel downloads. Smaller ranges spread a download over more
+     * connections, at the cost of one extra request per range.
+     *
+     * @param downloadPartSize
+     *            The size of the byte ranges fetched by parallel downloads.
+     */
+    public void setDownloadPartSize(long downloadPartSize) {
+        this.downloadPartSize = downloadPartSize;
+    }
+
+    /**
+     * Returns the size threshold in bytes for when to use parallel downloads.
+     * Objects over this size are downloaded as concurrent byte ranges, while
+     * smaller objects are downloaded over a single connection. Parallel
+     * downloads are disabled by default.
+     *
+     * @return The size threshold in bytes for when to use parallel downloads.
+     */
+    public long getParallelDownloadThreshold() {
+        return parallelDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to use parallel downloads.
+     * Objects over this size are downloaded as concurrent byte ranges of
+     * {@link #getDownloadPartSize()} bytes, fetched on the transfer manager's
+     * thread pool, while smaller objects are downloaded over a single
+     * connection.
+     * <p>
+     * Byte ranges cannot be verified on the fly against the ETag of the
+     * object, so parallel downloads read the file back once it is written,
+     * as with {@link com.sinacloud.scs.services.scs.model.IntegrityCheckMode#PostWrite},
+     * unless the integrity check mode is
+     * {@link com.sinacloud.scs.services.scs.model.IntegrityCheckMode#None}.
+     *
+     * @param parallelDownloadThreshold
+     *            The size threshold in bytes for when to use parallel
+     *            downloads.
+     */
+    public void setParallelDownloadThreshold(long parallelDownloadThreshold) {
+        this.parallelDownloadThreshold = parallelDownloadThreshold;
+    }
+
+    /**
+     * Returns whether multipart uploads of files adapt their part size and
+     * the number of parts uploaded at once to the measured throughput.
+     * Disabled by default.
+     *
+     * @return True if multipart uploads are adaptive.
+     */
+    public boolean isAdaptiveMultipartUpload() {
+        return adaptiveMultipartUpload;
+    }
+
+    /**
+     * Sets whether multipart uploads of files adapt their part size and the
+     * number of parts uploaded at once to the measured throughput.
+     * <p>
+     * Adaptive uploads start with parts of {@link #getMinimumUploadPartSize()}
+     * bytes (or more if needed to stay under the maximum number of parts) and
+     * a couple of parts in flight. The throughput of each group of parts is
+     * compared with the previous one: more parts are sent at once while the
+     * throughput keeps increasing, fewer when it drops or stops improving.
+     * Parts which upload in a couple of seconds are doubled in size, to
+     * spread the per-request latency over more data, and parts which take
+     * too long are halved, so that a retry doesn't re-send too much. Only
+     * one of the two changes at a time. Both stay within
+     * {@link #getMaximumUploadPartSize()} and
+     * {@link #getMaximumUploadPartsInFlight()}, and, for parts buffered from
+     * an input stream, {@link #getUploadMemoryBudget()}.
+     *
+     * @param adaptiveMultipartUpload
+     *            True to make multipart uploads adaptive.
+     */
+    public void setAdaptiveMultipartUpload(boolean adaptiveMultipartUpload) {
+        this.adaptiveMultipartUpload = adaptiveMultipartUpload;
+    }
+
+    /**
+     * Returns the largest part size, in bytes, adaptive multipart uploads
+     * grow parts to.
+     *
+     * @return The largest part size of adaptive multipart uploads.
+     */
+    public long getMaximumUploadPartSize() {
+        return maximumUploadPartSize;
+    }
+
+    /**
+     * Sets the largest part size, in bytes, adaptive multipart uploads grow
+     * parts to. Parts can still be larger when needed to stay under the
+     * maximum number of parts of an upload.
+     *
+     * @param maximumUploadPartSize
+     *            The largest part size of adaptive multipart uploads.
+     */
+    public void setMaximumUploadPartSize(long maximumUploadPartSize) {
+        this.maximumUploadPartSize = maximumUploadPartSize;
+    }
+
+    /**
+     * Returns the largest number of parts of a single adaptive multipart
+     * upload sent at once.
+     *
+     * @return The largest number of parts in flight per adaptive upload.
+     */
+    public int getMaximumUploadPartsInFlight() {
+        return maximumUploadPartsInFlight;
+    }
+
+    /**
+     * Sets the largest number of parts of a single adaptive multipart upload
+     * sent at once. Each part in flight holds a connection, so this should
+     * stay under the maximum number of connections of the client. The
+     * default thread pool of the {@link TransferManager} is grown to run that
+     * many parts; a thread pool given to the {@link TransferManager} isn't.
+     *
+     * @param maximumUploadPartsInFlight
+     *            The largest number of parts in flight per adaptive upload.
+     */
+    public void setMaximumUploadPartsInFlight(int maximumUploadPartsInFlight) {
+        this.maximumUploadPartsInFlight = maximumUploadPartsInFlight;
+    }
+
+    /**
+     * Returns the largest number of bytes of part data a single adaptive
+     * multipart upload sends at once.
+     *
+     * @return The memory budget of adaptive multipart uploads.
+     */
+    public long getUploadMemoryBudget() {
+        return uploadMemoryBudget;
+    }
+
+    /**
+     * Sets the largest number of bytes of part data a single adaptive
+     * multipart upload sends at once: the part size times the number of parts
+     * in flight never exceeds it, so larger parts mean fewer parts at once.
+     * At least one part is always in flight. Only parts buffered from an
+     * input stream count against it; parts of a file are read from disk as
+     * they are sent.
+     *
+     * @param uploadMemoryBudget
+     *            The memory budget of adaptive multipart uploads.
+     */
+    public void setUploadMemoryBudget(long uploadMemoryBudget) {
+        this.uploadMemoryBudget = uploadMemoryBudget;
+    }
+
+    /**
+     * Returns the number of parts of a multipart upload from an input stream
+     * which are read ahead into memory and uploaded at once. Defaults to one:
+     * the parts are uploaded one after the other, straight from the stream.
+     *
+     * @return The number of parts of a stream upload in flight.
+     */
+    public int getStreamUploadParallelism() {
+        return streamUploadParallelism;
+    }
+
+    /**
+     * Sets the number of parts of a multipart upload from an input stream
+     * which are read ahead into memory and uploaded at once.
+     * <p>
+     * Above one, the stream is read one part at a time into a pool of that
+     * many reusable part-sized buffers, and each full buffer is uploaded on
+     * the thread pool while the next one is read. Reading waits for a buffer
+     * to be free, so an upload never holds more than this number times the
+     * part size in memory. The stream must have a known content length, set
+     * on the metadata of the request.
+     *
+     * @param streamUploadParallelism
+     *            The number of parts of a stream upload in flight.
+     */
+    public void setStreamUploadParallelism(int streamUploadParallelism) {
+        this.streamUploadParallelism = streamUploadParallelism;
+    }
+
+    /**
+     * Returns whether the MD5 of every part of a multipart file upload, and
+     * the SHA-1 of the file, are computed in one concurrent pass over the
+     * file before uploading the parts.
+     *
+     * @return True if the checksums of uploaded files are computed up front.
+     */
+    public boolean isPrecomputeChecksums() {
+        return precomputeChecksums;
+    }
+
+    /**
+     * Sets whether the MD5 of every part of a multipart file upload, and the
+     * SHA-1 of the file, are computed in one concurrent pass over the file
+     * before uploading the parts.
+     * <p>
+     * The file is memory-mapped and its parts are hashed on all the available
+     * processors, with
+     * {@link com.sinacloud.scs.util.FileChecksumCalculator}. Each part is then
+     * sent with its Content-MD5, so it is never hashed again while being
+     * uploaded. Only applies to uploads with a fixed part size, not to
+     * adaptive ones.
+     *
+     * @param precomputeChecksums
+     *            True to compute the checksums of uploaded files up front.
+     */
+    public void setPrecomputeChecksums(boolean precomputeChecksums) {
+        this.precomputeChecksums = precomputeChecksums;
+    }
+
+    /**
+     * Returns the index of file hashes used to attempt a relax upload of
+     * every file before uploading its content, or null if files are always
+     * uploaded.
+     *
+     * @return The index of file hashes used for relax uploads, or null.
+     */
+    public FileFingerprintIndex getRelaxUploadIndex() {
+        return relaxUploadIndex;
+    }
+
+    /**
+     * Sets the index of file hashes used to attempt a relax upload of every
+     * file before uploading its content, or null to always upload files.
+     * <p>
+     * With an index, each file upload, including the ones of
+     * {@link TransferManager#uploadDirectory}, first asks SCS to store the
+     * object from content it already holds with the same SHA-1 and length
+     * (see {@link com.sinacloud.scs.services.scs.SCS#putObjectRelax}). The
+     * file is only uploaded if SCS rejects the request. The SHA-1 is taken
+     * from the index while the size and modification time of the file are
+     * unchanged, and computed and recorded otherwise, so that re-uploading
+     * mostly unchanged files reads only the changed ones.
+     *
+     * @param relaxUploadIndex
+     *            The index of file hashes to use, or null.
+     */
+    public void setRelaxUploadIndex(FileFingerprintIndex relaxUploadIndex) {
+        this.relaxUploadIndex = relaxUploadIndex;
+    }
 }
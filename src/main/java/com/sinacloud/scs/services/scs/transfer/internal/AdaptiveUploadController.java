@@ -0,0 +1,177 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+
+/**
+ * Tunes the part size and the number of parts in flight of one multipart
+ * upload from the throughput measured by its {@link UploadPartCallable}s.
+ * <p>
+ * Completed parts are grouped in windows of as many parts as are allowed in
+ * flight. At the end of each window, only one of the two is changed, so
+ * that the throughput of the next window reflects that change alone:
+ * <ul>
+ * <li>the part size doubles if parts took less than a couple of seconds
+ * each, and halves if they took long enough to make a retry costly;</li>
+ * <li>otherwise, the number of parts in flight takes one more step in the
+ * same direction if the throughput of the window improved on the previous
+ * one, and one step back otherwise, so that it settles around the point
+ * where more connections stop paying off. The window following a change of
+ * the part size only measures the throughput the next ones are compared
+ * with.</li>
+ * </ul>
+ * The part size stays within the minimum and maximum part sizes of the
+ * configuration. Parts of a stream source are buffered in memory, so for
+ * them the part size times the number of parts in flight also stays within
+ * its memory budget; parts of a file are read as they are sent.
+ */
+@ThreadSafe
+public class AdaptiveUploadController {
+
+    private static final Log log = LogFactory.getLog(AdaptiveUploadController.class);
+
+    /** Parts uploading faster than this are grown. */
+    private static final long MIN_PART_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    /** Parts uploading slower than this are shrunk. */
+    private static final long MAX_PART_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /** Relative throughput change below which a window counts as no better. */
+    private static final double MIN_IMPROVEMENT = 0.05;
+
+    private static final int INITIAL_PARTS_IN_FLIGHT = 2;
+
+    private final long minimumPartSize;
+    private final long maximumPartSize;
+    private final int maximumPartsInFlight;
+    private final long memoryBudget;
+    private final boolean streamSource;
+
+    private long partSize;
+    private int partsInFlightLimit;
+    private int partsInFlight;
+    private int step = 1;
+
+    private long windowStartNanos = -1;
+    private int windowParts;
+    private long windowBytes;
+    private long windowPartNanos;
+    private double previousThroughput;
+
+    /**
+     * @param configuration
+     *            The configuration holding the part size, connection and
+     *            memory budgets.
+     * @param initialPartSize
+     *            The part size to start with.
+     * @param streamSource
+     *            True if the parts are read from an input stream, and so
+     *            buffered in memory, false if they are read from a file.
+     */
+    public AdaptiveUploadController(TransferManagerConfiguration configuration, long initialPartSize,
+            boolean streamSource) {
+        this.minimumPartSize = configuration.getMinimumUploadPartSize();
+        this.maximumPartSize = Math.max(configuration.getMaximumUploadPartSize(), initialPartSize);
+        this.maximumPartsInFlight = Math.max(1, configuration.getMaximumUploadPartsInFlight());
+        this.memoryBudget = configuration.getUploadMemoryBudget();
+        this.streamSource = streamSource;
+        this.partSize = initialPartSize;
+        this.partsInFlightLimit = Math.min(INITIAL_PARTS_IN_FLIGHT, maxPartsInFlight(initialPartSize));
+    }
+
+    /**
+     * Returns the size of the next parts, in bytes.
+     */
+    public synchronized long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the number of parts currently allowed in flight.
+     */
+    public synchronized int getPartsInFlightLimit() {
+        return partsInFlightLimit;
+    }
+
+    /**
+     * Reserves a slot for a new part, returning false if as many parts as
+     * allowed are already in flight. Each successful call must be followed
+     * by a call to {@link #partFinished()}.
+     */
+    public boolean tryStartPart() {
+        return tryStartPart(System.nanoTime());
+    }
+
+    synchronized boolean tryStartPart(long nowNanos) {
+        if (partsInFlight >= partsInFlightLimit) return false;
+        if (windowStartNanos < 0) windowStartNanos = nowNanos;
+        partsInFlight++;
+        return true;
+    }
+
+    /**
+     * Releases the slot of a part, whether it succeeded, failed or was
+     * cancelled.
+     */
+    public synchronized void partFinished() {
+        partsInFlight--;
+    }
+
+    /**
+     * Records the upload of a part of the given size, in bytes, which took
+     * the given time, in nanoseconds.
+     */
+    public void partUploaded(long bytes, long nanos) {
+        partUploaded(bytes, nanos, System.nanoTime());
+    }
+
+    synchronized void partUploaded(long bytes, long nanos, long nowNanos) {
+        windowParts++;
+        windowBytes += bytes;
+        windowPartNanos += nanos;
+        if (windowParts < partsInFlightLimit) return;
+
+        double throughput = windowBytes / (double) Math.max(1, nowNanos - windowStartNanos);
+        long averagePartNanos = windowPartNanos / windowParts;
+        // A window changing the part size leaves the number of parts in flight
+        // alone, and the next one only measures the throughput at the new size
+        if (averagePartNanos < MIN_PART_NANOS && partSize * 2 <= maximumPartSize
+                && partSize * 2 <= maxPartBytes(partsInFlightLimit)) {
+            partSize *= 2;
+            previousThroughput = 0;
+        } else if (averagePartNanos > MAX_PART_NANOS && partSize / 2 >= minimumPartSize) {
+            partSize /= 2;
+            previousThroughput = 0;
+        } else if (previousThroughput > 0) {
+            if (throughput < previousThroughput * (1 + MIN_IMPROVEMENT)) step = -step;
+            partsInFlightLimit = Math.max(1, Math.min(partsInFlightLimit + step, maxPartsInFlight(partSize)));
+            previousThroughput = throughput;
+        } else {
+            previousThroughput = throughput;
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Upload throughput %.0f bytes/s, now %d parts of %d bytes in flight",
+                    throughput * TimeUnit.SECONDS.toNanos(1), partsInFlightLimit, partSize));
+        }
+        windowStartNanos = nowNanos;
+        windowParts = 0;
+        windowBytes = 0;
+        windowPartNanos = 0;
+    }
+
+    private int maxPartsInFlight(long partSize) {
+        if (!streamSource) return maximumPartsInFlight;
+        return (int) Math.max(1, Math.min(maximumPartsInFlight, memoryBudget / partSize));
+    }
+
+    private long maxPartBytes(int partsInFlight) {
+        if (!streamSource) return Long.MAX_VALUE;
+        return memoryBudget / partsInFlight;
+    }
+}
@@ -79,7 +79,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         
         this.monitor.getFuture().cancel(true);
         
-        if ( s3Object != null ) {
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -94,7 +94,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         
         this.monitor.getFuture().cancel(true);
         
-        if ( s3Object != null ) {
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         
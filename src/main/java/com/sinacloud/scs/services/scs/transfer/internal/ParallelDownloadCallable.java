@@ -0,0 +1,366 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sinacloud.scs.RequestClientOptions.Marker;
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.event.ProgressEvent;
+import com.sinacloud.scs.event.ProgressListener;
+import com.sinacloud.scs.event.ProgressListenerCallbackExecutor;
+import com.sinacloud.scs.services.scs.SCS;
+import com.sinacloud.scs.services.scs.internal.ServiceUtils;
+import com.sinacloud.scs.services.scs.model.GetObjectRequest;
+import com.sinacloud.scs.services.scs.model.IntegrityCheckMode;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.transfer.Transfer.TransferState;
+import com.sinacloud.scs.services.scs.transfer.TransferManager;
+
+/**
+ * Downloads an object to a file as concurrent byte ranges. Each range is
+ * fetched with its own ranged GET on the transfer manager's thread pool and
+ * written at its offset in the destination file with positional
+ * {@link FileChannel} writes, so ranges never wait for each other.
+ * <p>
+ * No thread waits for the ranges: the last range to finish runs this
+ * callable, which closes the file, verifies it unless the integrity check
+ * mode is {@link IntegrityCheckMode#None}, and updates the state of the
+ * download. {@link #getFuture()} is the future of that final step.
+ * <p>
+ * The progress listener of the request gets the bytes transferred by every
+ * range, but the lifecycle events of the download as a whole only once.
+ */
+public class ParallelDownloadCallable implements Callable<Boolean> {
+
+    private static final Log log = LogFactory.getLog(ParallelDownloadCallable.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final SCS s3;
+    private final ExecutorService threadPool;
+    private final DownloadImpl download;
+    private final GetObjectRequest getObjectRequest;
+    private final ObjectMetadata objectMetadata;
+    private final File file;
+    private final long partSize;
+    private final ProgressListenerCallbackExecutor progressListenerCallbackExecutor;
+    private final ProgressListener rangeProgressListener;
+
+    private final List<Future<Void>> futures = Collections.synchronizedList(new ArrayList<Future<Void>>());
+    private final Set<S3Object> inFlightParts = Collections.synchronizedSet(new HashSet<S3Object>());
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final FutureTask<Boolean> completion;
+
+    /*
+     * Number of ranges still running, plus one until all the ranges have
+     * been submitted.
+     */
+    private final AtomicInteger pendingParts = new AtomicInteger(1);
+
+    private volatile RandomAccessFile randomAccessFile;
+    private volatile FileChannel channel;
+
+    public ParallelDownloadCallable(TransferManager transferManager, ExecutorService threadPool,
+            DownloadImpl download, GetObjectRequest getObjectRequest, ObjectMetadata objectMetadata, File file) {
+        this.s3 = transferManager.getAmazonS3Client();
+        this.partSize = transferManager.getConfiguration().getDownloadPartSize();
+        this.threadPool = threadPool;
+        this.download = download;
+        this.getObjectRequest = getObjectRequest;
+        this.objectMetadata = objectMetadata;
+        this.file = file;
+        this.progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
+                .wrapListener(getObjectRequest.getGeneralProgressListener());
+        this.rangeProgressListener = getObjectRequest.getGeneralProgressListener() == null ? null
+                : new RangeProgressListener(getObjectRequest.getGeneralProgressListener());
+        this.completion = new FutureTask<Boolean>(this) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    // call() won't run anymore
+                    cancelParts();
+                    closeFile();
+                    // DownloadImpl.abort() holds the lock of the download, and sets the state itself
+                    if (!Thread.holdsLock(download)) {
+                        download.setState(TransferState.Canceled);
+                    }
+                    fireProgressEvent(ProgressEvent.CANCELED_EVENT_CODE);
+                }
+                return cancelled;
+            }
+        };
+    }
+
+    /**
+     * Returns true if the given download can be split into byte ranges: only
+     * whole objects with no constraints are, since the constraints of a
+     * request apply to the object as a whole.
+     */
+    public static boolean isParallelizable(GetObjectRequest getObjectRequest) {
+        return getObjectRequest.getRange() == null
+                && getObjectRequest.getMatchingETagConstraints().isEmpty()
+                && getObjectRequest.getNonmatchingETagConstraints().isEmpty()
+                && getObjectRequest.getModifiedSinceConstraint() == null
+                && getObjectRequest.getUnmodifiedSinceConstraint() == null;
+    }
+
+    /**
+     * Returns the future completed once every range has been written.
+     */
+    public Future<Boolean> getFuture() {
+        return completion;
+    }
+
+    /**
+     * Creates the destination file and submits a task for each byte range to
+     * the thread pool.
+     */
+    public void start() {
+        download.setState(TransferState.InProgress);
+        fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
+        long contentLength = objectMetadata.getContentLength();
+        try {
+            File parentDirectory = file.getParentFile();
+            if ( parentDirectory != null && !parentDirectory.exists() ) {
+                parentDirectory.mkdirs();
+            }
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(contentLength);
+            channel = randomAccessFile.getChannel();
+
+            for (long start = 0; start < contentLength && failure.get() == null && !completion.isCancelled();
+                    start += partSize) {
+                submitPart(start, Math.min(start + partSize, contentLength) - 1);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+        if (completion.isCancelled()) {
+            // Cancelled while the file was being opened
+            closeFile();
+        }
+        partDone();
+    }
+
+    private void submitPart(final long start, final long end) {
+        FutureTask<Void> part = new FutureTask<Void>(new Callable<Void>() {
+            public Void call() throws Exception {
+                downloadRange(start, end);
+                return null;
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (!isCancelled()) {
+                    try {
+                        get();
+                    } catch (ExecutionException e) {
+                        fail(e.getCause());
+                    } catch (InterruptedException e) {
+                        // Can't happen, the task is done
+                    }
+                }
+                partDone();
+            }
+        };
+        pendingParts.incrementAndGet();
+        futures.add(part);
+        threadPool.execute(part);
+    }
+
+    private void partDone() {
+        if (pendingParts.decrementAndGet() == 0) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Records the first failure and cancels all the other ranges.
+     */
+    private void fail(Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            cancelParts();
+        }
+    }
+
+    private void cancelParts() {
+        synchronized (futures) {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+        synchronized (inFlightParts) {
+            for (S3Object part : inFlightParts) {
+                try {
+                    part.getObjectContent().abort();
+                } catch (IOException e) {
+                    log.debug("Couldn't abort range download", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Downloads the given inclusive byte range, retrying once if the
+     * connection fails while the content is being read.
+     */
+    private void downloadRange(long start, long end) throws IOException {
+        try {
+            downloadRangeOnce(start, end);
+        } catch (IOException e) {
+            if (e instanceof SocketException || failure.get() != null || completion.isCancelled()) {
+                throw e;
+            }
+            log.info("Retry the download of range " + start + "-" + end + " of object "
+                    + getObjectRequest.getKey() + " (bucket " + getObjectRequest.getBucketName() + ")", e);
+            downloadRangeOnce(start, end);
+        }
+    }
+
+    private void downloadRangeOnce(long start, long end) throws IOException {
+        GetObjectRequest rangeRequest = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId())
+            .withRange(start, end)
+            .withResponseHeaders(getObjectRequest.getResponseHeaders())
+            .withGeneralProgressListener(rangeProgressListener)
+            .withIntegrityCheckMode(IntegrityCheckMode.None);
+        String userAgent = getObjectRequest.getRequestClientOptions().getClientMarker(Marker.USER_AGENT);
+        if (userAgent != null) {
+            rangeRequest.getRequestClientOptions().putClientMarker(Marker.USER_AGENT, userAgent);
+        }
+
+        S3Object part = s3.getObject(rangeRequest);
+        if (part == null) {
+            throw new SCSClientException("Unable to download range " + start + "-" + end + " of object "
+                    + getObjectRequest.getKey());
+        }
+        inFlightParts.add(part);
+        try {
+            String expectedETag = objectMetadata.getETag();
+            String actualETag = part.getObjectMetadata().getETag();
+            if (expectedETag != null && actualETag != null && !expectedETag.equals(actualETag)) {
+                throw new SCSClientException("Object " + getObjectRequest.getKey()
+                        + " was modified while it was being downloaded");
+            }
+
+            InputStream input = part.getObjectContent();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = start;
+            int bytesRead;
+            while ((bytesRead = input.read(buffer)) > -1) {
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+            }
+            if (position != end + 1) {
+                throw new IOException("Premature end of range " + start + "-" + end
+                        + ": only " + (position - start) + " bytes received");
+            }
+        } finally {
+            inFlightParts.remove(part);
+            try {part.getObjectContent().close();} catch (Exception e) {}
+        }
+    }
+
+    /**
+     * Runs once every range is done: closes the destination file, verifies it
+     * if requested and updates the state of the download.
+     */
+    public Boolean call() throws Exception {
+        try {
+            if (randomAccessFile != null) randomAccessFile.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+
+        Throwable t = failure.get();
+        try {
+            if (t instanceof Exception) {
+                throw (Exception) t;
+            } else if (t != null) {
+                throw new SCSClientException("Unable to download object: " + t.getMessage(), t);
+            }
+            // Ranges can't be verified on the fly, so the file is read back
+            if (getObjectRequest.getIntegrityCheckMode() != IntegrityCheckMode.None) {
+                ServiceUtils.verifyDownloadedFile(objectMetadata, file);
+            }
+        } catch (Exception e) {
+            // Downloads aren't allowed to move from canceled to failed
+            if (download.getState() != TransferState.Canceled) {
+                download.setState(TransferState.Failed);
+                fireProgressEvent(ProgressEvent.FAILED_EVENT_CODE);
+            }
+            throw e;
+        }
+
+        // Fires the completed event
+        download.setState(TransferState.Completed);
+        return true;
+    }
+
+    private void closeFile() {
+        try {
+            if (randomAccessFile != null) randomAccessFile.close();
+        } catch (IOException e) {
+            log.debug("Unable to close " + file, e);
+        }
+    }
+
+    private void fireProgressEvent(int eventCode) {
+        if (progressListenerCallbackExecutor == null) return;
+        ProgressEvent event = new ProgressEvent(0);
+        event.setEventCode(eventCode);
+        progressListenerCallbackExecutor.progressChanged(event);
+    }
+
+    /**
+     * Forwards the bytes transferred by a range to the listener of the
+     * download, dropping the lifecycle events of the range.
+     */
+    private static final class RangeProgressListener implements ProgressListener {
+        private final ProgressListener listener;
+
+        RangeProgressListener(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        public void progressChanged(ProgressEvent progressEvent) {
+            switch (progressEvent.getEventCode()) {
+            case ProgressEvent.PREPARING_EVENT_CODE:
+            case ProgressEvent.STARTED_EVENT_CODE:
+            case ProgressEvent.COMPLETED_EVENT_CODE:
+            case ProgressEvent.FAILED_EVENT_CODE:
+            case ProgressEvent.CANCELED_EVENT_CODE:
+                if (progressEvent.getBytesTransferred() != 0) {
+                    listener.progressChanged(new ProgressEvent(progressEvent.getBytesTransferred()));
+                }
+                break;
+            default:
+                listener.progressChanged(progressEvent);
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A fixed number of part-sized buffers shared by the parts of one streamed
+ * upload. Buffers are allocated on first use and handed back when their part
+ * has been uploaded, so the memory held by the upload never exceeds the
+ * number of buffers times the part size.
+ */
+@ThreadSafe
+public class PartBufferPool {
+
+    private final int bufferSize;
+    private final Deque<byte[]> freeBuffers = new ArrayDeque<byte[]>();
+    private int unallocatedBuffers;
+
+    /**
+     * @param bufferCount
+     *            The largest number of buffers handed out at once.
+     * @param bufferSize
+     *            The size of each buffer, in bytes.
+     */
+    public PartBufferPool(int bufferCount, int bufferSize) {
+        this.unallocatedBuffers = bufferCount;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns a free buffer, waiting for one to be released if all of them
+     * are in use.
+     */
+    public synchronized byte[] acquire() throws InterruptedException {
+        while (freeBuffers.isEmpty() && unallocatedBuffers == 0) {
+            wait();
+        }
+        if (!freeBuffers.isEmpty()) return freeBuffers.pop();
+        unallocatedBuffers--;
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Returns a free buffer, waiting at most the given time for one to be
+     * released if all of them are in use, or null if none was.
+     */
+    public synchronized byte[] acquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (freeBuffers.isEmpty() && unallocatedBuffers == 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return null;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return acquire();
+    }
+
+    /**
+     * Hands back a buffer returned by {@link #acquire()} or
+     * {@link #acquire(long, TimeUnit)}.
+     */
+    public synchronized void release(byte[] buffer) {
+        freeBuffers.push(buffer);
+        notifyAll();
+    }
+}
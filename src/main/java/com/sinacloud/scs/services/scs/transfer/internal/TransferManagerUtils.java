@@ -68,6 +68,30 @@ public class TransferManagerUtils {
         return (getRequestFile(putObjectRequest) != null);
     }
 
+    /**
+     * Returns true if the specified upload request reads from a stream whose
+     * parts can be buffered and uploaded in parallel, as configured by
+     * {@link TransferManagerConfiguration#setStreamUploadParallelism(int)}.
+     *
+     * @param putObjectRequest
+     *            The request to check.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     * @param optimalPartSize
+     *            The size of the parts of the upload.
+     *
+     * @return True if the parts of the stream can be uploaded in parallel.
+     */
+    public static boolean isStreamUploadParallelizable(final PutObjectRequest putObjectRequest,
+            TransferManagerConfiguration configuration, long optimalPartSize) {
+        return getRequestFile(putObjectRequest) == null
+                && putObjectRequest.getInputStream() != null
+                && getContentLength(putObjectRequest) > 0
+                && configuration.getStreamUploadParallelism() > 1
+                && optimalPartSize <= Integer.MAX_VALUE;
+    }
+
     /**
      * Returns the size of the data in this request, otherwise -1 if the content
      * length is unknown.
@@ -14,32 +14,53 @@
  */
 package com.sinacloud.scs.services.scs.transfer.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.SCSServiceException;
 import com.sinacloud.scs.event.ProgressEvent;
 import com.sinacloud.scs.event.ProgressListenerCallbackExecutor;
 import com.sinacloud.scs.event.ProgressListenerChain;
 import com.sinacloud.scs.services.scs.SCS;
+import com.sinacloud.scs.services.scs.Headers;
 import com.sinacloud.scs.services.scs.model.CompleteMultipartUploadRequest;
 import com.sinacloud.scs.services.scs.model.InitiateMultipartUploadRequest;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
 import com.sinacloud.scs.services.scs.model.PartETag;
+import com.sinacloud.scs.services.scs.model.PutObjectRelaxRequest;
 import com.sinacloud.scs.services.scs.model.PutObjectRequest;
 import com.sinacloud.scs.services.scs.model.PutObjectResult;
 import com.sinacloud.scs.services.scs.model.StorageClass;
 import com.sinacloud.scs.services.scs.model.UploadPartRequest;
+import com.sinacloud.scs.services.scs.transfer.FileFingerprintIndex;
 import com.sinacloud.scs.services.scs.transfer.TransferManager;
 import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
 import com.sinacloud.scs.services.scs.transfer.Transfer.TransferState;
 import com.sinacloud.scs.services.scs.transfer.model.UploadResult;
+import com.sinacloud.scs.util.BinaryUtils;
+import com.sinacloud.scs.util.FileChecksumCalculator;
+import com.sinacloud.scs.util.FileChecksums;
 
 public class UploadCallable implements Callable<UploadResult> {
     private final SCS s3;
@@ -49,9 +70,28 @@ public class UploadCallable implements Callable<UploadResult> {
     private final UploadImpl upload;
 
     private static final Log log = LogFactory.getLog(UploadCallable.class);
+
+    /* How long a stream upload waits for a buffer before running one of its queued parts itself. */
+    private static final long BUFFER_WAIT_MILLIS = 50;
     private final TransferManagerConfiguration configuration;
     private final ProgressListenerCallbackExecutor progressListenerChainCallbackExecutor;
-    private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
+    private final List<Future<PartETag>> futures = Collections.synchronizedList(new ArrayList<Future<PartETag>>());
+
+    /*
+     * Number of part uploads still running, plus one until a callback has
+     * been registered through notifyOnPartsCompletion.
+     */
+    private final AtomicInteger pendingParts = new AtomicInteger(1);
+    private volatile Runnable partsCompletionCallback;
+
+    /*
+     * Set once a part of an adaptive or stream upload has failed or been
+     * cancelled, to stop submitting the next ones.
+     */
+    private volatile boolean partsStopped;
+
+    /* The checksums of the file computed for a relax upload, if any. */
+    private FileChecksums checksums;
 
     public UploadCallable(TransferManager transferManager, ExecutorService threadPool, UploadImpl upload, PutObjectRequest putObjectRequest, ProgressListenerChain progressListenerChain) {
         this.s3 = transferManager.getAmazonS3Client();
@@ -80,6 +120,24 @@ public class UploadCallable implements Callable<UploadResult> {
         return multipartUploadId;
     }
 
+    /**
+     * Registers the callback to run, exactly once, as soon as every part
+     * submitted by {@link #uploadPartsInParallel(UploadPartRequestFactory)}
+     * has finished (successfully or not). The callback runs on the thread
+     * which finished the last part, or on the calling thread if all the parts
+     * are already done.
+     */
+    void notifyOnPartsCompletion(Runnable callback) {
+        partsCompletionCallback = callback;
+        partDone();
+    }
+
+    private void partDone() {
+        if (pendingParts.decrementAndGet() == 0) {
+            partsCompletionCallback.run();
+        }
+    }
+
     /**
      * Returns true if this UploadCallable is processing a multipart upload.
      * @return True if this UploadCallable is processing a multipart upload.
@@ -90,6 +148,10 @@ public class UploadCallable implements Callable<UploadResult> {
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
+        if (isRelaxUploadable()) {
+            UploadResult result = uploadRelax();
+            if (result != null) return result;
+        }
         if ( isMultipartUpload() ) {
             fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
             return uploadInParts();
@@ -98,6 +160,79 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    private boolean isRelaxUploadable() {
+        return configuration.getRelaxUploadIndex() != null && putObjectRequest.getFile() != null
+                && putObjectRequest.getFile().length() > 0 && putObjectRequest.getAccessControlList() == null;
+    }
+
+    /**
+     * Asks SCS to store the object from content it already holds with the
+     * same SHA-1 as the file, returning the result, or null if SCS rejects
+     * the request and the file has to be uploaded.
+     */
+    private UploadResult uploadRelax() throws IOException {
+        File file = putObjectRequest.getFile();
+        FileFingerprintIndex index = configuration.getRelaxUploadIndex();
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        String sha1 = index.getSha1(file);
+        if (sha1 == null) {
+            if (configuration.isPrecomputeChecksums() && isMultipartUpload()
+                    && !configuration.isAdaptiveMultipartUpload()) {
+                // Hashes the parts in the same pass, for the upload if it comes to that
+                checksums = FileChecksumCalculator.getDefault().calculate(file, getOptimalPartSize(false));
+                sha1 = checksums.getSha1Hex();
+            } else {
+                sha1 = BinaryUtils.toHex(FileChecksumCalculator.getDefault().calculateSha1(file));
+            }
+            index.put(file, length, lastModified, sha1);
+        }
+
+        PutObjectRelaxRequest relaxRequest = new PutObjectRelaxRequest(putObjectRequest.getBucketName(),
+                putObjectRequest.getKey(), sha1, length, putObjectRequest.getCannedAcl())
+                .withMetadata(copyMetadata(putObjectRequest.getMetadata()));
+        PutObjectResult putObjectResult;
+        try {
+            putObjectResult = s3.putObjectRelax(relaxRequest);
+        } catch (SCSServiceException e) {
+            log.debug("Relax upload of " + file + " rejected, uploading it: " + e.getMessage());
+            return null;
+        }
+
+        fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
+        if (progressListenerChainCallbackExecutor != null) {
+            progressListenerChainCallbackExecutor.progressChanged(new ProgressEvent(length));
+        }
+        // The monitor fires the completion of multipart uploads
+        if (!isMultipartUpload()) {
+            fireProgressEvent(ProgressEvent.COMPLETED_EVENT_CODE);
+        }
+
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(putObjectRequest.getBucketName());
+        uploadResult.setKey(putObjectRequest.getKey());
+        uploadResult.setETag(putObjectResult.getETag());
+        uploadResult.setVersionId(putObjectResult.getVersionId());
+        return uploadResult;
+    }
+
+    /*
+     * Copies the headers of the upload, but its content length and MD5, for
+     * the relax request, which sets its own.
+     */
+    private static ObjectMetadata copyMetadata(ObjectMetadata metadata) {
+        ObjectMetadata copy = new ObjectMetadata();
+        for (Map.Entry<String, Object> header : metadata.getRawMetadata().entrySet()) {
+            if (Headers.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())
+                    || Headers.CONTENT_MD5.equalsIgnoreCase(header.getKey())) continue;
+            copy.setHeader(header.getKey(), header.getValue());
+        }
+        copy.setUserMetadata(new HashMap<String, String>(metadata.getUserMetadata()));
+        copy.setUserHeader(new HashMap<String, String>(metadata.getUserHeader()));
+        return copy;
+    }
+
     /**
      * Uploads the given request in a single chunk and returns the result.
      */
@@ -127,9 +262,34 @@ public class UploadCallable implements Callable<UploadResult> {
         multipartUploadId = initiateMultipartUpload(putObjectRequest);
 
         try {
-            UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize);
+            boolean isParallelizable = TransferManagerUtils.isUploadParallelizable(putObjectRequest, isUsingEncryption);
+            if (isParallelizable && configuration.isAdaptiveMultipartUpload()) {
+                AdaptiveUploadController controller = new AdaptiveUploadController(configuration, optimalPartSize,
+                        TransferManagerUtils.getRequestFile(putObjectRequest) == null);
+                if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+                submitAdaptiveParts(new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize, controller), controller);
+                return null;
+            }
+
+            if (TransferManagerUtils.isStreamUploadParallelizable(putObjectRequest, configuration, optimalPartSize)) {
+                uploadStreamPartsInParallel(optimalPartSize);
+                return null;
+            }
+
+            UploadPartRequestFactory requestFactory;
+            if (configuration.isPrecomputeChecksums() && putObjectRequest.getFile() != null) {
+                if (checksums == null) {
+                    // Only a relax upload needs the SHA-1 of the whole file
+                    checksums = FileChecksumCalculator.getDefault().calculate(putObjectRequest.getFile(),
+                            optimalPartSize, false);
+                }
+                requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize,
+                        checksums);
+            } else {
+                requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize);
+            }
 
-            if (TransferManagerUtils.isUploadParallelizable(putObjectRequest, isUsingEncryption)) {
+            if (isParallelizable) {
                 uploadPartsInParallel(requestFactory);
                 return null;
             } else {
@@ -216,12 +376,171 @@ public class UploadCallable implements Callable<UploadResult> {
 
     /**
      * Submits a callable for each part to upload to our thread pool and records its corresponding Future.
+     * Each part reports its completion so that the upload can be completed as soon as the last one is done.
      */
     private void uploadPartsInParallel(UploadPartRequestFactory requestFactory) {
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
             UploadPartRequest request = requestFactory.getNextUploadPartRequest();
-            futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            FutureTask<PartETag> partTask = new FutureTask<PartETag>(new UploadPartCallable(s3, request)) {
+                @Override
+                protected void done() {
+                    partDone();
+                }
+            };
+            pendingParts.incrementAndGet();
+            futures.add(partTask);
+            threadPool.execute(partTask);
+        }
+    }
+
+    /**
+     * Reads the input stream of the request one part at a time into buffers
+     * from a pool of as many buffers as parts allowed in flight, submitting
+     * the upload of each full buffer to our thread pool. Reading waits for a
+     * buffer to be released by a finished part, which bounds the memory held
+     * by the upload, and stops as soon as a part fails.
+     * <p>
+     * This runs on a thread of the pool the parts are submitted to, which may
+     * have no other free thread. While it waits for a buffer, it runs the
+     * parts still queued itself, so that the parts holding the buffers always
+     * make progress.
+     */
+    private void uploadStreamPartsInParallel(long partSize) throws IOException, InterruptedException {
+        final PartBufferPool bufferPool = new PartBufferPool(
+                configuration.getStreamUploadParallelism(), (int) partSize);
+        List<FutureTask<PartETag>> unfinishedParts = new ArrayList<FutureTask<PartETag>>();
+        InputStream input = putObjectRequest.getInputStream();
+        long remainingBytes = TransferManagerUtils.getContentLength(putObjectRequest);
+        int partNumber = 1;
+
+        while (remainingBytes > 0 && !partsStopped) {
+            if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+            final byte[] buffer = acquireBuffer(bufferPool, unfinishedParts);
+            if (partsStopped) {
+                bufferPool.release(buffer);
+                break;
+            }
+            int length = (int) Math.min(partSize, remainingBytes);
+            try {
+                readFully(input, buffer, length);
+            } catch (IOException e) {
+                bufferPool.release(buffer);
+                throw e;
+            }
+            remainingBytes -= length;
+
+            UploadPartRequest request = new UploadPartRequest()
+                .withBucketName(putObjectRequest.getBucketName())
+                .withKey(putObjectRequest.getKey())
+                .withUploadId(multipartUploadId)
+                .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+                .withPartNumber(partNumber++)
+                .withPartSize(length);
+            request.setLastPart(remainingBytes == 0);
+            request.setGeneralProgressListener(putObjectRequest.getGeneralProgressListener());
+
+            FutureTask<PartETag> partTask = new FutureTask<PartETag>(new UploadPartCallable(s3, request)) {
+                @Override
+                protected void done() {
+                    bufferPool.release(buffer);
+                    try {
+                        get();
+                    } catch (ExecutionException e) {
+                        partsStopped = true;
+                    } catch (CancellationException e) {
+                        partsStopped = true;
+                    } catch (InterruptedException e) {
+                        // Can't happen, the task is done
+                    }
+                    partDone();
+                }
+            };
+            pendingParts.incrementAndGet();
+            futures.add(partTask);
+            unfinishedParts.add(partTask);
+            try {
+                threadPool.execute(partTask);
+            } catch (RejectedExecutionException e) {
+                partTask.cancel(false);
+                throw new CancellationException("TransferManager has been shutdown");
+            }
+        }
+    }
+
+    /*
+     * Returns a free buffer, running the given parts which are still queued
+     * on this thread while none is. Running a part which a thread of the pool
+     * has already started, or finished, does nothing.
+     */
+    private static byte[] acquireBuffer(PartBufferPool bufferPool, List<FutureTask<PartETag>> unfinishedParts)
+            throws InterruptedException {
+        byte[] buffer = bufferPool.acquire(0, TimeUnit.MILLISECONDS);
+        while (buffer == null) {
+            for (Iterator<FutureTask<PartETag>> it = unfinishedParts.iterator(); it.hasNext();) {
+                FutureTask<PartETag> part = it.next();
+                part.run();
+                if (part.isDone()) {
+                    it.remove();
+                    buffer = bufferPool.acquire(0, TimeUnit.MILLISECONDS);
+                    if (buffer != null) return buffer;
+                }
+            }
+            buffer = bufferPool.acquire(BUFFER_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return buffer;
+    }
+
+    private static void readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int offset = 0;
+        while (offset < length) {
+            int read = input.read(buffer, offset, length - offset);
+            if (read < 0) {
+                throw new SCSClientException("Input stream ended " + (length - offset)
+                        + " bytes before the end of the part, check the content length of the upload");
+            }
+            offset += read;
+        }
+    }
+
+    /**
+     * Submits parts to our thread pool as long as the controller allows more
+     * parts in flight. Each part submits the next ones when it finishes, so
+     * the parts are sized and paced as the controller adapts, and no thread
+     * waits for them.
+     */
+    private void submitAdaptiveParts(final UploadPartRequestFactory requestFactory,
+            final AdaptiveUploadController controller) {
+        // Keeps the futures in part order, as the completion expects
+        synchronized (requestFactory) {
+            while (!partsStopped && requestFactory.hasMoreRequests() && controller.tryStartPart()) {
+                UploadPartRequest request = requestFactory.getNextUploadPartRequest();
+                FutureTask<PartETag> partTask = new FutureTask<PartETag>(new UploadPartCallable(s3, request, controller)) {
+                    @Override
+                    protected void done() {
+                        controller.partFinished();
+                        try {
+                            get();
+                            submitAdaptiveParts(requestFactory, controller);
+                        } catch (ExecutionException e) {
+                            partsStopped = true;
+                        } catch (CancellationException e) {
+                            partsStopped = true;
+                        } catch (InterruptedException e) {
+                            // Can't happen, the task is done
+                        }
+                        partDone();
+                    }
+                };
+                pendingParts.incrementAndGet();
+                futures.add(partTask);
+                try {
+                    threadPool.execute(partTask);
+                } catch (RejectedExecutionException e) {
+                    // TransferManager has been shutdown
+                    partTask.cancel(false);
+                }
+            }
         }
     }
 
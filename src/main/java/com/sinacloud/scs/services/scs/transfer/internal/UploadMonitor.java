@@ -20,8 +20,8 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,11 +40,12 @@ import com.sinacloud.scs.services.scs.transfer.Transfer.TransferState;
 import com.sinacloud.scs.services.scs.transfer.model.UploadResult;
 
 /**
- * Manages an upload by periodically checking to see if the upload is done, and
- * returning a result if so. Otherwise, schedules a copy of itself to be run in
- * the future and returns null. When waiting on the result of this class via a
- * Future object, clients must call {@link UploadMonitor#isDone()} and
- * {@link UploadMonitor#getFuture()}
+ * Manages an upload by running the upload callable and returning a result if
+ * it completed in this thread. Otherwise (parallel multipart uploads), arranges
+ * for itself to be run again by the last part to finish, at which point the
+ * multipart upload is completed, and returns null. When waiting on the result
+ * of this class via a Future object, clients must call
+ * {@link UploadMonitor#isDone()} and {@link UploadMonitor#getFuture()}
  */
 public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
 
@@ -52,7 +53,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     private final SCS s3;
     private final ExecutorService threadPool;
     private final PutObjectRequest putObjectRequest;
-    private ScheduledExecutorService timedThreadPool;
 
     private static final Log log = LogFactory.getLog(UploadMonitor.class);
     private final TransferManagerConfiguration configuration;
@@ -88,10 +88,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         isUploadDone = true;
     }
 
-    // TODO: this could be configured in the configuration object (which we're
-    // not using right now)
-    private int pollInterval = 5000;
-
     /**
      * Constructs a new upload watcher, which immediately submits itself to the
      * thread pool.
@@ -138,8 +134,13 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         this(manager, transfer, threadPool, multipartUploadCallable, putObjectRequest, progressListenerChain.transformToGeneralProgressListenerChain());
     }
 
+    /**
+     * @deprecated Uploads are no longer polled; the multipart upload is
+     *             completed as soon as its last part finishes, so this thread
+     *             pool is not used anymore.
+     */
+    @Deprecated
     public void setTimedThreadPool(ScheduledExecutorService timedThreadPool) {
-        this.timedThreadPool = timedThreadPool;
     }
 
     @Override
@@ -148,7 +149,7 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
             if ( uploadId == null ) {
                 return upload();
             } else {
-                return poll();
+                return partsCompleted();
             }
         } catch ( CancellationException e ) {
             transfer.setState(TransferState.Canceled);
@@ -162,17 +163,12 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
     }
 
     /**
-     * Polls for a result from a multipart upload and either returns it if
-     * complete, or reschedules to poll again later if not.
+     * Called once every part of a multipart upload has finished; completes the
+     * multipart upload and returns the result.
      */
-    private UploadResult poll() throws InterruptedException {
-        for ( Future<PartETag> f : futures ) {
-            if ( !f.isDone() ) {
-                reschedule();
-                return null;
-            }
-        }
-
+    private UploadResult partsCompleted() {
+        // Adaptive uploads keep submitting parts until the last one is done
+        futures.addAll(multipartUploadCallable.getFutures());
         for ( Future<PartETag> f : futures ) {
             if ( f.isCancelled() ) {
                 throw new CancellationException();
@@ -184,7 +180,8 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
 
     /**
      * Initiates the upload and checks on the result. If it has completed,
-     * returns the result; otherwise, reschedules to check back later.
+     * returns the result; otherwise, registers the completion of the multipart
+     * upload to run as soon as the last part has been uploaded.
      */
     private UploadResult upload() throws Exception, InterruptedException {
 
@@ -194,8 +191,9 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
             uploadComplete();
         } else {
             uploadId = multipartUploadCallable.getMultipartUploadId();
-            futures.addAll(multipartUploadCallable.getFutures());
-            reschedule();
+            FutureTask<UploadResult> completion = new FutureTask<UploadResult>(this);
+            setNextFuture(completion);
+            multipartUploadCallable.notifyOnPartsCompletion(completion);
         }
 
         return result;
@@ -212,15 +210,6 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         }
     }
 
-    private void reschedule()  {
-        setNextFuture(timedThreadPool.schedule(new Callable<UploadResult>() {
-            public UploadResult call() throws Exception {
-                setNextFuture(threadPool.submit(UploadMonitor.this));
-                return null;
-            }
-        }, pollInterval, TimeUnit.MILLISECONDS));
-    }
-
     private void fireProgressEvent(final int eventType) {
         if (progressListenerChainCallbackExecutor == null) return;
         ProgressEvent event = new ProgressEvent(0);
@@ -23,13 +23,28 @@ import com.sinacloud.scs.services.scs.model.UploadPartRequest;
 public class UploadPartCallable implements Callable<PartETag> {
     private final SCS s3;
     private final UploadPartRequest request;
+    private final AdaptiveUploadController controller;
 
     public UploadPartCallable(SCS s3, UploadPartRequest request) {
+        this(s3, request, null);
+    }
+
+    /**
+     * Constructs a callable which reports the throughput of the part to the
+     * given controller, if any.
+     */
+    public UploadPartCallable(SCS s3, UploadPartRequest request, AdaptiveUploadController controller) {
         this.s3 = s3;
         this.request = request;
+        this.controller = controller;
     }
 
     public PartETag call() throws Exception {
-        return s3.uploadPart(request).getPartETag();
+        long startNanos = System.nanoTime();
+        PartETag partETag = s3.uploadPart(request).getPartETag();
+        if (controller != null) {
+            controller.partUploaded(request.getPartSize(), System.nanoTime() - startNanos);
+        }
+        return partETag;
     }
 }
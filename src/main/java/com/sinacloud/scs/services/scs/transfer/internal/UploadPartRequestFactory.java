@@ -14,11 +14,15 @@
  */
 package com.sinacloud.scs.services.scs.transfer.internal;
 
+import static com.sinacloud.scs.services.scs.internal.Constants.MAXIMUM_UPLOAD_PARTS;
+
 import java.io.File;
 
 import com.sinacloud.scs.services.scs.internal.InputSubstream;
 import com.sinacloud.scs.services.scs.model.PutObjectRequest;
 import com.sinacloud.scs.services.scs.model.UploadPartRequest;
+import com.sinacloud.scs.util.BinaryUtils;
+import com.sinacloud.scs.util.FileChecksums;
 
 /**
  * Factory for creating all the individual UploadPartRequest objects for a
@@ -34,6 +38,8 @@ public class UploadPartRequestFactory {
     private final String key;
     private final String uploadId;
     private final long optimalPartSize;
+    private final AdaptiveUploadController controller;
+    private final FileChecksums checksums;
     private final File file;
     private final PutObjectRequest putObjectRequest;
     private int partNumber = 1;
@@ -41,9 +47,34 @@ public class UploadPartRequestFactory {
     private long remainingBytes;
 
     public UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize) {
+        this(putObjectRequest, uploadId, optimalPartSize, null, null);
+    }
+
+    /**
+     * Constructs a factory sizing each part as the given controller says,
+     * if any, instead of using the same size for all the parts.
+     */
+    public UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize,
+            AdaptiveUploadController controller) {
+        this(putObjectRequest, uploadId, optimalPartSize, controller, null);
+    }
+
+    /**
+     * Constructs a factory setting the MD5 of each part from the given
+     * checksums of the file, computed with the same part size.
+     */
+    public UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize,
+            FileChecksums checksums) {
+        this(putObjectRequest, uploadId, optimalPartSize, null, checksums);
+    }
+
+    private UploadPartRequestFactory(PutObjectRequest putObjectRequest, String uploadId, long optimalPartSize,
+            AdaptiveUploadController controller, FileChecksums checksums) {
         this.putObjectRequest = putObjectRequest;
         this.uploadId = uploadId;
         this.optimalPartSize = optimalPartSize;
+        this.controller = controller;
+        this.checksums = checksums;
         this.bucketName = putObjectRequest.getBucketName();
         this.key = putObjectRequest.getKey();
         this.file = TransferManagerUtils.getRequestFile(putObjectRequest);
@@ -55,7 +86,7 @@ public class UploadPartRequestFactory {
     }
 
     public synchronized UploadPartRequest getNextUploadPartRequest() {
-        long partSize = Math.min(optimalPartSize, remainingBytes);
+        long partSize = Math.min(nextPartSize(), remainingBytes);
         boolean isLastPart = (remainingBytes - partSize <= 0);
 
         UploadPartRequest request = null;
@@ -74,8 +105,12 @@ public class UploadPartRequestFactory {
                 .withUploadId(uploadId)
                 .withFile(file)
                 .withFileOffset(offset)
-                .withPartNumber(partNumber++)
+                .withPartNumber(partNumber)
                 .withPartSize(partSize);
+            if (checksums != null) {
+                request.setMd5Digest(BinaryUtils.toBase64(checksums.getPartMd5(partNumber)));
+            }
+            partNumber++;
         }
 
         offset += partSize;
@@ -86,4 +121,11 @@ public class UploadPartRequestFactory {
 
         return request;
     }
+
+    private long nextPartSize() {
+        if (controller == null) return optimalPartSize;
+        // Never leave more bytes than the remaining parts can hold
+        long remainingParts = MAXIMUM_UPLOAD_PARTS - partNumber + 1;
+        return Math.max(controller.getPartSize(), (remainingBytes + remainingParts - 1) / remainingParts);
+    }
 }
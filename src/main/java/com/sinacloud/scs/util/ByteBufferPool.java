@@ -0,0 +1,114 @@
+package com.sinacloud.scs.util;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * Pool of reusable {@link ByteBuffer}s, on or off the Java heap, in size
+ * classes of powers of two.
+ * <p>
+ * Upload streams buffer up to a fixed number of bytes each so that they can
+ * be replayed on retries; allocating those buffers for every request makes
+ * the garbage produced grow with the number of concurrent uploads. Buffers
+ * acquired from a pool are instead handed back once the stream is closed and
+ * reused by the next one, so the allocation rate stays flat. A pool only
+ * retains up to a fixed number of free bytes; buffers released beyond that,
+ * and requests larger than the largest size class, are left to the garbage
+ * collector.
+ */
+@ThreadSafe
+public final class ByteBufferPool {
+
+    private static final int MIN_SIZE_CLASS = 12; // 4 KB
+    private static final int MAX_SIZE_CLASS = 24; // 16 MB
+    private static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+
+    private static final ByteBufferPool HEAP = new ByteBufferPool(false, DEFAULT_MAX_RETAINED_BYTES);
+    private static final ByteBufferPool DIRECT = new ByteBufferPool(true, DEFAULT_MAX_RETAINED_BYTES);
+
+    private final boolean direct;
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final Queue<ByteBuffer>[] freeBuffers;
+
+    /**
+     * Creates a pool.
+     *
+     * @param direct
+     *            True to allocate direct buffers, outside of the Java heap.
+     * @param maxRetainedBytes
+     *            The largest number of bytes of free buffers kept for reuse.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public ByteBufferPool(boolean direct, long maxRetainedBytes) {
+        this.direct = direct;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.freeBuffers = new Queue[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1];
+        for (int i = 0; i < freeBuffers.length; i++) {
+            freeBuffers[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /** Returns the pool of heap buffers shared by the client. */
+    public static ByteBufferPool getHeapPool() {
+        return HEAP;
+    }
+
+    /** Returns the pool of direct buffers shared by the client. */
+    public static ByteBufferPool getDirectPool() {
+        return DIRECT;
+    }
+
+    /** Returns true if this pool allocates direct buffers. */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Returns a cleared buffer with a capacity of at least the given number
+     * of bytes. The buffer should be handed back with
+     * {@link #release(ByteBuffer)} once it isn't used anymore.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        if (sizeClass > MAX_SIZE_CLASS) return allocate(minCapacity);
+
+        ByteBuffer buffer = freeBuffers[sizeClass - MIN_SIZE_CLASS].poll();
+        if (buffer == null) return allocate(1 << sizeClass);
+        retainedBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Hands back a buffer returned by {@link #acquire(int)}. The buffer must
+     * not be used anymore by the caller.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (buffer.isDirect() != direct || capacity != 1 << sizeClass || sizeClass > MAX_SIZE_CLASS) return;
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+        freeBuffers[sizeClass - MIN_SIZE_CLASS].offer(buffer);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    /*
+     * The exponent of the smallest power of two holding the given size, at
+     * least MIN_SIZE_CLASS.
+     */
+    private static int sizeClass(int size) {
+        if (size <= 1 << MIN_SIZE_CLASS) return MIN_SIZE_CLASS;
+        return 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+}
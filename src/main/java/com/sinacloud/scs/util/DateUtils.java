@@ -19,6 +19,13 @@ package com.sinacloud.scs.util;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
 import java.util.Date;
 import java.util.Locale;
 import java.util.SimpleTimeZone;
@@ -27,33 +34,96 @@ import java.util.TimeZone;
 /**
  * Utilities for parsing and formatting dates.
  * <p>
- * Note that this class doesn't use static methods because of the
- * synchronization issues with SimpleDateFormat. This lets synchronization be
- * done on a per-object level, instead of on a per-class level.
+ * The formatters used by the methods are immutable and shared, so the
+ * methods can be called on one instance from any number of threads without
+ * contention. The last RFC 822 string formatted is also cached, since the
+ * Date header of every request signed within the same second is the same.
+ * <p>
+ * Dates are formatted with the strict patterns below, but parsed as leniently
+ * as the SimpleDateFormat instances used before: single-digit days, any
+ * number of fractional digits and weekdays that don't match the date are
+ * accepted.
  */
 public class DateUtils {
 
-    /** ISO 8601 format */
+    /**
+     * ISO 8601 format
+     *
+     * @deprecated No longer used by the methods of this class. Kept for
+     *             subclasses; like any SimpleDateFormat, it isn't thread-safe.
+     */
+    @Deprecated
     protected final SimpleDateFormat iso8601DateFormat =
         new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 
-    /** Alternate ISO 8601 format without fractional seconds */
+    /**
+     * Alternate ISO 8601 format without fractional seconds
+     *
+     * @deprecated No longer used by the methods of this class. Kept for
+     *             subclasses; like any SimpleDateFormat, it isn't thread-safe.
+     */
+    @Deprecated
     protected final SimpleDateFormat alternateIso8601DateFormat =
         new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
 
-    /** RFC 822 format */
+    /**
+     * RFC 822 format
+     *
+     * @deprecated No longer used by the methods of this class. Kept for
+     *             subclasses; like any SimpleDateFormat, it isn't thread-safe.
+     */
+    @Deprecated
     protected final SimpleDateFormat rfc822DateFormat =
         new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
-    
+
+    /**
+     * @deprecated No longer used by the methods of this class. Kept for
+     *             subclasses; like any SimpleDateFormat, it isn't thread-safe.
+     */
+    @Deprecated
     protected final SimpleDateFormat rfc822DateFormatUTC =
             new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
 
     /**
      * This is another ISO 8601 format that's used in clock skew error response
+     *
+     * @deprecated No longer used by the methods of this class. Kept for
+     *             subclasses; like any SimpleDateFormat, it isn't thread-safe.
      */
+    @Deprecated
     protected final SimpleDateFormat compressedIso8601DateFormat =
         new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
 
+    /** ISO 8601 formatter */
+    private static final DateTimeFormatter iso8601DateFormatter =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US).withZone(ZoneOffset.UTC);
+
+    /** ISO 8601 parser, with or without fractional seconds of any length */
+    private static final DateTimeFormatter iso8601DateParser = new DateTimeFormatterBuilder()
+        .appendPattern("yyyy-MM-dd'T'HH:mm:ss")
+        .optionalStart()
+        .appendFraction(ChronoField.NANO_OF_SECOND, 1, 9, true)
+        .optionalEnd()
+        .appendLiteral('Z')
+        .toFormatter(Locale.US)
+        .withZone(ZoneOffset.UTC);
+
+    /** RFC 822 formatter */
+    private static final DateTimeFormatter rfc822DateFormatter =
+        DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    /** RFC 822 parsers, for dates whose weekday has been dropped */
+    private static final DateTimeFormatter rfc822DateParser = rfc822DateParser("GMT");
+
+    private static final DateTimeFormatter rfc822DateParserUTC = rfc822DateParser("UTC");
+
+    /** Parser of the ISO 8601 format used in clock skew error responses */
+    private static final DateTimeFormatter compressedIso8601DateParser =
+        DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'", Locale.US).withZone(ZoneOffset.UTC);
+
+    /** The last RFC 822 date formatted, and the second it stands for */
+    private static volatile FormattedSecond lastRfc822Date = new FormattedSecond(Long.MIN_VALUE, null);
+
     /**
      * Constructs a new DateUtils object, ready to parse/format dates.
      */
@@ -78,17 +148,7 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseIso8601Date(String dateString) throws ParseException {
-        try {
-            synchronized (iso8601DateFormat) {
-                return iso8601DateFormat.parse(dateString);
-            }
-        } catch (ParseException e) {
-            // If the first ISO 8601 parser didn't work, try the alternate
-            // version which doesn't include fractional seconds
-            synchronized (alternateIso8601DateFormat) {
-                return alternateIso8601DateFormat.parse(dateString);
-            }
-        }
+        return parse(iso8601DateParser, dateString);
     }
 
     /**
@@ -100,9 +160,7 @@ public class DateUtils {
      * @return The ISO 8601 string representing the specified date.
      */
     public String formatIso8601Date(Date date) {
-        synchronized (iso8601DateFormat) {
-            return iso8601DateFormat.format(date);
-        }
+        return iso8601DateFormatter.format(Instant.ofEpochMilli(date.getTime()));
     }
 
     /**
@@ -118,16 +176,17 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseRfc822Date(String dateString) throws ParseException {
-        synchronized (rfc822DateFormatUTC) {
-        	if(dateString!=null){
-        		if(dateString.endsWith("UTC")){
-        			return rfc822DateFormatUTC.parse(dateString);
-        		}else{
-        			return rfc822DateFormat.parse(dateString);
-        		}
-        	}
-            return rfc822DateFormat.parse(dateString);
+        if (dateString == null) {
+            return parse(rfc822DateParser, dateString);
+        }
+        // The weekday is redundant, and java.time would reject one that
+        // doesn't match the date
+        int comma = dateString.indexOf(',');
+        String date = comma < 0 ? dateString.trim() : dateString.substring(comma + 1).trim();
+        if (date.endsWith("UTC")) {
+            return parse(rfc822DateParserUTC, date);
         }
+        return parse(rfc822DateParser, date);
     }
 
     /**
@@ -139,9 +198,14 @@ public class DateUtils {
      * @return The RFC 822 string representing the specified date.
      */
     public String formatRfc822Date(Date date) {
-        synchronized (rfc822DateFormat) {
-            return rfc822DateFormat.format(date);
+        long epochSecond = Math.floorDiv(date.getTime(), 1000L);
+        FormattedSecond last = lastRfc822Date;
+        if (last.epochSecond == epochSecond) {
+            return last.formatted;
         }
+        String formatted = rfc822DateFormatter.format(Instant.ofEpochSecond(epochSecond));
+        lastRfc822Date = new FormattedSecond(epochSecond, formatted);
+        return formatted;
     }
 
     /**
@@ -157,8 +221,44 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseCompressedIso8601Date(String dateString) throws ParseException {
-        synchronized (compressedIso8601DateFormat) {
-            return compressedIso8601DateFormat.parse(dateString);
+        return parse(compressedIso8601DateParser, dateString);
+    }
+
+    private static DateTimeFormatter rfc822DateParser(String zone) {
+        return new DateTimeFormatterBuilder()
+            .parseCaseInsensitive()
+            .parseLenient()
+            .appendPattern("d MMM yyyy HH:mm:ss '" + zone + "'")
+            .toFormatter(Locale.US)
+            .withZone(ZoneOffset.UTC);
+    }
+
+    private static Date parse(DateTimeFormatter formatter, String dateString) throws ParseException {
+        if (dateString == null) {
+            throw new NullPointerException("The date string to parse must be specified");
+        }
+        try {
+            TemporalAccessor parsed = formatter.parse(dateString);
+            return new Date(Instant.from(parsed).toEpochMilli());
+        } catch (DateTimeParseException e) {
+            ParseException pe = new ParseException(e.getMessage(), e.getErrorIndex());
+            pe.initCause(e);
+            throw pe;
+        } catch (RuntimeException e) {
+            // The string matched the pattern but doesn't denote an instant
+            ParseException pe = new ParseException("Unparseable date: \"" + dateString + "\"", 0);
+            pe.initCause(e);
+            throw pe;
+        }
+    }
+
+    private static final class FormattedSecond {
+        private final long epochSecond;
+        private final String formatted;
+
+        private FormattedSecond(long epochSecond, String formatted) {
+            this.epochSecond = epochSecond;
+            this.formatted = formatted;
         }
     }
 }
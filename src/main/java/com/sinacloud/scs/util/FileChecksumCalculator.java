@@ -0,0 +1,224 @@
+package com.sinacloud.scs.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.sinacloud.scs.SCSClientException;
+
+/**
+ * Computes the checksums needed to upload files: the MD5 of each part of a
+ * multipart upload, and the SHA-1 of the whole file for relax uploads.
+ * <p>
+ * Large files are memory-mapped, so the digests read the page cache directly
+ * instead of copying the file through stream buffers, and
+ * {@link #calculate(File, long)} runs the MD5 of every part and the SHA-1 of
+ * the file as separate tasks on an executor, to hash a file on as many cores
+ * as the executor has threads. A single digest can't be split, so the SHA-1
+ * of a large file takes as long as reading it once on one core, during which
+ * the MD5s of the parts are computed on the other cores; when only the MD5s
+ * are needed, {@link #calculate(File, long, boolean)} skips it.
+ */
+@ThreadSafe
+public class FileChecksumCalculator {
+
+    /** Files, or ranges, shorter than this are read rather than mapped. */
+    private static final long MIN_MAPPED_LENGTH = 4 * 1024 * 1024;
+
+    /** The largest region of a file mapped at once. */
+    private static final long MAX_MAPPED_LENGTH = 64 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ExecutorService executor;
+
+    /**
+     * Creates a calculator running its digests on the given executor. The
+     * executor is not shut down by the calculator.
+     */
+    public FileChecksumCalculator(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the calculator shared by the client, running its digests on a
+     * pool of daemon threads, one per available processor.
+     */
+    public static FileChecksumCalculator getDefault() {
+        return DefaultCalculatorHolder.INSTANCE;
+    }
+
+    /**
+     * Computes the MD5 of each part of the given file, and its SHA-1,
+     * concurrently.
+     *
+     * @param file
+     *            The file to compute the checksums of.
+     * @param partSize
+     *            The size of the parts, in bytes, as they will be uploaded.
+     *
+     * @return The checksums of the file.
+     */
+    public FileChecksums calculate(File file, long partSize) throws IOException {
+        return calculate(file, partSize, true);
+    }
+
+    /**
+     * Computes the MD5 of each part of the given file, and optionally its
+     * SHA-1, concurrently.
+     *
+     * @param file
+     *            The file to compute the checksums of.
+     * @param partSize
+     *            The size of the parts, in bytes, as they will be uploaded.
+     * @param includeSha1
+     *            Whether to compute the SHA-1 of the whole file as well.
+     *
+     * @return The checksums of the file, whose SHA-1 is null if it wasn't
+     *         computed.
+     */
+    public FileChecksums calculate(File file, long partSize, boolean includeSha1) throws IOException {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("The part size must be positive");
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            int partCount = (int) Math.max(1, (length + partSize - 1) / partSize);
+
+            // The SHA-1 takes the longest, so it starts first
+            Future<byte[]> sha1Future = null;
+            if (includeSha1) {
+                sha1Future = executor.submit(digestTask(channel, "SHA-1", 0, length));
+                futures.add(sha1Future);
+            }
+            List<Future<byte[]>> md5Futures = new ArrayList<Future<byte[]>>();
+            for (int i = 0; i < partCount; i++) {
+                long offset = i * partSize;
+                md5Futures.add(executor.submit(digestTask(channel, "MD5", offset,
+                        Math.min(partSize, length - offset))));
+            }
+            futures.addAll(md5Futures);
+
+            byte[][] partMd5s = new byte[partCount][];
+            for (int i = 0; i < partCount; i++) {
+                partMd5s[i] = getDigest(md5Futures.get(i));
+            }
+            byte[] sha1 = sha1Future == null ? null : getDigest(sha1Future);
+            return new FileChecksums(length, partSize, partMd5s, sha1);
+        } finally {
+            for (Future<byte[]> future : futures) {
+                future.cancel(false);
+            }
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Computes the MD5 of the given range of a file, in the calling thread.
+     */
+    public byte[] calculateMd5(File file, long offset, long length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            return digest(randomAccessFile.getChannel(), "MD5", offset, length);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Computes the SHA-1 of a whole file, in the calling thread.
+     */
+    public byte[] calculateSha1(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            return digest(channel, "SHA-1", 0, channel.size());
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static Callable<byte[]> digestTask(final FileChannel channel, final String algorithm,
+            final long offset, final long length) {
+        return new Callable<byte[]>() {
+            public byte[] call() throws Exception {
+                return digest(channel, algorithm, offset, length);
+            }
+        };
+    }
+
+    private static byte[] getDigest(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted while computing file checksums", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new SCSClientException("Unable to compute file checksums: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static byte[] digest(FileChannel channel, String algorithm, long offset, long length)
+            throws IOException {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new SCSClientException("No " + algorithm + " digest algorithm available", e);
+        }
+
+        if (length < MIN_MAPPED_LENGTH) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.max(1, Math.min(length, BUFFER_SIZE)));
+            long position = 0;
+            while (position < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - position));
+                int count = channel.read(buffer, offset + position);
+                if (count < 0) throw new IOException("File is shorter than the range to digest");
+                buffer.flip();
+                messageDigest.update(buffer);
+                position += count;
+            }
+        } else {
+            for (long position = 0; position < length; position += MAX_MAPPED_LENGTH) {
+                messageDigest.update(channel.map(FileChannel.MapMode.READ_ONLY, offset + position,
+                        Math.min(MAX_MAPPED_LENGTH, length - position)));
+            }
+        }
+        return messageDigest.digest();
+    }
+
+    private static final class DefaultCalculatorHolder {
+        static final FileChecksumCalculator INSTANCE = new FileChecksumCalculator(
+                Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                    private int threadCount = 1;
+
+                    public synchronized Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("scs-checksum-worker-" + threadCount++);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }));
+    }
+}
@@ -0,0 +1,60 @@
+package com.sinacloud.scs.util;
+
+/**
+ * Checksums of a file computed by {@link FileChecksumCalculator}: the MD5 of
+ * each of its parts, for the parts of a multipart upload, and the SHA-1 of
+ * the whole file, for relax uploads.
+ * <p>
+ * The parts are numbered from 1, like the parts of a multipart upload; all of
+ * them but the last one are {@link #getPartSize()} bytes long.
+ */
+public class FileChecksums {
+
+    private final long fileLength;
+    private final long partSize;
+    private final byte[][] partMd5s;
+    private final byte[] sha1;
+
+    FileChecksums(long fileLength, long partSize, byte[][] partMd5s, byte[] sha1) {
+        this.fileLength = fileLength;
+        this.partSize = partSize;
+        this.partMd5s = partMd5s;
+        this.sha1 = sha1;
+    }
+
+    /** Returns the length of the file when the checksums were computed. */
+    public long getFileLength() {
+        return fileLength;
+    }
+
+    /** Returns the size of the parts, in bytes. */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /** Returns the number of parts. */
+    public int getPartCount() {
+        return partMd5s.length;
+    }
+
+    /**
+     * Returns the MD5 of the part with the given number, from 1 to
+     * {@link #getPartCount()}.
+     */
+    public byte[] getPartMd5(int partNumber) {
+        return partMd5s[partNumber - 1];
+    }
+
+    /** Returns the SHA-1 of the whole file, or null if it wasn't computed. */
+    public byte[] getSha1() {
+        return sha1;
+    }
+
+    /**
+     * Returns the SHA-1 of the whole file in hex, as expected by
+     * {@link com.sinacloud.scs.services.scs.model.PutObjectRelaxRequest}.
+     */
+    public String getSha1Hex() {
+        return sha1 == null ? null : BinaryUtils.toHex(sha1);
+    }
+}
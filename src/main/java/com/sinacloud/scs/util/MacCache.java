@@ -0,0 +1,126 @@
+package com.sinacloud.scs.util;
+
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Cache of initialized {@link Mac} instances, keyed by algorithm and secret
+ * key, shared by all threads.
+ * <p>
+ * Looking up a provider with {@link Mac#getInstance(String)} and expanding
+ * the key in {@link Mac#init(java.security.Key)} cost far more than the HMAC
+ * of a short string to sign, and every request is signed with the same few
+ * keys. The cache therefore keeps an initialized, never used prototype for
+ * the most recently used keys, and hands out clones of it, which copy the
+ * expanded key without going through the provider again. Unlike instances
+ * kept per thread, the prototypes also serve threads which live for a
+ * single request, such as virtual threads.
+ */
+public final class MacCache {
+
+    /** Maximum number of keys cached. */
+    static final int MAX_KEYS = 64;
+
+    /** The prototypes, in access order; guarded by itself. */
+    private static final Map<CacheKey, Mac> PROTOTYPES = new LinkedHashMap<CacheKey, Mac>(MAX_KEYS * 2, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Mac> eldest) {
+            return size() > MAX_KEYS;
+        }
+    };
+
+    private MacCache() {
+    }
+
+    /**
+     * Returns a new {@link Mac} of the given algorithm, initialized with the
+     * given key. The returned instance belongs to the caller.
+     *
+     * @param algorithm
+     *            The MAC algorithm, ex: HmacSHA1.
+     * @param key
+     *            The secret key.
+     *
+     * @throws GeneralSecurityException
+     *             If the algorithm isn't supported or the key is invalid.
+     */
+    public static Mac getMac(String algorithm, byte[] key) throws GeneralSecurityException {
+        Mac prototype;
+        synchronized (PROTOTYPES) {
+            prototype = PROTOTYPES.get(new CacheKey(algorithm, key));
+        }
+        if (prototype != null) {
+            try {
+                // The prototype is only ever read, so it can be cloned concurrently
+                return (Mac) prototype.clone();
+            } catch (CloneNotSupportedException e) {
+                // Not cached below in the first place
+            }
+        }
+
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(key, algorithm));
+        try {
+            Mac copy = (Mac) mac.clone();
+            synchronized (PROTOTYPES) {
+                PROTOTYPES.put(new CacheKey(algorithm, key.clone()), copy);
+            }
+        } catch (CloneNotSupportedException e) {
+            // The provider can't copy its instances, so there is nothing to cache
+        }
+        return mac;
+    }
+
+    /**
+     * Returns whether a prototype is cached for the given algorithm and key,
+     * without counting as a use of it.
+     */
+    static boolean isCached(String algorithm, byte[] key) {
+        synchronized (PROTOTYPES) {
+            for (CacheKey cacheKey : PROTOTYPES.keySet()) {
+                if (cacheKey.equals(new CacheKey(algorithm, key))) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Forgets all the cached prototypes.
+     */
+    static void clear() {
+        synchronized (PROTOTYPES) {
+            PROTOTYPES.clear();
+        }
+    }
+
+    private static final class CacheKey {
+        private final String algorithm;
+        private final byte[] key;
+        private final int hashCode;
+
+        private CacheKey(String algorithm, byte[] key) {
+            this.algorithm = algorithm;
+            this.key = key;
+            this.hashCode = 31 * algorithm.hashCode() + Arrays.hashCode(key);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) return false;
+            CacheKey other = (CacheKey) obj;
+            return algorithm.equals(other.algorithm) && Arrays.equals(key, other.key);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.sinacloud.scs.util;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+/**
+ * Used as both a base class and a minimal support of SCS SDK request metrics.
+ * The base class of SCS SDK request metrics is a no-op: all the events and
+ * counters are simply ignored. Full support is provided by
+ * {@link SCSRequestMetricsFullSupport}, which is used whenever a
+ * {@link com.sinacloud.scs.metrics.RequestMetricCollector} is enabled for the
+ * request.
+ * <p>
+ * A request metrics object is bound to a single service call, and collects
+ * the timings of all the attempts (including retries) made for that call.
+ */
+@NotThreadSafe
+public class SCSRequestMetrics {
+
+    /**
+     * Predefined request metric types.
+     */
+    public enum Field {
+        /** Total time spent in the client, from the first attempt to the end of response handling. */
+        ClientExecuteTime,
+        /** Time spent signing the request, summed over all attempts. */
+        RequestSigningTime,
+        /** Time spent in the underlying HTTP client, summed over all attempts. */
+        HttpRequestTime,
+        /** Time spent waiting for a connection from the pool, summed over all attempts; part of the HttpRequestTime. */
+        HttpClientPoolWaitTime,
+        /** Time spent sleeping between retries. */
+        RetryPauseTime,
+        /** Time spent waiting for the client-side rate limiter, summed over all attempts. */
+        RateLimitWaitTime,
+        /** Time spent unmarshalling the successful response. */
+        ResponseProcessingTime,
+        /** Number of attempts made for the request, including the first one. */
+        RequestCount,
+        /** Number of retries performed by the SDK retry loop. */
+        RetryCount,
+        /** Number of retries performed inside the underlying HTTP client. */
+        HttpClientRetryCount,
+        /** Number of hedged attempts, sent because an attempt was slower than usual. */
+        HedgedRequestCount,
+        /** Number of response bytes consumed by the response handler. */
+        BytesProcessed,
+        /** Declared length of the request payload, if any. */
+        RequestContentLength,
+        /** HTTP status code of each attempt. */
+        StatusCode,
+        /** Error code returned by the service, if any. */
+        ErrorCode,
+        /** Exceptions raised while executing the request. */
+        Exception,
+        ;
+    }
+
+    /**
+     * Returns true if this metrics object actually collects data; false if it
+     * is a no-op.
+     */
+    public boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * Starts the timing of the given event.
+     */
+    public void startEvent(Field f) {}
+
+    /**
+     * Ends the timing of the given event, adding the elapsed time to any time
+     * previously recorded for the same event.
+     */
+    public void endEvent(Field f) {}
+
+    /**
+     * Adds an already measured duration, in nanoseconds, to the given event.
+     */
+    public void addTime(Field f, long nanos) {}
+
+    /**
+     * Increments the given counter by one.
+     */
+    public void incrementCounter(Field f) {}
+
+    /**
+     * Sets the given counter to the specified value.
+     */
+    public void setCounter(Field f, long count) {}
+
+    /**
+     * Adds the given value to the given counter.
+     */
+    public void addToCounter(Field f, long delta) {}
+
+    /**
+     * Appends a property value for the given field.
+     */
+    public void addProperty(Field f, Object value) {}
+
+    /**
+     * Returns the accumulated time, in nanoseconds, of the given event, or -1
+     * if the event was never recorded.
+     */
+    public long getTimeNanos(Field f) {
+        return -1;
+    }
+
+    /**
+     * Returns the value of the given counter, or 0 if it was never set.
+     */
+    public long getCounter(Field f) {
+        return 0;
+    }
+
+    /**
+     * Returns the property values recorded for the given field, in the order
+     * they were added.
+     */
+    public List<Object> getProperty(Field f) {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,102 @@
+package com.sinacloud.scs.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.annotation.NotThreadSafe;
+
+/**
+ * In contrast to {@link SCSRequestMetrics}, which is intentionally a no-op,
+ * this class actually collects the timings, counters and properties of a
+ * single service call.
+ * <p>
+ * All timings are taken with {@link System#nanoTime()}. An event that is
+ * started and ended several times (ex: {@link Field#HttpRequestTime} across
+ * retries) accumulates the elapsed time of every occurrence.
+ */
+@NotThreadSafe
+public class SCSRequestMetricsFullSupport extends SCSRequestMetrics {
+
+    private final Map<Field, Long> startTimes = new EnumMap<Field, Long>(Field.class);
+    private final Map<Field, Long> elapsedTimes = new EnumMap<Field, Long>(Field.class);
+    private final Map<Field, Long> counters = new EnumMap<Field, Long>(Field.class);
+    private final Map<Field, List<Object>> properties = new EnumMap<Field, List<Object>>(Field.class);
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void startEvent(Field f) {
+        startTimes.put(f, System.nanoTime());
+    }
+
+    @Override
+    public void endEvent(Field f) {
+        Long start = startTimes.remove(f);
+        if (start == null) {
+            return; // endEvent without a matching startEvent
+        }
+        addTime(f, System.nanoTime() - start.longValue());
+    }
+
+    @Override
+    public void addTime(Field f, long nanos) {
+        Long previous = elapsedTimes.get(f);
+        elapsedTimes.put(f, previous == null ? nanos : previous.longValue() + nanos);
+    }
+
+    @Override
+    public void incrementCounter(Field f) {
+        addToCounter(f, 1);
+    }
+
+    @Override
+    public void setCounter(Field f, long count) {
+        counters.put(f, count);
+    }
+
+    @Override
+    public void addToCounter(Field f, long delta) {
+        counters.put(f, getCounter(f) + delta);
+    }
+
+    @Override
+    public void addProperty(Field f, Object value) {
+        List<Object> list = properties.get(f);
+        if (list == null) {
+            list = new ArrayList<Object>(2);
+            properties.put(f, list);
+        }
+        list.add(value);
+    }
+
+    @Override
+    public long getTimeNanos(Field f) {
+        Long elapsed = elapsedTimes.get(f);
+        return elapsed == null ? -1 : elapsed.longValue();
+    }
+
+    @Override
+    public long getCounter(Field f) {
+        Long count = counters.get(f);
+        return count == null ? 0 : count.longValue();
+    }
+
+    @Override
+    public List<Object> getProperty(Field f) {
+        List<Object> list = properties.get(f);
+        return list == null ? Collections.<Object>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    @Override
+    public String toString() {
+        return "SCSRequestMetrics[times=" + elapsedTimes
+                + ", counters=" + counters
+                + ", properties=" + properties + "]";
+    }
+}
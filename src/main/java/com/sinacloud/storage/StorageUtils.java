@@ -29,12 +29,13 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.log4j.Logger;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
+import com.sinacloud.scs.util.MacCache;
+
 
 public class StorageUtils {
 	public static final String DATE_FORMAT = "EEE',' d MMM yyyy HH:mm:ss 'GMT'";
@@ -79,9 +80,7 @@ public class StorageUtils {
 	 */
 	public static String calcSignature(String cryptoType, String content, String secretKey) {
 		try {
-			Mac mac = Mac.getInstance(cryptoType);
-			SecretKeySpec secret = new SecretKeySpec(secretKey.getBytes(), cryptoType);
-			mac.init(secret);
+			Mac mac = MacCache.getMac(cryptoType, secretKey.getBytes());
 			byte[] digest = mac.doFinal(content.getBytes());
 			sun.misc.BASE64Encoder encode = new sun.misc.BASE64Encoder();
 			return encode.encode(digest);
@@ -104,9 +103,7 @@ public class StorageUtils {
 	 */
 	public static String calcSignatureNotBase64(String cryptoType, String content, String secretKey) {
 		try {
-			Mac mac = Mac.getInstance(cryptoType);
-			SecretKeySpec secret = new SecretKeySpec(secretKey.getBytes(), cryptoType);
-			mac.init(secret);
+			Mac mac = MacCache.getMac(cryptoType, secretKey.getBytes());
 			byte[] digest = mac.doFinal(content.getBytes());
 			return byte2hex(digest);
 		} catch (Exception e) {
@@ -0,0 +1,123 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.metrics.HistogramRequestMetricCollector;
+import com.sinacloud.scs.metrics.LatencyHistogram;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
+
+public class AdaptiveRateLimiterTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private final ManualClock clock = new ManualClock();
+    private final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(clock);
+
+    @Test
+    public void requestsAreNotLimitedBeforeTheFirstThrottle() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.reserve());
+            limiter.onSuccess();
+        }
+        assertEquals(0, limiter.getRate(), 0);
+    }
+
+    @Test
+    public void throttleCutsTheRateToAFractionOfTheSendRate() {
+        // 100 requests per second
+        send(90, 10);
+        limiter.onThrottled();
+        assertEquals(70, limiter.getRate(), 0.001);
+
+        // The next request waits for the first token
+        assertEquals(TimeUnit.SECONDS.toNanos(1) / 70, limiter.reserve(), 1000);
+    }
+
+    @Test
+    public void throttlesInTheSameIntervalCountOnce() {
+        send(90, 10);
+        limiter.onThrottled();
+        clock.advance(100, MILLISECONDS);
+        limiter.onThrottled();
+        clock.advance(399, MILLISECONDS);
+        limiter.onThrottled();
+        assertEquals(70, limiter.getRate(), 0.001);
+
+        clock.advance(1, MILLISECONDS);
+        limiter.onThrottled();
+        assertTrue(limiter.getRate() <= 70 * 0.7 + 0.001);
+    }
+
+    @Test
+    public void additiveIncreaseStopsAtTwiceTheSendRate() {
+        // 10 requests per second, throttled down to 7
+        send(9, 100);
+        limiter.onThrottled();
+        assertEquals(7, limiter.getRate(), 0.001);
+
+        // A caller sending 10 requests per second for two minutes, as the limiter allows
+        for (int i = 0; i < 1200; i++) {
+            clock.advance(Math.max(limiter.reserve(), MILLISECONDS.toNanos(100)), TimeUnit.NANOSECONDS);
+            limiter.onSuccess();
+        }
+        assertEquals(20, limiter.getRate(), 0.5);
+    }
+
+    @Test
+    public void interruptedWaitFails() {
+        send(90, 10);
+        limiter.onThrottled();
+        Thread.currentThread().interrupt();
+        try {
+            limiter.acquire();
+            fail("Expected the wait to be interrupted");
+        } catch (SCSClientException e) {
+            assertTrue(e.getCause() instanceof InterruptedException);
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+    }
+
+    @Test
+    public void rateLimitWaitTimeIsRecorded() {
+        stub.getServer().putObject(BUCKET, "key", new byte[10]);
+        SCSClient limitedClient = stub.newClient(new ClientConfiguration().withAdaptiveRateLimiter(true));
+        HistogramRequestMetricCollector metrics = new HistogramRequestMetricCollector();
+        limitedClient.setRequestMetricCollector(metrics);
+        for (int i = 0; i < 5; i++) {
+            limitedClient.getObjectMetadata(BUCKET, "key");
+        }
+        LatencyHistogram waits = metrics.getHistogram(Field.RateLimitWaitTime);
+        assertEquals(5, waits.getCount());
+        assertTrue(waits.getMax() < MILLISECONDS.toNanos(10));
+
+        // The retry of the throttled request waits for the first token, at
+        // least 1/42 s since the send rate is measured over 100 ms or more
+        stub.getServer().failNextRequests(1, "HEAD", 503, "ServiceUnavailable");
+        limitedClient.getObjectMetadata(BUCKET, "key");
+        assertEquals(6, waits.getCount());
+        assertTrue(waits.getMax() >= MILLISECONDS.toNanos(20));
+    }
+
+    /** Sends requests at the given interval, without waiting for the limiter. */
+    private void send(int count, long intervalMillis) {
+        for (int i = 0; i < count; i++) {
+            clock.advance(intervalMillis, MILLISECONDS);
+            limiter.reserve();
+        }
+    }
+}
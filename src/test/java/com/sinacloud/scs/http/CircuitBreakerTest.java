@@ -0,0 +1,121 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class CircuitBreakerTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private final ManualClock clock = new ManualClock();
+    private final CircuitBreaker breaker = new CircuitBreaker("endpoint", 3, 1000, clock);
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+
+        breaker.recordFailure();
+        assertFalse(breaker.allowRequest());
+        clock.advance(999, MILLISECONDS);
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    public void successfulProbeClosesTheBreaker() {
+        open();
+        clock.advance(1000, MILLISECONDS);
+        assertTrue(breaker.allowRequest());
+        // A single probe at a time
+        assertFalse(breaker.allowRequest());
+
+        breaker.recordSuccess();
+        assertTrue(breaker.allowRequest());
+        assertTrue(breaker.allowRequest());
+        // With its count of failures reset
+        breaker.recordFailure();
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void failedProbeReopensTheBreaker() {
+        open();
+        clock.advance(1000, MILLISECONDS);
+        assertTrue(breaker.allowRequest());
+        clock.advance(500, MILLISECONDS);
+        breaker.recordFailure();
+
+        // For another open time from the failure of the probe
+        clock.advance(999, MILLISECONDS);
+        assertFalse(breaker.allowRequest());
+        clock.advance(1, MILLISECONDS);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void lostProbeIsReplaced() {
+        open();
+        clock.advance(1000, MILLISECONDS);
+        assertTrue(breaker.allowRequest());
+        clock.advance(999, MILLISECONDS);
+        assertFalse(breaker.allowRequest());
+        clock.advance(1, MILLISECONDS);
+        assertTrue(breaker.allowRequest());
+    }
+
+    @Test
+    public void openBreakerFailsRequestsWithoutSendingThem() {
+        SCSStubServer server = stub.getServer();
+        SCSClient guardedClient = stub.newClient(new ClientConfiguration()
+                .withCircuitBreakerFailureThreshold(2)
+                .withCircuitBreakerOpenTime(60 * 1000));
+        server.putObject(BUCKET, "key", new byte[10]);
+        server.failNextRequests(5, "HEAD", 500, "InternalError");
+        try {
+            guardedClient.getObjectMetadata(BUCKET, "key");
+            fail("Expected the injected error");
+        } catch (SCSServiceException e) {
+            assertEquals(500, e.getStatusCode());
+        }
+        assertEquals(2, server.getRequestCount("HEAD"));
+
+        try {
+            guardedClient.getObjectMetadata(BUCKET, "key");
+            fail("Expected the circuit breaker to be open");
+        } catch (SCSClientException e) {
+            assertFalse(e instanceof SCSServiceException);
+        }
+        assertEquals(2, server.getRequestCount("HEAD"));
+
+        // Other clients have their own breakers
+        server.clearFaults();
+        assertEquals(10, stub.getClient().getObjectMetadata(BUCKET, "key").getContentLength());
+    }
+
+    private void open() {
+        for (int i = 0; i < 3; i++) {
+            breaker.recordFailure();
+        }
+        assertFalse(breaker.allowRequest());
+    }
+}
@@ -0,0 +1,67 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.metrics.HistogramRequestMetricCollector;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.util.SCSRequestMetrics.Field;
+
+public class ConnectionPoolStatsTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void perHostConnectionLimitAndPoolStats() throws Exception {
+        SCSStubServer server = stub.getServer();
+        server.putObject(BUCKET, "key", new byte[10]);
+        final SCSClient limitedClient = stub.newClient(
+                new ClientConfiguration().withMaxConnections(4).withMaxConnectionsForHost("127.0.0.1", 1));
+        HistogramRequestMetricCollector metrics = new HistogramRequestMetricCollector();
+        limitedClient.setRequestMetricCollector(metrics);
+
+        // The first request holds the only connection of the host until released
+        server.holdRequests();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    limitedClient.getObjectMetadata(BUCKET, "key");
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        ConnectionPoolStats stats = limitedClient.getConnectionPoolStats();
+        for (long deadline = System.currentTimeMillis() + 10 * 1000;
+                stats.getPending() < 2 && System.currentTimeMillis() < deadline;
+                stats = limitedClient.getConnectionPoolStats()) {
+            Thread.sleep(5);
+        }
+        assertEquals(4, stats.getMax());
+        assertEquals(1, stats.getLeased());
+        assertEquals(2, stats.getPending());
+        assertEquals(1, stats.getRoutes().get(server.getEndpoint()).getMax());
+        server.releaseRequests();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, server.getMaxConcurrentRequests());
+        stats = limitedClient.getConnectionPoolStats();
+        assertEquals(0, stats.getLeased());
+        assertEquals(0, stats.getPending());
+        assertEquals(1, stats.getRoutes().get(server.getEndpoint()).getAvailable());
+        assertEquals(3, metrics.getHistogram(Field.HttpClientPoolWaitTime).getCount());
+    }
+}
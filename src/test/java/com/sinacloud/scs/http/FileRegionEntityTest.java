@@ -0,0 +1,126 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.DefaultRequest;
+import com.sinacloud.scs.internal.FileRegionInputStream;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class FileRegionEntityTest {
+
+    private static final int OFFSET = 100;
+    private static final int LENGTH = 200 * 1024;
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private final byte[] content = randomBytes(300 * 1024);
+    private final byte[] range = Arrays.copyOfRange(content, OFFSET, OFFSET + LENGTH);
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = stub.newFile(content);
+    }
+
+    @Test
+    public void plainHttpPutIsTransferredFromTheFile() throws Exception {
+        HttpClient httpClient = new HttpClientFactory().createHttpClient(new ClientConfiguration().withReaper(false));
+        try {
+            RecordingFileRegionEntity entity = newEntity();
+            assertEquals(200, put(httpClient, "transferred", entity));
+            assertEquals(1, entity.channels.size());
+            assertNotNull(entity.channels.get(0));
+            assertArrayEquals(range, stub.getServer().getObjectContent(BUCKET, "transferred"));
+        } finally {
+            httpClient.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void unknownChannelFallsBackToTheOutputStream() throws Exception {
+        // Without the channel socket factory, the socket channel of the connection is never handed over
+        HttpClient httpClient = new DefaultHttpClient();
+        try {
+            RecordingFileRegionEntity entity = newEntity();
+            assertEquals(200, put(httpClient, "copied", entity));
+            assertEquals(0, entity.channels.size());
+            assertArrayEquals(range, stub.getServer().getObjectContent(BUCKET, "copied"));
+        } finally {
+            httpClient.getConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void everyAttemptSendsTheWholeRange() throws Exception {
+        RecordingFileRegionEntity entity = newEntity();
+        entity.getContent().read(new byte[1000]);
+        entity.setChannel(null);
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            entity.writeTo(output);
+            assertArrayEquals(range, output.toByteArray());
+        }
+        assertNull(entity.channels.get(0));
+        entity.getContent().close();
+    }
+
+    private RecordingFileRegionEntity newEntity() throws IOException {
+        DefaultRequest<Void> request = new DefaultRequest<Void>("SCS");
+        request.setContent(new FileRegionInputStream(file, OFFSET, LENGTH, null));
+        request.addHeader("Content-Type", "application/octet-stream");
+        return new RecordingFileRegionEntity(request);
+    }
+
+    private int put(HttpClient httpClient, String key, FileRegionEntity entity) throws IOException {
+        HttpPut put = new HttpPut(stub.getServer().getEndpoint() + "/" + BUCKET + "/" + key);
+        // The stub server only checks the access key
+        put.addHeader("Authorization", "SINA access:signature");
+        put.setEntity(entity);
+        try {
+            org.apache.http.HttpResponse response = httpClient.execute(put);
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        } finally {
+            entity.getContent().close();
+        }
+    }
+
+    /** Records the channels handed to the entity. */
+    private static class RecordingFileRegionEntity extends FileRegionEntity {
+        final List<SocketChannel> channels = new ArrayList<SocketChannel>();
+
+        RecordingFileRegionEntity(DefaultRequest<?> request) {
+            super(request);
+        }
+
+        @Override
+        void setChannel(SocketChannel channel) {
+            channels.add(channel);
+            super.setChannel(channel);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.metrics.HistogramRequestMetricCollector;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class HedgedRequestExecutorTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void slowRequestIsHedged() throws Exception {
+        SCSClient hedgingClient = stub.newClient(new ClientConfiguration().withHedgedRequestPercentile(50));
+        HistogramRequestMetricCollector metrics = new HistogramRequestMetricCollector();
+        hedgingClient.setRequestMetricCollector(metrics);
+        stub.getServer().putObject(BUCKET, "key", new byte[10]);
+
+        // Once latencies are known, a slow request is sent twice
+        for (int i = 0; i < 30; i++) {
+            hedgingClient.getObjectMetadata(BUCKET, "key");
+        }
+        metrics.reset();
+        stub.getServer().setLatency(200);
+        assertEquals(10, hedgingClient.getObjectMetadata(BUCKET, "key").getContentLength());
+        assertEquals(1, metrics.getRequestCount());
+        assertEquals(1, metrics.getHedgedRequestCount());
+    }
+}
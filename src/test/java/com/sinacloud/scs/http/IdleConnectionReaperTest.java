@@ -0,0 +1,90 @@
+package com.sinacloud.scs.http;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.http.IdleConnectionReaper.Schedule;
+
+public class IdleConnectionReaperTest {
+
+    private final long start = TimeUnit.DAYS.toNanos(1);
+
+    @Test
+    public void eachManagerIsCheckedAtItsOwnPeriod() {
+        RecordingConnectionManager fast = new RecordingConnectionManager();
+        RecordingConnectionManager slow = new RecordingConnectionManager();
+        Map<ClientConnectionManager, Schedule> managers = new LinkedHashMap<ClientConnectionManager, Schedule>();
+        managers.put(fast, new Schedule(100, 1000, start));
+        managers.put(slow, new Schedule(250, 3000, start));
+
+        assertEquals(MILLISECONDS.toNanos(50), IdleConnectionReaper.closeIdleConnections(managers, at(50)));
+        assertEquals(0, fast.maxIdleMillis.size());
+
+        assertEquals(MILLISECONDS.toNanos(100), IdleConnectionReaper.closeIdleConnections(managers, at(100)));
+        assertEquals(1, fast.maxIdleMillis.size());
+        assertEquals(1000, fast.maxIdleMillis.get(0).longValue());
+        assertEquals(0, slow.maxIdleMillis.size());
+
+        // A late check schedules the next one a period after it
+        assertEquals(MILLISECONDS.toNanos(100), IdleConnectionReaper.closeIdleConnections(managers, at(260)));
+        assertEquals(2, fast.maxIdleMillis.size());
+        assertEquals(1, slow.maxIdleMillis.size());
+        assertEquals(3000, slow.maxIdleMillis.get(0).longValue());
+
+        assertEquals(MILLISECONDS.toNanos(10), IdleConnectionReaper.closeIdleConnections(managers, at(350)));
+        assertEquals(2, fast.maxIdleMillis.size());
+    }
+
+    @Test
+    public void sleepIsCappedAtTheDefaultPeriod() {
+        Map<ClientConnectionManager, Schedule> managers = new LinkedHashMap<ClientConnectionManager, Schedule>();
+        assertEquals(MILLISECONDS.toNanos(ClientConfiguration.DEFAULT_REAPER_PERIOD_MILLIS), IdleConnectionReaper.closeIdleConnections(managers, at(0)));
+        managers.put(new RecordingConnectionManager(), new Schedule(10 * 60 * 1000, 1000, start));
+        assertEquals(MILLISECONDS.toNanos(ClientConfiguration.DEFAULT_REAPER_PERIOD_MILLIS), IdleConnectionReaper.closeIdleConnections(managers, at(0)));
+    }
+
+    private long at(long millis) {
+        return start + MILLISECONDS.toNanos(millis);
+    }
+
+    private static class RecordingConnectionManager implements ClientConnectionManager {
+        final List<Long> maxIdleMillis = new ArrayList<Long>();
+
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+            maxIdleMillis.add(tunit.toMillis(idletime));
+        }
+
+        public SchemeRegistry getSchemeRegistry() {
+            throw new UnsupportedOperationException();
+        }
+
+        public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void releaseConnection(ManagedClientConnection conn, long validDuration, TimeUnit timeUnit) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void closeExpiredConnections() {
+            throw new UnsupportedOperationException();
+        }
+
+        public void shutdown() {
+        }
+    }
+}
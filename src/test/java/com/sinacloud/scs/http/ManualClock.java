@@ -0,0 +1,20 @@
+package com.sinacloud.scs.http;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock which only moves when told to.
+ */
+class ManualClock extends Clock {
+
+    private volatile long nanos = TimeUnit.DAYS.toNanos(1);
+
+    @Override
+    long nanoTime() {
+        return nanos;
+    }
+
+    void advance(long duration, TimeUnit unit) {
+        nanos += unit.toNanos(duration);
+    }
+}
@@ -0,0 +1,58 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class RetryBudgetTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void perClientMaxErrorRetryAndRetryBudget() throws Exception {
+        SCSStubServer server = stub.getServer();
+        server.putObject(BUCKET, "key", new byte[10]);
+        SCSClient noRetryClient = stub.newClient(new ClientConfiguration().withMaxErrorRetry(0));
+        SCSClient budgetedClient = stub.newClient(new ClientConfiguration().withRetryBudget(10));
+
+        server.failNextRequests(1, "HEAD", 500, "InternalError");
+        assertHeadFails(noRetryClient);
+        // Other clients keep their own maximum
+        server.failNextRequests(1, "HEAD", 500, "InternalError");
+        assertEquals(10, stub.getClient().getObjectMetadata(BUCKET, "key").getContentLength());
+
+        // A budget of 10 tokens pays for two retries, then none
+        long headCount = server.getRequestCount("HEAD");
+        server.failNextRequests(4, "HEAD", 500, "InternalError");
+        assertHeadFails(budgetedClient);
+        assertEquals(headCount + 3, server.getRequestCount("HEAD"));
+        assertHeadFails(budgetedClient);
+        assertEquals(headCount + 4, server.getRequestCount("HEAD"));
+
+        // Successful requests fill it back up
+        for (int i = 0; i < 5; i++) {
+            budgetedClient.getObjectMetadata(BUCKET, "key");
+        }
+        server.failNextRequests(1, "HEAD", 500, "InternalError");
+        assertEquals(10, budgetedClient.getObjectMetadata(BUCKET, "key").getContentLength());
+    }
+
+    private static void assertHeadFails(SCSClient client) {
+        try {
+            client.getObjectMetadata(BUCKET, "key");
+            fail("Expected the injected error");
+        } catch (SCSServiceException e) {
+            assertEquals(500, e.getStatusCode());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sinacloud.scs.http;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.params.HttpConnectionParams;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+@SuppressWarnings("deprecation")
+public class SdkPoolingClientConnectionManagerTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private final ManualClock clock = new ManualClock();
+    private SdkPoolingClientConnectionManager connectionManager;
+    private DefaultHttpClient httpClient;
+
+    @Before
+    public void setUp() {
+        stub.getServer().putObject(BUCKET, "key", new byte[10]);
+        connectionManager = new SdkPoolingClientConnectionManager(-1, Collections.<String, Integer>emptyMap(), 1000,
+                clock);
+        httpClient = new DefaultHttpClient(connectionManager);
+        HttpConnectionParams.setStaleCheckingEnabled(httpClient.getParams(), false);
+        // Requests sent on a closed connection fail instead of being retried
+        httpClient.setHttpRequestRetryHandler(new DefaultHttpRequestRetryHandler(0, false));
+    }
+
+    @After
+    public void tearDown() {
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void recentlyReleasedConnectionIsTrusted() throws Exception {
+        assertEquals(200, head());
+        stub.getServer().closeConnections();
+        clock.advance(1000, MILLISECONDS);
+        try {
+            head();
+            fail("Expected the request to be sent on the closed connection");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void idleConnectionIsValidated() throws Exception {
+        assertEquals(200, head());
+        stub.getServer().closeConnections();
+        clock.advance(1001, MILLISECONDS);
+        assertEquals(200, head());
+    }
+
+    private int head() throws IOException {
+        HttpHead head = new HttpHead(stub.getServer().getEndpoint() + "/" + BUCKET + "/key");
+        // The stub server only checks the access key
+        head.addHeader("Authorization", "SINA access:signature");
+        return httpClient.execute(head).getStatusLine().getStatusCode();
+    }
+}
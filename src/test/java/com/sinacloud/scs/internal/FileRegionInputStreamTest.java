@@ -0,0 +1,117 @@
+package com.sinacloud.scs.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.readFully;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sinacloud.scs.event.ProgressEvent;
+import com.sinacloud.scs.event.ProgressListenerCallbackExecutor;
+
+public class FileRegionInputStreamTest {
+
+    private static final int OFFSET = 1000;
+    private static final int LENGTH = 100 * 1024;
+
+    private final byte[] content = randomBytes(200 * 1024);
+    private final byte[] range = Arrays.copyOfRange(content, OFFSET, OFFSET + LENGTH);
+    private final RecordingCallbackExecutor progress = new RecordingCallbackExecutor();
+    private File file;
+    private FileRegionInputStream in;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("file-region", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(content);
+        out.close();
+        in = new FileRegionInputStream(file, OFFSET, LENGTH, progress);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        in.close();
+        file.delete();
+    }
+
+    @Test
+    public void readsOnlyTheRange() throws IOException {
+        assertArrayEquals(range, readFully(in));
+        assertEquals(-1, in.read());
+        in.close();
+        assertEquals(LENGTH, progress.getBytes(0));
+    }
+
+    @Test
+    public void resetRereadsFromTheMarkAndReportsTheReset() throws IOException {
+        byte[] head = new byte[3000];
+        assertEquals(head.length, in.read(head));
+        in.mark(LENGTH);
+        byte[] marked = new byte[3000];
+        assertEquals(marked.length, in.read(marked));
+        // Both reads are below the notification threshold
+        assertEquals(0, progress.events.size());
+
+        in.reset();
+        assertEquals(1, progress.events.size());
+        assertEquals(ProgressEvent.RESET_EVENT_CODE, progress.events.get(0).getEventCode());
+        assertEquals(6000, progress.events.get(0).getBytesTransferred());
+        byte[] reread = new byte[3000];
+        assertEquals(reread.length, in.read(reread));
+        assertArrayEquals(marked, reread);
+        assertArrayEquals(Arrays.copyOfRange(range, 3000, 6000), reread);
+    }
+
+    @Test
+    public void retriesSendTheWholeRange() throws IOException {
+        in.read(new byte[5000]);
+        ByteArrayOutputStream copied = new ByteArrayOutputStream();
+        in.writeTo(copied);
+        assertArrayEquals(range, copied.toByteArray());
+
+        // A retry after a reset, sent straight from the file
+        in.reset();
+        ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+        in.transferTo(Channels.newChannel(transferred));
+        assertArrayEquals(range, transferred.toByteArray());
+        assertEquals(-1, in.read());
+
+        in.close();
+        assertEquals(5000 + 2 * LENGTH, progress.getBytes(0) + progress.getBytes(ProgressEvent.RESET_EVENT_CODE));
+    }
+
+    /** Records the progress events synchronously. */
+    private static class RecordingCallbackExecutor extends ProgressListenerCallbackExecutor {
+        final List<ProgressEvent> events = new ArrayList<ProgressEvent>();
+
+        RecordingCallbackExecutor() {
+            super(null);
+        }
+
+        @Override
+        public void progressChanged(ProgressEvent progressEvent) {
+            events.add(progressEvent);
+        }
+
+        long getBytes(int eventCode) {
+            long bytes = 0;
+            for (ProgressEvent event : events) {
+                if (event.getEventCode() == eventCode) bytes += event.getBytesTransferred();
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.sinacloud.scs.services.scs;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.readFully;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.auth.BasicAWSCredentials;
+import com.sinacloud.scs.services.scs.model.GetObjectMetadataRequest;
+import com.sinacloud.scs.services.scs.model.GetObjectRequest;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.PutObjectRequest;
+import com.sinacloud.scs.services.scs.model.PutObjectResult;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.util.BinaryUtils;
+import com.sinacloud.scs.util.Md5Utils;
+
+public class SCSAsyncClientTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private SCSAsyncClient asyncClient;
+
+    @Before
+    public void setUp() {
+        asyncClient = new SCSAsyncClient(new BasicAWSCredentials("access", "secret"));
+        asyncClient.setEndpoint(stub.getServer().getEndpoint());
+        asyncClient.setEndpoint4Upload(stub.getServer().getEndpoint());
+    }
+
+    @After
+    public void tearDown() {
+        asyncClient.shutdown();
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void putAndGetComplete() throws Exception {
+        byte[] content = randomBytes(1000);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        PutObjectResult putResult = asyncClient.putObjectAsync(
+                new PutObjectRequest(BUCKET, "key", new ByteArrayInputStream(content), metadata)).get();
+        assertEquals(BinaryUtils.toHex(Md5Utils.computeMD5Hash(content)), putResult.getETag());
+
+        S3Object object = asyncClient.getObjectAsync(new GetObjectRequest(BUCKET, "key")).get();
+        assertArrayEquals(content, readFully(object.getObjectContent()));
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void serviceErrorCompletesExceptionally() throws Exception {
+        CompletableFuture<ObjectMetadata> future = asyncClient.getObjectMetadataAsync(
+                new GetObjectMetadataRequest(BUCKET, "missing"));
+        try {
+            future.get();
+            fail("Expected the object to be missing");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof SCSServiceException);
+            assertEquals(404, ((SCSServiceException) e.getCause()).getStatusCode());
+        }
+        assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void shutdownStopsTheOwnedExecutor() throws Exception {
+        stub.getServer().putObject(BUCKET, "key", new byte[10]);
+        assertEquals(10, asyncClient.getObjectMetadataAsync(new GetObjectMetadataRequest(BUCKET, "key")).get()
+                .getContentLength());
+
+        asyncClient.shutdown();
+        assertTrue(asyncClient.getExecutorService().awaitTermination(5, TimeUnit.SECONDS));
+        CompletableFuture<ObjectMetadata> future = asyncClient.getObjectMetadataAsync(
+                new GetObjectMetadataRequest(BUCKET, "key"));
+        try {
+            future.get();
+            fail("Expected the request to be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+}
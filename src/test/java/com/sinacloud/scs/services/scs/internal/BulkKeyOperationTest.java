@@ -0,0 +1,175 @@
+package com.sinacloud.scs.services.scs.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.model.BulkOperationOptions;
+import com.sinacloud.scs.services.scs.model.KeyOperationResult;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class BulkKeyOperationTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test(timeout = 10 * 1000)
+    public void everyKeyGetsAResultEvenIfItsOperationThrowsAnError() {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 10; i++) {
+            keys.add("key" + i);
+        }
+        BulkKeyOperation<String> operation = new BulkKeyOperation<String>(keys,
+                new BulkOperationOptions().withMaxConcurrency(3), new BulkKeyOperation.KeyOperation<String>() {
+                    public String execute(String key) {
+                        if (key.endsWith("3")) throw new StackOverflowError("too deep");
+                        if (key.endsWith("5")) throw new IllegalStateException("broken");
+                        return key.toUpperCase();
+                    }
+                });
+
+        Set<String> failed = new HashSet<String>();
+        int count = 0;
+        for (KeyOperationResult<String> result : operation) {
+            if (result.isSuccessful()) {
+                assertEquals(result.getKey().toUpperCase(), result.getResult());
+            } else {
+                failed.add(result.getKey());
+            }
+            count++;
+        }
+        assertEquals(keys.size(), count);
+        assertEquals(new HashSet<String>(Arrays.asList("key3", "key5")), failed);
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void runsWithoutBeingIteratedWhenOnlyFailuresAreReported() throws Exception {
+        final Set<String> done = Collections.synchronizedSet(new HashSet<String>());
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("key" + i);
+        }
+        BulkKeyOperation<Void> operation = new BulkKeyOperation<Void>(keys,
+                new BulkOperationOptions().withMaxConcurrency(2), new BulkKeyOperation.KeyOperation<Void>() {
+                    public Void execute(String key) {
+                        done.add(key);
+                        if (key.equals("key42")) throw new IllegalStateException("broken");
+                        return null;
+                    }
+                }, false);
+        while (operation.getSuccessCount() < 99) {
+            Thread.sleep(10);
+        }
+        assertEquals(new HashSet<String>(keys), done);
+
+        Iterator<KeyOperationResult<Void>> results = operation.iterator();
+        assertEquals("key42", results.next().getKey());
+        assertFalse(results.hasNext());
+    }
+
+    @Test(timeout = 10 * 1000)
+    public void workersWaitForResultsToBeConsumed() throws Exception {
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final AtomicInteger maxUnconsumed = new AtomicInteger();
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("key" + i);
+        }
+        BulkKeyOperation<String> operation = new BulkKeyOperation<String>(keys,
+                new BulkOperationOptions().withMaxConcurrency(2), new BulkKeyOperation.KeyOperation<String>() {
+                    public String execute(String key) {
+                        int unconsumed = executed.incrementAndGet() - consumed.get();
+                        synchronized (maxUnconsumed) {
+                            maxUnconsumed.set(Math.max(maxUnconsumed.get(), unconsumed));
+                        }
+                        return key;
+                    }
+                });
+        for (KeyOperationResult<String> result : operation) {
+            assertTrue(result.isSuccessful());
+            Thread.sleep(1);
+            consumed.incrementAndGet();
+        }
+        assertEquals(100, consumed.get());
+        assertEquals(100, operation.getSuccessCount());
+        // The queued results, one in the hands of each worker and one being consumed
+        assertTrue(maxUnconsumed.get() <= BulkKeyOperation.RESULTS_PER_WORKER * 2 + 2 + 1);
+    }
+
+    @Test
+    public void bulkMetadataAndDelete() throws Exception {
+        SCSStubServer server = stub.getServer();
+        SCSClient client = stub.getClient();
+        List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) {
+            keys.add("bulk/" + i);
+            server.putObject(BUCKET, "bulk/" + i, randomBytes(10 + i));
+        }
+        server.setLatency(20);
+
+        BulkOperationOptions options = new BulkOperationOptions().withMaxConcurrency(4);
+        Set<String> found = new HashSet<String>();
+        List<String> requested = new ArrayList<String>(keys);
+        requested.add("bulk/missing");
+        for (KeyOperationResult<ObjectMetadata> result : client.getObjectMetadata(BUCKET, requested, options)) {
+            if (result.getKey().equals("bulk/missing")) {
+                assertTrue(!result.isSuccessful());
+                assertEquals(404, ((SCSServiceException) result.getException()).getStatusCode());
+            } else {
+                assertTrue(result.isSuccessful());
+                assertEquals(10 + Integer.parseInt(result.getKey().substring(5)),
+                        result.getResult().getContentLength());
+                found.add(result.getKey());
+            }
+        }
+        assertEquals(new HashSet<String>(keys), found);
+        assertTrue(server.getMaxConcurrentRequests() <= 4);
+
+        // Only failed deletions are reported
+        server.failNextRequests(1, "DELETE", 403, "AccessDenied");
+        List<String> failed = new ArrayList<String>();
+        for (KeyOperationResult<Void> result : client.deleteObjects(BUCKET, keys, options)) {
+            assertEquals(403, ((SCSServiceException) result.getException()).getStatusCode());
+            failed.add(result.getKey());
+        }
+        assertEquals(1, failed.size());
+        client.deleteObject(BUCKET, failed.get(0));
+        for (String key : keys) {
+            assertEquals(null, server.getObjectContent(BUCKET, key));
+        }
+
+        // The deletions run to completion even if the results are ignored
+        for (String key : keys) {
+            server.putObject(BUCKET, key, new byte[1]);
+        }
+        client.deleteObjects(BUCKET, keys, options);
+        Set<String> remaining = new HashSet<String>(keys);
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while (!remaining.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            for (String key : keys) {
+                if (server.getObjectContent(BUCKET, key) == null) remaining.remove(key);
+            }
+        }
+        assertEquals(new HashSet<String>(), remaining);
+    }
+}
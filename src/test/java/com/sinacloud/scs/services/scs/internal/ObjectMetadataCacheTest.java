@@ -0,0 +1,134 @@
+package com.sinacloud.scs.services.scs.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.services.scs.Headers;
+import com.sinacloud.scs.services.scs.S3ClientOptions;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+
+public class ObjectMetadataCacheTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void cachedMetadataIsRevalidatedAndInvalidated() throws Exception {
+        SCSStubServer server = stub.getServer();
+        SCSClient client = stub.getClient();
+        server.putObject(BUCKET, "cached", randomBytes(100));
+        client.setS3ClientOptions(new S3ClientOptions().withMetadataCacheSize(10).withMetadataCacheTtl(60 * 1000));
+
+        assertEquals(100, client.getObjectMetadata(BUCKET, "cached").getContentLength());
+        assertEquals(100, client.getObjectMetadata(BUCKET, "cached").getContentLength());
+        assertEquals(1, server.getRequestCount("HEAD"));
+
+        // The client's own writes invalidate the cached metadata
+        client.putObject(BUCKET, "cached", new ByteArrayInputStream(randomBytes(200)), new ObjectMetadata());
+        assertEquals(200, client.getObjectMetadata(BUCKET, "cached").getContentLength());
+        assertEquals(2, server.getRequestCount("HEAD"));
+
+        // Stale entries are revalidated with their ETag
+        client.setS3ClientOptions(new S3ClientOptions().withMetadataCacheSize(10).withMetadataCacheTtl(0));
+        ObjectMetadata metadata = client.getObjectMetadata(BUCKET, "cached");
+        metadata.setContentLength(1);
+        assertEquals(200, client.getObjectMetadata(BUCKET, "cached").getContentLength());
+        assertEquals(4, server.getRequestCount("HEAD"));
+
+        client.deleteObject(BUCKET, "cached");
+        try {
+            client.getObjectMetadata(BUCKET, "cached");
+            fail("Expected the deleted object to be missing");
+        } catch (SCSServiceException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+
+    @Test
+    public void writeDiscardsResponsesInFlightForTheSameKey() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(10, 60 * 1000);
+        long generation = cache.getGeneration(BUCKET, "key");
+        cache.invalidate(BUCKET, "key");
+        cache.put(BUCKET, "key", metadata("etag", 100), generation);
+        assertNull(cache.get(BUCKET, "key"));
+
+        cache.put(BUCKET, "key", metadata("etag", 100), cache.getGeneration(BUCKET, "key"));
+        assertEquals(100, cache.get(BUCKET, "key").getMetadata().getContentLength());
+    }
+
+    @Test
+    public void writeKeepsResponsesInFlightForOtherStripes() {
+        String other = keyInOtherStripe("key");
+        ObjectMetadataCache cache = new ObjectMetadataCache(10, 60 * 1000);
+        long generation = cache.getGeneration(BUCKET, "key");
+        cache.invalidate(BUCKET, other);
+        cache.put(BUCKET, "key", metadata("etag", 100), generation);
+        assertNotNull(cache.get(BUCKET, "key"));
+    }
+
+    @Test
+    public void writeDiscardsRevalidationInFlight() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(10, 0);
+        cache.put(BUCKET, "key", metadata("etag", 100), cache.getGeneration(BUCKET, "key"));
+        ObjectMetadataCache.Entry entry = cache.get(BUCKET, "key");
+        assertFalse(entry.isFresh());
+        assertEquals("etag", entry.getETag());
+
+        long generation = cache.getGeneration(BUCKET, "key");
+        cache.invalidate(BUCKET, "key");
+        cache.revalidated(BUCKET, "key", entry, generation);
+        assertNull(cache.get(BUCKET, "key"));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvicted() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(2, 60 * 1000);
+        cache.put(BUCKET, "a", metadata("a", 1), cache.getGeneration(BUCKET, "a"));
+        cache.put(BUCKET, "b", metadata("b", 2), cache.getGeneration(BUCKET, "b"));
+        assertNotNull(cache.get(BUCKET, "a"));
+        cache.put(BUCKET, "c", metadata("c", 3), cache.getGeneration(BUCKET, "c"));
+
+        assertTrue(cache.get(BUCKET, "a").isFresh());
+        assertNull(cache.get(BUCKET, "b"));
+        assertNotNull(cache.get(BUCKET, "c"));
+    }
+
+    @Test
+    public void cachedMetadataIsCopied() {
+        ObjectMetadataCache cache = new ObjectMetadataCache(10, 60 * 1000);
+        ObjectMetadata metadata = metadata("etag", 100);
+        cache.put(BUCKET, "key", metadata, cache.getGeneration(BUCKET, "key"));
+        metadata.setContentLength(1);
+        cache.get(BUCKET, "key").getMetadata().setContentLength(2);
+        assertEquals(100, cache.get(BUCKET, "key").getMetadata().getContentLength());
+    }
+
+    private static ObjectMetadata metadata(String eTag, long contentLength) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setHeader(Headers.ETAG, eTag);
+        metadata.setContentLength(contentLength);
+        return metadata;
+    }
+
+    private static String keyInOtherStripe(String key) {
+        int stripe = ObjectMetadataCache.stripe(BUCKET + "/" + key);
+        for (int i = 0; ; i++) {
+            if (ObjectMetadataCache.stripe(BUCKET + "/" + key + i) != stripe) return key + i;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sinacloud.scs.services.scs.model;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.sinacloud.scs.util.ByteBufferPool;
+
+public class RepeatableInputStreamTest {
+
+    private static final byte[] CONTENT = new byte[1000];
+    static {
+        for (int i = 0; i < CONTENT.length; i++) {
+            CONTENT[i] = (byte) (i * 7);
+        }
+    }
+
+    @Test
+    public void repeatsFromHeapAndDirectBuffers() throws Exception {
+        for (ByteBufferPool pool : new ByteBufferPool[] {
+                new ByteBufferPool(false, 1024 * 1024), new ByteBufferPool(true, 1024 * 1024) }) {
+            RepeatableInputStream in = new RepeatableInputStream(unmarkable(CONTENT), 600, pool);
+            in.mark(0);
+            assertEquals(CONTENT[0] & 0xff, in.read());
+            byte[] prefix = new byte[299];
+            assertEquals(299, in.read(prefix));
+            in.reset();
+            byte[] start = readFully(in, 500);
+            assertArrayEquals(Arrays.copyOf(CONTENT, 500), start);
+
+            // Marking keeps the unread data and frees the space before it
+            in.reset();
+            readFully(in, 200);
+            in.mark(0);
+            byte[] rest = readFully(in, CONTENT.length - 200);
+            assertArrayEquals(Arrays.copyOfRange(CONTENT, 200, CONTENT.length), rest);
+            try {
+                in.reset();
+                fail("Read past the buffer");
+            } catch (IOException expected) {
+            }
+            in.close();
+        }
+    }
+
+    @Test
+    public void returnsBufferToPoolOnClose() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(false, 1024 * 1024);
+        ByteBuffer buffer = pool.acquire(600);
+        pool.release(buffer);
+
+        RepeatableInputStream in = new RepeatableInputStream(unmarkable(CONTENT), 600, pool);
+        in.close();
+        assertSame(buffer, pool.acquire(600));
+    }
+
+    private static InputStream unmarkable(byte[] content) {
+        return new FilterInputStream(new ByteArrayInputStream(content)) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+
+    private static byte[] readFully(InputStream in, int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        while (out.size() < length) {
+            int n = in.read(buffer, 0, Math.min(buffer.length, length - out.size()));
+            if (n < 0) break;
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,1092 @@
+package com.sinacloud.scs.services.scs.stub;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.DefaultHttpResponseFactory;
+import org.apache.http.impl.DefaultHttpServerConnection;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestHandler;
+import org.apache.http.protocol.HttpRequestHandlerRegistry;
+import org.apache.http.protocol.HttpService;
+import org.apache.http.protocol.ImmutableHttpProcessor;
+import org.apache.http.protocol.ResponseConnControl;
+import org.apache.http.protocol.ResponseDate;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.sinacloud.scs.services.scs.internal.ServiceUtils;
+import com.sinacloud.scs.util.BinaryUtils;
+
+/**
+ * In-process SCS server for integration and load tests, keeping buckets and
+ * objects in memory. It listens on an ephemeral port of the loopback
+ * interface; point a client at it with:
+ *
+ * <pre>
+ * SCSStubServer server = SCSStubServer.start();
+ * client.setEndpoint(server.getEndpoint());
+ * client.setEndpoint4Upload(server.getEndpoint());
+ * </pre>
+ *
+ * It speaks the path-style JSON dialect of the service closely enough for
+ * the {@link com.sinacloud.scs.services.scs.SCSClient}:
+ * <ul>
+ * <li>object PUT (with Content-MD5 checks and <code>x-amz-copy-source</code>
+ * copies), GET (with byte ranges), HEAD and DELETE;</li>
+ * <li><code>?relax</code> uploads, accepted when an object with the same
+ * <code>s-sina-sha1</code> and <code>s-sina-length</code> is already stored,
+ * answered with a 404 otherwise;</li>
+ * <li><code>formatter=json</code> listings with prefix, marker, delimiter and
+ * max-keys;</li>
+ * <li>multipart uploads: <code>?multipart</code>,
+ * <code>uploadId</code>/<code>partNumber</code> part uploads, part listings,
+ * completion and abort;</li>
+ * <li>bucket creation and deletion.</li>
+ * </ul>
+ * Every request must carry a <code>SINA &lt;access key&gt;:&lt;signature&gt;</code>
+ * Authorization header (or the <code>KID</code>/<code>ssig</code> parameters
+ * of a presigned URL). Signatures aren't verified, only the access key when
+ * {@link #setAccessKey(String)} is set.
+ * <p>
+ * Faults can be injected to exercise the retry and transfer code: a fixed
+ * latency before every response, a per-connection bandwidth cap on request
+ * and response bodies, a random error rate and a number of failures to
+ * return for the next requests. Error responses carry the error code in the
+ * <code>x-error-code</code> header like the service does, so
+ * <code>failNextRequests(3, null, 503, "Throttling")</code> makes the client
+ * see throttling errors.
+ * <p>
+ * The fault settings can be changed at any time, including while requests
+ * are in flight.
+ */
+public class SCSStubServer {
+
+    private static final String MULTIPART_ETAG_SEPARATOR = "-";
+    private static final int DEFAULT_MAX_KEYS = 1000;
+    private static final int SOCKET_TIMEOUT = 30 * 1000;
+
+    private static final class StoredObject {
+        final byte[] content;
+        final String eTag;
+        final String sha1;
+        final Map<String, String> headers;
+        final Date lastModified = new Date();
+
+        StoredObject(byte[] content, String eTag, Map<String, String> headers) {
+            this.content = content;
+            this.eTag = eTag;
+            this.sha1 = BinaryUtils.toHex(digest("SHA-1", content));
+            this.headers = headers;
+        }
+    }
+
+    private static final class Part {
+        final byte[] content;
+        final String eTag;
+        final Date lastModified = new Date();
+
+        Part(byte[] content) {
+            this.content = content;
+            this.eTag = BinaryUtils.toHex(digest("MD5", content));
+        }
+    }
+
+    private static final class MultipartUpload {
+        final String bucketName;
+        final String key;
+        final Map<String, String> headers;
+        final NavigableMap<Integer, Part> parts = new ConcurrentSkipListMap<Integer, Part>();
+
+        MultipartUpload(String bucketName, String key, Map<String, String> headers) {
+            this.bucketName = bucketName;
+            this.key = key;
+            this.headers = headers;
+        }
+    }
+
+    private static final class Failure {
+        final String method;
+        final int statusCode;
+        final String errorCode;
+
+        Failure(String method, int statusCode, String errorCode) {
+            this.method = method;
+            this.statusCode = statusCode;
+            this.errorCode = errorCode;
+        }
+    }
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private final HttpService httpService;
+    private final Gson gson = new GsonBuilder().serializeNulls().create();
+    private final Random random = new Random();
+
+    private final ConcurrentMap<String, ConcurrentSkipListMap<String, StoredObject>> buckets =
+            new ConcurrentHashMap<String, ConcurrentSkipListMap<String, StoredObject>>();
+    private final ConcurrentMap<String, MultipartUpload> uploads = new ConcurrentHashMap<String, MultipartUpload>();
+
+    private volatile String accessKey;
+    private volatile long latencyMillis;
+    private volatile CountDownLatch requestGate;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile Failure randomFailure;
+    private final List<Failure> scheduledFailures = new ArrayList<Failure>();
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> requestCountByMethod = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicInteger concurrentRequests = new AtomicInteger();
+    private final AtomicInteger maxConcurrentRequests = new AtomicInteger();
+
+    /*
+     * Built on the blocking HttpCore server rather than the JDK one since the
+     * latter capitalizes header names (Etag, X-amz-meta-...) while the client
+     * looks some of them up case-sensitively.
+     */
+    private SCSStubServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+
+        HttpRequestHandlerRegistry handlers = new HttpRequestHandlerRegistry();
+        handlers.register("*", new HttpRequestHandler() {
+            public void handle(HttpRequest request, HttpResponse response, HttpContext context) {
+                SCSStubServer.this.handle(request, response);
+            }
+        });
+        httpService = new HttpService(
+                new ImmutableHttpProcessor(new HttpResponseInterceptor[] {
+                        new ResponseDate(), new ResponseContentLength(), new ResponseConnControl() }),
+                new DefaultConnectionReuseStrategy(), new DefaultHttpResponseFactory(), handlers,
+                new BasicHttpParams());
+    }
+
+    /**
+     * Starts a new stub server on an ephemeral port of the loopback
+     * interface.
+     */
+    public static SCSStubServer start() throws IOException {
+        final SCSStubServer stub = new SCSStubServer();
+        stub.executor.execute(new Runnable() {
+            public void run() {
+                stub.acceptConnections();
+            }
+        });
+        return stub;
+    }
+
+    /**
+     * Stops the server, closing all connections.
+     */
+    public void stop() {
+        closeQuietly(serverSocket);
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+        executor.shutdownNow();
+    }
+
+    /**
+     * Closes the connections of the clients, like a server closing idle
+     * keep-alive connections, while still accepting new ones.
+     */
+    public void closeConnections() {
+        for (Socket socket : connections) {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Returns the endpoint of this server, ex: http://127.0.0.1:49152.
+     */
+    public String getEndpoint() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    /**
+     * Only accepts requests signed with the given access key; any access key
+     * is accepted when null (the default).
+     */
+    public void setAccessKey(String accessKey) {
+        this.accessKey = accessKey;
+    }
+
+    /**
+     * Sets the time waited before handling each request, in milliseconds.
+     */
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Holds every request received from now on until
+     * {@link #releaseRequests()} is called.
+     */
+    public void holdRequests() {
+        requestGate = new CountDownLatch(1);
+    }
+
+    /**
+     * Lets the held requests, and the ones received from now on, through.
+     */
+    public void releaseRequests() {
+        CountDownLatch gate = requestGate;
+        requestGate = null;
+        if (gate != null) gate.countDown();
+    }
+
+    /**
+     * Caps the rate at which each request body is read and each response
+     * body is written, in bytes per second. Zero (the default) disables the
+     * cap.
+     */
+    public void setBandwidthLimit(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Fails the given fraction of the requests at random with the given
+     * status and error code. A rate of zero (the default) disables random
+     * failures.
+     */
+    public void setErrorRate(double errorRate, int statusCode, String errorCode) {
+        this.randomFailure = new Failure(null, statusCode, errorCode);
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * Fails the next <code>count</code> requests with the given HTTP method
+     * (any method when null) with the given status and error code.
+     */
+    public void failNextRequests(int count, String method, int statusCode, String errorCode) {
+        synchronized (scheduledFailures) {
+            for (int i = 0; i < count; i++) {
+                scheduledFailures.add(new Failure(method, statusCode, errorCode));
+            }
+        }
+    }
+
+    /**
+     * Removes all the injected faults: latency, bandwidth cap and errors.
+     */
+    public void clearFaults() {
+        latencyMillis = 0;
+        bytesPerSecond = 0;
+        errorRate = 0;
+        synchronized (scheduledFailures) {
+            scheduledFailures.clear();
+        }
+    }
+
+    /** Returns the number of requests received so far. */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** Returns the number of requests received so far with the given HTTP method. */
+    public long getRequestCount(String method) {
+        AtomicLong count = requestCountByMethod.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    /** Returns the number of requests failed on purpose so far. */
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+
+    /** Returns the highest number of requests handled at the same time so far. */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    /**
+     * Stores an object directly, without going through HTTP.
+     */
+    public void putObject(String bucketName, String key, byte[] content) {
+        putObject(bucketName, key, content, BinaryUtils.toHex(digest("MD5", content)));
+    }
+
+    /**
+     * Stores an object directly with the given ETag, for instance one that
+     * doesn't match its content, as if it had been corrupted at rest.
+     */
+    public void putObject(String bucketName, String key, byte[] content, String eTag) {
+        bucket(bucketName, true).put(key, new StoredObject(content, eTag, new LinkedHashMap<String, String>()));
+    }
+
+    /**
+     * Returns the content of a stored object, or null if there is none.
+     */
+    public byte[] getObjectContent(String bucketName, String key) {
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(bucketName, false);
+        StoredObject object = bucket == null ? null : bucket.get(key);
+        return object == null ? null : object.content;
+    }
+
+    /** Returns the number of multipart uploads initiated and neither completed nor aborted. */
+    public int getPendingMultipartUploadCount() {
+        return uploads.size();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            connections.add(socket);
+            executor.execute(new Runnable() {
+                public void run() {
+                    serveConnection(socket);
+                }
+            });
+        }
+    }
+
+    private void serveConnection(Socket socket) {
+        DefaultHttpServerConnection connection = new DefaultHttpServerConnection();
+        try {
+            HttpParams params = new BasicHttpParams();
+            params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, SOCKET_TIMEOUT);
+            params.setBooleanParameter(CoreConnectionPNames.TCP_NODELAY, true);
+            connection.bind(socket, params);
+            while (connection.isOpen() && !Thread.currentThread().isInterrupted()) {
+                httpService.handleRequest(connection, new BasicHttpContext());
+            }
+        } catch (IOException e) {
+            // Closed by the client, timed out or stopped
+        } catch (HttpException e) {
+            // Malformed request
+        } finally {
+            connections.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void handle(HttpRequest httpRequest, HttpResponse httpResponse) {
+        StubRequest request = new StubRequest(httpRequest, httpResponse);
+        int concurrent = concurrentRequests.incrementAndGet();
+        try {
+            int max;
+            while (concurrent > (max = maxConcurrentRequests.get())
+                    && !maxConcurrentRequests.compareAndSet(max, concurrent));
+            handleRequest(request);
+        } catch (Exception e) {
+            httpResponse.setEntity(null);
+            sendError(request, 500, "InternalError", e.toString());
+        } finally {
+            concurrentRequests.decrementAndGet();
+        }
+    }
+
+    private void handleRequest(StubRequest request) throws Exception {
+        requestCount.incrementAndGet();
+        AtomicLong methodCount = requestCountByMethod.get(request.method);
+        if (methodCount == null) {
+            requestCountByMethod.putIfAbsent(request.method, new AtomicLong());
+            methodCount = requestCountByMethod.get(request.method);
+        }
+        methodCount.incrementAndGet();
+
+        long latency = latencyMillis;
+        if (latency > 0) TimeUnit.MILLISECONDS.sleep(latency);
+        CountDownLatch gate = requestGate;
+        if (gate != null) gate.await();
+
+        if (!isAuthorized(request)) {
+            drain(request.body());
+            sendError(request, 403, "AccessDenied", "Missing or invalid Authorization");
+            return;
+        }
+
+        Failure failure = nextFailure(request.method);
+        if (failure != null) {
+            injectedErrorCount.incrementAndGet();
+            drain(request.body());
+            sendError(request, failure.statusCode, failure.errorCode, "Injected failure");
+            return;
+        }
+
+        if (request.bucketName == null) {
+            sendError(request, 501, "NotImplemented", "Listing buckets isn't supported by the stub");
+        } else if (request.key == null) {
+            handleBucketRequest(request);
+        } else if (request.parameters.containsKey("uploadId")) {
+            handleMultipartRequest(request);
+        } else if (request.parameters.containsKey("multipart")) {
+            initiateMultipartUpload(request);
+        } else if (request.parameters.containsKey("acl") || request.parameters.containsKey("meta")) {
+            drain(request.body());
+            sendError(request, 501, "NotImplemented", "Sub-resource isn't supported by the stub");
+        } else if ("PUT".equals(request.method)) {
+            if (request.parameters.containsKey("relax")) {
+                putObjectRelax(request);
+            } else if (request.header("x-amz-copy-source") != null) {
+                copyObject(request);
+            } else {
+                putObject(request);
+            }
+        } else if ("GET".equals(request.method) || "HEAD".equals(request.method)) {
+            getObject(request);
+        } else if ("DELETE".equals(request.method)) {
+            ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucketName, false);
+            if (bucket != null) bucket.remove(request.key);
+            sendEmpty(request, 204);
+        } else {
+            drain(request.body());
+            sendError(request, 405, "MethodNotAllowed", request.method);
+        }
+    }
+
+    private boolean isAuthorized(StubRequest request) {
+        String expectedAccessKey = accessKey;
+        String authorization = request.header("Authorization");
+        String requestAccessKey = null;
+        if (authorization != null && authorization.startsWith("SINA ") && authorization.indexOf(':') > 5) {
+            requestAccessKey = authorization.substring(5, authorization.indexOf(':'));
+        } else if (request.parameters.get("KID") != null && request.parameters.get("ssig") != null) {
+            String kid = request.parameters.get("KID");
+            requestAccessKey = kid.startsWith("sina,") ? kid.substring(5) : kid;
+        }
+        if (requestAccessKey == null) return false;
+        return expectedAccessKey == null || expectedAccessKey.equals(requestAccessKey);
+    }
+
+    private Failure nextFailure(String method) {
+        synchronized (scheduledFailures) {
+            for (int i = 0; i < scheduledFailures.size(); i++) {
+                Failure failure = scheduledFailures.get(i);
+                if (failure.method == null || failure.method.equals(method)) {
+                    return scheduledFailures.remove(i);
+                }
+            }
+        }
+        double rate = errorRate;
+        if (rate > 0) {
+            synchronized (random) {
+                if (random.nextDouble() < rate) return randomFailure;
+            }
+        }
+        return null;
+    }
+
+    private void handleBucketRequest(StubRequest request) throws IOException {
+        if ("GET".equals(request.method)) {
+            listObjects(request);
+        } else if ("PUT".equals(request.method)) {
+            drain(request.body());
+            bucket(request.bucketName, true);
+            sendEmpty(request, 200);
+        } else if ("DELETE".equals(request.method)) {
+            ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucketName, false);
+            if (bucket == null) {
+                sendError(request, 404, "NoSuchBucket", request.bucketName);
+            } else if (!bucket.isEmpty()) {
+                sendError(request, 409, "BucketNotEmpty", request.bucketName);
+            } else {
+                buckets.remove(request.bucketName);
+                sendEmpty(request, 204);
+            }
+        } else {
+            drain(request.body());
+            sendError(request, 405, "MethodNotAllowed", request.method);
+        }
+    }
+
+    private void listObjects(StubRequest request) throws IOException {
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucketName, false);
+        if (bucket == null) {
+            sendError(request, 404, "NoSuchBucket", request.bucketName);
+            return;
+        }
+        String prefix = request.parameters.get("prefix");
+        String marker = request.parameters.get("marker");
+        String delimiter = request.parameters.get("delimiter");
+        int maxKeys = request.parameters.get("max-keys") == null
+                ? DEFAULT_MAX_KEYS : Integer.parseInt(request.parameters.get("max-keys"));
+
+        NavigableMap<String, StoredObject> candidates = marker == null ? bucket : bucket.tailMap(marker, false);
+        List<Map<String, Object>> contents = new ArrayList<Map<String, Object>>();
+        TreeSet<String> commonPrefixes = new TreeSet<String>();
+        String lastReturned = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            if (prefix != null && !key.startsWith(prefix)) {
+                if (prefix.compareTo(key) < 0) break;
+                continue;
+            }
+            String commonPrefix = null;
+            if (delimiter != null && delimiter.length() > 0) {
+                int start = prefix == null ? 0 : prefix.length();
+                int index = key.indexOf(delimiter, start);
+                if (index >= 0) commonPrefix = key.substring(0, index + delimiter.length());
+            }
+            if (commonPrefix != null && commonPrefixes.contains(commonPrefix)) continue;
+            if (contents.size() + commonPrefixes.size() >= maxKeys) {
+                truncated = true;
+                break;
+            }
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+                lastReturned = commonPrefix;
+            } else {
+                contents.add(toSummary(key, entry.getValue()));
+                lastReturned = key;
+            }
+        }
+
+        List<Map<String, String>> prefixes = new ArrayList<Map<String, String>>();
+        for (String commonPrefix : commonPrefixes) {
+            Map<String, String> map = new LinkedHashMap<String, String>();
+            map.put("Prefix", commonPrefix);
+            prefixes.add(map);
+        }
+        Map<String, Object> listing = new LinkedHashMap<String, Object>();
+        listing.put("Delimiter", delimiter);
+        listing.put("Prefix", prefix);
+        listing.put("CommonPrefixes", prefixes);
+        listing.put("Marker", marker);
+        listing.put("ContentsQuantity", Integer.valueOf(contents.size()));
+        listing.put("CommonPrefixesQuantity", Integer.valueOf(prefixes.size()));
+        listing.put("NextMarker", truncated ? lastReturned : null);
+        listing.put("IsTruncated", Boolean.valueOf(truncated));
+        listing.put("Contents", contents);
+        sendJson(request, 200, listing);
+    }
+
+    private Map<String, Object> toSummary(String key, StoredObject object) {
+        Map<String, Object> summary = new LinkedHashMap<String, Object>();
+        summary.put("SHA1", object.sha1);
+        summary.put("Name", key);
+        summary.put("Expiration-Time", null);
+        summary.put("Last-Modified", ServiceUtils.formatRfc822Date(object.lastModified));
+        summary.put("Owner", "SINA0000000000000000");
+        summary.put("MD5", object.eTag);
+        summary.put("Content-Type", object.headers.get("Content-Type"));
+        summary.put("Size", Long.valueOf(object.content.length));
+        return summary;
+    }
+
+    private void putObject(StubRequest request) throws IOException {
+        byte[] content = readFully(request.body());
+        String eTag = BinaryUtils.toHex(digest("MD5", content));
+        if (!checkContentMd5(request, content)) return;
+        bucket(request.bucketName, true).put(request.key, new StoredObject(content, eTag, storedHeaders(request)));
+        request.response.setHeader("ETag", "\"" + eTag + "\"");
+        sendEmpty(request, 200);
+    }
+
+    private void putObjectRelax(StubRequest request) throws IOException {
+        drain(request.body());
+        String sha1 = request.header("s-sina-sha1");
+        String length = request.header("s-sina-length");
+        StoredObject match = null;
+        if (sha1 != null) {
+            for (ConcurrentSkipListMap<String, StoredObject> bucket : buckets.values()) {
+                for (StoredObject object : bucket.values()) {
+                    if (object.sha1.equalsIgnoreCase(sha1)
+                            && (length == null || Long.parseLong(length) == object.content.length)) {
+                        match = object;
+                        break;
+                    }
+                }
+                if (match != null) break;
+            }
+        }
+        if (match == null) {
+            sendError(request, 404, "NoSuchContent", "No stored content matches " + sha1);
+            return;
+        }
+        bucket(request.bucketName, true).put(request.key,
+                new StoredObject(match.content, match.eTag, storedHeaders(request)));
+        request.response.setHeader("ETag", "\"" + match.eTag + "\"");
+        sendEmpty(request, 200);
+    }
+
+    private void copyObject(StubRequest request) throws IOException {
+        drain(request.body());
+        String source = decode(request.header("x-amz-copy-source"));
+        if (source.startsWith("/")) source = source.substring(1);
+        int slash = source.indexOf('/');
+        ConcurrentSkipListMap<String, StoredObject> sourceBucket = slash < 0 ? null : bucket(source.substring(0, slash), false);
+        StoredObject sourceObject = sourceBucket == null ? null : sourceBucket.get(source.substring(slash + 1));
+        if (sourceObject == null) {
+            sendError(request, 404, "NoSuchKey", source);
+            return;
+        }
+        Map<String, String> headers = "REPLACE".equals(request.header("x-amz-metadata-directive"))
+                ? storedHeaders(request) : sourceObject.headers;
+        bucket(request.bucketName, true).put(request.key, new StoredObject(sourceObject.content, sourceObject.eTag, headers));
+        request.response.setHeader("ETag", "\"" + sourceObject.eTag + "\"");
+        sendEmpty(request, 200);
+    }
+
+    private void getObject(StubRequest request) throws IOException {
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucketName, false);
+        StoredObject object = bucket == null ? null : bucket.get(request.key);
+        if (object == null) {
+            sendError(request, 404, "NoSuchKey", request.key);
+            return;
+        }
+        String ifNoneMatch = request.header("If-None-Match");
+        if (ifNoneMatch != null && ServiceUtils.removeQuotes(ifNoneMatch).equals(object.eTag)) {
+            request.response.setHeader("ETag", "\"" + object.eTag + "\"");
+            sendEmpty(request, 304);
+            return;
+        }
+
+        HttpResponse response = request.response;
+        for (Map.Entry<String, String> header : object.headers.entrySet()) {
+            response.setHeader(header.getKey(), header.getValue());
+        }
+        response.setHeader("ETag", "\"" + object.eTag + "\"");
+        response.setHeader("Last-Modified", ServiceUtils.formatRfc822Date(object.lastModified));
+        response.setHeader("x-sina-sha1", object.sha1);
+
+        int start = 0;
+        int end = object.content.length - 1;
+        int status = 200;
+        String range = request.header("Range");
+        if (range != null && range.startsWith("bytes=") && object.content.length > 0) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            start = Integer.parseInt(bounds[0]);
+            if (bounds.length > 1 && bounds[1].length() > 0) {
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+            }
+            if (start > end) {
+                sendError(request, 416, "InvalidRange", range);
+                return;
+            }
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + object.content.length);
+            status = 206;
+        }
+        sendContent(request, status, object.content, start, end - start + 1);
+    }
+
+    private void initiateMultipartUpload(StubRequest request) throws IOException {
+        drain(request.body());
+        if (!"POST".equals(request.method)) {
+            sendError(request, 405, "MethodNotAllowed", request.method);
+            return;
+        }
+        String uploadId = UUID.randomUUID().toString().replace("-", "");
+        uploads.put(uploadId, new MultipartUpload(request.bucketName, request.key, storedHeaders(request)));
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        result.put("Bucket", request.bucketName);
+        result.put("Key", request.key);
+        result.put("UploadId", uploadId);
+        sendJson(request, 200, result);
+    }
+
+    private void handleMultipartRequest(StubRequest request) throws IOException {
+        MultipartUpload upload = uploads.get(request.parameters.get("uploadId"));
+        if (upload == null || !upload.bucketName.equals(request.bucketName) || !upload.key.equals(request.key)) {
+            drain(request.body());
+            sendError(request, 404, "NoSuchUpload", request.parameters.get("uploadId"));
+            return;
+        }
+
+        if ("PUT".equals(request.method) && request.parameters.get("partNumber") != null) {
+            byte[] content = readFully(request.body());
+            if (!checkContentMd5(request, content)) return;
+            Part part = new Part(content);
+            upload.parts.put(Integer.valueOf(request.parameters.get("partNumber")), part);
+            request.response.setHeader("ETag", "\"" + part.eTag + "\"");
+            sendEmpty(request, 200);
+        } else if ("GET".equals(request.method)) {
+            List<Map<String, Object>> parts = new ArrayList<Map<String, Object>>();
+            for (Map.Entry<Integer, Part> entry : upload.parts.entrySet()) {
+                Map<String, Object> part = new LinkedHashMap<String, Object>();
+                part.put("PartNumber", entry.getKey());
+                part.put("Last-Modified", ServiceUtils.formatRfc822Date(entry.getValue().lastModified));
+                part.put("ETag", entry.getValue().eTag);
+                part.put("Size", Long.valueOf(entry.getValue().content.length));
+                parts.add(part);
+            }
+            Map<String, Object> listing = new LinkedHashMap<String, Object>();
+            listing.put("Bucket", upload.bucketName);
+            listing.put("Key", upload.key);
+            listing.put("Owner", "SINA0000000000000000");
+            listing.put("Parts", parts);
+            sendJson(request, 200, listing);
+        } else if ("POST".equals(request.method)) {
+            completeMultipartUpload(request, upload);
+        } else if ("DELETE".equals(request.method)) {
+            uploads.remove(request.parameters.get("uploadId"));
+            sendEmpty(request, 204);
+        } else {
+            drain(request.body());
+            sendError(request, 405, "MethodNotAllowed", request.method);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void completeMultipartUpload(StubRequest request, MultipartUpload upload) throws IOException {
+        List<Map<String, Object>> partETags = gson.fromJson(
+                new InputStreamReader(request.body(), "UTF-8"), List.class);
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        ByteArrayOutputStream digests = new ByteArrayOutputStream();
+        int previousPartNumber = 0;
+        for (Map<String, Object> partETag : partETags) {
+            int partNumber = ((Number) partETag.get("PartNumber")).intValue();
+            Part part = upload.parts.get(Integer.valueOf(partNumber));
+            if (part == null || partNumber <= previousPartNumber
+                    || !part.eTag.equals(ServiceUtils.removeQuotes((String) partETag.get("ETag")))) {
+                sendError(request, 400, "InvalidPart", "Part " + partNumber);
+                return;
+            }
+            previousPartNumber = partNumber;
+            content.write(part.content);
+            digests.write(BinaryUtils.fromHex(part.eTag));
+        }
+        String eTag = BinaryUtils.toHex(digest("MD5", digests.toByteArray()))
+                + MULTIPART_ETAG_SEPARATOR + partETags.size();
+        uploads.remove(request.parameters.get("uploadId"));
+        bucket(upload.bucketName, true).put(upload.key, new StoredObject(content.toByteArray(), eTag, upload.headers));
+        request.response.setHeader("ETag", "\"" + eTag + "\"");
+        sendEmpty(request, 200);
+    }
+
+    private boolean checkContentMd5(StubRequest request, byte[] content) throws IOException {
+        String contentMd5 = request.header("Content-MD5");
+        if (contentMd5 != null && !contentMd5.equals(BinaryUtils.toBase64(digest("MD5", content)))) {
+            sendError(request, 400, "BadDigest", "Content-MD5 mismatch");
+            return false;
+        }
+        return true;
+    }
+
+    /*
+     * The headers of an upload that are returned with the object.
+     */
+    private static Map<String, String> storedHeaders(StubRequest request) {
+        Map<String, String> headers = new LinkedHashMap<String, String>();
+        for (Header header : request.request.getAllHeaders()) {
+            String name = header.getName().toLowerCase();
+            if (name.startsWith("x-amz-meta-") || name.equals("content-type") || name.equals("content-encoding")
+                    || name.equals("content-disposition") || name.equals("cache-control")) {
+                headers.put(name.equals("content-type") ? "Content-Type" : name, header.getValue());
+            }
+        }
+        return headers;
+    }
+
+    private ConcurrentSkipListMap<String, StoredObject> bucket(String bucketName, boolean create) {
+        ConcurrentSkipListMap<String, StoredObject> bucket = buckets.get(bucketName);
+        if (bucket == null && create) {
+            buckets.putIfAbsent(bucketName, new ConcurrentSkipListMap<String, StoredObject>());
+            bucket = buckets.get(bucketName);
+        }
+        return bucket;
+    }
+
+    private void sendJson(StubRequest request, int status, Object body) throws IOException {
+        byte[] json = gson.toJson(body).getBytes("UTF-8");
+        request.response.setHeader("Content-Type", "application/json");
+        sendContent(request, status, json, 0, json.length);
+    }
+
+    /*
+     * HEAD responses only get the Content-Length of the content, see
+     * ResponseContentLength.
+     */
+    private void sendContent(StubRequest request, int status, byte[] content, int offset, int length) {
+        HttpResponse response = request.response;
+        response.setStatusCode(status);
+        response.setHeader("x-requestid", UUID.randomUUID().toString());
+        if ("HEAD".equals(request.method)) {
+            response.setHeader("Content-Length", Integer.toString(length));
+        } else {
+            response.setEntity(new ContentEntity(content, offset, length, bytesPerSecond));
+        }
+    }
+
+    private void sendEmpty(StubRequest request, int status) {
+        request.response.setStatusCode(status);
+        request.response.setHeader("x-requestid", UUID.randomUUID().toString());
+    }
+
+    private void sendError(StubRequest request, int status, String errorCode, String message) {
+        request.response.setHeader("x-error-code", errorCode);
+        if ("HEAD".equals(request.method)) {
+            sendEmpty(request, status);
+            return;
+        }
+        Map<String, String> error = new LinkedHashMap<String, String>();
+        error.put("Code", errorCode);
+        error.put("Message", message);
+        byte[] body;
+        try {
+            body = gson.toJson(error).getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        request.response.setHeader("Content-Type", "application/json");
+        sendContent(request, status, body, 0, body.length);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        while (in.read(buffer) > -1);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] digest(String algorithm, byte[] content) {
+        try {
+            return MessageDigest.getInstance(algorithm).digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The parts of a request the stub dispatches on.
+     */
+    private final class StubRequest {
+        final HttpRequest request;
+        final HttpResponse response;
+        final String method;
+        final String bucketName;
+        final String key;
+        final Map<String, String> parameters = new LinkedHashMap<String, String>();
+
+        StubRequest(HttpRequest request, HttpResponse response) {
+            this.request = request;
+            this.response = response;
+            this.method = request.getRequestLine().getMethod();
+
+            URI uri = URI.create(request.getRequestLine().getUri());
+            String path = uri.getPath();
+            if (path.startsWith("/")) path = path.substring(1);
+            int slash = path.indexOf('/');
+            if (path.length() == 0) {
+                bucketName = null;
+                key = null;
+            } else if (slash < 0 || slash == path.length() - 1) {
+                bucketName = slash < 0 ? path : path.substring(0, slash);
+                key = null;
+            } else {
+                bucketName = path.substring(0, slash);
+                key = path.substring(slash + 1);
+            }
+
+            String query = uri.getRawQuery();
+            if (query != null) {
+                for (String pair : query.split("&")) {
+                    if (pair.length() == 0) continue;
+                    int equals = pair.indexOf('=');
+                    if (equals < 0) {
+                        parameters.put(decode(pair), null);
+                    } else {
+                        parameters.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+                    }
+                }
+            }
+        }
+
+        String header(String name) {
+            Header header = request.getFirstHeader(name);
+            return header == null ? null : header.getValue();
+        }
+
+        InputStream body() throws IOException {
+            HttpEntity entity = request instanceof HttpEntityEnclosingRequest
+                    ? ((HttpEntityEnclosingRequest) request).getEntity() : null;
+            if (entity == null) return new ByteArrayInputStream(new byte[0]);
+            long limit = bytesPerSecond;
+            InputStream in = entity.getContent();
+            return limit > 0 ? new ThrottledInputStream(in, limit) : in;
+        }
+    }
+
+    /**
+     * Sets the Content-Length of the responses, leaving the one of HEAD
+     * responses, which have no entity, as set by the handler.
+     */
+    private static final class ResponseContentLength implements HttpResponseInterceptor {
+        public void process(HttpResponse response, HttpContext context) {
+            HttpEntity entity = response.getEntity();
+            int status = response.getStatusLine().getStatusCode();
+            if (entity != null) {
+                response.setHeader("Content-Length", Long.toString(entity.getContentLength()));
+            } else if (!response.containsHeader("Content-Length") && status != 204 && status != 304) {
+                response.setHeader("Content-Length", "0");
+            }
+        }
+    }
+
+    /**
+     * A slice of a byte array written at most at the bandwidth limit.
+     */
+    private static final class ContentEntity extends AbstractHttpEntity {
+        private final byte[] content;
+        private final int offset;
+        private final int length;
+        private final long bytesPerSecond;
+
+        ContentEntity(byte[] content, int offset, int length, long bytesPerSecond) {
+            this.content = content;
+            this.offset = offset;
+            this.length = length;
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        public long getContentLength() {
+            return length;
+        }
+
+        public InputStream getContent() {
+            return new ByteArrayInputStream(content, offset, length);
+        }
+
+        public boolean isStreaming() {
+            return false;
+        }
+
+        public void writeTo(OutputStream out) throws IOException {
+            Throttle throttle = bytesPerSecond > 0 ? new Throttle(bytesPerSecond) : null;
+            int off = offset;
+            int remaining = length;
+            while (remaining > 0) {
+                int n = Math.min(remaining, 16 * 1024);
+                out.write(content, off, n);
+                if (throttle != null) throttle.transferred(n);
+                off += n;
+                remaining -= n;
+            }
+            out.flush();
+        }
+    }
+
+    /**
+     * Paces the bytes going through a stream so that the average rate since
+     * the first byte stays under a limit.
+     */
+    private static final class Throttle {
+        private final long bytesPerSecond;
+        private long startNanos = -1;
+        private long bytes;
+
+        Throttle(long bytesPerSecond) {
+            this.bytesPerSecond = bytesPerSecond;
+        }
+
+        void transferred(long count) throws IOException {
+            if (startNanos < 0) startNanos = System.nanoTime();
+            bytes += count;
+            long dueNanos = startNanos + bytes * TimeUnit.SECONDS.toNanos(1) / bytesPerSecond;
+            long waitNanos = dueNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while throttling");
+                }
+            }
+        }
+    }
+
+    private static final class ThrottledInputStream extends FilterInputStream {
+        private final Throttle throttle;
+
+        ThrottledInputStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.throttle = new Throttle(bytesPerSecond);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) throttle.transferred(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, Math.min(len, 16 * 1024));
+            if (n > 0) throttle.transferred(n);
+            return n;
+        }
+    }
+}
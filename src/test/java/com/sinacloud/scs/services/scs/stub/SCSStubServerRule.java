@@ -0,0 +1,155 @@
+package com.sinacloud.scs.services.scs.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.rules.ExternalResource;
+
+import com.sinacloud.scs.ClientConfiguration;
+import com.sinacloud.scs.auth.BasicAWSCredentials;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.transfer.TransferManager;
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+
+/**
+ * Starts an {@link SCSStubServer} before each test, with a client pointed at
+ * it, and stops them after the test along with the clients, transfer
+ * managers and temporary files created through this rule:
+ *
+ * <pre>
+ * &#064;Rule
+ * public SCSStubServerRule stub = new SCSStubServerRule();
+ * </pre>
+ */
+public class SCSStubServerRule extends ExternalResource {
+
+    /** The bucket the tests use; the stub creates buckets on first use. */
+    public static final String BUCKET = "bucket";
+
+    private final List<SCSClient> clients = new ArrayList<SCSClient>();
+    private final List<TransferManager> transferManagers = new ArrayList<TransferManager>();
+    private final List<File> files = new ArrayList<File>();
+
+    private SCSStubServer server;
+    private SCSClient client;
+
+    @Override
+    protected void before() throws Throwable {
+        server = SCSStubServer.start();
+        client = newClient(new ClientConfiguration());
+    }
+
+    @Override
+    protected void after() {
+        for (TransferManager transferManager : transferManagers) {
+            transferManager.shutdownNow();
+        }
+        for (SCSClient each : clients) {
+            each.shutdown();
+        }
+        server.releaseRequests();
+        server.stop();
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    /** Returns the stub server of the current test. */
+    public SCSStubServer getServer() {
+        return server;
+    }
+
+    /** Returns the client of the current test, with the default configuration. */
+    public SCSClient getClient() {
+        return client;
+    }
+
+    /**
+     * Returns a new client with the given configuration pointed at the stub
+     * server, shut down after the test.
+     */
+    public SCSClient newClient(ClientConfiguration configuration) {
+        SCSClient newClient = new SCSClient(new BasicAWSCredentials("access", "secret"), configuration);
+        newClient.setEndpoint(server.getEndpoint());
+        newClient.setEndpoint4Upload(server.getEndpoint());
+        clients.add(newClient);
+        return newClient;
+    }
+
+    /**
+     * Returns a new transfer manager with the given configuration using the
+     * client of the test, shut down after the test.
+     */
+    public TransferManager newTransferManager(TransferManagerConfiguration configuration) {
+        return track(new TransferManager(client), configuration);
+    }
+
+    /**
+     * Returns a new transfer manager with the given configuration using the
+     * client of the test and the given thread pool, shut down after the test.
+     */
+    public TransferManager newTransferManager(ThreadPoolExecutor threadPool,
+            TransferManagerConfiguration configuration) {
+        return track(new TransferManager(client, threadPool), configuration);
+    }
+
+    /** Returns a new empty temporary file, deleted after the test. */
+    public File newFile(String suffix) throws IOException {
+        File file = File.createTempFile("scs-stub-test", suffix);
+        files.add(file);
+        return file;
+    }
+
+    /** Returns a new temporary file with the given content, deleted after the test. */
+    public File newFile(byte[] content) throws IOException {
+        File file = newFile(".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /** Returns the given number of random bytes, the same for the same length. */
+    public static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /** Reads the given stream to its end, and closes it. */
+    public static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Returns the content of the given file. */
+    public static byte[] readFully(File file) throws IOException {
+        return readFully(new FileInputStream(file));
+    }
+
+    private TransferManager track(TransferManager transferManager, TransferManagerConfiguration configuration) {
+        transferManager.setConfiguration(configuration);
+        transferManagers.add(transferManager);
+        return transferManager;
+    }
+}
@@ -0,0 +1,82 @@
+package com.sinacloud.scs.services.scs.stub;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.readFully;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.SCSServiceException;
+import com.sinacloud.scs.services.scs.SCSClient;
+import com.sinacloud.scs.services.scs.iterable.S3Objects;
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.model.S3Object;
+import com.sinacloud.scs.services.scs.model.S3ObjectSummary;
+
+/**
+ * Exercises the {@link SCSClient} end to end against the {@link SCSStubServer}.
+ * The tests of the features built on top of it live next to the features.
+ */
+public class SCSStubServerTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void putAndGetObject() throws Exception {
+        SCSClient client = stub.getClient();
+        byte[] content = randomBytes(100 * 1024);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        metadata.addUserMetadata("color", "blue");
+        client.putObject(BUCKET, "dir/key", new ByteArrayInputStream(content), metadata);
+
+        S3Object object = client.getObject(BUCKET, "dir/key");
+        assertArrayEquals(content, readFully(object.getObjectContent()));
+        assertEquals("blue", object.getObjectMetadata().getUserMetadata().get("color"));
+        assertEquals(content.length, client.getObjectMetadata(BUCKET, "dir/key").getContentLength());
+    }
+
+    @Test
+    public void listObjectsAcrossPages() throws Exception {
+        for (int i = 0; i < 25; i++) {
+            stub.getServer().putObject(BUCKET, String.format("logs/%03d", i), new byte[i]);
+        }
+        stub.getServer().putObject(BUCKET, "other", new byte[1]);
+
+        long count = 0;
+        for (S3ObjectSummary summary : S3Objects.withPrefix(stub.getClient(), BUCKET, "logs/").withBatchSize(10)) {
+            assertEquals(String.format("logs/%03d", count), summary.getKey());
+            assertEquals(count, summary.getSize());
+            count++;
+        }
+        assertEquals(25, count);
+    }
+
+    @Test
+    public void retriesInjectedServiceErrors() throws Exception {
+        stub.getServer().failNextRequests(2, "PUT", 503, "Throttling");
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(3);
+        stub.getClient().putObject(BUCKET, "key", new ByteArrayInputStream(new byte[] {1, 2, 3}), metadata);
+
+        assertEquals(2, stub.getServer().getInjectedErrorCount());
+        assertArrayEquals(new byte[] {1, 2, 3}, stub.getServer().getObjectContent(BUCKET, "key"));
+    }
+
+    @Test
+    public void reportsErrorCodes() throws Exception {
+        try {
+            stub.getClient().getObjectMetadata(BUCKET, "missing");
+            fail("Expected an exception");
+        } catch (SCSServiceException e) {
+            assertEquals(404, e.getStatusCode());
+        }
+    }
+}
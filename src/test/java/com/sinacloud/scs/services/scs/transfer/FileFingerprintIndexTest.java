@@ -0,0 +1,60 @@
+package com.sinacloud.scs.services.scs.transfer;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.security.MessageDigest;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.util.BinaryUtils;
+
+public class FileFingerprintIndexTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void relaxUploadWithFingerprintIndex() throws Exception {
+        SCSStubServer server = stub.getServer();
+        byte[] content = randomBytes(2 * 1024 * 1024 + 9);
+        File file = stub.newFile(content);
+        file.setLastModified(System.currentTimeMillis() - 60 * 1000);
+        File indexFile = stub.newFile(".index");
+
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(1024 * 1024);
+        configuration.setMultipartUploadThreshold(1024 * 1024);
+        configuration.setRelaxUploadIndex(new FileFingerprintIndex(indexFile));
+        TransferManager transferManager = stub.newTransferManager(configuration);
+
+        // Unknown content is uploaded after the relax attempt fails
+        transferManager.upload(BUCKET, "original", file).waitForCompletion();
+        assertArrayEquals(content, server.getObjectContent(BUCKET, "original"));
+        configuration.getRelaxUploadIndex().close();
+
+        FileFingerprintIndex reloaded = new FileFingerprintIndex(indexFile);
+        assertEquals(BinaryUtils.toHex(MessageDigest.getInstance("SHA-1").digest(content)), reloaded.getSha1(file));
+        configuration.setRelaxUploadIndex(reloaded);
+
+        long putCount = server.getRequestCount("PUT");
+        transferManager.upload(BUCKET, "duplicate", file).waitForCompletion();
+        assertArrayEquals(content, server.getObjectContent(BUCKET, "duplicate"));
+        assertEquals(putCount + 1, server.getRequestCount("PUT"));
+    }
+
+    @Test
+    public void putObjectRelax() throws Exception {
+        byte[] content = randomBytes(100 * 1024);
+        stub.getServer().putObject(BUCKET, "original", content);
+
+        stub.getClient().putObjectRelax(BUCKET, "relaxed", stub.newFile(content));
+        assertArrayEquals(content, stub.getServer().getObjectContent(BUCKET, "relaxed"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+
+public class AdaptiveUploadControllerTest {
+
+    private static final long MB = 1024 * 1024;
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    private long nowNanos = TimeUnit.DAYS.toNanos(1);
+
+    @Test
+    public void adaptiveMultipartUpload() throws Exception {
+        SCSStubServer server = stub.getServer();
+        byte[] content = randomBytes(8 * 1024 * 1024 + 5);
+
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(512 * 1024);
+        configuration.setMultipartUploadThreshold(1024 * 1024);
+        configuration.setAdaptiveMultipartUpload(true);
+        configuration.setMaximumUploadPartsInFlight(3);
+        configuration.setUploadMemoryBudget(4 * 1024 * 1024);
+        stub.newTransferManager(configuration).upload(BUCKET, "adaptive", stub.newFile(content))
+            .waitForCompletion();
+        assertArrayEquals(content, server.getObjectContent(BUCKET, "adaptive"));
+        assertEquals(0, server.getPendingMultipartUploadCount());
+        assertTrue(server.getMaxConcurrentRequests() <= 3);
+    }
+
+    @Test
+    public void partSizeAndPartsInFlightChangeInSeparateWindows() {
+        AdaptiveUploadController controller = new AdaptiveUploadController(configuration(4 * MB), MB, false);
+        assertEquals(2, controller.getPartsInFlightLimit());
+
+        // The first window only measures the throughput
+        window(controller, 5, 10);
+        assertEquals(2, controller.getPartsInFlightLimit());
+        // Then parts in flight are added while the throughput improves
+        window(controller, 5, 5);
+        assertEquals(3, controller.getPartsInFlightLimit());
+        // And removed once it stops improving
+        window(controller, 5, 20);
+        assertEquals(MB, controller.getPartSize());
+        assertEquals(2, controller.getPartsInFlightLimit());
+
+        // Fast parts grow, without changing the parts in flight
+        window(controller, 1, 1);
+        assertEquals(2 * MB, controller.getPartSize());
+        assertEquals(2, controller.getPartsInFlightLimit());
+        // Nor does the next window, whose throughput is the new baseline
+        window(controller, 5, 100);
+        assertEquals(2 * MB, controller.getPartSize());
+        assertEquals(2, controller.getPartsInFlightLimit());
+        // Still stepping down, since the throughput improved
+        window(controller, 5, 5);
+        assertEquals(1, controller.getPartsInFlightLimit());
+
+        // Slow parts shrink
+        window(controller, 40, 40);
+        assertEquals(MB, controller.getPartSize());
+        assertEquals(1, controller.getPartsInFlightLimit());
+    }
+
+    @Test
+    public void memoryBudgetOnlyLimitsStreamSources() {
+        AdaptiveUploadController file = new AdaptiveUploadController(configuration(2 * MB), 2 * MB, false);
+        AdaptiveUploadController stream = new AdaptiveUploadController(configuration(2 * MB), 2 * MB, true);
+        assertEquals(2, file.getPartsInFlightLimit());
+        assertEquals(1, stream.getPartsInFlightLimit());
+
+        for (AdaptiveUploadController controller : new AdaptiveUploadController[] { file, stream }) {
+            window(controller, 5, 10);
+            window(controller, 5, 5);
+            window(controller, 1, 1);
+        }
+        assertEquals(3, file.getPartsInFlightLimit());
+        assertEquals(4 * MB, file.getPartSize());
+        assertEquals(1, stream.getPartsInFlightLimit());
+        assertEquals(2 * MB, stream.getPartSize());
+    }
+
+    private static TransferManagerConfiguration configuration(long memoryBudget) {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(MB);
+        configuration.setMaximumUploadPartSize(16 * MB);
+        configuration.setMaximumUploadPartsInFlight(4);
+        configuration.setUploadMemoryBudget(memoryBudget);
+        return configuration;
+    }
+
+    /*
+     * Uploads a window of parts at once, each taking the given number of
+     * seconds, the whole window taking the other given number of seconds.
+     */
+    private void window(AdaptiveUploadController controller, long partSeconds, long windowSeconds) {
+        int parts = controller.getPartsInFlightLimit();
+        long partSize = controller.getPartSize();
+        for (int i = 0; i < parts; i++) {
+            assertTrue(controller.tryStartPart(nowNanos));
+        }
+        assertFalse(controller.tryStartPart(nowNanos));
+        nowNanos += TimeUnit.SECONDS.toNanos(windowSeconds);
+        for (int i = 0; i < parts; i++) {
+            controller.partUploaded(partSize, TimeUnit.SECONDS.toNanos(partSeconds), nowNanos);
+            controller.partFinished();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.readFully;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.SCSClientException;
+import com.sinacloud.scs.event.ProgressEvent;
+import com.sinacloud.scs.event.ProgressListener;
+import com.sinacloud.scs.services.scs.model.GetObjectRequest;
+import com.sinacloud.scs.services.scs.model.IntegrityCheckMode;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.services.scs.transfer.Download;
+import com.sinacloud.scs.services.scs.transfer.Transfer.TransferState;
+import com.sinacloud.scs.services.scs.transfer.TransferManager;
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+import com.sinacloud.scs.util.BinaryUtils;
+
+public class ParallelDownloadCallableTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void multipartUploadAndParallelDownload() throws Exception {
+        SCSStubServer server = stub.getServer();
+        byte[] content = randomBytes(3 * 1024 * 1024 + 17);
+        File file = stub.newFile(content);
+        File downloaded = stub.newFile(".download");
+
+        TransferManagerConfiguration configuration = parallelDownloadConfiguration();
+        configuration.setMinimumUploadPartSize(1024 * 1024);
+        configuration.setMultipartUploadThreshold(1024 * 1024);
+        TransferManager transferManager = stub.newTransferManager(configuration);
+
+        transferManager.upload(BUCKET, "large", file).waitForCompletion();
+        assertArrayEquals(content, server.getObjectContent(BUCKET, "large"));
+        assertEquals(0, server.getPendingMultipartUploadCount());
+
+        transferManager.download(BUCKET, "large", downloaded).waitForCompletion();
+        assertArrayEquals(content, readFully(downloaded));
+        assertTrue(server.getRequestCount("GET") >= 4);
+    }
+
+    @Test
+    public void firesLifecycleEventsOnce() throws Exception {
+        byte[] content = randomBytes(3 * 1024 * 1024 + 17);
+        stub.getServer().putObject(BUCKET, "large", content);
+        File downloaded = stub.newFile(".download");
+        TransferManager transferManager = stub.newTransferManager(parallelDownloadConfiguration());
+
+        final AtomicLong bytes = new AtomicLong();
+        final List<Integer> eventCodes = Collections.synchronizedList(new ArrayList<Integer>());
+        GetObjectRequest request = new GetObjectRequest(BUCKET, "large")
+            .withGeneralProgressListener(new ProgressListener() {
+                public void progressChanged(ProgressEvent progressEvent) {
+                    bytes.addAndGet(progressEvent.getBytesTransferred());
+                    if (progressEvent.getEventCode() != 0) {
+                        eventCodes.add(progressEvent.getEventCode());
+                    }
+                }
+            });
+        transferManager.download(request, downloaded).waitForCompletion();
+        assertArrayEquals(content, readFully(downloaded));
+        assertTrue(stub.getServer().getRequestCount("GET") >= 4);
+
+        // Progress events are delivered asynchronously
+        long deadline = System.currentTimeMillis() + 10 * 1000;
+        while ((bytes.get() < content.length || !eventCodes.contains(ProgressEvent.COMPLETED_EVENT_CODE))
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(content.length, bytes.get());
+        assertEquals(Arrays.asList(ProgressEvent.STARTED_EVENT_CODE, ProgressEvent.COMPLETED_EVENT_CODE),
+                eventCodes);
+    }
+
+    @Test
+    public void verifiesTheFileUnlessIntegrityCheckIsDisabled() throws Exception {
+        byte[] content = randomBytes(3 * 1024 * 1024 + 17);
+        stub.getServer().putObject(BUCKET, "corrupted", content,
+                BinaryUtils.toHex(MessageDigest.getInstance("MD5").digest(new byte[1])));
+        File downloaded = stub.newFile(".download");
+        TransferManager transferManager = stub.newTransferManager(parallelDownloadConfiguration());
+
+        // OnTheFly is the default
+        Download download = transferManager.download(new GetObjectRequest(BUCKET, "corrupted"), downloaded);
+        try {
+            download.waitForCompletion();
+            fail("Expected an exception");
+        } catch (SCSClientException expected) {
+        }
+        assertEquals(TransferState.Failed, download.getState());
+
+        download = transferManager.download(new GetObjectRequest(BUCKET, "corrupted")
+            .withIntegrityCheckMode(IntegrityCheckMode.None), downloaded);
+        download.waitForCompletion();
+        assertArrayEquals(content, readFully(downloaded));
+    }
+
+    @Test
+    public void cancelledDownloadIsCanceled() throws Exception {
+        stub.getServer().putObject(BUCKET, "large", randomBytes(3 * 1024 * 1024 + 17));
+        stub.getServer().setLatency(500);
+        File downloaded = stub.newFile(".download");
+        TransferManager transferManager = stub.newTransferManager(parallelDownloadConfiguration());
+
+        Download download = transferManager.download(BUCKET, "large", downloaded);
+        assertTrue(((AbstractTransfer) download).getMonitor().getFuture().cancel(true));
+        assertEquals(TransferState.Canceled, download.getState());
+        assertTrue(download.isDone());
+
+        download = transferManager.download(BUCKET, "large", downloaded);
+        download.abort();
+        assertEquals(TransferState.Canceled, download.getState());
+    }
+
+    private static TransferManagerConfiguration parallelDownloadConfiguration() {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setDownloadPartSize(1024 * 1024);
+        configuration.setParallelDownloadThreshold(1024 * 1024);
+        return configuration;
+    }
+}
@@ -0,0 +1,81 @@
+package com.sinacloud.scs.services.scs.transfer.internal;
+
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.BUCKET;
+import static com.sinacloud.scs.services.scs.stub.SCSStubServerRule.randomBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.sinacloud.scs.services.scs.model.ObjectMetadata;
+import com.sinacloud.scs.services.scs.stub.SCSStubServer;
+import com.sinacloud.scs.services.scs.stub.SCSStubServerRule;
+import com.sinacloud.scs.services.scs.transfer.TransferManager;
+import com.sinacloud.scs.services.scs.transfer.TransferManagerConfiguration;
+
+public class UploadCallableTest {
+
+    @Rule
+    public SCSStubServerRule stub = new SCSStubServerRule();
+
+    @Test
+    public void parallelStreamUpload() throws Exception {
+        SCSStubServer server = stub.getServer();
+        byte[] content = randomBytes(3 * 1024 * 1024 + 100);
+        TransferManager transferManager = stub.newTransferManager(streamUploadConfiguration());
+
+        transferManager.upload(BUCKET, "stream", new ByteArrayInputStream(content), metadata(content))
+            .waitForCompletion();
+        assertArrayEquals(content, server.getObjectContent(BUCKET, "stream"));
+        assertEquals(0, server.getPendingMultipartUploadCount());
+        assertTrue(server.getMaxConcurrentRequests() <= 3);
+    }
+
+    @Test(timeout = 60 * 1000)
+    public void parallelStreamUploadOnSingleThreadPool() throws Exception {
+        byte[] content = randomBytes(3 * 1024 * 1024 + 100);
+        // The thread reading the stream is the only one of the pool
+        TransferManager transferManager = stub.newTransferManager(
+                (ThreadPoolExecutor) Executors.newFixedThreadPool(1), streamUploadConfiguration());
+
+        transferManager.upload(BUCKET, "stream", new ByteArrayInputStream(content), metadata(content))
+            .waitForCompletion();
+        assertArrayEquals(content, stub.getServer().getObjectContent(BUCKET, "stream"));
+        assertEquals(0, stub.getServer().getPendingMultipartUploadCount());
+    }
+
+    @Test
+    public void multipartUploadWithPrecomputedChecksums() throws Exception {
+        byte[] content = randomBytes(6 * 1024 * 1024 + 3);
+        File file = stub.newFile(content);
+
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(1024 * 1024);
+        configuration.setMultipartUploadThreshold(1024 * 1024);
+        configuration.setPrecomputeChecksums(true);
+        stub.newTransferManager(configuration).upload(BUCKET, "checksummed", file).waitForCompletion();
+        assertArrayEquals(content, stub.getServer().getObjectContent(BUCKET, "checksummed"));
+        assertEquals(0, stub.getServer().getPendingMultipartUploadCount());
+    }
+
+    private static TransferManagerConfiguration streamUploadConfiguration() {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMinimumUploadPartSize(512 * 1024);
+        configuration.setMultipartUploadThreshold(1024 * 1024);
+        configuration.setStreamUploadParallelism(3);
+        return configuration;
+    }
+
+    private static ObjectMetadata metadata(byte[] content) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        return metadata;
+    }
+}
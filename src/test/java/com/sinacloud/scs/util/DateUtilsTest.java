@@ -0,0 +1,66 @@
+package com.sinacloud.scs.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.text.ParseException;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class DateUtilsTest {
+
+    /** Mon, 03 Mar 2014 08:53:41 GMT */
+    private static final long MARCH_3_2014 = 1393836821000L;
+
+    private final DateUtils dateUtils = new DateUtils();
+
+    @Test
+    public void formatsAndParsesRfc822Dates() throws Exception {
+        String formatted = dateUtils.formatRfc822Date(new Date(MARCH_3_2014 + 999));
+        assertEquals("Mon, 03 Mar 2014 08:53:41 GMT", formatted);
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date(formatted).getTime());
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("Mon, 03 Mar 2014 08:53:41 UTC").getTime());
+    }
+
+    @Test
+    public void parsesRfc822DatesLeniently() throws Exception {
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("Mon, 3 Mar 2014 08:53:41 GMT").getTime());
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("Tue, 03 Mar 2014 08:53:41 GMT").getTime());
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("Fri, 3 Mar 2014 08:53:41 UTC").getTime());
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("03 Mar 2014 08:53:41 GMT").getTime());
+        assertEquals(MARCH_3_2014, dateUtils.parseRfc822Date("mon, 03 MAR 2014 08:53:41 GMT").getTime());
+    }
+
+    @Test
+    public void formatsAndParsesIso8601Dates() throws Exception {
+        String formatted = dateUtils.formatIso8601Date(new Date(MARCH_3_2014 + 5));
+        assertEquals("2014-03-03T08:53:41.005Z", formatted);
+        assertEquals(MARCH_3_2014 + 5, dateUtils.parseIso8601Date(formatted).getTime());
+    }
+
+    @Test
+    public void parsesIso8601FractionsOfAnyLength() throws Exception {
+        assertEquals(MARCH_3_2014, dateUtils.parseIso8601Date("2014-03-03T08:53:41Z").getTime());
+        assertEquals(MARCH_3_2014 + 500, dateUtils.parseIso8601Date("2014-03-03T08:53:41.5Z").getTime());
+        assertEquals(MARCH_3_2014 + 120, dateUtils.parseIso8601Date("2014-03-03T08:53:41.12Z").getTime());
+        assertEquals(MARCH_3_2014 + 123, dateUtils.parseIso8601Date("2014-03-03T08:53:41.123456Z").getTime());
+    }
+
+    @Test
+    public void rejectsMalformedDates() throws Exception {
+        String[] malformed = {"Mon, 03 Foo 2014 08:53:41 GMT", "Mon, 32 Mar 2014 08:53:41 GMT", "yesterday"};
+        for (String dateString : malformed) {
+            try {
+                dateUtils.parseRfc822Date(dateString);
+                fail("Expected a ParseException for " + dateString);
+            } catch (ParseException expected) {
+            }
+        }
+        try {
+            dateUtils.parseIso8601Date("2014-03-03 08:53:41Z");
+            fail("Expected a ParseException");
+        } catch (ParseException expected) {
+        }
+    }
+}
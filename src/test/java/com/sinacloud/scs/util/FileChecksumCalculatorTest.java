@@ -0,0 +1,43 @@
+package com.sinacloud.scs.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class FileChecksumCalculatorTest {
+
+    @Test
+    public void computesPartMd5sAndOptionallyTheSha1() throws Exception {
+        byte[] content = new byte[6 * 1024 * 1024 + 3];
+        new Random(content.length).nextBytes(content);
+        File file = File.createTempFile("checksums", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(content);
+            out.close();
+
+            FileChecksums checksums = FileChecksumCalculator.getDefault().calculate(file, 1024 * 1024);
+            assertEquals(7, checksums.getPartCount());
+            assertEquals(content.length, checksums.getFileLength());
+            assertArrayEquals(MessageDigest.getInstance("SHA-1").digest(content), checksums.getSha1());
+            assertArrayEquals(MessageDigest.getInstance("MD5").digest(Arrays.copyOfRange(content, 0, 1024 * 1024)),
+                    checksums.getPartMd5(1));
+            assertArrayEquals(MessageDigest.getInstance("MD5").digest(Arrays.copyOfRange(content, 6 * 1024 * 1024,
+                    content.length)), checksums.getPartMd5(7));
+
+            FileChecksums md5s = FileChecksumCalculator.getDefault().calculate(file, 1024 * 1024, false);
+            assertEquals(null, md5s.getSha1());
+            assertEquals(null, md5s.getSha1Hex());
+            assertArrayEquals(checksums.getPartMd5(7), md5s.getPartMd5(7));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sinacloud.scs.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MacCacheTest {
+
+    private static final byte[] DATA = "GET\n\n\n1234567890\n/bucket/key".getBytes();
+
+    @Before
+    public void setUp() {
+        MacCache.clear();
+    }
+
+    @Test
+    public void cachedKeyIsServedWithFreshInstances() throws Exception {
+        byte[] key = "secret".getBytes();
+        assertFalse(MacCache.isCached("HmacSHA1", key));
+        Mac first = MacCache.getMac("HmacSHA1", key);
+        assertTrue(MacCache.isCached("HmacSHA1", key));
+
+        // A use which fails halfway doesn't affect the next instances
+        first.update(DATA);
+        Mac second = MacCache.getMac("HmacSHA1", key);
+        assertNotSame(first, second);
+        assertArrayEquals(hmac("HmacSHA1", key, DATA), second.doFinal(DATA));
+        assertArrayEquals(hmac("HmacSHA1", key, DATA), MacCache.getMac("HmacSHA1", key).doFinal(DATA));
+    }
+
+    @Test
+    public void keysAndAlgorithmsAreCachedSeparately() throws Exception {
+        byte[] key = "secret".getBytes();
+        byte[] otherKey = "other secret".getBytes();
+        assertArrayEquals(hmac("HmacSHA1", key, DATA), MacCache.getMac("HmacSHA1", key).doFinal(DATA));
+        assertArrayEquals(hmac("HmacSHA1", otherKey, DATA), MacCache.getMac("HmacSHA1", otherKey).doFinal(DATA));
+        assertArrayEquals(hmac("HmacSHA256", key, DATA), MacCache.getMac("HmacSHA256", key).doFinal(DATA));
+        assertArrayEquals(hmac("HmacSHA1", key, DATA), MacCache.getMac("HmacSHA1", key).doFinal(DATA));
+
+        // Changing the caller's array doesn't change the cached key
+        byte[] changing = "secret".getBytes();
+        MacCache.getMac("HmacSHA1", changing);
+        changing[0] = 'S';
+        assertArrayEquals(hmac("HmacSHA1", changing, DATA), MacCache.getMac("HmacSHA1", changing).doFinal(DATA));
+    }
+
+    @Test
+    public void leastRecentlyUsedKeysAreEvicted() throws Exception {
+        for (int i = 0; i < MacCache.MAX_KEYS; i++) {
+            MacCache.getMac("HmacSHA1", key(i));
+        }
+        MacCache.getMac("HmacSHA1", key(0));
+        MacCache.getMac("HmacSHA1", key(MacCache.MAX_KEYS));
+
+        assertTrue(MacCache.isCached("HmacSHA1", key(0)));
+        assertFalse(MacCache.isCached("HmacSHA1", key(1)));
+        assertTrue(MacCache.isCached("HmacSHA1", key(2)));
+        assertTrue(MacCache.isCached("HmacSHA1", key(MacCache.MAX_KEYS)));
+    }
+
+    @Test
+    public void instancesCanBeUsedConcurrently() throws Exception {
+        final byte[] key = "secret".getBytes();
+        final byte[] expected = hmac("HmacSHA1", key, DATA);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread() {
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            assertArrayEquals(expected, MacCache.getMac("HmacSHA1", key).doFinal(DATA));
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) throw new AssertionError(failure.get());
+    }
+
+    private static byte[] key(int i) {
+        return ("key" + i).getBytes();
+    }
+
+    private static byte[] hmac(String algorithm, byte[] key, byte[] data) throws Exception {
+        Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(key, algorithm));
+        return mac.doFinal(data);
+    }
+}